@@ -0,0 +1,26 @@
+package org.example.queryapi.cache;
+
+import java.util.Locale;
+
+/**
+ * Helpers for building cache keys from request fields.
+ */
+public final class CacheKeys {
+
+    private CacheKeys() {
+    }
+
+    /**
+     * Normalizes a query for use in a cache key: trimmed, lowercased, with runs of
+     * whitespace collapsed to a single space. Query analysis ignores case and spacing,
+     * so such variants retrieve the same chunks and share one entry.
+     *
+     * @return the normalized query, empty for null
+     */
+    public static String normalizeQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
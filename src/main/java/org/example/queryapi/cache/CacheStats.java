@@ -0,0 +1,117 @@
+package org.example.queryapi.cache;
+
+/**
+ * Point-in-time counters of a {@link TinyLfuCache}.
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long coalescedCount;
+    private final long evictionCount;
+    private final int size;
+    private final long savedNanos;
+    private final long failureCount;
+
+    public CacheStats(long hitCount, long missCount, long coalescedCount, long evictionCount, int size) {
+        this(hitCount, missCount, coalescedCount, evictionCount, size, 0L);
+    }
+
+    /**
+     * @param savedNanos total time hits saved compared to computing their values again
+     */
+    public CacheStats(long hitCount, long missCount, long coalescedCount, long evictionCount, int size,
+                      long savedNanos) {
+        this(hitCount, missCount, coalescedCount, evictionCount, size, savedNanos, 0L);
+    }
+
+    /**
+     * @param savedNanos total time hits saved compared to computing their values again
+     * @param failureCount lookups that failed and were answered as misses
+     */
+    public CacheStats(long hitCount, long missCount, long coalescedCount, long evictionCount, int size,
+                      long savedNanos, long failureCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.coalescedCount = coalescedCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.savedNanos = savedNanos;
+        this.failureCount = failureCount;
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of lookups that ran the loader.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of lookups that found the key missing but waited for a load
+     * already in flight instead of running the loader again.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Gets the number of entries removed to stay within the size bound, including
+     * new entries the admission policy turned away, and entries dropped on expiry.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the number of lookups that failed, such as on an unreachable embedding model,
+     * and were answered as misses; they are also counted as misses. Zero for caches whose
+     * lookups cannot fail.
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Gets the number of entries currently held.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the fraction of lookups that did not run the loader, 0.0 before the first lookup.
+     */
+    public double getHitRate() {
+        long lookups = hitCount + missCount + coalescedCount;
+        return lookups == 0 ? 0.0 : (double) (hitCount + coalescedCount) / lookups;
+    }
+
+    /**
+     * Gets the total time hits saved, in milliseconds; zero for caches that do not measure it.
+     */
+    public double getTimeSavedMs() {
+        return savedNanos / 1_000_000.0;
+    }
+
+    /**
+     * Gets the average time a hit saved, in milliseconds; zero for caches that do not measure it.
+     */
+    public double getTimeSavedPerHitMs() {
+        return hitCount == 0 ? 0.0 : savedNanos / 1_000_000.0 / hitCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hitCount + ", misses=" + missCount + ", coalesced=" + coalescedCount
+                + ", evictions=" + evictionCount + ", size=" + size + ", savedMs=" + getTimeSavedMs()
+                + ", failures=" + failureCount + "}";
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.queryapi.cache;
+
+/**
+ * Approximate access counts for the admission policy of {@link TinyLfuCache}.
+ *
+ * A count-min sketch of 4-bit counters packed sixteen to a {@code long}: every key
+ * increments one counter in each of four rows, and its estimate is the smallest of the
+ * four, so hash collisions can only overestimate. Once the number of increments reaches
+ * ten times the cache size every counter is halved, which ages out keys that were
+ * popular once but no longer are. Not thread-safe; the cache guards it with its lock.
+ */
+final class FrequencySketch {
+
+    private static final int ROWS = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+    private static final long HALVE_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param maximumSize number of entries the cache holds; sizes the table and the aging period
+     */
+    FrequencySketch(int maximumSize) {
+        int longs = Integer.highestOneBit(Math.max(1, maximumSize - 1)) << 1;
+        this.table = new long[Math.max(2, longs)];
+        this.counterMask = table.length * 16 - 1;
+        this.sampleSize = Math.max(10, 10 * maximumSize);
+    }
+
+    /**
+     * Gets the estimated number of recent accesses to a key, at most {@value #MAX_COUNT}.
+     */
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < ROWS; row++) {
+            frequency = Math.min(frequency, count(counter(hash, row)));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access to a key, halving every counter once the sample period is reached.
+     */
+    void increment(Object key) {
+        int hash = key.hashCode();
+        boolean added = false;
+        for (int row = 0; row < ROWS; row++) {
+            int counter = counter(hash, row);
+            if (count(counter) < MAX_COUNT) {
+                table[counter >>> 4] += 1L << ((counter & 15) << 2);
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALVE_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int count(int counter) {
+        return (int) (table[counter >>> 4] >>> ((counter & 15) << 2)) & MAX_COUNT;
+    }
+
+    private int counter(int hash, int row) {
+        long mixed = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) (mixed >>> 32) & counterMask;
+    }
+}
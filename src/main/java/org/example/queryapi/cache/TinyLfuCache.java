@@ -0,0 +1,286 @@
+package org.example.queryapi.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache with W-TinyLFU eviction and single-flight loading.
+ *
+ * New entries enter a small LRU window (1% of the capacity). An entry leaving the
+ * window competes with the least recently used entry of the main area's probation
+ * segment, and whichever key the {@link FrequencySketch} has seen more often stays.
+ * Entries hit again while on probation are promoted to the protected segment (80% of
+ * the main area). One-off queries therefore pass through the window without flushing
+ * the popular entries, while a new popular entry is admitted after a few accesses.
+ *
+ * {@link #get(Object, Supplier)} runs the loader at most once per key at a time:
+ * concurrent misses on a key wait for the load in flight and share its result, or its
+ * exception. Loads run outside the cache's lock, which only guards the bookkeeping.
+ * A maximum size of zero disables caching but still coalesces concurrent loads.
+ *
+ * With an expiry set, an entry older than it counts as absent and is dropped when it is
+ * next looked up; until then it only occupies space, which the size bound still limits.
+ *
+ * @param <K> key type, with value-based equals and hashCode
+ * @param <V> value type; null values are returned but not cached
+ */
+public final class TinyLfuCache<K, V> {
+
+    private final int maximumSize;
+    private final int windowSize;
+    private final int protectedSize;
+    private final long expireAfterWriteNanos;
+    private final LongSupplier nanoTime;
+    private final FrequencySketch sketch;
+    // Insertion-ordered, least recently used first; a hit re-inserts the entry at the end
+    private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Entry<V>> protectedSegment = new LinkedHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private long hitCount;
+    private long missCount;
+    private long coalescedCount;
+    private long evictionCount;
+
+    /**
+     * @param maximumSize maximum number of entries; zero disables caching
+     */
+    public TinyLfuCache(int maximumSize) {
+        this(maximumSize, Duration.ZERO, System::nanoTime);
+    }
+
+    /**
+     * @param maximumSize maximum number of entries; zero disables caching
+     * @param expireAfterWrite age at which an entry expires; zero or negative never expires
+     * @param nanoTime clock entry ages are measured with
+     */
+    public TinyLfuCache(int maximumSize, Duration expireAfterWrite, LongSupplier nanoTime) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum cache size must not be negative");
+        }
+        this.maximumSize = maximumSize;
+        this.expireAfterWriteNanos = expireAfterWrite.isNegative() ? 0L : expireAfterWrite.toNanos();
+        this.nanoTime = nanoTime;
+        this.windowSize = Math.max(1, maximumSize / 100);
+        this.protectedSize = (maximumSize - windowSize) * 8 / 10;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Gets the value for a key, loading and caching it on a miss.
+     *
+     * @param loader computes the value; runs on the calling thread of the first miss
+     * @return the cached or loaded value
+     * @throws RuntimeException whatever the loader threw, also to callers that waited for it
+     */
+    public V get(K key, Supplier<? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, load);
+        if (inFlight != null) {
+            synchronized (lock) {
+                coalescedCount++;
+            }
+            return await(inFlight);
+        }
+        try {
+            // A load may have completed between the lookup and claiming the key
+            synchronized (lock) {
+                Entry<V> entry = find(key);
+                if (entry == null) {
+                    missCount++;
+                } else {
+                    hitCount++;
+                    value = entry.value();
+                }
+            }
+            if (value == null) {
+                value = loader.get();
+                if (value != null) {
+                    put(key, value);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Gets the cached value for a key and records the access.
+     *
+     * @return the value, or null if it is not cached
+     */
+    public V getIfPresent(K key) {
+        synchronized (lock) {
+            sketch.increment(key);
+            Entry<V> entry = find(key);
+            if (entry == null) {
+                return null;
+            }
+            hitCount++;
+            touch(key, entry);
+            return entry.value();
+        }
+    }
+
+    /**
+     * Caches a value, replacing any value held for the key.
+     */
+    public void put(K key, V value) {
+        if (maximumSize == 0) {
+            return;
+        }
+        Entry<V> entry = new Entry<>(value, nanoTime.getAsLong());
+        synchronized (lock) {
+            if (find(key) != null) {
+                replace(key, entry);
+                return;
+            }
+            window.put(key, entry);
+            if (window.size() > windowSize) {
+                evictFromWindow();
+            }
+        }
+    }
+
+    /**
+     * Removes every entry. Counters are kept.
+     */
+    public void clear() {
+        synchronized (lock) {
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+        }
+    }
+
+    /**
+     * Gets the number of cached entries.
+     */
+    public int size() {
+        synchronized (lock) {
+            return window.size() + probation.size() + protectedSegment.size();
+        }
+    }
+
+    public CacheStats stats() {
+        synchronized (lock) {
+            return new CacheStats(hitCount, missCount, coalescedCount, evictionCount,
+                    window.size() + probation.size() + protectedSegment.size());
+        }
+    }
+
+    /**
+     * Looks up an entry without recording the access, dropping it if it has expired.
+     */
+    private Entry<V> find(K key) {
+        Entry<V> entry = window.get(key);
+        if (entry == null) {
+            entry = probation.get(key);
+        }
+        if (entry == null) {
+            entry = protectedSegment.get(key);
+        }
+        if (entry != null && expireAfterWriteNanos > 0 && nanoTime.getAsLong() - entry.writtenAt() >= expireAfterWriteNanos) {
+            window.remove(key);
+            probation.remove(key);
+            protectedSegment.remove(key);
+            evictionCount++;
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Moves a hit entry to the most recently used end of its segment, promoting it out of probation.
+     */
+    private void touch(K key, Entry<V> entry) {
+        if (window.remove(key) != null) {
+            window.put(key, entry);
+        } else if (protectedSegment.remove(key) != null) {
+            protectedSegment.put(key, entry);
+        } else if (probation.remove(key) != null) {
+            protectedSegment.put(key, entry);
+            if (protectedSegment.size() > protectedSize) {
+                // Demoted entries get another chance on probation before they can be evicted
+                Map.Entry<K, Entry<V>> demoted = removeEldest(protectedSegment);
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+    }
+
+    private void replace(K key, Entry<V> entry) {
+        if (window.containsKey(key)) {
+            window.put(key, entry);
+        } else if (probation.containsKey(key)) {
+            probation.put(key, entry);
+        } else {
+            protectedSegment.put(key, entry);
+        }
+    }
+
+    /**
+     * Moves the window's eldest entry to probation if the main area has room or the entry
+     * is more frequent than probation's eldest; evicts the loser otherwise.
+     */
+    private void evictFromWindow() {
+        Map.Entry<K, Entry<V>> candidate = removeEldest(window);
+        if (probation.size() + protectedSegment.size() < maximumSize - windowSize) {
+            probation.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        LinkedHashMap<K, Entry<V>> victims = probation.isEmpty() ? protectedSegment : probation;
+        if (victims.isEmpty()) {
+            evictionCount++;
+            return;
+        }
+        K victim = victims.keySet().iterator().next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+            victims.remove(victim);
+            probation.put(candidate.getKey(), candidate.getValue());
+        }
+        evictionCount++;
+    }
+
+    private static <K, V> Map.Entry<K, V> removeEldest(LinkedHashMap<K, V> segment) {
+        Iterator<Map.Entry<K, V>> entries = segment.entrySet().iterator();
+        Map.Entry<K, V> eldest = entries.next();
+        Map.Entry<K, V> entry = Map.entry(eldest.getKey(), eldest.getValue());
+        entries.remove();
+        return entry;
+    }
+
+    private record Entry<V>(V value, long writtenAt) {
+    }
+
+    private static <V> V await(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.example.queryapi.controller;
+
+import org.example.queryapi.domain.AnswerDelta;
+import org.example.queryapi.domain.Chunk;
+import org.example.queryapi.domain.SynthesisResult;
+import org.example.queryapi.dto.AnswerToken;
+import org.example.queryapi.dto.CitedDocument;
+import org.example.queryapi.dto.ErrorResponse;
+import org.example.queryapi.dto.QueryResponse;
+import org.example.queryapi.dto.ResponseMetadata;
+import org.example.queryapi.dto.StreamCompletion;
+import org.example.queryapi.synthesis.CitationTracker;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Server-Sent Events of one streamed answer.
+ *
+ * {@code token} events carry the answer text as it arrives, a {@code citation} event
+ * follows the token that first cites a document, and a closing {@code done} event
+ * carries the cited documents and metadata. A failure ends the stream with an
+ * {@code error} event instead, as does running past the emitter's timeout. Once the
+ * stream has ended, further events are dropped and the generation is cancelled.
+ */
+final class AnswerStream {
+
+    private final SseEmitter emitter;
+    private final List<Chunk> chunks;
+    private final Map<String, Chunk> chunksById = new HashMap<>();
+    private final CitationTracker citations;
+    private final long startTime;
+    private final StringBuilder answer = new StringBuilder();
+    private final Set<String> citedDocumentIds = new HashSet<>();
+    private final List<CitedDocument> citedDocuments = new ArrayList<>();
+    private long timeToFirstTokenMs = -1;
+    private Integer promptTokens;
+    private Integer outputTokens;
+    private volatile boolean closed;
+    private volatile Disposable generation;
+
+    /**
+     * @param chunks the chunks the answer cites by position
+     * @param startTime when the request arrived, in epoch milliseconds
+     */
+    AnswerStream(SseEmitter emitter, List<Chunk> chunks, long startTime) {
+        this.emitter = emitter;
+        this.chunks = chunks;
+        this.citations = new CitationTracker(chunks);
+        this.startTime = startTime;
+        for (Chunk chunk : chunks) {
+            chunksById.put(chunk.getChunkId(), chunk);
+        }
+        emitter.onTimeout(() -> {
+            cancel();
+            fail(new ErrorResponse("SYNTHESIS_FAILED", "Answer generation timed out", null));
+        });
+        emitter.onError(error -> {
+            closed = true;
+            cancel();
+        });
+    }
+
+    /**
+     * Ties the generation producing the tokens to this stream, so it is cancelled when the
+     * client goes away or the stream times out.
+     */
+    void generatedBy(Disposable generation) {
+        this.generation = generation;
+        if (closed) {
+            generation.dispose();
+        }
+    }
+
+    /**
+     * Sends the next piece of the answer, followed by the documents it cites first, and
+     * keeps the token counts it reports.
+     *
+     * @throws UncheckedIOException if the client went away
+     */
+    void accept(AnswerDelta delta) {
+        if (closed) {
+            return;
+        }
+        if (delta.getPromptTokens() != null) {
+            promptTokens = delta.getPromptTokens();
+        }
+        if (delta.getOutputTokens() != null) {
+            outputTokens = delta.getOutputTokens();
+        }
+        String text = delta.getText();
+        if (text.isEmpty()) {
+            return;
+        }
+        if (timeToFirstTokenMs < 0) {
+            timeToFirstTokenMs = System.currentTimeMillis() - startTime;
+        }
+        answer.append(text);
+        send("token", new AnswerToken(text));
+        for (String chunkId : citations.accept(text)) {
+            Chunk chunk = chunksById.get(chunkId);
+            if (citedDocumentIds.add(chunk.getDocumentId())) {
+                CitedDocument document = new CitedDocument(chunk.getDocumentId(), chunk.getDocumentTitle(),
+                        chunk.getText(), chunk.getUrl());
+                citedDocuments.add(document);
+                send("citation", document);
+            }
+        }
+    }
+
+    /**
+     * Gets the answer streamed so far with the chunks it cites.
+     */
+    SynthesisResult result() {
+        return new SynthesisResult(answer.toString(), citations.getCitedChunkIds(), promptTokens, outputTokens);
+    }
+
+    /**
+     * Gets the answer streamed so far as the response {@code /query} would have returned.
+     */
+    QueryResponse response(boolean answerSynthesized, boolean answerCached) {
+        ResponseMetadata metadata = new ResponseMetadata(chunks.size(), citedDocuments.size(),
+                System.currentTimeMillis() - startTime, answerCached);
+        if (timeToFirstTokenMs >= 0) {
+            metadata.setTimeToFirstTokenMs(timeToFirstTokenMs);
+        }
+        metadata.setPromptTokens(promptTokens);
+        metadata.setOutputTokens(outputTokens);
+        return new QueryResponse(answer.toString(), answerSynthesized, List.copyOf(citedDocuments), metadata);
+    }
+
+    /**
+     * Sends a whole response, such as one served from cache, and ends the stream.
+     */
+    void replay(QueryResponse response) {
+        if (closed) {
+            return;
+        }
+        response.getMetadata().setTimeToFirstTokenMs(System.currentTimeMillis() - startTime);
+        send("token", new AnswerToken(response.getAnswer()));
+        for (CitedDocument document : response.getCitedDocuments()) {
+            send("citation", document);
+        }
+        complete(response);
+    }
+
+    /**
+     * Sends the closing event with the response's citations and metadata and ends the stream.
+     */
+    void complete(QueryResponse response) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            emitter.send(SseEmitter.event().name("done")
+                    .data(new StreamCompletion(response.isAnswerSynthesized(), response.getCitedDocuments(),
+                            response.getMetadata()), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Sends an error event and ends the stream.
+     */
+    void fail(ErrorResponse error) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            emitter.send(SseEmitter.event().name("error").data(error, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void cancel() {
+        Disposable current = generation;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+
+    private void send(String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            closed = true;
+            throw new UncheckedIOException("Client closed the answer stream", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.queryapi.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.example.queryapi.cache.CacheStats;
+import org.example.queryapi.retrieval.RetrievalCache;
+import org.example.queryapi.synthesis.AnswerCache;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * REST controller exposing hit, miss and eviction counters of the query caches.
+ */
+@RestController
+@Tag(name = "Cache", description = "Query cache metrics")
+public class CacheController {
+
+    private final RetrievalCache retrievalCache;
+    private final AnswerCache answerCache;
+    private final SemanticResponseCache semanticCache;
+
+    public CacheController(RetrievalCache retrievalCache, AnswerCache answerCache,
+                           SemanticResponseCache semanticCache) {
+        this.retrievalCache = retrievalCache;
+        this.answerCache = answerCache;
+        this.semanticCache = semanticCache;
+    }
+
+    @GetMapping("/cache/stats")
+    @Operation(summary = "Get cache statistics", description = "Returns the counters of each cache by name")
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("retrieval", retrievalCache.stats());
+        stats.put("answer", answerCache.stats());
+        stats.put("semantic", semanticCache.stats());
+        return stats;
+    }
+}
@@ -6,22 +6,37 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.example.queryapi.domain.AnswerDelta;
 import org.example.queryapi.domain.Chunk;
 import org.example.queryapi.domain.SynthesisResult;
 import org.example.queryapi.dto.CitedDocument;
 import org.example.queryapi.dto.ErrorResponse;
+import org.example.queryapi.dto.QueryFilters;
 import org.example.queryapi.dto.QueryRequest;
 import org.example.queryapi.dto.QueryResponse;
 import org.example.queryapi.dto.ResponseMetadata;
+import org.example.queryapi.retrieval.ChunkCompressor;
+import org.example.queryapi.retrieval.RetrievalCache;
 import org.example.queryapi.retrieval.RetrievalException;
+import org.example.queryapi.retrieval.RetrievalFilter;
+import org.example.queryapi.retrieval.RetrievalResult;
 import org.example.queryapi.retrieval.Retriever;
+import org.example.queryapi.retrieval.SemanticCache;
+import org.example.queryapi.synthesis.AnswerCache;
 import org.example.queryapi.synthesis.SynthesisException;
+import org.example.queryapi.synthesis.SynthesisRejectedException;
+import org.example.queryapi.synthesis.SynthesisScheduler;
 import org.example.queryapi.synthesis.Synthesizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.SignalType;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -35,13 +50,30 @@ import java.util.stream.Collectors;
 public class QueryController {
 
     private static final int DEFAULT_MAX_SOURCES = 10;
+    private static final String NO_RELEVANT_INFORMATION =
+            "No relevant information found in the knowledge base to answer this question.";
 
     private final Retriever retriever;
     private final Synthesizer synthesizer;
+    private final RetrievalCache retrievalCache;
+    private final AnswerCache answerCache;
+    private final SemanticResponseCache semanticCache;
+    private final ChunkCompressor compressor;
+    private final SynthesisScheduler scheduler;
+    private final long streamTimeoutMs;
 
-    public QueryController(Retriever retriever, Synthesizer synthesizer) {
+    public QueryController(Retriever retriever, Synthesizer synthesizer, RetrievalCache retrievalCache,
+                           AnswerCache answerCache, SemanticResponseCache semanticCache, ChunkCompressor compressor,
+                           SynthesisScheduler scheduler,
+                           @Value("${queryapi.stream.timeout-seconds:300}") long streamTimeoutSeconds) {
         this.retriever = retriever;
         this.synthesizer = synthesizer;
+        this.retrievalCache = retrievalCache;
+        this.answerCache = answerCache;
+        this.semanticCache = semanticCache;
+        this.compressor = compressor;
+        this.scheduler = scheduler;
+        this.streamTimeoutMs = streamTimeoutSeconds * 1000;
     }
 
     @PostMapping("/query")
@@ -59,9 +91,15 @@ public class QueryController {
                             description = "Validation error",
                             content = @Content(schema = @Schema(implementation = ErrorResponse.class))
                     ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Synthesis queue full; retry after the Retry-After delay",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+                    ),
                     @ApiResponse(
                             responseCode = "503",
-                            description = "Service unavailable (retrieval or synthesis failed)",
+                            description = "Service unavailable (retrieval or synthesis failed, or the synthesis "
+                                    + "queue wait would exceed its deadline)",
                             content = @Content(schema = @Schema(implementation = ErrorResponse.class))
                     )
             }
@@ -70,19 +108,26 @@ public class QueryController {
         long startTime = System.currentTimeMillis();
 
         try {
-            // Determine maxSources (use provided value or default)
-            int maxSources = request.getMaxSources() != null
-                    ? request.getMaxSources()
-                    : DEFAULT_MAX_SOURCES;
+            int maxSources = maxSources(request);
+            RetrievalFilter filter = toFilter(request.getFilters());
 
-            // Step 1: Retrieve relevant chunks
-            List<Chunk> chunks = retriever.retrieve(request.getQuery(), maxSources);
+            // Step 1: Serve the answer to a paraphrase of a recent question, if any
+            SemanticCache.Lookup<SemanticResponseCache.Scope, QueryResponse> similar =
+                    semanticCache.lookup(request.getQuery(), maxSources, filter, request.getMaxTokens());
+            if (similar.getValue() != null) {
+                return ResponseEntity.ok(SemanticResponseCache.served(similar.getValue(),
+                        System.currentTimeMillis() - startTime));
+            }
 
-            // Step 2: Handle empty retrieval
+            // Step 2: Retrieve relevant chunks, reusing results for repeated questions
+            RetrievalResult retrieval = retrievalCache.retrieve(retriever, request.getQuery(), maxSources, filter);
+            List<Chunk> chunks = retrieval.chunks();
+
+            // Step 3: Handle empty retrieval
             if (chunks.isEmpty()) {
                 long processingTime = System.currentTimeMillis() - startTime;
                 QueryResponse response = new QueryResponse(
-                        "No relevant information found in the knowledge base to answer this question.",
+                        NO_RELEVANT_INFORMATION,
                         false,
                         List.of(),
                         new ResponseMetadata(0, 0, processingTime)
@@ -90,27 +135,37 @@ public class QueryController {
                 return ResponseEntity.ok(response);
             }
 
-            // Step 3: Synthesize answer
-            SynthesisResult synthesisResult = synthesizer.synthesize(request.getQuery(), chunks);
+            // Step 4: Synthesize answer from the chunks' relevant sentences once a synthesis slot
+            // is free, or reuse one already generated for the same question and chunks
+            AnswerCache.Answer answer = answerCache.synthesize(scheduled(synthesizer), request.getQuery(), chunks,
+                    request.getMaxTokens());
+            SynthesisResult synthesisResult = answer.getResult();
 
-            // Step 4: Build cited documents list with deduplication
+            // Step 5: Build cited documents list with deduplication
             List<CitedDocument> citedDocuments = buildCitedDocuments(synthesisResult, chunks);
 
-            // Step 5: Build metadata
+            // Step 6: Build metadata
             long processingTime = System.currentTimeMillis() - startTime;
             ResponseMetadata metadata = new ResponseMetadata(
                     chunks.size(),
                     citedDocuments.size(),
-                    processingTime
+                    processingTime,
+                    answer.isCached()
             );
+            metadata.setPromptTokens(synthesisResult.getPromptTokens());
+            metadata.setOutputTokens(synthesisResult.getOutputTokens());
 
-            // Step 6: Build response
+            // Step 7: Build response
             QueryResponse response = new QueryResponse(
                     synthesisResult.getAnswerText(),
                     true,
                     citedDocuments,
                     metadata
             );
+            // An answer built on a degraded ranking is not served to later paraphrases
+            if (!answer.isCached() && retrieval.complete()) {
+                semanticCache.put(similar, response);
+            }
 
             return ResponseEntity.ok(response);
 
@@ -121,6 +176,113 @@ public class QueryController {
         }
     }
 
+    @PostMapping("/query/stream")
+    @Operation(
+            summary = "Submit a natural-language query and stream the answer",
+            description = "Streams the answer as Server-Sent Events while it is generated. Token events carry "
+                    + "answer text, a citation event follows the first citation of each document, and a closing "
+                    + "done event carries the cited documents and metadata. Retrieval or synthesis failures end "
+                    + "the stream with an error event.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Event stream of token, citation and done events, or an error event",
+                            content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Validation error",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Synthesis queue full; retry after the Retry-After delay",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "Synthesis queue wait would exceed its deadline; retry after the "
+                                    + "Retry-After delay",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+                    )
+            }
+    )
+    public SseEmitter queryStream(@Valid @RequestBody QueryRequest request) {
+        long startTime = System.currentTimeMillis();
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        int maxSources = maxSources(request);
+        RetrievalFilter filter = toFilter(request.getFilters());
+
+        final SemanticCache.Lookup<SemanticResponseCache.Scope, QueryResponse> similar;
+        final RetrievalResult retrieval;
+        try {
+            similar = semanticCache.lookup(request.getQuery(), maxSources, filter, request.getMaxTokens());
+            if (similar.getValue() != null) {
+                new AnswerStream(emitter, List.of(), startTime).replay(SemanticResponseCache.served(
+                        similar.getValue(), System.currentTimeMillis() - startTime));
+                return emitter;
+            }
+            retrieval = retrievalCache.retrieve(retriever, request.getQuery(), maxSources, filter);
+        } catch (RetrievalException e) {
+            new AnswerStream(emitter, List.of(), startTime).fail(handleRetrievalException(e));
+            return emitter;
+        }
+        List<Chunk> chunks = retrieval.chunks();
+
+        AnswerStream stream = new AnswerStream(emitter, chunks, startTime);
+        if (chunks.isEmpty()) {
+            stream.accept(new AnswerDelta(NO_RELEVANT_INFORMATION));
+            stream.complete(stream.response(false, false));
+            return emitter;
+        }
+        SynthesisResult cached = answerCache.getIfPresent(request.getQuery(), chunks, request.getMaxTokens());
+        if (cached != null) {
+            stream.accept(new AnswerDelta(cached.getAnswerText(), cached.getPromptTokens(),
+                    cached.getOutputTokens()));
+            stream.complete(stream.response(true, true));
+            return emitter;
+        }
+
+        List<Chunk> context = compressor.compress(request.getQuery(), chunks);
+        // Rejection is thrown before the stream starts, so the client gets a plain 429 or 503
+        SynthesisScheduler.Permit permit = scheduler.acquire();
+
+        // Tokens are sent from the model client's threads; this request thread returns as soon
+        // as the synthesis has a slot
+        stream.generatedBy(synthesizer.stream(request.getQuery(), context, request.getMaxTokens())
+                .doFinally(signal -> permit.close(signal == SignalType.ON_COMPLETE))
+                .subscribe(
+                        stream::accept,
+                        error -> stream.fail(handleSynthesisException(error instanceof SynthesisException synthesisError
+                                ? synthesisError
+                                : new SynthesisException(error.getMessage(), error))),
+                        () -> {
+                            QueryResponse response = stream.response(true, false);
+                            answerCache.put(request.getQuery(), chunks, request.getMaxTokens(), stream.result());
+                            if (retrieval.complete()) {
+                                semanticCache.put(similar, response);
+                            }
+                            stream.complete(response);
+                        }));
+        return emitter;
+    }
+
+    /**
+     * Wrap the synthesizer so it runs in a scheduler slot and sees only the sentences of each
+     * chunk relevant to the query; cited documents are still built from the whole chunks.
+     */
+    private Synthesizer scheduled(Synthesizer synthesizer) {
+        return (query, chunks, maxTokens) -> scheduler.call(
+                () -> synthesizer.synthesize(query, compressor.compress(query, chunks), maxTokens));
+    }
+
+    /**
+     * Get the requested number of sources, or the default if none was given.
+     */
+    private static int maxSources(QueryRequest request) {
+        return request.getMaxSources() != null ? request.getMaxSources() : DEFAULT_MAX_SOURCES;
+    }
+
     /**
      * Build cited documents list from synthesis result and chunks, with deduplication.
      */
@@ -150,6 +312,17 @@ public class QueryController {
         return citedDocuments;
     }
 
+    /**
+     * Convert the request's optional filters to a retrieval filter.
+     */
+    private RetrievalFilter toFilter(QueryFilters filters) {
+        if (filters == null) {
+            return RetrievalFilter.none();
+        }
+        return new RetrievalFilter(filters.getDocumentIds(), filters.getTitlePrefix(),
+                filters.getUrlHost(), filters.getTags());
+    }
+
     /**
      * Handle validation errors (Bean Validation failures).
      */
@@ -182,6 +355,22 @@ public class QueryController {
         );
     }
 
+    /**
+     * Handle syntheses turned away by the scheduler: 429 when its queue is full, 503 when
+     * the request would miss its deadline, with a Retry-After header either way.
+     */
+    @ExceptionHandler(SynthesisRejectedException.class)
+    public ResponseEntity<ErrorResponse> handleSynthesisRejectedException(SynthesisRejectedException ex) {
+        HttpStatus status = ex.isQueueFull() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(new ErrorResponse(
+                        "SYNTHESIS_OVERLOADED",
+                        "Too many answers are being synthesized: " + ex.getMessage(),
+                        null
+                ));
+    }
+
     /**
      * Handle synthesis failures.
      */
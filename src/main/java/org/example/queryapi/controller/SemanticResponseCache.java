@@ -0,0 +1,80 @@
+package org.example.queryapi.controller;
+
+import org.example.queryapi.cache.CacheStats;
+import org.example.queryapi.dto.QueryResponse;
+import org.example.queryapi.dto.ResponseMetadata;
+import org.example.queryapi.retrieval.InMemoryKnowledgeBase;
+import org.example.queryapi.retrieval.RetrievalFilter;
+import org.example.queryapi.retrieval.SemanticCache;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Semantic tier of the answer caches: serves the response of a recent question to its
+ * paraphrases, before retrieval runs.
+ *
+ * Questions match when their embeddings reach {@code queryapi.cache.semantic.min-similarity}
+ * cosine similarity and they asked for the same number of sources with the same filters
+ * and answer token limit.
+ * Responses are dropped when the knowledge base changes and after
+ * {@code queryapi.cache.semantic.ttl-seconds}. Every lookup embeds the question, so the
+ * tier is off unless {@code queryapi.cache.semantic.max-entries} is set above zero.
+ */
+@Component
+public class SemanticResponseCache {
+
+    private final SemanticCache<Scope, QueryResponse> cache;
+
+    public SemanticResponseCache(ObjectProvider<EmbeddingModel> embeddingModel,
+                                 InMemoryKnowledgeBase knowledgeBase,
+                                 @Value("${queryapi.cache.semantic.max-entries:0}") int maxEntries,
+                                 @Value("${queryapi.cache.semantic.min-similarity:0.92}") double minSimilarity,
+                                 @Value("${queryapi.cache.semantic.ttl-seconds:600}") long ttlSeconds) {
+        this.cache = new SemanticCache<>(maxEntries == 0 ? null : embeddingModel.getIfAvailable(),
+                knowledgeBase::getVersion, maxEntries, minSimilarity, Duration.ofSeconds(ttlSeconds), System::nanoTime);
+    }
+
+    /**
+     * Looks up the response to a similar question asked with the same sources, filters and
+     * answer token limit.
+     */
+    public SemanticCache.Lookup<Scope, QueryResponse> lookup(String query, int maxSources, RetrievalFilter filter,
+                                                             Integer maxTokens) {
+        return cache.lookup(query, new Scope(maxSources, filter, maxTokens));
+    }
+
+    /**
+     * Caches the response computed after a missed lookup.
+     */
+    public void put(SemanticCache.Lookup<Scope, QueryResponse> lookup, QueryResponse response) {
+        cache.put(lookup, response);
+    }
+
+    /**
+     * Copies a cached response for a new request, with that request's processing time.
+     * Token counts stay those of the synthesis that produced the answer.
+     */
+    public static QueryResponse served(QueryResponse cached, long processingTimeMs) {
+        ResponseMetadata metadata = cached.getMetadata();
+        ResponseMetadata served = new ResponseMetadata(metadata.getTotalChunksRetrieved(),
+                metadata.getTotalDocumentsCited(), processingTimeMs, true);
+        served.setPromptTokens(metadata.getPromptTokens());
+        served.setOutputTokens(metadata.getOutputTokens());
+        return new QueryResponse(cached.getAnswer(), cached.isAnswerSynthesized(), cached.getCitedDocuments(),
+                served);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Request parameters besides the question that a response depends on.
+     */
+    public record Scope(int maxSources, RetrievalFilter filter, Integer maxTokens) {
+    }
+}
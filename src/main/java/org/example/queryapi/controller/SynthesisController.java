@@ -0,0 +1,46 @@
+package org.example.queryapi.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.example.queryapi.synthesis.PoolStats;
+import org.example.queryapi.synthesis.PooledSynthesizer;
+import org.example.queryapi.synthesis.SchedulerStats;
+import org.example.queryapi.synthesis.SynthesisScheduler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller exposing the load on the synthesis scheduler and, when syntheses are
+ * spread over several endpoints, the state of each endpoint.
+ */
+@RestController
+@Tag(name = "Synthesis", description = "Synthesis scheduler metrics")
+public class SynthesisController {
+
+    private final SynthesisScheduler scheduler;
+    private final ObjectProvider<PooledSynthesizer> pool;
+
+    public SynthesisController(SynthesisScheduler scheduler, ObjectProvider<PooledSynthesizer> pool) {
+        this.scheduler = scheduler;
+        this.pool = pool;
+    }
+
+    @GetMapping("/synthesis/stats")
+    @Operation(summary = "Get synthesis scheduler statistics",
+            description = "Returns the concurrency limit, running and queued syntheses, rejection counters, "
+                    + "and histograms of queue wait time and of queue depth on arrival")
+    public SchedulerStats stats() {
+        return scheduler.stats();
+    }
+
+    @GetMapping("/synthesis/endpoints")
+    @Operation(summary = "Get synthesis endpoint statistics",
+            description = "Returns the hedge delay and counters, and the outstanding requests, ejection state, "
+                    + "counters and mean latency of each endpoint; 404 unless queryapi.synthesis.endpoints is set")
+    public ResponseEntity<PoolStats> endpoints() {
+        PooledSynthesizer synthesizer = pool.getIfAvailable();
+        return synthesizer == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(synthesizer.stats());
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.queryapi.domain;
+
+/**
+ * Domain model representing one piece of a streamed answer.
+ * The last piece of a stream may carry no text, only the token counts the model
+ * reports once it has finished.
+ */
+public class AnswerDelta {
+    private final String text;
+    private final Integer promptTokens;
+    private final Integer outputTokens;
+
+    public AnswerDelta(String text) {
+        this(text, null, null);
+    }
+
+    public AnswerDelta(String text, Integer promptTokens, Integer outputTokens) {
+        this.text = text;
+        this.promptTokens = promptTokens;
+        this.outputTokens = outputTokens;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the number of prompt tokens the model evaluated, or null if this piece does not report it.
+     */
+    public Integer getPromptTokens() {
+        return promptTokens;
+    }
+
+    /**
+     * Gets the number of tokens the model generated, or null if this piece does not report it.
+     */
+    public Integer getOutputTokens() {
+        return outputTokens;
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.queryapi.domain;
 
+import java.util.List;
+
 /**
  * Domain model representing a retrieved chunk from the knowledge base.
  * Contains chunk metadata and relevance scoring for retrieval.
@@ -10,15 +12,22 @@ public class Chunk {
     private final String documentTitle;
     private final String text;
     private final String url;  // optional
+    private final List<String> tags;
     private final double relevanceScore;
 
-    public Chunk(String chunkId, String documentId, String documentTitle, 
+    public Chunk(String chunkId, String documentId, String documentTitle,
                  String text, String url, double relevanceScore) {
+        this(chunkId, documentId, documentTitle, text, url, List.of(), relevanceScore);
+    }
+
+    public Chunk(String chunkId, String documentId, String documentTitle,
+                 String text, String url, List<String> tags, double relevanceScore) {
         this.chunkId = chunkId;
         this.documentId = documentId;
         this.documentTitle = documentTitle;
         this.text = text;
         this.url = url;
+        this.tags = tags == null ? List.of() : List.copyOf(tags);
         this.relevanceScore = relevanceScore;
     }
 
@@ -42,7 +51,21 @@ public class Chunk {
         return url;
     }
 
+    /**
+     * Gets the chunk's tags, empty if it has none.
+     */
+    public List<String> getTags() {
+        return tags;
+    }
+
     public double getRelevanceScore() {
         return relevanceScore;
     }
+
+    /**
+     * Returns a copy of this chunk carrying the given relevance score.
+     */
+    public Chunk withRelevanceScore(double relevanceScore) {
+        return new Chunk(chunkId, documentId, documentTitle, text, url, tags, relevanceScore);
+    }
 }
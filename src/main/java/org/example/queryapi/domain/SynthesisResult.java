@@ -4,15 +4,24 @@ import java.util.List;
 
 /**
  * Domain model representing the result of LLM synthesis.
- * Contains the generated answer with citation markers and the list of cited chunk IDs.
+ * Contains the generated answer with citation markers and the list of cited chunk IDs,
+ * and the prompt and answer token counts when the model reports them.
  */
 public class SynthesisResult {
     private final String answerText;
     private final List<String> citedChunkIds;
+    private final Integer promptTokens;
+    private final Integer outputTokens;
 
     public SynthesisResult(String answerText, List<String> citedChunkIds) {
+        this(answerText, citedChunkIds, null, null);
+    }
+
+    public SynthesisResult(String answerText, List<String> citedChunkIds, Integer promptTokens, Integer outputTokens) {
         this.answerText = answerText;
         this.citedChunkIds = citedChunkIds;
+        this.promptTokens = promptTokens;
+        this.outputTokens = outputTokens;
     }
 
     public String getAnswerText() {
@@ -22,4 +31,18 @@ public class SynthesisResult {
     public List<String> getCitedChunkIds() {
         return citedChunkIds;
     }
+
+    /**
+     * Gets the number of prompt tokens the model evaluated, or null if it did not report it.
+     */
+    public Integer getPromptTokens() {
+        return promptTokens;
+    }
+
+    /**
+     * Gets the number of tokens the model generated, or null if it did not report it.
+     */
+    public Integer getOutputTokens() {
+        return outputTokens;
+    }
 }
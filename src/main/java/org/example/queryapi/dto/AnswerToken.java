@@ -0,0 +1,28 @@
+package org.example.queryapi.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO carrying the next piece of a streamed answer.
+ */
+@Schema(description = "Piece of answer text, sent as a token event while the answer is generated")
+public class AnswerToken {
+
+    @Schema(description = "Answer text following the previously sent pieces", example = "The deployment topology is")
+    private String text;
+
+    public AnswerToken() {
+    }
+
+    public AnswerToken(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.queryapi.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Optional metadata filters of a query request.
+ * Every filter that is set must match; unset filters match every chunk.
+ */
+@Schema(description = "Optional metadata filters restricting which chunks may be retrieved")
+public class QueryFilters {
+
+    @Size(max = 100, message = "documentIds must not exceed 100 entries")
+    @Schema(description = "Only retrieve chunks of these documents", example = "[\"doc-001\"]")
+    private List<String> documentIds;
+
+    @Size(max = 200, message = "titlePrefix must not exceed 200 characters")
+    @Schema(description = "Only retrieve chunks whose document title starts with this prefix, ignoring case", example = "Deployment")
+    private String titlePrefix;
+
+    @Size(max = 255, message = "urlHost must not exceed 255 characters")
+    @Schema(description = "Only retrieve chunks whose URL has this host, ignoring case", example = "docs.example.com")
+    private String urlHost;
+
+    @Size(max = 50, message = "tags must not exceed 50 entries")
+    @Schema(description = "Only retrieve chunks carrying at least one of these tags", example = "[\"operations\"]")
+    private List<String> tags;
+
+    // Constructor for Jackson
+    public QueryFilters() {
+    }
+
+    public QueryFilters(List<String> documentIds, String titlePrefix, String urlHost, List<String> tags) {
+        this.documentIds = documentIds;
+        this.titlePrefix = titlePrefix;
+        this.urlHost = urlHost;
+        this.tags = tags;
+    }
+
+    public List<String> getDocumentIds() {
+        return documentIds;
+    }
+
+    public void setDocumentIds(List<String> documentIds) {
+        this.documentIds = documentIds;
+    }
+
+    public String getTitlePrefix() {
+        return titlePrefix;
+    }
+
+    public void setTitlePrefix(String titlePrefix) {
+        this.titlePrefix = titlePrefix;
+    }
+
+    public String getUrlHost() {
+        return urlHost;
+    }
+
+    public void setUrlHost(String urlHost) {
+        this.urlHost = urlHost;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+}
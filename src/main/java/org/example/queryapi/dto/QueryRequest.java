@@ -1,6 +1,7 @@
 package org.example.queryapi.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -27,6 +28,10 @@ public class QueryRequest {
     @Schema(description = "Maximum tokens for the generated answer", example = "100")
     private Integer maxTokens;
 
+    @Valid
+    @Schema(description = "Optional metadata filters applied before retrieval scoring")
+    private QueryFilters filters;
+
     // Constructor for Jackson
     public QueryRequest() {
     }
@@ -37,6 +42,11 @@ public class QueryRequest {
         this.maxTokens = maxTokens;
     }
 
+    public QueryRequest(String query, Integer maxSources, Integer maxTokens, QueryFilters filters) {
+        this(query, maxSources, maxTokens);
+        this.filters = filters;
+    }
+
     public String getQuery() {
         return query;
     }
@@ -60,4 +70,12 @@ public class QueryRequest {
     public void setMaxTokens(Integer maxTokens) {
         this.maxTokens = maxTokens;
     }
+
+    public QueryFilters getFilters() {
+        return filters;
+    }
+
+    public void setFilters(QueryFilters filters) {
+        this.filters = filters;
+    }
 }
@@ -1,5 +1,6 @@
 package org.example.queryapi.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
@@ -17,13 +18,33 @@ public class ResponseMetadata {
     @Schema(description = "Number of unique documents cited in the answer", example = "3")
     private int totalDocumentsCited;
 
+    @Schema(description = "Whether the answer was served from an answer cache, for this or a similar question, instead of a new synthesis", example = "false")
+    private boolean answerCached;
+
+    @Schema(description = "Time until the first answer token was sent, in milliseconds; only set for streamed answers", example = "320")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long timeToFirstTokenMs;
+
+    @Schema(description = "Prompt tokens the model evaluated to synthesize the answer, when it reports them", example = "1480")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer promptTokens;
+
+    @Schema(description = "Tokens the model generated for the answer, when it reports them", example = "212")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer outputTokens;
+
     public ResponseMetadata() {
     }
 
     public ResponseMetadata(int totalChunksRetrieved, int totalDocumentsCited, long processingTimeMs) {
+        this(totalChunksRetrieved, totalDocumentsCited, processingTimeMs, false);
+    }
+
+    public ResponseMetadata(int totalChunksRetrieved, int totalDocumentsCited, long processingTimeMs, boolean answerCached) {
         this.totalChunksRetrieved = totalChunksRetrieved;
         this.totalDocumentsCited = totalDocumentsCited;
         this.processingTimeMs = processingTimeMs;
+        this.answerCached = answerCached;
     }
 
     public long getProcessingTimeMs() {
@@ -49,4 +70,36 @@ public class ResponseMetadata {
     public void setTotalDocumentsCited(int totalDocumentsCited) {
         this.totalDocumentsCited = totalDocumentsCited;
     }
+
+    public boolean isAnswerCached() {
+        return answerCached;
+    }
+
+    public void setAnswerCached(boolean answerCached) {
+        this.answerCached = answerCached;
+    }
+
+    public Long getTimeToFirstTokenMs() {
+        return timeToFirstTokenMs;
+    }
+
+    public void setTimeToFirstTokenMs(Long timeToFirstTokenMs) {
+        this.timeToFirstTokenMs = timeToFirstTokenMs;
+    }
+
+    public Integer getPromptTokens() {
+        return promptTokens;
+    }
+
+    public void setPromptTokens(Integer promptTokens) {
+        this.promptTokens = promptTokens;
+    }
+
+    public Integer getOutputTokens() {
+        return outputTokens;
+    }
+
+    public void setOutputTokens(Integer outputTokens) {
+        this.outputTokens = outputTokens;
+    }
 }
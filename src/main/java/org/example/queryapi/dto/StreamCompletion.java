@@ -0,0 +1,55 @@
+package org.example.queryapi.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO closing a streamed answer: everything in a {@link QueryResponse} except the answer
+ * text, which was sent piece by piece before it.
+ */
+@Schema(description = "Closing done event of a streamed answer")
+public class StreamCompletion {
+
+    @Schema(description = "Whether an answer was synthesized (false if no relevant information found)", example = "true")
+    private boolean answerSynthesized;
+
+    @Schema(description = "List of cited source documents, in order of first citation")
+    private List<CitedDocument> citedDocuments;
+
+    @Schema(description = "Execution metadata")
+    private ResponseMetadata metadata;
+
+    public StreamCompletion() {
+    }
+
+    public StreamCompletion(boolean answerSynthesized, List<CitedDocument> citedDocuments, ResponseMetadata metadata) {
+        this.answerSynthesized = answerSynthesized;
+        this.citedDocuments = citedDocuments;
+        this.metadata = metadata;
+    }
+
+    public boolean isAnswerSynthesized() {
+        return answerSynthesized;
+    }
+
+    public void setAnswerSynthesized(boolean answerSynthesized) {
+        this.answerSynthesized = answerSynthesized;
+    }
+
+    public List<CitedDocument> getCitedDocuments() {
+        return citedDocuments;
+    }
+
+    public void setCitedDocuments(List<CitedDocument> citedDocuments) {
+        this.citedDocuments = citedDocuments;
+    }
+
+    public ResponseMetadata getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(ResponseMetadata metadata) {
+        this.metadata = metadata;
+    }
+}
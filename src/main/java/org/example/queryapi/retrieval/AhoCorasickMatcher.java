@@ -0,0 +1,278 @@
+package org.example.queryapi.retrieval;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Aho-Corasick automaton over term ids that counts the occurrences of many term
+ * sequences in one pass over a chunk's terms.
+ *
+ * Built once per query from the analyzed query keywords; counting then costs one bit
+ * test per chunk term outside the keywords' vocabulary and a hash probe for the rest,
+ * however many keywords the query has, instead of one comparison per keyword per term.
+ * Multi-term keywords such as "active-passive" only match as contiguous phrases, which
+ * the inverted index alone cannot verify.
+ *
+ * Immutable once built, so one instance can be shared by all shards of a query.
+ */
+final class AhoCorasickMatcher {
+
+    private static final long EMPTY = -1L;
+    // Filter bits per trie edge, which bounds the number of distinct pattern terms
+    private static final int FILTER_BITS_PER_TERM = 32;
+
+    private final int patternCount;
+    // Bit filter of the pattern terms, by term id modulo its size, which follows the patterns
+    // rather than the dictionary. A clear bit means the term is in no pattern and resets to the
+    // root; a set bit may be a collision, which the goto table then turns away.
+    private final long[] alphabet;
+    private final int alphabetMask;
+    // Open-addressing goto table keyed by (state, term id)
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    private final int edgeMask;
+    private final int[] failure;
+    // Pattern ending exactly at each state, or -1, and the nearest suffix state that ends one
+    private final int[] patternAt;
+    private final int[] outputLink;
+    // For a repeated pattern, the index of its first occurrence, whose count it shares; else -1
+    private final int[] duplicateOf;
+    private final int[] patternLengths;
+
+    private AhoCorasickMatcher(int patternCount, long[] alphabet, long[] edgeKeys, int[] edgeTargets,
+                               int[] failure, int[] patternAt, int[] outputLink, int[] duplicateOf,
+                               int[] patternLengths) {
+        this.patternCount = patternCount;
+        this.alphabet = alphabet;
+        this.alphabetMask = alphabet.length - 1;
+        this.edgeKeys = edgeKeys;
+        this.edgeTargets = edgeTargets;
+        this.edgeMask = edgeKeys.length - 1;
+        this.failure = failure;
+        this.patternAt = patternAt;
+        this.outputLink = outputLink;
+        this.duplicateOf = duplicateOf;
+        this.patternLengths = patternLengths;
+    }
+
+    /**
+     * Compiles the automaton.
+     *
+     * @param patterns term id sequences; empty sequences and sequences containing
+     *                 {@link TermDictionary#MISSING} or another negative id never match;
+     *                 a repeated sequence is counted at every index it appears at
+     */
+    static AhoCorasickMatcher compile(int[][] patterns) {
+        int maxStates = 1;
+        for (int[] pattern : patterns) {
+            maxStates += pattern.length;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, maxStates * 2) - 1) << 1;
+        long[] keys = new long[capacity];
+        int[] targets = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        int filterWords = Math.max(1, maxStates * FILTER_BITS_PER_TERM / 64);
+        long[] alphabet = new long[Integer.highestOneBit(Math.max(1, filterWords - 1)) << 1];
+        int[] patternAt = new int[maxStates];
+        Arrays.fill(patternAt, -1);
+        // Term on the trie edge entering each state
+        int[] label = new int[maxStates];
+        int[] duplicateOf = new int[patterns.length];
+        Arrays.fill(duplicateOf, -1);
+        int[] patternLengths = new int[patterns.length];
+
+        // Trie
+        int states = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            int[] pattern = patterns[p];
+            if (pattern.length == 0 || Arrays.stream(pattern).anyMatch(term -> term < 0)) {
+                continue;
+            }
+            patternLengths[p] = pattern.length;
+            int state = 0;
+            for (int term : pattern) {
+                int next = find(keys, targets, capacity - 1, state, term);
+                if (next < 0) {
+                    next = states++;
+                    label[next] = term;
+                    insert(keys, targets, capacity - 1, state, term, next);
+                    alphabet[(term >>> 6) & (alphabet.length - 1)] |= 1L << term;
+                }
+                state = next;
+            }
+            if (patternAt[state] < 0) {
+                patternAt[state] = p;
+            } else {
+                duplicateOf[p] = patternAt[state];
+            }
+        }
+
+        // Failure and output links, breadth first so shallower states are final first
+        int[] failure = new int[states];
+        int[] outputLink = new int[states];
+        Arrays.fill(outputLink, -1);
+        int[][] children = childrenByState(keys, targets, states);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : children[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < children[state].length; i++) {
+                int child = children[state][i];
+                int term = label[child];
+                int fallback = failure[state];
+                int target;
+                while ((target = find(keys, targets, capacity - 1, fallback, term)) < 0 && fallback != 0) {
+                    fallback = failure[fallback];
+                }
+                failure[child] = target >= 0 && target != child ? target : 0;
+                outputLink[child] = patternAt[failure[child]] >= 0 ? failure[child] : outputLink[failure[child]];
+                queue.add(child);
+            }
+        }
+        return new AhoCorasickMatcher(patterns.length, alphabet, keys, targets, failure,
+                Arrays.copyOf(patternAt, states), outputLink, duplicateOf, patternLengths);
+    }
+
+    /**
+     * Gets the number of patterns the automaton was compiled from.
+     */
+    int patternCount() {
+        return patternCount;
+    }
+
+    /**
+     * Counts every pattern's occurrences in the terms, overlapping ones included.
+     *
+     * @param terms term ids in text order
+     * @param counts receives the count of pattern {@code p} at index {@code p}; reset first
+     */
+    void count(int[] terms, int[] counts) {
+        scan(terms, counts, null);
+    }
+
+    /**
+     * Counts every pattern's occurrences like {@link #count(int[], int[])} and, in the same
+     * pass, measures how close together the matched patterns occur.
+     *
+     * @param terms term ids in text order
+     * @param counts receives the count of pattern {@code p} at index {@code p}; reset first
+     * @param lastStarts scratch space with one slot per pattern
+     * @return the summed length of the distinct matched patterns divided by the length of
+     *         the shortest term window holding an occurrence of each, capped at 1.0, so
+     *         1.0 when they occur next to each other or only one pattern matched;
+     *         0.0 if nothing matched
+     */
+    double countWithProximity(int[] terms, int[] counts, int[] lastStarts) {
+        return scan(terms, counts, lastStarts);
+    }
+
+    private double scan(int[] terms, int[] counts, int[] lastStarts) {
+        Arrays.fill(counts, 0, patternCount, 0);
+        // Shortest window over the distinct patterns seen so far; a newly seen pattern
+        // invalidates it, since earlier windows cannot contain that pattern
+        int distinct = 0;
+        int matchedLength = 0;
+        int shortestWindow = Integer.MAX_VALUE;
+        int state = 0;
+        for (int position = 0; position < terms.length; position++) {
+            int term = terms[position];
+            if (term < 0 || (alphabet[(term >>> 6) & alphabetMask] & (1L << term)) == 0) {
+                state = 0;
+                continue;
+            }
+            int next;
+            while ((next = find(edgeKeys, edgeTargets, edgeMask, state, term)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = Math.max(next, 0);
+            boolean matched = false;
+            int output = patternAt[state] >= 0 ? state : outputLink[state];
+            for (; output > 0; output = outputLink[output]) {
+                int pattern = patternAt[output];
+                if (counts[pattern]++ == 0 && lastStarts != null) {
+                    distinct++;
+                    matchedLength += patternLengths[pattern];
+                    shortestWindow = Integer.MAX_VALUE;
+                }
+                if (lastStarts != null) {
+                    lastStarts[pattern] = position - patternLengths[pattern] + 1;
+                }
+                matched = true;
+            }
+            if (matched && lastStarts != null) {
+                // Every pattern seen so far ends at or before this position
+                int windowStart = position;
+                for (int p = 0; p < patternCount; p++) {
+                    if (counts[p] > 0) {
+                        windowStart = Math.min(windowStart, lastStarts[p]);
+                    }
+                }
+                shortestWindow = Math.min(shortestWindow, position - windowStart + 1);
+            }
+        }
+        for (int p = 0; p < patternCount; p++) {
+            if (duplicateOf[p] >= 0) {
+                counts[p] = counts[duplicateOf[p]];
+            }
+        }
+        if (distinct == 0) {
+            return 0.0;
+        }
+        return Math.min(1.0, (double) matchedLength / shortestWindow);
+    }
+
+    private static int find(long[] keys, int[] targets, int mask, int state, int term) {
+        long key = key(state, term);
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return targets[slot];
+            }
+            if (keys[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private static void insert(long[] keys, int[] targets, int mask, int state, int term, int target) {
+        long key = key(state, term);
+        int slot = slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        targets[slot] = target;
+    }
+
+    private static int[][] childrenByState(long[] keys, int[] targets, int states) {
+        int[] counts = new int[states];
+        for (long key : keys) {
+            if (key != EMPTY) {
+                counts[(int) (key >>> 32)]++;
+            }
+        }
+        int[][] children = new int[states][];
+        for (int s = 0; s < states; s++) {
+            children[s] = new int[counts[s]];
+            counts[s] = 0;
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                int parent = (int) (keys[slot] >>> 32);
+                children[parent][counts[parent]++] = targets[slot];
+            }
+        }
+        return children;
+    }
+
+    private static long key(int state, int term) {
+        return ((long) state << 32) | (term & 0xFFFFFFFFL);
+    }
+
+    private static int slot(long key, int mask) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & mask;
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.queryapi.retrieval;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Text analysis shared by indexing and querying, so that both sides agree on what a term is.
+ *
+ * The pipeline is: Unicode NFKC normalization, lowercasing, splitting into maximal runs
+ * of letters and digits, then optionally dropping English stopwords and stemming plurals.
+ * Chunks are analyzed once when they are added; queries go through the same instance.
+ */
+final class Analyzer {
+
+    private static final Analyzer STANDARD = new Analyzer(false, false);
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into",
+            "is", "it", "no", "not", "of", "on", "or", "such", "that", "the", "their", "then",
+            "there", "these", "they", "this", "to", "was", "will", "with", "what", "how", "which");
+
+    private final boolean removeStopwords;
+    private final boolean stem;
+
+    Analyzer(boolean removeStopwords, boolean stem) {
+        this.removeStopwords = removeStopwords;
+        this.stem = stem;
+    }
+
+    /**
+     * Gets the analyzer without stopword removal or stemming.
+     */
+    static Analyzer standard() {
+        return STANDARD;
+    }
+
+    /**
+     * Splits text into normalized terms, in text order and with repeats.
+     */
+    List<String> analyze(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        int i = 0;
+        while (i < normalized.length()) {
+            int codePoint = normalized.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                accept(normalized.substring(start, i), terms);
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (start >= 0) {
+            accept(normalized.substring(start), terms);
+        }
+        return terms;
+    }
+
+    private void accept(String term, List<String> terms) {
+        if (removeStopwords && STOPWORDS.contains(term)) {
+            return;
+        }
+        terms.add(stem ? stemPlural(term) : term);
+    }
+
+    /**
+     * Harman's S-stemmer, plus the "-sses" rule so that "classes" meets "class":
+     * conflates English plurals with their singular and nothing else, which keeps
+     * stemming errors rare.
+     */
+    static String stemPlural(String term) {
+        int length = term.length();
+        if (length < 3 || term.charAt(length - 1) != 's') {
+            return term;
+        }
+        if (term.endsWith("sses")) {
+            return term.substring(0, length - 2);
+        }
+        if (term.endsWith("ies") && !term.endsWith("eies") && !term.endsWith("aies")) {
+            return term.substring(0, length - 3) + "y";
+        }
+        if (term.endsWith("es") && !term.endsWith("aes") && !term.endsWith("ees") && !term.endsWith("oes")) {
+            return term.substring(0, length - 1);
+        }
+        if (!term.endsWith("us") && !term.endsWith("ss")) {
+            return term.substring(0, length - 1);
+        }
+        return term;
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.queryapi.retrieval;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs an index catch-up task off the query path.
+ *
+ * Requests are cheap and never block: the first one starts the task on the executor,
+ * and requests made while it runs are coalesced into one more run, so every request is
+ * followed by a run that starts after it. A failed run is logged and retried on the next
+ * request, but no sooner than the retry delay, so an unreachable embedding model is not
+ * called on every query.
+ */
+final class BackgroundIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(BackgroundIndexer.class);
+
+    private final String name;
+    private final Runnable task;
+    private final Executor executor;
+    private final long retryDelayNanos;
+    private final LongSupplier nanoTime;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean failed;
+    private volatile long failedAt;
+    private volatile boolean closed;
+
+    /**
+     * @param name thread name, also used in log messages
+     * @param task catch-up to run; must tolerate running when there is nothing to do
+     */
+    BackgroundIndexer(String name, Runnable task, Duration retryDelay) {
+        this(name, task, command -> Thread.ofVirtual().name(name).start(command), retryDelay, System::nanoTime);
+    }
+
+    BackgroundIndexer(String name, Runnable task, Executor executor, Duration retryDelay, LongSupplier nanoTime) {
+        this.name = name;
+        this.task = task;
+        this.executor = executor;
+        this.retryDelayNanos = retryDelay.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Asks for a run that starts after this call, unless the task failed within the
+     * retry delay or the indexer is closed.
+     */
+    void request() {
+        if (closed || (failed && nanoTime.getAsLong() - failedAt < retryDelayNanos)) {
+            return;
+        }
+        if (requests.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Whether the last run failed.
+     */
+    boolean failed() {
+        return failed;
+    }
+
+    /**
+     * Stops accepting requests. A run in progress is not interrupted; the task is
+     * expected to check its own closed state between batches.
+     */
+    void close() {
+        closed = true;
+    }
+
+    private void drain() {
+        int seen;
+        do {
+            seen = requests.get();
+            if (closed) {
+                requests.set(0);
+                return;
+            }
+            try {
+                task.run();
+                failed = false;
+            } catch (RuntimeException e) {
+                failedAt = nanoTime.getAsLong();
+                failed = true;
+                log.warn("{} failed; retrying on a later request", name, e);
+                requests.set(0);
+                return;
+            }
+        } while (requests.addAndGet(-seen) != 0);
+    }
+}
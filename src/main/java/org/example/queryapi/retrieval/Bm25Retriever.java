@@ -0,0 +1,183 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Retriever that ranks chunks with Okapi BM25 over the knowledge base's inverted index.
+ * Document frequencies, chunk lengths and term frequencies are maintained by the
+ * segment indexes at ingestion time, so a query only touches the postings of its own terms.
+ * Shards of a sharded knowledge base are scored in parallel against corpus-wide statistics.
+ * A metadata filter restricts which postings are scored; when it allows fewer chunks than
+ * a term's posting list holds, the cursor leaps from one allowed chunk to the next instead.
+ * Active when {@code queryapi.retrieval.strategy} is {@code bm25}, and as a leg of {@code hybrid}.
+ */
+@Component
+@ConditionalOnExpression("'${queryapi.retrieval.strategy:keyword}' == 'bm25' or '${queryapi.retrieval.strategy:keyword}' == 'hybrid'")
+public class Bm25Retriever implements Retriever {
+
+    private static final double RELEVANCE_THRESHOLD = 0.8;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final InMemoryKnowledgeBase knowledgeBase;
+
+    public Bm25Retriever(InMemoryKnowledgeBase knowledgeBase) {
+        if (knowledgeBase == null) {
+            throw new RetrievalException("Knowledge base cannot be null");
+        }
+        this.knowledgeBase = knowledgeBase;
+    }
+
+    @Override
+    public List<Chunk> retrieve(String query, int maxChunks, RetrievalFilter filter) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+
+        Set<Integer> queryTerms = new LinkedHashSet<>();
+        for (int termId : knowledgeBase.analyzeQuery(query)) {
+            queryTerms.add(termId);
+        }
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        return rank(knowledgeBase.snapshot(), queryTerms, maxChunks, filter);
+    }
+
+    private List<Chunk> rank(KnowledgeBaseSnapshot snapshot, Set<Integer> queryTerms, int maxChunks,
+                             RetrievalFilter filter) {
+        int chunkCount = snapshot.size();
+        if (chunkCount == 0 || maxChunks <= 0) {
+            return List.of();
+        }
+
+        // Corpus statistics are global, so every shard scores on the same scale
+        double averageLength = snapshot.averageChunkLength();
+        List<Integer> terms = new ArrayList<>(queryTerms.size());
+        List<Double> idfs = new ArrayList<>(queryTerms.size());
+        double ideal = 0.0;
+        for (int term : queryTerms) {
+            int documentFrequency = term == TermDictionary.MISSING ? 0 : snapshot.documentFrequency(term);
+            if (documentFrequency == 0) {
+                // Terms absent from the corpus carry no evidence either way
+                continue;
+            }
+            double idf = idf(documentFrequency, chunkCount);
+            terms.add(term);
+            idfs.add(idf);
+            ideal += idf;
+        }
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        double idealScore = ideal;
+
+        // Rank on raw BM25 (normalization saturates at 1.0), ties in insertion order
+        TopKCollector topK = snapshot.collectTopK(maxChunks, (shardIndex, shard, shardTopK) -> {
+            ScoreAccumulator scores = ScoreAccumulator.acquire(shard.size());
+            try {
+                List<Segment> segments = shard.segments();
+                // Filters resolve once per segment; null allows every chunk
+                BitSet[] allowed = new BitSet[segments.size()];
+                int[] allowedCounts = new int[segments.size()];
+                for (int s = 0; s < segments.size(); s++) {
+                    allowed[s] = segments.get(s).metadata().select(filter);
+                    allowedCounts[s] = allowed[s] == null ? Integer.MAX_VALUE : allowed[s].cardinality();
+                }
+                for (int t = 0; t < terms.size(); t++) {
+                    double idf = idfs.get(t);
+                    for (int s = 0; s < segments.size(); s++) {
+                        InvertedIndex index = segments.get(s).index();
+                        PostingList postings = index.postings(terms.get(t));
+                        if (postings == null) {
+                            continue;
+                        }
+                        int base = shard.base(s);
+                        PostingList.Cursor cursor = postings.cursor();
+                        if (allowedCounts[s] < postings.size()) {
+                            // Narrow filter: skip through the postings to each allowed chunk
+                            BitSet bits = allowed[s];
+                            for (int local = bits.nextSetBit(0); local >= 0; local = bits.nextSetBit(local + 1)) {
+                                int found = cursor.advance(local);
+                                if (found == PostingList.END) {
+                                    break;
+                                }
+                                if (found == local) {
+                                    double weight = termWeight(cursor.termFrequency(), index.chunkLength(local), averageLength);
+                                    scores.add(base + local, idf * weight);
+                                } else {
+                                    local = found - 1;
+                                }
+                            }
+                            continue;
+                        }
+                        for (int local = cursor.next(); local != PostingList.END; local = cursor.next()) {
+                            if (allowed[s] != null && !allowed[s].get(local)) {
+                                continue;
+                            }
+                            double weight = termWeight(cursor.termFrequency(), index.chunkLength(local), averageLength);
+                            scores.add(base + local, idf * weight);
+                        }
+                    }
+                }
+
+                for (int i = 0; i < scores.touchedCount(); i++) {
+                    int shardOrdinal = scores.touchedAt(i);
+                    double score = scores.score(shardOrdinal);
+                    if (normalize(score, idealScore) >= RELEVANCE_THRESHOLD) {
+                        shardTopK.offer(snapshot.ordinal(shardIndex, shardOrdinal), score);
+                    }
+                }
+            } finally {
+                scores.release();
+            }
+        });
+
+        int count = topK.drain();
+        List<Chunk> result = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            Chunk chunk = snapshot.getChunk(topK.ordinalAt(rank));
+            result.add(chunk.withRelevanceScore(normalize(topK.scoreAt(rank), idealScore)));
+        }
+        return result;
+    }
+
+    /**
+     * BM25 inverse document frequency, in the non-negative form used by Lucene.
+     */
+    static double idf(int documentFrequency, int chunkCount) {
+        return Math.log(1.0 + (chunkCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /**
+     * BM25 term-frequency saturation with chunk-length normalization.
+     * Equals 1.0 for a single occurrence in a chunk of average length.
+     */
+    static double termWeight(int termFrequency, int chunkLength, double averageLength) {
+        double lengthNorm = averageLength == 0.0 ? 1.0 : chunkLength / averageLength;
+        return termFrequency * (K1 + 1) / (termFrequency + K1 * (1 - B + B * lengthNorm));
+    }
+
+    /**
+     * Maps a raw BM25 score onto [0, 1].
+     *
+     * The reference score is what a chunk of average length would get with a single
+     * occurrence of every query term found in the corpus. Matching all the rare terms
+     * reaches the relevance threshold; a hit on one common term does not.
+     */
+    static double normalize(double score, double idealScore) {
+        if (idealScore <= 0.0) {
+            return 0.0;
+        }
+        return Math.min(1.0, score / idealScore);
+    }
+}
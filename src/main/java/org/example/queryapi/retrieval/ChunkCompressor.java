@@ -0,0 +1,180 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Query-focused extractive compression of retrieved chunks, applied between retrieval and
+ * synthesis so that the prompt carries the sentences that answer the question rather than
+ * whole chunks.
+ *
+ * Each chunk is split into sentences, and each sentence is scored by the summed BM25 IDF
+ * of the distinct query terms it contains, with document frequencies counted over the
+ * sentences of all retrieved chunks: a term every sentence mentions says little about
+ * which one answers. The {@code queryapi.compression.max-sentences} best sentences of a
+ * chunk are kept together with {@code queryapi.compression.neighbors} sentences on either
+ * side for context, in their original order; elided runs are marked with an ellipsis. A
+ * chunk no sentence of which matches keeps its first sentence. Chunks are never dropped
+ * or reordered, so citation markers still number the retrieved chunks.
+ * Zero max-sentences disables compression.
+ */
+@Component
+public class ChunkCompressor {
+
+    private static final String ELLIPSIS = "...";
+
+    private final Analyzer analyzer = new Analyzer(true, true);
+    private final int maxSentences;
+    private final int neighbors;
+
+    @Autowired
+    public ChunkCompressor(@Value("${queryapi.compression.max-sentences:2}") int maxSentences,
+                           @Value("${queryapi.compression.neighbors:1}") int neighbors) {
+        if (maxSentences < 0 || neighbors < 0) {
+            throw new IllegalArgumentException("Sentence counts must not be negative");
+        }
+        this.maxSentences = maxSentences;
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * Compresses the chunks for a query.
+     *
+     * @return chunks in the same order and with the same ids and metadata, their text
+     *         reduced to the sentences relevant to the query
+     */
+    public List<Chunk> compress(String query, List<Chunk> chunks) {
+        Set<String> queryTerms = new LinkedHashSet<>(analyzer.analyze(query));
+        if (maxSentences == 0 || queryTerms.isEmpty() || chunks.isEmpty()) {
+            return chunks;
+        }
+
+        List<List<String>> sentences = new ArrayList<>(chunks.size());
+        List<List<Set<String>>> matches = new ArrayList<>(chunks.size());
+        Map<String, Integer> sentenceFrequencies = new HashMap<>();
+        int totalSentences = 0;
+        for (Chunk chunk : chunks) {
+            List<String> chunkSentences = splitSentences(chunk.getText());
+            List<Set<String>> chunkMatches = new ArrayList<>(chunkSentences.size());
+            for (String sentence : chunkSentences) {
+                Set<String> matched = new HashSet<>();
+                for (String term : analyzer.analyze(sentence)) {
+                    if (queryTerms.contains(term) && matched.add(term)) {
+                        sentenceFrequencies.merge(term, 1, Integer::sum);
+                    }
+                }
+                chunkMatches.add(matched);
+            }
+            sentences.add(chunkSentences);
+            matches.add(chunkMatches);
+            totalSentences += chunkSentences.size();
+        }
+
+        Map<String, Double> idf = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : sentenceFrequencies.entrySet()) {
+            int frequency = entry.getValue();
+            idf.put(entry.getKey(), Math.log(1 + (totalSentences - frequency + 0.5) / (frequency + 0.5)));
+        }
+
+        List<Chunk> compressed = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            String text = compress(sentences.get(i), matches.get(i), idf);
+            compressed.add(text == null ? chunk : new Chunk(chunk.getChunkId(), chunk.getDocumentId(),
+                    chunk.getDocumentTitle(), text, chunk.getUrl(), chunk.getTags(), chunk.getRelevanceScore()));
+        }
+        return compressed;
+    }
+
+    /**
+     * Selects the sentences of one chunk.
+     *
+     * @return the compressed text, or null if every sentence is kept
+     */
+    private String compress(List<String> sentences, List<Set<String>> matches, Map<String, Double> idf) {
+        int count = sentences.size();
+        if (count <= maxSentences) {
+            return null;
+        }
+        double[] scores = new double[count];
+        Integer[] ranked = new Integer[count];
+        for (int s = 0; s < count; s++) {
+            for (String term : matches.get(s)) {
+                scores[s] += idf.get(term);
+            }
+            ranked[s] = s;
+        }
+        // Stable sort: equal scores keep text order
+        Arrays.sort(ranked, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        boolean[] kept = new boolean[count];
+        if (scores[ranked[0]] == 0) {
+            kept[0] = true;
+        } else {
+            for (int r = 0; r < maxSentences && scores[ranked[r]] > 0; r++) {
+                int s = ranked[r];
+                for (int k = Math.max(0, s - neighbors); k <= Math.min(count - 1, s + neighbors); k++) {
+                    kept[k] = true;
+                }
+            }
+        }
+
+        StringBuilder text = new StringBuilder();
+        boolean elided = false;
+        int keptCount = 0;
+        for (int s = 0; s < count; s++) {
+            if (!kept[s]) {
+                elided = true;
+                continue;
+            }
+            if (elided) {
+                text.append(text.isEmpty() ? ELLIPSIS + " " : " " + ELLIPSIS + " ");
+                elided = false;
+            } else if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            text.append(sentences.get(s));
+            keptCount++;
+        }
+        if (keptCount == count) {
+            return null;
+        }
+        if (elided) {
+            text.append(' ').append(ELLIPSIS);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Splits text into sentences, each stripped of surrounding whitespace. Line breaks end
+     * sentences too, so list items and headings stand on their own.
+     */
+    static List<String> splitSentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        BreakIterator boundaries = BreakIterator.getSentenceInstance(Locale.ROOT);
+        boundaries.setText(text);
+        int start = boundaries.first();
+        for (int end = boundaries.next(); end != BreakIterator.DONE; start = end, end = boundaries.next()) {
+            for (String line : text.substring(start, end).split("\n")) {
+                String sentence = line.strip();
+                if (!sentence.isEmpty()) {
+                    sentences.add(sentence);
+                }
+            }
+        }
+        return sentences;
+    }
+}
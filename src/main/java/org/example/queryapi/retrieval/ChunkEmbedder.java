@@ -0,0 +1,92 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes query and chunk embeddings for the embedding-based retrievers.
+ * Chunks are embedded in fixed-size batches; model failures and malformed responses
+ * are reported as {@link RetrievalException}.
+ */
+final class ChunkEmbedder {
+
+    static final int BATCH_SIZE = 64;
+
+    private final EmbeddingModel embeddingModel;
+
+    ChunkEmbedder(EmbeddingModel embeddingModel) {
+        if (embeddingModel == null) {
+            throw new RetrievalException("Embedding model cannot be null");
+        }
+        this.embeddingModel = embeddingModel;
+    }
+
+    /**
+     * Receives one batch of chunk embeddings.
+     */
+    @FunctionalInterface
+    interface BatchConsumer {
+
+        /**
+         * @param firstOrdinal snapshot ordinal of the first embedding
+         * @param embeddings embeddings in ordinal order
+         * @return whether to go on with the next batch
+         */
+        boolean accept(int firstOrdinal, List<float[]> embeddings);
+    }
+
+    float[] embedQuery(String query) {
+        return embed(List.of(query)).get(0);
+    }
+
+    /**
+     * Embeds the chunks of a snapshot from an ordinal to the end, one batch at a time,
+     * until the consumer declines the next batch.
+     */
+    void embedChunks(KnowledgeBaseSnapshot snapshot, int from, BatchConsumer consumer) {
+        for (int start = from; start < snapshot.size(); start += BATCH_SIZE) {
+            int end = Math.min(snapshot.size(), start + BATCH_SIZE);
+            List<String> texts = new ArrayList<>(end - start);
+            for (int ordinal = start; ordinal < end; ordinal++) {
+                texts.add(embeddingText(snapshot.getChunk(ordinal)));
+            }
+            if (!consumer.accept(start, embed(texts))) {
+                return;
+            }
+        }
+    }
+
+    private List<float[]> embed(List<String> texts) {
+        List<float[]> embeddings;
+        try {
+            embeddings = embeddingModel.embed(texts);
+        } catch (RuntimeException e) {
+            throw new RetrievalException("Failed to compute embeddings", e);
+        }
+        if (embeddings == null || embeddings.size() != texts.size()) {
+            throw new RetrievalException("Embedding model returned "
+                    + (embeddings == null ? 0 : embeddings.size()) + " embeddings for " + texts.size() + " texts");
+        }
+        return embeddings;
+    }
+
+    /**
+     * Text embedded for a chunk; covers the same fields as keyword retrieval.
+     */
+    static String embeddingText(Chunk chunk) {
+        return chunk.getDocumentTitle() + "\n" + chunk.getText();
+    }
+
+    /**
+     * Checks that a later snapshot holds the first {@code count} chunks of an earlier one
+     * at the same ordinals. Knowledge base ordinals only grow until
+     * {@link InMemoryKnowledgeBase#clear()}, and chunks are never copied between
+     * snapshots, so comparing the last one suffices.
+     */
+    static boolean extendsPrefix(KnowledgeBaseSnapshot earlier, int count, KnowledgeBaseSnapshot later) {
+        return count <= later.size() && (count == 0 || later.getChunk(count - 1) == earlier.getChunk(count - 1));
+    }
+}
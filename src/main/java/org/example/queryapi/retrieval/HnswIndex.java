@@ -0,0 +1,595 @@
+package org.example.queryapi.retrieval;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hierarchical navigable small world graph for approximate cosine similarity search.
+ *
+ * Each vector is a node on layer 0 and, with geometrically decreasing probability, on
+ * higher layers. A search descends greedily from the top layer and then runs a
+ * best-first search of width {@code efSearch} on layer 0, so latency grows roughly
+ * logarithmically with the number of vectors instead of linearly.
+ *
+ * Inserts may run concurrently with each other and with searches. A node's neighbour
+ * lists are immutable arrays replaced under the node's monitor, so searches read them
+ * without locking; an insert only ever holds one node monitor at a time.
+ */
+final class HnswIndex {
+
+    static final int FORMAT_MAGIC = 0x484E5357;
+    static final int FORMAT_VERSION = 1;
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+    private static final int MAX_LEVEL = 16;
+    private static final int[] NO_NEIGHBOURS = new int[0];
+
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Object pageLock = new Object();
+    private final Object entryLock = new Object();
+    private final AtomicInteger size = new AtomicInteger();
+    // Pages are never copied, so a node stored in one is never lost when the directory grows
+    private volatile Node[][] pages = new Node[0][];
+    private volatile Node entry;
+
+    /**
+     * @param dimension vector dimension
+     * @param m maximum neighbours per node on upper layers; layer 0 allows {@code 2 * m}
+     * @param efConstruction search width used to find neighbours on insert
+     */
+    HnswIndex(int dimension, int m, int efConstruction) {
+        if (dimension <= 0 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("dimension must be positive, m at least 2 and efConstruction at least 1");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Gets the number of inserted vectors.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Inserts a vector under an ordinal. Ordinals must be unique; they need not arrive in order.
+     *
+     * @throws IllegalArgumentException if the vector has the wrong dimension or the ordinal is taken
+     */
+    void insert(int ordinal, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    "Expected embedding of dimension " + dimension + " but got " + vector.length);
+        }
+        Node node = new Node(ordinal, VectorMath.normalized(vector), randomLevel());
+        store(node);
+        size.incrementAndGet();
+
+        Node start = entry;
+        if (start == null || node.level > start.level) {
+            // Raising the top of the graph is rare; serialize it so the entry point only moves up
+            synchronized (entryLock) {
+                start = entry;
+                if (start == null) {
+                    entry = node;
+                    return;
+                }
+                connect(node, start);
+                if (node.level > start.level) {
+                    entry = node;
+                }
+            }
+            return;
+        }
+        connect(node, start);
+    }
+
+    /**
+     * Finds approximately the most similar vectors by cosine similarity.
+     *
+     * @param query query embedding
+     * @param k maximum number of results
+     * @param efSearch search width; larger values trade latency for recall
+     * @param minSimilarity results below this similarity are skipped
+     * @param limit only ordinals below this bound are returned
+     * @return undrained collector holding (ordinal, similarity) pairs
+     */
+    TopKCollector search(float[] query, int k, int efSearch, double minSimilarity, int limit) {
+        return search(query, k, efSearch, minSimilarity, limit, null);
+    }
+
+    /**
+     * Finds approximately the most similar vectors among the allowed ordinals.
+     *
+     * A best-first search that skips disallowed results needs a width of about
+     * {@code efSearch} times the inverse of the allowed fraction to still collect
+     * {@code efSearch} allowed ones. When that width reaches the number of allowed
+     * vectors, they are scored exactly instead, which is both cheaper and exact.
+     *
+     * @param allowed ordinals that may be returned, or null to allow every ordinal
+     * @see #search(float[], int, int, double, int)
+     */
+    TopKCollector search(float[] query, int k, int efSearch, double minSimilarity, int limit, BitSet allowed) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException(
+                    "Expected embedding of dimension " + dimension + " but got " + query.length);
+        }
+        Node start = entry;
+        if (start == null || k <= 0) {
+            return new TopKCollector(0);
+        }
+        float[] unit = VectorMath.normalized(query);
+        int width = Math.max(efSearch, k);
+        if (allowed != null) {
+            int allowedCount = allowed.get(0, Math.min(limit, size())).cardinality();
+            long widened = allowedCount == 0 ? Long.MAX_VALUE : (long) width * size() / allowedCount;
+            if (widened >= allowedCount) {
+                return exactSearch(unit, k, minSimilarity, limit, allowed);
+            }
+            width = (int) widened;
+        }
+
+        Node current = start;
+        float currentSimilarity = similarity(unit, current);
+        for (int level = start.level; level > 0; level--) {
+            current = greedyClosest(unit, current, currentSimilarity, level);
+            currentSimilarity = similarity(unit, current);
+        }
+
+        NodeQueue found = searchLayer(unit, new int[]{current.ordinal}, new float[]{currentSimilarity},
+                width, 0, -1);
+        TopKCollector topK = new TopKCollector(Math.min(k, found.size()));
+        for (int i = 0; i < found.size(); i++) {
+            int ordinal = found.ordinalAt(i);
+            float similarity = found.scoreAt(i);
+            if (ordinal < limit && similarity >= minSimilarity && (allowed == null || allowed.get(ordinal))) {
+                topK.offer(ordinal, similarity);
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * Scores every allowed ordinal below the limit without walking the graph.
+     */
+    private TopKCollector exactSearch(float[] unit, int k, double minSimilarity, int limit, BitSet allowed) {
+        int bound = Math.min(limit, size());
+        TopKCollector topK = new TopKCollector(Math.min(k, bound));
+        for (int ordinal = allowed.nextSetBit(0); ordinal >= 0 && ordinal < bound; ordinal = allowed.nextSetBit(ordinal + 1)) {
+            Node node = node(ordinal);
+            if (node == null) {
+                continue;
+            }
+            float similarity = similarity(unit, node);
+            if (similarity >= minSimilarity) {
+                topK.offer(ordinal, similarity);
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * Links a stored node into every layer from its own level down to 0.
+     */
+    private void connect(Node node, Node start) {
+        Node current = start;
+        float currentSimilarity = similarity(node.vector, current);
+        for (int level = start.level; level > node.level; level--) {
+            current = greedyClosest(node.vector, current, currentSimilarity, level);
+            currentSimilarity = similarity(node.vector, current);
+        }
+
+        int[] entryOrdinals = {current.ordinal};
+        float[] entrySimilarities = {currentSimilarity};
+        for (int level = Math.min(node.level, start.level); level >= 0; level--) {
+            NodeQueue candidates = searchLayer(node.vector, entryOrdinals, entrySimilarities, efConstruction, level, node.ordinal);
+            candidates.sortDescending();
+            int[] selected = selectNeighbours(node.vector, candidates.ordinals(), candidates.scores(),
+                    candidates.size(), maxConnections(level));
+            // Concurrent inserts may already have linked to this node, so merge rather than overwrite
+            addLinks(node, selected, level);
+            int[] self = {node.ordinal};
+            for (int neighbour : selected) {
+                addLinks(node(neighbour), self, level);
+            }
+            entryOrdinals = Arrays.copyOf(candidates.ordinals(), candidates.size());
+            entrySimilarities = Arrays.copyOf(candidates.scores(), candidates.size());
+        }
+    }
+
+    /**
+     * Adds links from a node on one layer, pruning back to capacity if needed.
+     */
+    private void addLinks(Node target, int[] ordinals, int level) {
+        synchronized (target) {
+            int[] current = target.neighbours.get(level);
+            int[] merged = Arrays.copyOf(current, current.length + ordinals.length);
+            int count = current.length;
+            for (int ordinal : ordinals) {
+                if (!contains(merged, count, ordinal)) {
+                    merged[count++] = ordinal;
+                }
+            }
+            int max = maxConnections(level);
+            if (count <= max) {
+                target.neighbours.set(level, count == merged.length ? merged : Arrays.copyOf(merged, count));
+                return;
+            }
+
+            // Over capacity: keep the most diverse subset, as for a fresh insert
+            NodeQueue ranked = new NodeQueue(count, false);
+            for (int i = 0; i < count; i++) {
+                ranked.push(merged[i], similarity(target.vector, node(merged[i])));
+            }
+            ranked.sortDescending();
+            target.neighbours.set(level,
+                    selectNeighbours(target.vector, ranked.ordinals(), ranked.scores(), ranked.size(), max));
+        }
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Neighbour selection heuristic from the HNSW paper: a candidate is preferred only if it
+     * is closer to the base vector than to every neighbour already kept. This spreads links
+     * across clusters instead of spending them all on one dense region. Remaining slots
+     * are filled with the closest pruned candidates (the paper's keepPrunedConnections).
+     *
+     * @param ordinals candidates sorted by similarity to the base, best first
+     */
+    private int[] selectNeighbours(float[] base, int[] ordinals, float[] similarities, int count, int max) {
+        int[] selected = new int[Math.min(count, max)];
+        int selectedCount = 0;
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            Node candidate = node(ordinals[i]);
+            boolean diverse = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (similarity(candidate.vector, node(selected[j])) > similarities[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[selectedCount++] = ordinals[i];
+            }
+        }
+        // Fill spare slots with the closest pruned candidates so sparse regions stay connected
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            if (!contains(selected, selectedCount, ordinals[i])) {
+                selected[selectedCount++] = ordinals[i];
+            }
+        }
+        return selected;
+    }
+
+    private Node greedyClosest(float[] query, Node start, float startSimilarity, int level) {
+        Node best = start;
+        float bestSimilarity = startSimilarity;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : best.neighboursAt(level)) {
+                Node candidate = node(neighbour);
+                float candidateSimilarity = similarity(query, candidate);
+                if (candidateSimilarity > bestSimilarity) {
+                    best = candidate;
+                    bestSimilarity = candidateSimilarity;
+                    improved = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Best-first search on one layer.
+     *
+     * @param exclude ordinal never to return, or -1; an inserting node may already be
+     *                reachable through links added on higher layers
+     * @return up to {@code ef} nearest nodes found, in heap order
+     */
+    private NodeQueue searchLayer(float[] query, int[] entryOrdinals, float[] entrySimilarities,
+                                  int ef, int level, int exclude) {
+        BitSet visited = new BitSet();
+        if (exclude >= 0) {
+            visited.set(exclude);
+        }
+        NodeQueue candidates = new NodeQueue(ef, true);
+        NodeQueue results = new NodeQueue(ef, false);
+        for (int i = 0; i < entryOrdinals.length; i++) {
+            visited.set(entryOrdinals[i]);
+            candidates.push(entryOrdinals[i], entrySimilarities[i]);
+            results.pushBounded(entryOrdinals[i], entrySimilarities[i], ef);
+        }
+
+        while (candidates.size() > 0) {
+            float candidateSimilarity = candidates.topScore();
+            if (results.size() >= ef && candidateSimilarity < results.topScore()) {
+                // Every remaining candidate is worse than the worst result
+                break;
+            }
+            Node candidate = node(candidates.pop());
+            for (int neighbour : candidate.neighboursAt(level)) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float neighbourSimilarity = similarity(query, node(neighbour));
+                if (results.size() < ef || neighbourSimilarity > results.topScore()) {
+                    candidates.push(neighbour, neighbourSimilarity);
+                    results.pushBounded(neighbour, neighbourSimilarity, ef);
+                }
+            }
+        }
+        return results;
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private int randomLevel() {
+        double uniform = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return Math.min(MAX_LEVEL, (int) (-Math.log(uniform) * levelMultiplier));
+    }
+
+    private static float similarity(float[] unit, Node node) {
+        return VectorMath.dot(node.vector, 0, unit);
+    }
+
+    private void store(Node node) {
+        int page = node.ordinal >>> PAGE_SHIFT;
+        synchronized (pageLock) {
+            Node[][] directory = pages;
+            if (page >= directory.length) {
+                directory = Arrays.copyOf(directory, Math.max(page + 1, directory.length * 2));
+                pages = directory;
+            }
+            if (directory[page] == null) {
+                directory[page] = new Node[1 << PAGE_SHIFT];
+            }
+            if (directory[page][node.ordinal & PAGE_MASK] != null) {
+                throw new IllegalArgumentException("Ordinal " + node.ordinal + " is already indexed");
+            }
+            directory[page][node.ordinal & PAGE_MASK] = node;
+        }
+    }
+
+    private Node node(int ordinal) {
+        return pages[ordinal >>> PAGE_SHIFT][ordinal & PAGE_MASK];
+    }
+
+    /**
+     * Writes the graph. Ordinals must be contiguous from 0, and no insert may run concurrently.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        int count = size();
+        Node start = entry;
+        out.writeInt(FORMAT_MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(dimension);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(count);
+        out.writeInt(start == null ? -1 : start.ordinal);
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            Node node = node(ordinal);
+            out.writeInt(node.level);
+            for (float value : node.vector) {
+                out.writeFloat(value);
+            }
+            for (int level = 0; level <= node.level; level++) {
+                int[] neighbours = node.neighboursAt(level);
+                out.writeInt(neighbours.length);
+                for (int neighbour : neighbours) {
+                    out.writeInt(neighbour);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a graph written by {@link #writeTo(DataOutputStream)}.
+     *
+     * @throws IOException if the data is not a graph in the current format
+     */
+    static HnswIndex readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not an HNSW graph in format version " + FORMAT_VERSION);
+        }
+        HnswIndex index = new HnswIndex(in.readInt(), in.readInt(), in.readInt());
+        int count = in.readInt();
+        int entryOrdinal = in.readInt();
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            int level = in.readInt();
+            float[] vector = new float[index.dimension];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = in.readFloat();
+            }
+            Node node = new Node(ordinal, vector, level);
+            for (int l = 0; l <= level; l++) {
+                int[] neighbours = new int[in.readInt()];
+                for (int i = 0; i < neighbours.length; i++) {
+                    neighbours[i] = in.readInt();
+                }
+                node.neighbours.set(l, neighbours);
+            }
+            index.store(node);
+        }
+        index.size.set(count);
+        index.entry = entryOrdinal < 0 ? null : index.node(entryOrdinal);
+        return index;
+    }
+
+    private static final class Node {
+
+        final int ordinal;
+        final float[] vector;
+        final int level;
+        // One immutable array per layer, replaced wholesale under the node's monitor
+        final AtomicReferenceArray<int[]> neighbours;
+
+        Node(int ordinal, float[] vector, int level) {
+            this.ordinal = ordinal;
+            this.vector = vector;
+            this.level = level;
+            this.neighbours = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                neighbours.set(l, NO_NEIGHBOURS);
+            }
+        }
+
+        int[] neighboursAt(int level) {
+            return neighbours.get(level);
+        }
+    }
+
+    /**
+     * Binary heap of (ordinal, similarity) pairs on primitive arrays, ordered either
+     * best-first or worst-first.
+     */
+    private static final class NodeQueue {
+
+        private final boolean bestFirst;
+        private int[] ordinals;
+        private float[] scores;
+        private int size;
+
+        NodeQueue(int capacity, boolean bestFirst) {
+            this.bestFirst = bestFirst;
+            this.ordinals = new int[Math.max(1, capacity)];
+            this.scores = new float[Math.max(1, capacity)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] ordinals() {
+            return ordinals;
+        }
+
+        float[] scores() {
+            return scores;
+        }
+
+        int ordinalAt(int i) {
+            return ordinals[i];
+        }
+
+        float scoreAt(int i) {
+            return scores[i];
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int ordinal, float score) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            ordinals[size] = ordinal;
+            scores[size] = score;
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!above(index, parent)) {
+                    break;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        /**
+         * Pushes, then drops the top while the heap holds more than {@code bound} entries.
+         * On a worst-first heap this keeps the best {@code bound} seen.
+         */
+        void pushBounded(int ordinal, float score, int bound) {
+            push(ordinal, score);
+            while (size > bound) {
+                pop();
+            }
+        }
+
+        int pop() {
+            int top = ordinals[0];
+            size--;
+            if (size > 0) {
+                ordinals[0] = ordinals[size];
+                scores[0] = scores[size];
+                int index = 0;
+                while (true) {
+                    int left = 2 * index + 1;
+                    if (left >= size) {
+                        break;
+                    }
+                    int child = left + 1 < size && above(left + 1, left) ? left + 1 : left;
+                    if (!above(child, index)) {
+                        break;
+                    }
+                    swap(child, index);
+                    index = child;
+                }
+            }
+            return top;
+        }
+
+        /**
+         * Reorders the entries by similarity, best first. The heap property is lost.
+         */
+        void sortDescending() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+            int[] sortedOrdinals = new int[ordinals.length];
+            float[] sortedScores = new float[scores.length];
+            for (int i = 0; i < size; i++) {
+                sortedOrdinals[i] = ordinals[order[i]];
+                sortedScores[i] = scores[order[i]];
+            }
+            ordinals = sortedOrdinals;
+            scores = sortedScores;
+        }
+
+        private boolean above(int i, int j) {
+            return bestFirst ? scores[i] > scores[j] : scores[i] < scores[j];
+        }
+
+        private void swap(int i, int j) {
+            int ordinal = ordinals[i];
+            ordinals[i] = ordinals[j];
+            ordinals[j] = ordinal;
+            float score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+    }
+}
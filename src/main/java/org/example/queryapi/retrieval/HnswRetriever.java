@@ -0,0 +1,372 @@
+package org.example.queryapi.retrieval;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.queryapi.domain.Chunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Retriever that ranks chunks by approximate cosine similarity using an {@link HnswIndex}.
+ *
+ * Chunks added to the knowledge base are embedded in batches and inserted into the graph
+ * in parallel by a background indexer, as {@link VectorRetriever} does; queries search
+ * the prefix of the corpus inserted so far without waiting. The graph is saved to
+ * {@code hnsw.graph} in {@code queryapi.retrieval.hnsw.directory} (by default the
+ * knowledge base journal directory) periodically and on shutdown, together with the
+ * chunk ids it covers. After a restart the indexer loads it instead of re-embedding the
+ * corpus, provided the recovered knowledge base still starts with the same chunks; while
+ * the journal is still recovering them, it waits rather than indexing. Metadata filters
+ * widen the graph search by how selective they are, falling back to an exact scan of the
+ * allowed chunks when that is cheaper.
+ * Active when {@code queryapi.retrieval.strategy} is {@code hnsw}.
+ */
+@Component
+@ConditionalOnProperty(name = "queryapi.retrieval.strategy", havingValue = "hnsw")
+public class HnswRetriever implements Retriever {
+
+    private static final Logger log = LoggerFactory.getLogger(HnswRetriever.class);
+    static final String GRAPH_FILE = "hnsw.graph";
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final InMemoryKnowledgeBase knowledgeBase;
+    private final ChunkEmbedder embedder;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double minSimilarity;
+    private final Path directory;
+    private final long saveIntervalSeconds;
+    private final BackgroundIndexer indexer;
+    // Not a monitor: the holder waits on the embedding model, which would pin a virtual thread
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private volatile Indexed indexed;
+    private volatile boolean closed;
+    private boolean loadAttempted;
+    // Chunk ids of the saved graph, while the knowledge base has not caught up with them
+    private List<String> savedIds;
+    private KnowledgeBaseSnapshot matchedSnapshot;
+    private int matchedIds;
+    private int savedSize;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public HnswRetriever(InMemoryKnowledgeBase knowledgeBase,
+                         EmbeddingModel embeddingModel,
+                         @Value("${queryapi.retrieval.hnsw.m:16}") int m,
+                         @Value("${queryapi.retrieval.hnsw.ef-construction:200}") int efConstruction,
+                         @Value("${queryapi.retrieval.hnsw.ef-search:64}") int efSearch,
+                         @Value("${queryapi.retrieval.hnsw.min-similarity:0.5}") double minSimilarity,
+                         @Value("${queryapi.retrieval.hnsw.directory:${queryapi.knowledge-base.journal.directory:}}") String directory,
+                         @Value("${queryapi.retrieval.hnsw.save-interval-seconds:300}") long saveIntervalSeconds) {
+        this(knowledgeBase, embeddingModel, m, efConstruction, efSearch, minSimilarity, directory, saveIntervalSeconds,
+                null);
+    }
+
+    /**
+     * @param indexing runs the background indexer, or null for a virtual thread per run;
+     *                 tests pass {@code Runnable::run} to index synchronously on ingestion
+     */
+    HnswRetriever(InMemoryKnowledgeBase knowledgeBase, EmbeddingModel embeddingModel, int m, int efConstruction,
+                  int efSearch, double minSimilarity, String directory, long saveIntervalSeconds, Executor indexing) {
+        if (knowledgeBase == null) {
+            throw new RetrievalException("Knowledge base cannot be null");
+        }
+        this.knowledgeBase = knowledgeBase;
+        this.embedder = new ChunkEmbedder(embeddingModel);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.minSimilarity = minSimilarity;
+        this.directory = directory == null || directory.isBlank() ? null : Path.of(directory);
+        this.saveIntervalSeconds = saveIntervalSeconds;
+        this.indexer = indexing == null
+                ? new BackgroundIndexer("hnsw-indexer", this::catchUp, RETRY_DELAY)
+                : new BackgroundIndexer("hnsw-indexer", this::catchUp, indexing, RETRY_DELAY, System::nanoTime);
+        knowledgeBase.onPublish(indexer::request);
+        indexer.request();
+    }
+
+    /**
+     * Starts periodic saving when a graph directory is configured.
+     */
+    @PostConstruct
+    public void start() {
+        if (directory == null || saveIntervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hnsw-save");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::saveIfChanged, saveIntervalSeconds, saveIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public List<Chunk> retrieve(String query, int maxChunks, RetrievalFilter filter) {
+        return retrieveResult(query, maxChunks, filter).chunks();
+    }
+
+    /**
+     * {@inheritDoc} The result is incomplete while chunks remain to be indexed.
+     */
+    @Override
+    public RetrievalResult retrieveResult(String query, int maxChunks, RetrievalFilter filter) {
+        if (query == null || query.isBlank() || maxChunks <= 0) {
+            return new RetrievalResult(List.of(), true);
+        }
+
+        // The graph is read before the snapshot, so the snapshot is never older than it
+        Indexed current = indexed;
+        KnowledgeBaseSnapshot snapshot = knowledgeBase.snapshot();
+        if (!covers(current, snapshot)) {
+            indexer.request();
+            current = indexed;
+            snapshot = knowledgeBase.snapshot();
+        }
+        int searchable = searchable(current, snapshot);
+        boolean complete = searchable == snapshot.size();
+        if (searchable == 0) {
+            return new RetrievalResult(List.of(), complete);
+        }
+        BitSet allowed = snapshot.select(filter);
+        if (allowed != null && allowed.get(0, searchable).isEmpty()) {
+            return new RetrievalResult(List.of(), complete);
+        }
+        float[] queryEmbedding = embedder.embedQuery(query);
+        if (queryEmbedding.length != current.index().dimension()) {
+            throw new RetrievalException("Query embedding has dimension " + queryEmbedding.length
+                    + " but chunks were embedded with dimension " + current.index().dimension());
+        }
+
+        TopKCollector topK = current.index().search(queryEmbedding, maxChunks, efSearch, minSimilarity, searchable,
+                allowed);
+        int count = topK.drain();
+        List<Chunk> result = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            double similarity = Math.min(1.0, topK.scoreAt(rank));
+            result.add(snapshot.getChunk(topK.ordinalAt(rank)).withRelevanceScore(similarity));
+        }
+        return new RetrievalResult(result, complete);
+    }
+
+    /**
+     * Saves the graph and the chunk ids it covers, replacing any earlier file atomically.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void save() throws IOException {
+        if (directory == null) {
+            return;
+        }
+        indexLock.lock();
+        try {
+            Indexed current = indexed;
+            if (current == null || current.count() == 0) {
+                return;
+            }
+            Files.createDirectories(directory);
+            Path target = directory.resolve(GRAPH_FILE);
+            Path temporary = directory.resolve(GRAPH_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(current.count());
+                for (int ordinal = 0; ordinal < current.count(); ordinal++) {
+                    out.writeUTF(current.snapshot().getChunk(ordinal).getChunkId());
+                }
+                current.index().writeTo(out);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedSize = current.count();
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Stops indexing and periodic saving and saves the graph one last time. An insert run
+     * in progress stops after its current batch.
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        closed = true;
+        indexer.close();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        save();
+    }
+
+    /**
+     * Inserts every chunk of the latest snapshot that is not yet in the graph, publishing
+     * the graph after each batch. The graph cannot drop nodes, so it is rebuilt when the
+     * snapshot no longer extends the one indexed last. Runs on the background indexer,
+     * one run at a time, and loads the saved graph first; nothing is embedded while the
+     * knowledge base is still being recovered up to the chunks of the saved graph.
+     */
+    private void catchUp() {
+        indexLock.lock();
+        try {
+            KnowledgeBaseSnapshot latest = knowledgeBase.snapshot();
+            if (!loadAttempted && !loadSavedGraph(latest)) {
+                return;
+            }
+            Indexed current = indexed;
+            if (closed || covers(current, latest)) {
+                return;
+            }
+
+            boolean extend = current != null && current.count() > 0 && searchable(current, latest) > 0;
+            HnswIndex[] index = {extend ? current.index() : null};
+            embedder.embedChunks(latest, extend ? current.count() : 0, (first, embeddings) -> {
+                if (index[0] == null) {
+                    index[0] = new HnswIndex(embeddings.get(0).length, m, efConstruction);
+                }
+                IntStream.range(0, embeddings.size()).parallel()
+                        .forEach(i -> index[0].insert(first + i, embeddings.get(i)));
+                // Published batches are kept when a later one fails, so they are not embedded twice
+                indexed = new Indexed(index[0], latest, first + embeddings.size());
+                return !closed;
+            });
+            if (index[0] == null) {
+                indexed = new Indexed(new HnswIndex(1, m, efConstruction), latest, 0);
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Gets how many leading chunks of the snapshot the graph holds, zero when the graph
+     * was built for chunks the snapshot no longer starts with.
+     */
+    private static int searchable(Indexed indexed, KnowledgeBaseSnapshot snapshot) {
+        if (indexed == null || !ChunkEmbedder.extendsPrefix(indexed.snapshot(), indexed.count(), snapshot)) {
+            return 0;
+        }
+        return indexed.count();
+    }
+
+    private static boolean covers(Indexed indexed, KnowledgeBaseSnapshot snapshot) {
+        return indexed != null && searchable(indexed, snapshot) == snapshot.size();
+    }
+
+    /**
+     * Loads the saved graph once the knowledge base holds every chunk it covers. The
+     * journal recovers the knowledge base in batches after this retriever is built, so
+     * a knowledge base that holds the first of those chunks, in order, is waited for
+     * rather than taken as a different corpus.
+     *
+     * @return false while the knowledge base is a proper prefix of the saved chunks;
+     *         true once the graph is loaded, or is missing, unreadable or for other chunks
+     */
+    private boolean loadSavedGraph(KnowledgeBaseSnapshot snapshot) {
+        Path file = directory == null ? null : directory.resolve(GRAPH_FILE);
+        if (file == null || !Files.exists(file)) {
+            loadAttempted = true;
+            return true;
+        }
+        try {
+            if (savedIds == null) {
+                try (DataInputStream in = open(file)) {
+                    savedIds = readChunkIds(in);
+                }
+            }
+            // The knowledge base may have been cleared since the ids were last compared
+            if (matchedSnapshot == null || !ChunkEmbedder.extendsPrefix(matchedSnapshot, matchedIds, snapshot)) {
+                matchedIds = 0;
+            }
+            int held = Math.min(savedIds.size(), snapshot.size());
+            for (; matchedIds < held; matchedIds++) {
+                if (!savedIds.get(matchedIds).equals(snapshot.getChunk(matchedIds).getChunkId())) {
+                    log.info("Ignoring HNSW graph; chunk {} no longer matches the knowledge base", matchedIds);
+                    return doneWithSavedGraph();
+                }
+            }
+            matchedSnapshot = snapshot;
+            if (held < savedIds.size()) {
+                log.debug("Waiting for the knowledge base to reach the {} chunks of the saved HNSW graph; it holds {}",
+                        savedIds.size(), held);
+                return false;
+            }
+            HnswIndex index;
+            try (DataInputStream in = open(file)) {
+                readChunkIds(in);
+                index = HnswIndex.readFrom(in);
+            }
+            indexed = new Indexed(index, snapshot, savedIds.size());
+            savedSize = savedIds.size();
+            return doneWithSavedGraph();
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to load HNSW graph from {}; rebuilding", file, e);
+            return doneWithSavedGraph();
+        }
+    }
+
+    /**
+     * Stops waiting for the saved graph and drops its chunk ids.
+     */
+    private boolean doneWithSavedGraph() {
+        loadAttempted = true;
+        savedIds = null;
+        matchedSnapshot = null;
+        return true;
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+    }
+
+    private static List<String> readChunkIds(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> chunkIds = new ArrayList<>(count);
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            chunkIds.add(in.readUTF());
+        }
+        return chunkIds;
+    }
+
+    private void saveIfChanged() {
+        Indexed current = indexed;
+        if (current == null || current.count() == savedSize) {
+            return;
+        }
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.warn("HNSW graph save failed; will retry at next interval", e);
+        }
+    }
+
+    /**
+     * Graph whose nodes {@code [0, count)} are the first chunks of the snapshot.
+     */
+    private record Indexed(HnswIndex index, KnowledgeBaseSnapshot snapshot, int count) {
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.queryapi.retrieval;
+
+import jakarta.annotation.PreDestroy;
+import org.example.queryapi.domain.Chunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Retriever that runs a keyword leg (BM25) and a vector leg concurrently and merges
+ * their rankings with reciprocal-rank fusion.
+ *
+ * Both legs run on virtual threads under one shared deadline, so hybrid latency is that
+ * of the slower leg rather than the sum of both. A leg that fails or misses the deadline
+ * is dropped and the other leg's ranking is returned on its own; retrieval only fails
+ * when neither leg answers. A leg that misses the deadline is abandoned rather than
+ * interrupted and finishes in the background, so an interrupt never lands inside a
+ * leg's own I/O or locking. Metadata filters are applied by each leg before it scores.
+ * Active when {@code queryapi.retrieval.strategy} is {@code hybrid}.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "queryapi.retrieval.strategy", havingValue = "hybrid")
+public class HybridRetriever implements Retriever {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridRetriever.class);
+    private static final double RELEVANCE_THRESHOLD = 0.8;
+
+    private final Retriever keywordRetriever;
+    private final Retriever vectorRetriever;
+    private final long timeoutMillis;
+    private final int rrfK;
+    private final int candidates;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Autowired
+    public HybridRetriever(Bm25Retriever keywordRetriever,
+                           VectorRetriever vectorRetriever,
+                           @Value("${queryapi.retrieval.hybrid.timeout-ms:2000}") long timeoutMillis,
+                           @Value("${queryapi.retrieval.hybrid.rrf-k:60}") int rrfK,
+                           @Value("${queryapi.retrieval.hybrid.candidates:50}") int candidates) {
+        this((Retriever) keywordRetriever, vectorRetriever, timeoutMillis, rrfK, candidates);
+    }
+
+    HybridRetriever(Retriever keywordRetriever, Retriever vectorRetriever, long timeoutMillis, int rrfK, int candidates) {
+        if (keywordRetriever == null || vectorRetriever == null) {
+            throw new RetrievalException("Keyword and vector retrievers cannot be null");
+        }
+        if (timeoutMillis <= 0 || rrfK <= 0) {
+            throw new RetrievalException("Hybrid timeout and RRF constant must be positive");
+        }
+        this.keywordRetriever = keywordRetriever;
+        this.vectorRetriever = vectorRetriever;
+        this.timeoutMillis = timeoutMillis;
+        this.rrfK = rrfK;
+        this.candidates = candidates;
+    }
+
+    @Override
+    public List<Chunk> retrieve(String query, int maxChunks, RetrievalFilter filter) {
+        return retrieveResult(query, maxChunks, filter).chunks();
+    }
+
+    /**
+     * {@inheritDoc} The result is incomplete when a leg was dropped or returned an
+     * incomplete ranking of its own.
+     */
+    @Override
+    public RetrievalResult retrieveResult(String query, int maxChunks, RetrievalFilter filter) {
+        if (query == null || query.isBlank() || maxChunks <= 0) {
+            return new RetrievalResult(List.of(), true);
+        }
+
+        // Each leg contributes a deeper list than requested so fusion can promote chunks both agree on
+        int depth = Math.max(maxChunks, candidates);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Future<RetrievalResult> keyword = executor.submit(() -> keywordRetriever.retrieveResult(query, depth, filter));
+        Future<RetrievalResult> vector = executor.submit(() -> vectorRetriever.retrieveResult(query, depth, filter));
+
+        List<List<Chunk>> rankings = new ArrayList<>(2);
+        boolean complete = true;
+        RuntimeException failure = null;
+        for (Future<RetrievalResult> leg : List.of(keyword, vector)) {
+            try {
+                RetrievalResult result = await(leg, deadline);
+                rankings.add(result.chunks());
+                complete &= result.complete();
+            } catch (RuntimeException e) {
+                log.warn("Hybrid retrieval leg dropped: {}", e.getMessage());
+                failure = e;
+                complete = false;
+            }
+        }
+        if (rankings.isEmpty()) {
+            throw failure instanceof RetrievalException retrievalException
+                    ? retrievalException
+                    : new RetrievalException("Hybrid retrieval failed", failure);
+        }
+        return new RetrievalResult(fuse(rankings, maxChunks), complete);
+    }
+
+    /**
+     * Merges rankings with reciprocal-rank fusion, {@code sum(1 / (k + rank))} over the
+     * rankings a chunk appears in.
+     *
+     * Every fused chunk already passed one leg's own relevance threshold, so the fused
+     * score is mapped onto [{@value #RELEVANCE_THRESHOLD}, 1]: 1.0 for a chunk ranked
+     * first by every answering leg, lower as it falls in or drops out of the rankings.
+     * Ties keep the order in which chunks were first seen, keyword leg first.
+     */
+    List<Chunk> fuse(List<List<Chunk>> rankings, int maxChunks) {
+        Map<String, Fused> fused = new LinkedHashMap<>();
+        for (List<Chunk> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Chunk chunk = ranking.get(rank);
+                fused.computeIfAbsent(chunk.getChunkId(), id -> new Fused(chunk)).score += 1.0 / (rrfK + rank + 1);
+            }
+        }
+
+        double ideal = rankings.size() / (double) (rrfK + 1);
+        return fused.values().stream()
+                .sorted(Comparator.comparingDouble((Fused f) -> f.score).reversed())
+                .limit(maxChunks)
+                .map(f -> f.chunk.withRelevanceScore(
+                        RELEVANCE_THRESHOLD + (1.0 - RELEVANCE_THRESHOLD) * Math.min(1.0, f.score / ideal)))
+                .toList();
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static RetrievalResult await(Future<RetrievalResult> leg, long deadline) {
+        try {
+            return leg.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Not interrupted: a leg that has started runs to completion and its result is discarded
+            leg.cancel(false);
+            throw new RetrievalException("Retrieval leg timed out", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RetrievalException("Retrieval leg failed", e.getCause());
+        } catch (InterruptedException e) {
+            leg.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new RetrievalException("Interrupted while waiting for retrieval", e);
+        }
+    }
+
+    private static final class Fused {
+
+        private final Chunk chunk;
+        private double score;
+
+        private Fused(Chunk chunk) {
+            this.chunk = chunk;
+        }
+    }
+}
@@ -1,56 +1,278 @@
 package org.example.queryapi.retrieval;
 
 import org.example.queryapi.domain.Chunk;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * In-memory storage for knowledge base chunks.
  * Thread-safe implementation suitable for single-node deployment.
+ *
+ * Readers work on immutable, versioned {@link KnowledgeBaseSnapshot}s and never block.
+ * Each chunk is analyzed once when it is added and stored as term ids from a
+ * dictionary shared by all segments; queries are analyzed the same way.
+ * Writers index each batch into a new segment, merge adjacent segments of similar
+ * size, and publish the next snapshot atomically. Merging keeps the segment count
+ * logarithmic, so bulk loading is O(n log n) even when chunks arrive one at a time.
+ *
+ * With {@code queryapi.knowledge-base.shards} above one, every batch is striped
+ * round-robin across that many {@link Shard}s, each with its own segments, so
+ * retrievers can score the shards in parallel.
  */
 @Component
 public class InMemoryKnowledgeBase {
-    
-    private final List<Chunk> chunks;
+
+    private final int shardCount;
+    private final Analyzer analyzer;
+    private final TermDictionary dictionary = new TermDictionary();
+    private final AtomicReference<KnowledgeBaseSnapshot> current;
+    private final Object writeLock = new Object();
+    private final List<Runnable> publishListeners = new CopyOnWriteArrayList<>();
 
     public InMemoryKnowledgeBase() {
-        this.chunks = new CopyOnWriteArrayList<>();
+        this(1);
+    }
+
+    public InMemoryKnowledgeBase(int shardCount) {
+        this(shardCount, false, false);
+    }
+
+    /**
+     * @param shardCount number of shards the chunks are striped across; retrievers
+     *                   score shards in parallel, so up to the core count is useful
+     * @param removeStopwords whether analysis drops common English stopwords
+     * @param stem whether analysis conflates English plurals with their singular
+     */
+    @Autowired
+    public InMemoryKnowledgeBase(@Value("${queryapi.knowledge-base.shards:1}") int shardCount,
+                                 @Value("${queryapi.analysis.stopwords:false}") boolean removeStopwords,
+                                 @Value("${queryapi.analysis.stemming:false}") boolean stem) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.shardCount = shardCount;
+        this.analyzer = new Analyzer(removeStopwords, stem);
+        this.current = new AtomicReference<>(KnowledgeBaseSnapshot.empty(0L, shardCount));
     }
 
     /**
-     * Adds a chunk to the knowledge base.
-     * 
+     * Adds a chunk to the knowledge base and indexes its text and document title.
+     * Prefer {@link #addChunks(Collection)} when loading many chunks.
+     *
      * @param chunk the chunk to add
      */
     public void addChunk(Chunk chunk) {
-        chunks.add(chunk);
+        addChunks(List.of(chunk));
+    }
+
+    /**
+     * Adds a batch of chunks and publishes them in a single new snapshot.
+     * Indexing happens before the write lock is taken, so other writers
+     * are only held up for the segment merge.
+     *
+     * @param batch chunks to add, in order
+     */
+    public void addChunks(Collection<Chunk> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        publish(stripe(batch));
+    }
+
+    /**
+     * Analyzes query text with the same analyzer used for chunks.
+     *
+     * @return term ids in query order with repeats; terms no chunk has ever contained
+     *         are {@link TermDictionary#MISSING}
+     */
+    int[] analyzeQuery(String text) {
+        return analyzer.analyze(text).stream().mapToInt(dictionary::id).toArray();
+    }
+
+    /**
+     * Splits query text into whitespace-separated keywords and analyzes each one.
+     * Text between double quotes is a single keyword, so a pasted error message
+     * such as {@code "connection pool timeout"} only matches as a phrase; an
+     * unterminated quote runs to the end of the text.
+     *
+     * @return one term id sequence per keyword that has any terms, in query order;
+     *         a keyword such as "active-passive" yields several terms
+     */
+    int[][] analyzeKeywords(String text) {
+        List<int[]> keywords = new ArrayList<>();
+        int start = -1;
+        boolean quoted = false;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean end = i == text.length();
+            char c = end ? ' ' : text.charAt(i);
+            if (end || c == '"' || (!quoted && Character.isWhitespace(c))) {
+                if (start >= 0) {
+                    int[] terms = analyzeQuery(text.substring(start, i));
+                    if (terms.length > 0) {
+                        keywords.add(terms);
+                    }
+                    start = -1;
+                }
+                if (c == '"') {
+                    quoted = !quoted;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return keywords.toArray(new int[0][]);
+    }
+
+    TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Indexes a batch as one segment per stripe. Stripe {@code r} holds the chunks at
+     * batch positions {@code r, r + n, r + 2n, ...} for {@code n} shards, which is the
+     * part of the batch that lands on a single shard whatever ordinal the batch starts at.
+     *
+     * @param batch chunks to add, in order
+     * @return up to {@code n} non-empty stripes, to be passed to {@link #publish(List)}
+     */
+    List<Segment> stripe(Collection<Chunk> batch) {
+        if (shardCount == 1) {
+            return List.of(Segment.build(batch, analyzer, dictionary));
+        }
+        List<Chunk> chunks = List.copyOf(batch);
+        int stripeCount = Math.min(shardCount, chunks.size());
+        List<Segment> stripes = new ArrayList<>(stripeCount);
+        for (int r = 0; r < stripeCount; r++) {
+            List<Chunk> stripe = new ArrayList<>(chunks.size() / shardCount + 1);
+            for (int i = r; i < chunks.size(); i += shardCount) {
+                stripe.add(chunks.get(i));
+            }
+            stripes.add(Segment.build(stripe, analyzer, dictionary));
+        }
+        return stripes;
+    }
+
+    /**
+     * Appends already built stripes of one batch and publishes the next snapshot.
+     */
+    void publish(List<Segment> stripes) {
+        synchronized (writeLock) {
+            KnowledgeBaseSnapshot snapshot = current.get();
+            List<Shard> shards = new ArrayList<>(snapshot.shards());
+            int start = snapshot.size();
+            for (int r = 0; r < stripes.size(); r++) {
+                int shardIndex = (start + r) % shardCount;
+                shards.set(shardIndex, shards.get(shardIndex).append(stripes.get(r)));
+            }
+            current.set(new KnowledgeBaseSnapshot(snapshot.getVersion() + 1, shards));
+        }
+        notifyPublished();
+    }
+
+    /**
+     * Registers a callback run after every published write, on the writer's thread and
+     * outside the write lock. Callbacks must be quick; indexers use it to schedule work.
+     */
+    void onPublish(Runnable listener) {
+        publishListeners.add(listener);
+    }
+
+    private void notifyPublished() {
+        for (Runnable listener : publishListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Gets the current snapshot. The snapshot stays valid and unchanged for as long
+     * as the caller holds it, regardless of concurrent writes.
+     *
+     * @return the latest published snapshot
+     */
+    public KnowledgeBaseSnapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Gets the version of the current snapshot.
+     *
+     * @return snapshot version, incremented by every write
+     */
+    public long getVersion() {
+        return current.get().getVersion();
     }
 
     /**
      * Gets all chunks from the knowledge base.
-     * 
-     * @return list of all chunks
+     *
+     * @return unmodifiable list of all chunks in the current snapshot
      */
     public List<Chunk> getAllChunks() {
-        return new ArrayList<>(chunks);
+        return current.get().getChunks();
+    }
+
+    /**
+     * Finds chunks whose text or document title contains at least one of the keywords'
+     * terms, after both went through the knowledge base's analyzer. A keyword matches
+     * whole terms only, so "art" does not match "start".
+     *
+     * @param keywords query keywords
+     * @return candidate chunks in insertion order, empty list if none
+     */
+    public List<Chunk> findCandidates(List<String> keywords) {
+        KnowledgeBaseSnapshot snapshot = current.get();
+        int[] termIds = analyzeQuery(String.join(" ", keywords));
+        BitSet ordinals = new BitSet(snapshot.size());
+        List<Shard> shards = snapshot.shards();
+        for (int s = 0; s < shards.size(); s++) {
+            Shard shard = shards.get(s);
+            List<Segment> segments = shard.segments();
+            for (int g = 0; g < segments.size(); g++) {
+                Segment segment = segments.get(g);
+                BitSet candidates = segment.index().candidatesForAny(termIds);
+                for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                    ordinals.set(snapshot.ordinal(s, shard.base(g) + i));
+                }
+            }
+        }
+        List<Chunk> result = new ArrayList<>(ordinals.cardinality());
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            result.add(snapshot.getChunk(i));
+        }
+        return result;
     }
 
     /**
      * Clears all chunks from the knowledge base.
      */
     public void clear() {
-        chunks.clear();
+        synchronized (writeLock) {
+            current.set(KnowledgeBaseSnapshot.empty(current.get().getVersion() + 1, shardCount));
+        }
+        notifyPublished();
     }
 
     /**
      * Gets the number of chunks in the knowledge base.
-     * 
+     *
      * @return chunk count
      */
     public int size() {
-        return chunks.size();
+        return current.get().size();
+    }
+
+    /**
+     * Text covered by the index, before analysis; matches what retrievers score against.
+     */
+    static String indexedText(Chunk chunk) {
+        return chunk.getText() + " " + chunk.getDocumentTitle();
     }
 }
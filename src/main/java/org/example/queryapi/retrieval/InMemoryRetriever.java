@@ -1,18 +1,26 @@
 package org.example.queryapi.retrieval;
 
 import org.example.queryapi.domain.Chunk;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * In-memory implementation of Retriever using keyword-based matching.
- * Retrieves and scores chunks based on keyword overlap with the query.
+ * Looks up candidate chunks in the knowledge base's positional index, where quoted and
+ * multi-term keywords must occur as phrases, and scores them based on term overlap with
+ * the query and how close together the keywords occur, comparing the term ids produced
+ * by analysis at ingestion time rather than re-reading chunk text. Ranking keeps a
+ * bounded top-k heap, so only the returned chunks are allocated; a sharded knowledge base
+ * is scored one shard per fork-join task. Metadata filters are resolved against each
+ * segment's precomputed bitsets and narrow the candidates before scoring.
+ * Default retriever; active when {@code queryapi.retrieval.strategy} is {@code keyword} or unset.
  */
 @Component
+@ConditionalOnProperty(name = "queryapi.retrieval.strategy", havingValue = "keyword", matchIfMissing = true)
 public class InMemoryRetriever implements Retriever {
 
     private static final double RELEVANCE_THRESHOLD = 0.8;
@@ -26,64 +34,84 @@ public class InMemoryRetriever implements Retriever {
     }
 
     @Override
-    public List<Chunk> retrieve(String query, int maxChunks) {
-        List<Chunk> allChunks = knowledgeBase.getAllChunks();
-        
-        if (allChunks.isEmpty()) {
+    public List<Chunk> retrieve(String query, int maxChunks, RetrievalFilter filter) {
+        if (query == null || query.isBlank() || maxChunks <= 0) {
             return List.of();
         }
 
-        // Extract keywords from query (lowercase, split by whitespace)
-        List<String> queryKeywords = extractKeywords(query);
-        
-        if (queryKeywords.isEmpty()) {
+        // Keywords go through the same analyzer as chunk text, once per request
+        int[][] keywords = knowledgeBase.analyzeKeywords(query);
+        if (keywords.length == 0) {
             return List.of();
         }
 
-        // Score each chunk based on keyword matching
-        List<Chunk> scoredChunks = allChunks.stream()
-                .map(chunk -> scoreChunk(chunk, queryKeywords))
-                .filter(chunk -> chunk.getRelevanceScore() >= RELEVANCE_THRESHOLD)
-                .sorted(Comparator.comparingDouble(Chunk::getRelevanceScore).reversed())
-                .limit(maxChunks)
-                .collect(Collectors.toList());
-
-        return scoredChunks;
+        return rank(knowledgeBase.snapshot(), keywords, maxChunks, filter);
     }
 
     /**
-     * Extracts keywords from query text.
-     * Converts to lowercase and splits by whitespace.
+     * Scores candidate chunks into a bounded top-k heap per shard and merges the shards.
+     * Only the final winners are materialized as scored Chunk instances.
+     * Candidates outside the filter are dropped before any of them is scored.
      */
-    private List<String> extractKeywords(String query) {
-        if (query == null || query.isBlank()) {
+    private List<Chunk> rank(KnowledgeBaseSnapshot snapshot, int[][] keywords, int maxChunks, RetrievalFilter filter) {
+        if (snapshot.size() == 0) {
             return List.of();
         }
-        
-        return Arrays.stream(query.toLowerCase().trim().split("\\s+"))
-                .filter(word -> !word.isEmpty())
-                .collect(Collectors.toList());
+
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(keywords);
+        TopKCollector topK = snapshot.collectTopK(maxChunks, (shardIndex, shard, shardTopK) -> {
+            int[] occurrences = new int[keywords.length];
+            int[] lastStarts = new int[keywords.length];
+            List<Segment> segments = shard.segments();
+            for (int s = 0; s < segments.size(); s++) {
+                Segment segment = segments.get(s);
+                int base = shard.base(s);
+
+                // Only chunks containing some keyword as a phrase can score above zero
+                BitSet candidates = segment.index().candidatesForAnyPhrase(keywords);
+                BitSet allowed = segment.metadata().select(filter);
+                if (allowed != null) {
+                    candidates.and(allowed);
+                }
+                for (int local = candidates.nextSetBit(0); local >= 0; local = candidates.nextSetBit(local + 1)) {
+                    double score = scoreChunk(segment.terms(local), matcher, occurrences, lastStarts);
+                    if (score >= RELEVANCE_THRESHOLD) {
+                        shardTopK.offer(snapshot.ordinal(shardIndex, base + local), score);
+                    }
+                }
+            }
+        });
+
+        int count = topK.drain();
+        List<Chunk> scoredChunks = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            scoredChunks.add(snapshot.getChunk(topK.ordinalAt(rank)).withRelevanceScore(topK.scoreAt(rank)));
+        }
+        return scoredChunks;
     }
 
     /**
      * Scores a chunk based on keyword matching.
-     * Returns a new Chunk with the relevance score set.
      * 
      * Score calculation:
      * - Count how many query keywords appear in the chunk (at least once)
      * - Divide by total number of query keywords
      * - Result is in range [0, 1]
      * - If at least one keyword matches, ensure minimum score of 0.8 to pass threshold
+     * - Scale the part above 0.8 by keyword proximity, so keywords far apart keep half of it
+     *
+     * @param chunkTerms the chunk's analyzed term ids
+     * @param matcher automaton over the query keywords' term sequences
+     * @param occurrences scratch space with one slot per keyword
+     * @param lastStarts scratch space with one slot per keyword
      */
-    private Chunk scoreChunk(Chunk chunk, List<String> queryKeywords) {
-        String chunkText = (chunk.getText() + " " + chunk.getDocumentTitle()).toLowerCase();
-        
-        // Count how many query keywords appear in chunk (at least once)
+    private double scoreChunk(int[] chunkTerms, AhoCorasickMatcher matcher, int[] occurrences, int[] lastStarts) {
+        // Count every keyword in a single pass over the chunk, multi-term keywords as phrases
+        double proximity = matcher.countWithProximity(chunkTerms, occurrences, lastStarts);
+
         int matchingKeywords = 0;
         int totalOccurrences = 0;
-        
-        for (String keyword : queryKeywords) {
-            int count = countOccurrences(chunkText, keyword);
+        for (int count : occurrences) {
             if (count > 0) {
                 matchingKeywords++;
                 totalOccurrences += count;
@@ -91,18 +119,11 @@ public class InMemoryRetriever implements Retriever {
         }
         
         if (matchingKeywords == 0) {
-            return new Chunk(
-                    chunk.getChunkId(),
-                    chunk.getDocumentId(),
-                    chunk.getDocumentTitle(),
-                    chunk.getText(),
-                    chunk.getUrl(),
-                    0.0
-            );
+            return 0.0;
         }
         
         // Calculate base score: ratio of matching keywords
-        double baseScore = (double) matchingKeywords / queryKeywords.size();
+        double baseScore = (double) matchingKeywords / occurrences.length;
         
         // Boost score based on total occurrences (more occurrences = higher score)
         // Scale so that 2+ total occurrences gives 1.0 score
@@ -113,37 +134,9 @@ public class InMemoryRetriever implements Retriever {
         double score = (baseScore + occurrenceBoost) / 2.0;
         
         // Ensure minimum score of 0.8 if any keywords match
-        score = Math.max(0.8, score);
-        score = Math.min(1.0, score);
-        
-        // Return new Chunk with updated relevance score
-        return new Chunk(
-                chunk.getChunkId(),
-                chunk.getDocumentId(),
-                chunk.getDocumentTitle(),
-                chunk.getText(),
-                chunk.getUrl(),
-                score
-        );
-    }
+        score = Math.min(1.0, Math.max(0.8, score));
 
-    /**
-     * Counts occurrences of a keyword in text.
-     * Case-insensitive word boundary matching.
-     */
-    private int countOccurrences(String text, String keyword) {
-        if (text == null || keyword == null || text.isEmpty() || keyword.isEmpty()) {
-            return 0;
-        }
-        
-        int count = 0;
-        int index = 0;
-        
-        while ((index = text.indexOf(keyword, index)) != -1) {
-            count++;
-            index += keyword.length();
-        }
-        
-        return count;
+        // Keywords next to each other keep the full score; a single keyword has proximity 1.0
+        return RELEVANCE_THRESHOLD + (score - RELEVANCE_THRESHOLD) * (1.0 + proximity) / 2.0;
     }
 }
@@ -0,0 +1,185 @@
+package org.example.queryapi.retrieval;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Term to posting-list index over analyzed chunk text.
+ * Terms are ids from the knowledge base's {@link TermDictionary}; each posting list holds
+ * the ordinals of the chunks containing that term, in ascending order, with term frequencies
+ * and positions, compressed as described in {@link PostingList}.
+ * Chunk lengths (in terms) are kept alongside for length-normalized scoring.
+ * Built single-threaded by a segment and never modified once the segment is published.
+ */
+final class InvertedIndex {
+
+    private final Map<Integer, PostingList> postings = new HashMap<>();
+    private int[] chunkLengths = new int[16];
+    private int chunkCount;
+    private long totalLength;
+
+    /**
+     * Indexes the terms of a chunk under the given ordinal.
+     * Ordinals must be added in ascending order.
+     *
+     * @param ordinal chunk ordinal in the knowledge base
+     * @param termIds the chunk's analyzed terms, in text order
+     */
+    void add(int ordinal, int[] termIds) {
+        // Sorting (term id, position) pairs groups each term's positions in ascending order
+        long[] occurrences = new long[termIds.length];
+        for (int i = 0; i < termIds.length; i++) {
+            occurrences[i] = ((long) termIds[i] << 32) | i;
+        }
+        Arrays.sort(occurrences);
+        int[] positions = new int[termIds.length];
+        int start = 0;
+        while (start < occurrences.length) {
+            int termId = (int) (occurrences[start] >>> 32);
+            int end = start;
+            while (end < occurrences.length && (int) (occurrences[end] >>> 32) == termId) {
+                positions[end - start] = (int) occurrences[end];
+                end++;
+            }
+            postings.computeIfAbsent(termId, t -> new PostingList()).add(ordinal, positions, end - start);
+            start = end;
+        }
+
+        if (ordinal >= chunkLengths.length) {
+            chunkLengths = Arrays.copyOf(chunkLengths, Math.max(ordinal + 1, chunkLengths.length * 2));
+        }
+        chunkLengths[ordinal] = termIds.length;
+        chunkCount = Math.max(chunkCount, ordinal + 1);
+        totalLength += termIds.length;
+    }
+
+    /**
+     * Concatenates indexes of adjacent segments into one.
+     * Ordinals of each index are shifted by the chunk count of the indexes before it.
+     *
+     * @param indexes indexes in segment order, built over the same term dictionary
+     * @return a new index covering all chunks of the given indexes
+     */
+    static InvertedIndex merge(List<InvertedIndex> indexes) {
+        InvertedIndex merged = new InvertedIndex();
+        int totalChunks = indexes.stream().mapToInt(InvertedIndex::chunkCount).sum();
+        merged.chunkLengths = new int[Math.max(16, totalChunks)];
+
+        int offset = 0;
+        for (InvertedIndex index : indexes) {
+            for (Map.Entry<Integer, PostingList> entry : index.postings.entrySet()) {
+                merged.postings.computeIfAbsent(entry.getKey(), t -> new PostingList())
+                        .addAll(entry.getValue(), offset);
+            }
+            System.arraycopy(index.chunkLengths, 0, merged.chunkLengths, offset, index.chunkCount);
+            merged.totalLength += index.totalLength;
+            offset += index.chunkCount;
+        }
+        merged.chunkCount = offset;
+        merged.trimToSize();
+        return merged;
+    }
+
+    /**
+     * Releases spare posting-list capacity. Called once indexing of a segment is complete.
+     */
+    void trimToSize() {
+        for (PostingList termPostings : postings.values()) {
+            termPostings.trimToSize();
+        }
+        chunkLengths = Arrays.copyOf(chunkLengths, chunkCount);
+    }
+
+    /**
+     * Finds chunks containing at least one of the terms.
+     *
+     * @param termIds term ids; {@link TermDictionary#MISSING} entries match nothing
+     * @return ordinals of matching chunks
+     */
+    BitSet candidatesForAny(int[] termIds) {
+        BitSet candidates = new BitSet(chunkCount);
+        for (int termId : termIds) {
+            PostingList termPostings = postings.get(termId);
+            if (termPostings != null) {
+                termPostings.addTo(candidates);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Finds chunks containing at least one of the phrases, intersecting the posting lists
+     * of each phrase's terms and checking their positions, then taking the union over phrases.
+     * A phrase with a {@link TermDictionary#MISSING} or unindexed term matches nothing.
+     *
+     * @param phrases term id sequences, such as the terms of each query keyword
+     * @return ordinals of chunks containing a phrase contiguously
+     */
+    BitSet candidatesForAnyPhrase(int[][] phrases) {
+        BitSet candidates = new BitSet(chunkCount);
+        for (int[] phrase : phrases) {
+            PostingList[] lists = new PostingList[phrase.length];
+            boolean complete = true;
+            for (int i = 0; i < phrase.length && complete; i++) {
+                lists[i] = postings.get(phrase[i]);
+                complete = lists[i] != null;
+            }
+            if (!complete || lists.length == 0) {
+                continue;
+            }
+            if (lists.length == 1) {
+                lists[0].addTo(candidates);
+            } else {
+                PostingList.matchPhrase(lists, candidates);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Gets the posting list of a term.
+     *
+     * @return the posting list, or null if no chunk contains the term
+     */
+    PostingList postings(int termId) {
+        return postings.get(termId);
+    }
+
+    /**
+     * Gets the ids of all distinct terms in the index, in ascending order.
+     */
+    int[] termIds() {
+        return postings.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Gets the number of terms in a chunk.
+     */
+    int chunkLength(int ordinal) {
+        return chunkLengths[ordinal];
+    }
+
+    /**
+     * Gets the number of indexed chunks.
+     */
+    int chunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Gets the total number of terms over all indexed chunks.
+     */
+    long totalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Gets the number of distinct terms in the index.
+     */
+    int termCount() {
+        return postings.size();
+    }
+}
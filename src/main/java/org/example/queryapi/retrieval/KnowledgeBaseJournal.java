@@ -0,0 +1,367 @@
+package org.example.queryapi.retrieval;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.queryapi.domain.Chunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Durable ingestion path for the {@link InMemoryKnowledgeBase}.
+ *
+ * Every batch is appended to a write-ahead log with group commit before it is applied
+ * to the knowledge base. Periodically the log is rotated and the current snapshot is
+ * written as segment files; logs covered by a completed snapshot are then deleted.
+ * On startup the latest snapshot is loaded and only the log tail after it is replayed,
+ * so restart time is bounded by snapshot size plus one snapshot interval of appends.
+ * A log whose fsync failed refuses further batches; the next periodic snapshot rotates
+ * to a fresh log and ingestion resumes.
+ *
+ * Directory layout: {@code wal-N.log} files and {@code snapshot-N} directories, where
+ * {@code snapshot-N} holds everything logged in files with a sequence below N.
+ * Only additions are journaled; {@link InMemoryKnowledgeBase#clear()} is not.
+ * Active when {@code queryapi.knowledge-base.journal.directory} is set.
+ */
+@Component
+@ConditionalOnProperty(name = "queryapi.knowledge-base.journal.directory")
+public class KnowledgeBaseJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(KnowledgeBaseJournal.class);
+    private static final String WAL_PREFIX = "wal-";
+    private static final String WAL_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final InMemoryKnowledgeBase knowledgeBase;
+    private final Path directory;
+    private final long snapshotIntervalSeconds;
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private final Object orderLock = new Object();
+    private final Object applyLock = new Object();
+    private long nextTicket;
+    private long appliedTickets;
+    private final AtomicLong batchesSinceSnapshot = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+    private WriteAheadLog wal;
+    private long walSequence;
+
+    public KnowledgeBaseJournal(InMemoryKnowledgeBase knowledgeBase,
+                                @Value("${queryapi.knowledge-base.journal.directory}") String directory,
+                                @Value("${queryapi.knowledge-base.journal.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) {
+        this.knowledgeBase = knowledgeBase;
+        this.directory = Path.of(directory);
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    /**
+     * Recovers the knowledge base from disk and starts periodic snapshots.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        recover();
+        if (snapshotIntervalSeconds > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "knowledge-base-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::snapshotIfChanged,
+                    snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Loads the latest snapshot and replays the log tail into the (empty) knowledge base,
+     * then opens a fresh log for new appends.
+     *
+     * @throws IOException if the journal directory cannot be read
+     * @throws IllegalStateException if the knowledge base already holds chunks
+     */
+    void recover() throws IOException {
+        if (knowledgeBase.size() > 0) {
+            throw new IllegalStateException("Knowledge base must be empty before recovery");
+        }
+        Files.createDirectories(directory);
+        deleteTemporaryFiles();
+
+        long snapshotSequence = latestSnapshotSequence();
+        if (snapshotSequence >= 0) {
+            for (Path file : MappedSegmentWriter.segmentFiles(snapshotDirectory(snapshotSequence))) {
+                MappedSegment segment = MappedSegment.open(file);
+                List<Chunk> chunks = new ArrayList<>(segment.size());
+                for (int i = 0; i < segment.size(); i++) {
+                    chunks.add(segment.chunk(i));
+                }
+                knowledgeBase.addChunks(chunks);
+            }
+        }
+
+        long nextSequence = Math.max(snapshotSequence, 0);
+        for (long sequence : sequences(WAL_PREFIX, WAL_SUFFIX)) {
+            if (sequence >= snapshotSequence) {
+                WriteAheadLog.replay(walFile(sequence), knowledgeBase::addChunks);
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+        }
+
+        walSequence = nextSequence;
+        wal = WriteAheadLog.open(walFile(walSequence));
+    }
+
+    /**
+     * Durably logs a chunk and adds it to the knowledge base.
+     *
+     * @param chunk the chunk to add
+     */
+    public void addChunk(Chunk chunk) {
+        addChunks(List.of(chunk));
+    }
+
+    /**
+     * Durably logs a batch and then adds it to the knowledge base.
+     * Returns once the batch is on disk; concurrent callers share fsyncs.
+     * Batches are applied in log order, so replay reproduces the same chunk order.
+     *
+     * @param batch chunks to add, in order
+     * @throws UncheckedIOException if the batch cannot be logged; it is then not applied
+     */
+    public void addChunks(Collection<Chunk> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // Index before taking a turn so that batches are analyzed in parallel
+        List<Segment> stripes = knowledgeBase.stripe(batch);
+
+        rotationLock.readLock().lock();
+        try {
+            long ticket;
+            long end = 0;
+            IOException failure = null;
+            synchronized (orderLock) {
+                ticket = nextTicket++;
+                try {
+                    end = wal.write(batch);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure == null) {
+                try {
+                    wal.sync(end);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+
+            awaitTurn(ticket);
+            try {
+                if (failure == null) {
+                    knowledgeBase.publish(stripes);
+                    batchesSinceSnapshot.incrementAndGet();
+                }
+            } finally {
+                completeTurn();
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Failed to log knowledge base batch", failure);
+            }
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    private void awaitTurn(long ticket) {
+        boolean interrupted = false;
+        synchronized (applyLock) {
+            while (appliedTickets != ticket) {
+                try {
+                    applyLock.wait();
+                } catch (InterruptedException e) {
+                    // Skipping a turn would stall every later batch, so keep waiting
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void completeTurn() {
+        synchronized (applyLock) {
+            appliedTickets++;
+            applyLock.notifyAll();
+        }
+    }
+
+    /**
+     * Rotates the log, writes the current snapshot and deletes the logs it covers.
+     * Appends are only paused for the rotation, not while the snapshot is written.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            KnowledgeBaseSnapshot captured;
+            long coveredBelow;
+            rotationLock.writeLock().lock();
+            try {
+                wal.close();
+                walSequence++;
+                wal = WriteAheadLog.open(walFile(walSequence));
+                coveredBelow = walSequence;
+                captured = knowledgeBase.snapshot();
+                batchesSinceSnapshot.set(0);
+            } finally {
+                rotationLock.writeLock().unlock();
+            }
+
+            Path target = snapshotDirectory(coveredBelow);
+            Path temporary = directory.resolve(target.getFileName() + TEMPORARY_SUFFIX);
+            deleteRecursively(temporary);
+            for (Path file : new MappedSegmentWriter().write(captured.getChunks(), temporary)) {
+                force(file);
+            }
+            forceDirectory(temporary);
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(directory);
+
+            for (long sequence : sequences(WAL_PREFIX, WAL_SUFFIX)) {
+                if (sequence < coveredBelow) {
+                    Files.deleteIfExists(walFile(sequence));
+                }
+            }
+            for (long sequence : sequences(SNAPSHOT_PREFIX, "")) {
+                if (sequence < coveredBelow) {
+                    deleteRecursively(snapshotDirectory(sequence));
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops periodic snapshots and closes the log.
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        rotationLock.writeLock().lock();
+        try {
+            if (wal != null) {
+                wal.close();
+                wal = null;
+            }
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+    }
+
+    private void snapshotIfChanged() {
+        if (batchesSinceSnapshot.get() == 0 && !walFailed()) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            // Logs are only deleted after a snapshot completes, so a failed attempt loses nothing
+            log.warn("Knowledge base snapshot failed; will retry at next interval", e);
+        }
+    }
+
+    private boolean walFailed() {
+        rotationLock.readLock().lock();
+        try {
+            return wal != null && wal.failed();
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    private long latestSnapshotSequence() throws IOException {
+        List<Long> snapshots = sequences(SNAPSHOT_PREFIX, "");
+        return snapshots.isEmpty() ? -1 : snapshots.get(snapshots.size() - 1);
+    }
+
+    /**
+     * Lists the sequence numbers of entries named prefix + number + suffix, ascending.
+     */
+    private List<Long> sequences(String prefix, String suffix) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+                    .filter(number -> !number.isEmpty() && number.chars().allMatch(Character::isDigit))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path walFile(long sequence) {
+        return directory.resolve(String.format("%s%010d%s", WAL_PREFIX, sequence, WAL_SUFFIX));
+    }
+
+    private Path snapshotDirectory(long sequence) {
+        return directory.resolve(String.format("%s%010d", SNAPSHOT_PREFIX, sequence));
+    }
+
+    private void deleteTemporaryFiles() throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path path : entries.filter(path -> path.getFileName().toString().endsWith(TEMPORARY_SUFFIX)).toList()) {
+                deleteRecursively(path);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path entry : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static void forceDirectory(Path path) {
+        // Directory fsync is needed on Linux for renames to survive a crash; not every platform allows it
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not fsync directory {}", path, e);
+        }
+    }
+}
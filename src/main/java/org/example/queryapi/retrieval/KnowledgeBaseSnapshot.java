@@ -0,0 +1,227 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Immutable, versioned view of the knowledge base.
+ * A snapshot never changes after it is published; every write publishes a new
+ * snapshot with a higher version, so readers and caches can key off the version.
+ * Chunks are addressed by corpus-wide ordinals in insertion order.
+ *
+ * The chunks are striped across one or more {@link Shard}s, each with its own
+ * indexes, so a query can score the shards in parallel and merge their local top-k.
+ */
+public final class KnowledgeBaseSnapshot {
+
+    private final long version;
+    private final List<Shard> shards;
+    private final int size;
+    private final long totalLength;
+
+    KnowledgeBaseSnapshot(long version, List<Shard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A snapshot needs at least one shard");
+        }
+        this.version = version;
+        this.shards = List.copyOf(shards);
+        int chunks = 0;
+        long length = 0;
+        for (Shard shard : shards) {
+            chunks += shard.size();
+            length += shard.totalLength();
+        }
+        this.size = chunks;
+        this.totalLength = length;
+    }
+
+    static KnowledgeBaseSnapshot empty(long version, int shardCount) {
+        return new KnowledgeBaseSnapshot(version, Collections.nCopies(shardCount, Shard.empty()));
+    }
+
+    /**
+     * Gets the version of this snapshot. Versions increase with every published write.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of chunks in this snapshot.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the chunk at a corpus-wide ordinal.
+     *
+     * @param ordinal ordinal in [0, size)
+     * @return the chunk
+     */
+    public Chunk getChunk(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " out of bounds for size " + size);
+        }
+        return shards.get(ordinal % shards.size()).chunk(ordinal / shards.size());
+    }
+
+    /**
+     * Gets all chunks as an unmodifiable view in insertion order. No copy is made.
+     */
+    public List<Chunk> getChunks() {
+        return new ChunkView();
+    }
+
+    List<Shard> shards() {
+        return shards;
+    }
+
+    /**
+     * Maps a shard ordinal to the corpus-wide ordinal of the same chunk.
+     */
+    int ordinal(int shardIndex, int shardOrdinal) {
+        return shardOrdinal * shards.size() + shardIndex;
+    }
+
+    /**
+     * Gets the number of chunks containing the term, summed over all shards.
+     */
+    int documentFrequency(int termId) {
+        int frequency = 0;
+        for (Shard shard : shards) {
+            frequency += shard.documentFrequency(termId);
+        }
+        return frequency;
+    }
+
+    /**
+     * Resolves a filter into the corpus-wide ordinals it allows, using the metadata
+     * indexes of the segments. Costs time in proportion to the allowed chunks.
+     *
+     * @return allowed ordinals, or null if the filter is empty and every chunk is allowed
+     */
+    BitSet select(RetrievalFilter filter) {
+        if (filter.isEmpty()) {
+            return null;
+        }
+        BitSet allowed = new BitSet(size);
+        for (int s = 0; s < shards.size(); s++) {
+            Shard shard = shards.get(s);
+            List<Segment> segments = shard.segments();
+            for (int g = 0; g < segments.size(); g++) {
+                BitSet local = segments.get(g).metadata().select(filter);
+                int base = shard.base(g);
+                for (int i = local.nextSetBit(0); i >= 0; i = local.nextSetBit(i + 1)) {
+                    allowed.set(ordinal(s, base + i));
+                }
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Gets the average number of terms per chunk.
+     */
+    double averageChunkLength() {
+        return size == 0 ? 0.0 : (double) totalLength / size;
+    }
+
+    /**
+     * Scatters a query over the shards and gathers the k best results.
+     *
+     * Each shard is scored into its own top-k by the scorer, in parallel on the common
+     * {@link ForkJoinPool} when there is more than one shard, and the shard results are
+     * merged. Since ties rank by ordinal, the result does not depend on shard timing.
+     *
+     * @param k number of results to keep
+     * @param scorer offers a shard's candidates under corpus-wide ordinals
+     * @return collector holding the k best candidates across all shards, not yet drained
+     */
+    TopKCollector collectTopK(int k, ShardScorer scorer) {
+        if (shards.size() == 1) {
+            TopKCollector topK = new TopKCollector(Math.min(k, size));
+            scorer.score(0, shards.get(0), topK);
+            return topK;
+        }
+        return ForkJoinPool.commonPool().invoke(new ScatterTask(k, scorer, 0, shards.size()));
+    }
+
+    /**
+     * Scores the chunks of one shard.
+     */
+    @FunctionalInterface
+    interface ShardScorer {
+
+        /**
+         * @param shardIndex position of the shard, for {@link #ordinal(int, int)}
+         * @param shard the shard to score
+         * @param topK collector to offer candidates to, keyed by corpus-wide ordinal
+         */
+        void score(int shardIndex, Shard shard, TopKCollector topK);
+    }
+
+    /**
+     * Splits the shard range in halves until a single shard remains, then merges upwards.
+     */
+    private final class ScatterTask extends RecursiveTask<TopKCollector> {
+
+        private final int k;
+        private final ShardScorer scorer;
+        private final int from;
+        private final int to;
+
+        private ScatterTask(int k, ShardScorer scorer, int from, int to) {
+            this.k = k;
+            this.scorer = scorer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopKCollector compute() {
+            if (to - from == 1) {
+                Shard shard = shards.get(from);
+                TopKCollector topK = new TopKCollector(Math.min(k, shard.size()));
+                scorer.score(from, shard, topK);
+                return topK;
+            }
+            int middle = (from + to) >>> 1;
+            ScatterTask left = new ScatterTask(k, scorer, from, middle);
+            left.fork();
+            TopKCollector right = new ScatterTask(k, scorer, middle, to).compute();
+            return merge(left.join(), right);
+        }
+
+        private TopKCollector merge(TopKCollector left, TopKCollector right) {
+            TopKCollector merged = new TopKCollector(Math.min(k, left.size() + right.size()));
+            for (TopKCollector part : List.of(left, right)) {
+                int count = part.drain();
+                for (int rank = 0; rank < count; rank++) {
+                    merged.offer(part.ordinalAt(rank), part.scoreAt(rank));
+                }
+            }
+            return merged;
+        }
+    }
+
+    private final class ChunkView extends AbstractList<Chunk> implements RandomAccess {
+
+        @Override
+        public Chunk get(int index) {
+            return getChunk(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
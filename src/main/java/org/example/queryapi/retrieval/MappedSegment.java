@@ -0,0 +1,240 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Read-only view of a segment file mapped with {@link FileChannel#map}.
+ * Opening only validates the header; chunk text, metadata and postings are read
+ * straight from the mapping on demand and never copied onto the heap in bulk.
+ *
+ * File layout (big-endian):
+ * <pre>
+ * header     magic, format version, chunk count, term count, total length (long),
+ *            chunk table / term table / postings / strings offsets (int each)
+ * chunks     per chunk: id, document id, title, text, url string refs, term count and tags string ref
+ * terms      per term, sorted by UTF-8 bytes: term string ref, postings ref, document frequency
+ * postings   per term: document frequency x (local ordinal, term frequency)
+ * strings    per string: byte length followed by UTF-8 bytes
+ * </pre>
+ * String refs are offsets into the strings section; a null url is stored as -1.
+ * Tags are stored as one string joined by {@value #TAG_SEPARATOR}, -1 when there are none.
+ * Version 1 files have no tags ref and 24-byte chunk records; they are still readable.
+ */
+final class MappedSegment {
+
+    static final int MAGIC = 0x4B425347; // "KBSG"
+    static final int FORMAT_VERSION = 2;
+    static final int HEADER_BYTES = 40;
+    static final int CHUNK_RECORD_BYTES = 28;
+    static final int V1_CHUNK_RECORD_BYTES = 24;
+    static final char TAG_SEPARATOR = '\u001F';
+    static final int TERM_RECORD_BYTES = 12;
+    static final int POSTING_BYTES = 8;
+    static final int NULL_REF = -1;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int chunkCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int chunkTable;
+    private final int termTable;
+    private final int postings;
+    private final int strings;
+    private final int chunkRecordBytes;
+
+    private MappedSegment(Path file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new RetrievalException("Not a knowledge base segment file: " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION && version != 1) {
+            throw new RetrievalException("Unsupported segment format version " + version + " in " + file);
+        }
+        this.chunkRecordBytes = version == 1 ? V1_CHUNK_RECORD_BYTES : CHUNK_RECORD_BYTES;
+        this.chunkCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.totalLength = buffer.getLong(16);
+        this.chunkTable = buffer.getInt(24);
+        this.termTable = buffer.getInt(28);
+        this.postings = buffer.getInt(32);
+        this.strings = buffer.getInt(36);
+    }
+
+    /**
+     * Maps a segment file read-only. The mapping stays valid after the channel is closed.
+     *
+     * @param file segment file written by {@link MappedSegmentWriter}
+     * @return the mapped segment
+     * @throws IOException if the file cannot be opened or mapped
+     * @throws RetrievalException if the file is not a supported segment
+     */
+    static MappedSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new RetrievalException("Segment file exceeds 2 GiB: " + file);
+            }
+            return new MappedSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int size() {
+        return chunkCount;
+    }
+
+    long totalLength() {
+        return totalLength;
+    }
+
+    int chunkLength(int localOrdinal) {
+        return buffer.getInt(chunkRecord(localOrdinal) + 20);
+    }
+
+    /**
+     * Decodes the chunk at a local ordinal from the mapping.
+     */
+    Chunk chunk(int localOrdinal) {
+        int record = chunkRecord(localOrdinal);
+        return new Chunk(
+                string(buffer.getInt(record)),
+                string(buffer.getInt(record + 4)),
+                string(buffer.getInt(record + 8)),
+                string(buffer.getInt(record + 12)),
+                string(buffer.getInt(record + 16)),
+                tags(localOrdinal),
+                0.0
+        );
+    }
+
+    /**
+     * Decodes the document id of the chunk at a local ordinal without its text.
+     */
+    String documentId(int localOrdinal) {
+        return string(buffer.getInt(chunkRecord(localOrdinal) + 4));
+    }
+
+    /**
+     * Decodes the document title of the chunk at a local ordinal without its text.
+     */
+    String documentTitle(int localOrdinal) {
+        return string(buffer.getInt(chunkRecord(localOrdinal) + 8));
+    }
+
+    /**
+     * Decodes the url of the chunk at a local ordinal without its text.
+     */
+    String url(int localOrdinal) {
+        return string(buffer.getInt(chunkRecord(localOrdinal) + 16));
+    }
+
+    /**
+     * Decodes the tags of the chunk at a local ordinal; empty for version 1 files.
+     */
+    List<String> tags(int localOrdinal) {
+        if (chunkRecordBytes == V1_CHUNK_RECORD_BYTES) {
+            return List.of();
+        }
+        String joined = string(buffer.getInt(chunkRecord(localOrdinal) + 24));
+        return joined == null ? List.of() : List.of(joined.split(String.valueOf(TAG_SEPARATOR), -1));
+    }
+
+    /**
+     * Looks up a term in the sorted term table by binary search over the mapped bytes.
+     *
+     * @param term UTF-8 bytes of the term
+     * @return the term's index in the table, or -1 if absent
+     */
+    int findTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compareString(buffer.getInt(termTable + mid * TERM_RECORD_BYTES), term);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the number of chunks in this segment containing the term at a term index.
+     */
+    int documentFrequency(int termIndex) {
+        return buffer.getInt(termTable + termIndex * TERM_RECORD_BYTES + 8);
+    }
+
+    /**
+     * Gets the absolute buffer position of the first posting of the term at a term index.
+     */
+    int postingsStart(int termIndex) {
+        return postings + buffer.getInt(termTable + termIndex * TERM_RECORD_BYTES + 4);
+    }
+
+    /**
+     * Reads the local ordinal of a posting at an absolute position.
+     */
+    int postingOrdinal(int position) {
+        return buffer.getInt(position);
+    }
+
+    /**
+     * Reads the term frequency of a posting at an absolute position.
+     */
+    int postingTermFrequency(int position) {
+        return buffer.getInt(position + 4);
+    }
+
+    private int chunkRecord(int localOrdinal) {
+        if (localOrdinal < 0 || localOrdinal >= chunkCount) {
+            throw new IndexOutOfBoundsException("Ordinal " + localOrdinal + " out of bounds for size " + chunkCount);
+        }
+        return chunkTable + localOrdinal * chunkRecordBytes;
+    }
+
+    private String string(int ref) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        int position = strings + ref;
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares a mapped string with the given bytes in unsigned lexicographic order,
+     * the same order the writer sorts terms in.
+     */
+    private int compareString(int ref, byte[] other) {
+        int position = strings + ref;
+        int length = buffer.getInt(position);
+        int common = Math.min(length, other.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(position + 4 + i), other[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, other.length);
+    }
+}
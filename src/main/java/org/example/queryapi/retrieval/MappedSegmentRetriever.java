@@ -0,0 +1,190 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * BM25 retriever served directly from memory-mapped segment files.
+ * Startup only maps the files and reads their headers, so queries can be answered
+ * immediately with no deserialization pause; chunk text stays off-heap in the page
+ * cache and only the returned chunks are decoded. The metadata bitsets used by filters
+ * are built per segment on the first filtered query, keeping startup free of them.
+ * Active when {@code queryapi.retrieval.strategy} is {@code mapped}; segment files are
+ * read from {@code queryapi.retrieval.mapped.directory}.
+ */
+@Component
+@ConditionalOnProperty(name = "queryapi.retrieval.strategy", havingValue = "mapped")
+public class MappedSegmentRetriever implements Retriever {
+
+    private static final double RELEVANCE_THRESHOLD = 0.8;
+
+    private final List<MappedSegment> segments;
+    private final int[] bases;
+    private final int size;
+    private final double averageChunkLength;
+    private final AtomicReferenceArray<MetadataIndex> metadata;
+
+    public MappedSegmentRetriever(@Value("${queryapi.retrieval.mapped.directory}") String directory) {
+        this(openAll(Path.of(directory)));
+    }
+
+    MappedSegmentRetriever(List<MappedSegment> segments) {
+        this.segments = List.copyOf(segments);
+        this.bases = new int[segments.size()];
+        int base = 0;
+        long totalLength = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            bases[i] = base;
+            base += segments.get(i).size();
+            totalLength += segments.get(i).totalLength();
+        }
+        this.size = base;
+        this.averageChunkLength = base == 0 ? 0.0 : (double) totalLength / base;
+        this.metadata = new AtomicReferenceArray<>(segments.size());
+    }
+
+    /**
+     * Maps every segment file in a directory.
+     *
+     * @param directory directory written by {@link MappedSegmentWriter}
+     * @return a retriever over all segments in the directory
+     * @throws RetrievalException if the directory or a segment cannot be opened
+     */
+    public static MappedSegmentRetriever open(Path directory) {
+        return new MappedSegmentRetriever(openAll(directory));
+    }
+
+    /**
+     * Gets the number of chunks across all mapped segments.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<Chunk> retrieve(String query, int maxChunks, RetrievalFilter filter) {
+        if (query == null || query.isBlank() || size == 0 || maxChunks <= 0) {
+            return List.of();
+        }
+
+        Set<String> queryTerms = new LinkedHashSet<>(Analyzer.standard().analyze(query));
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        BitSet[] allowed = new BitSet[segments.size()];
+        for (int s = 0; s < segments.size(); s++) {
+            allowed[s] = filter.isEmpty() ? null : metadata(s).select(filter);
+        }
+
+        double idealScore = 0.0;
+        ScoreAccumulator scores = ScoreAccumulator.acquire(size);
+        try {
+            for (String term : queryTerms) {
+                byte[] termBytes = term.getBytes(StandardCharsets.UTF_8);
+                int[] termIndexes = new int[segments.size()];
+                int documentFrequency = 0;
+                for (int s = 0; s < segments.size(); s++) {
+                    termIndexes[s] = segments.get(s).findTerm(termBytes);
+                    if (termIndexes[s] >= 0) {
+                        documentFrequency += segments.get(s).documentFrequency(termIndexes[s]);
+                    }
+                }
+                if (documentFrequency == 0) {
+                    // Terms absent from the corpus carry no evidence either way
+                    continue;
+                }
+
+                double idf = Bm25Retriever.idf(documentFrequency, size);
+                idealScore += idf;
+
+                for (int s = 0; s < segments.size(); s++) {
+                    if (termIndexes[s] < 0) {
+                        continue;
+                    }
+                    MappedSegment segment = segments.get(s);
+                    int position = segment.postingsStart(termIndexes[s]);
+                    int count = segment.documentFrequency(termIndexes[s]);
+                    for (int i = 0; i < count; i++, position += MappedSegment.POSTING_BYTES) {
+                        int local = segment.postingOrdinal(position);
+                        if (allowed[s] != null && !allowed[s].get(local)) {
+                            continue;
+                        }
+                        double weight = Bm25Retriever.termWeight(
+                                segment.postingTermFrequency(position), segment.chunkLength(local), averageChunkLength);
+                        scores.add(bases[s] + local, idf * weight);
+                    }
+                }
+            }
+
+            TopKCollector topK = new TopKCollector(Math.min(maxChunks, scores.touchedCount()));
+            for (int i = 0; i < scores.touchedCount(); i++) {
+                int ordinal = scores.touchedAt(i);
+                double score = scores.score(ordinal);
+                if (Bm25Retriever.normalize(score, idealScore) >= RELEVANCE_THRESHOLD) {
+                    topK.offer(ordinal, score);
+                }
+            }
+
+            int count = topK.drain();
+            List<Chunk> result = new ArrayList<>(count);
+            for (int rank = 0; rank < count; rank++) {
+                Chunk chunk = chunk(topK.ordinalAt(rank));
+                result.add(chunk.withRelevanceScore(Bm25Retriever.normalize(topK.scoreAt(rank), idealScore)));
+            }
+            return result;
+        } finally {
+            scores.release();
+        }
+    }
+
+    /**
+     * Gets the metadata index of a segment, building it from the mapped chunk records on first use.
+     */
+    private MetadataIndex metadata(int s) {
+        MetadataIndex index = metadata.get(s);
+        if (index != null) {
+            return index;
+        }
+        MappedSegment segment = segments.get(s);
+        MetadataIndex.Builder builder = new MetadataIndex.Builder();
+        for (int i = 0; i < segment.size(); i++) {
+            builder.add(i, segment.documentId(i), segment.documentTitle(i), segment.url(i), segment.tags(i));
+        }
+        // Concurrent first queries may both build it; the indexes are equal, so either wins
+        metadata.compareAndSet(s, null, builder.build(segment.size()));
+        return metadata.get(s);
+    }
+
+    private Chunk chunk(int ordinal) {
+        int position = Arrays.binarySearch(bases, ordinal);
+        // Segment files are never empty, so an exact hit is the segment starting at the ordinal
+        int s = position >= 0 ? position : -position - 2;
+        return segments.get(s).chunk(ordinal - bases[s]);
+    }
+
+    private static List<MappedSegment> openAll(Path directory) {
+        try {
+            List<MappedSegment> segments = new ArrayList<>();
+            for (Path file : MappedSegmentWriter.segmentFiles(directory)) {
+                segments.add(MappedSegment.open(file));
+            }
+            return segments;
+        } catch (IOException e) {
+            throw new RetrievalException("Failed to map knowledge base segments in " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Writes chunks to segment files readable by {@link MappedSegment}.
+ * Chunks are split across several files so that each one stays below the
+ * configured size and can be mapped as a single buffer.
+ */
+public class MappedSegmentWriter {
+
+    static final long DEFAULT_MAX_SEGMENT_BYTES = 1L << 30;
+    private static final String FILE_PREFIX = "segment-";
+    private static final String FILE_SUFFIX = ".seg";
+
+    private final long maxSegmentBytes;
+
+    public MappedSegmentWriter() {
+        this(DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param maxSegmentBytes approximate upper bound on the size of one segment file
+     */
+    public MappedSegmentWriter(long maxSegmentBytes) {
+        if (maxSegmentBytes <= 0 || maxSegmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxSegmentBytes must be in (0, 2 GiB)");
+        }
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Writes chunks, in order, to new segment files in a directory.
+     * Each file is written under a temporary name and moved into place once complete.
+     *
+     * @param chunks chunks to write
+     * @param directory target directory, created if missing; must not already hold segments
+     * @return the written segment files in chunk order
+     * @throws IOException if writing fails or the directory already holds segments
+     */
+    public List<Path> write(List<Chunk> chunks, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        if (!segmentFiles(directory).isEmpty()) {
+            throw new FileAlreadyExistsException(directory.toString(), null, "directory already holds segment files");
+        }
+
+        List<Path> files = new ArrayList<>();
+        int start = 0;
+        long estimate = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            long chunkEstimate = estimateBytes(chunks.get(i));
+            if (i > start && estimate + chunkEstimate > maxSegmentBytes) {
+                files.add(writeSegment(chunks.subList(start, i), directory, files.size()));
+                start = i;
+                estimate = 0;
+            }
+            estimate += chunkEstimate;
+        }
+        if (start < chunks.size()) {
+            files.add(writeSegment(chunks.subList(start, chunks.size()), directory, files.size()));
+        }
+        return files;
+    }
+
+    /**
+     * Lists the segment files in a directory in chunk order.
+     */
+    static List<Path> segmentFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path writeSegment(List<Chunk> chunks, Path directory, int sequence) throws IOException {
+        // Term ids are local to this file; only the term strings are written
+        TermDictionary dictionary = new TermDictionary();
+        InvertedIndex index = Segment.build(chunks, Analyzer.standard(), dictionary).index();
+
+        StringTable strings = new StringTable();
+        int fields = MappedSegment.CHUNK_RECORD_BYTES / Integer.BYTES;
+        int[] chunkRecords = new int[chunks.size() * fields];
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            chunkRecords[i * fields] = strings.ref(chunk.getChunkId());
+            chunkRecords[i * fields + 1] = strings.ref(chunk.getDocumentId());
+            chunkRecords[i * fields + 2] = strings.ref(chunk.getDocumentTitle());
+            chunkRecords[i * fields + 3] = strings.ref(chunk.getText());
+            chunkRecords[i * fields + 4] = strings.ref(chunk.getUrl());
+            chunkRecords[i * fields + 5] = index.chunkLength(i);
+            chunkRecords[i * fields + 6] = strings.ref(chunk.getTags().isEmpty()
+                    ? null : String.join(String.valueOf(MappedSegment.TAG_SEPARATOR), chunk.getTags()));
+        }
+
+        // Terms are sorted by their UTF-8 bytes so readers can binary search without decoding
+        int[] termIds = index.termIds();
+        List<byte[]> sortedTerms = new ArrayList<>(termIds.length);
+        for (int termId : termIds) {
+            sortedTerms.add(dictionary.term(termId).getBytes(StandardCharsets.UTF_8));
+        }
+        sortedTerms.sort(Arrays::compareUnsigned);
+
+        int termCount = sortedTerms.size();
+        int[] termRecords = new int[termCount * 3];
+        long postingBytes = 0;
+        for (int t = 0; t < termCount; t++) {
+            String term = new String(sortedTerms.get(t), StandardCharsets.UTF_8);
+            PostingList postings = index.postings(dictionary.id(term));
+            termRecords[t * 3] = strings.ref(term);
+            termRecords[t * 3 + 1] = (int) postingBytes;
+            termRecords[t * 3 + 2] = postings.size();
+            postingBytes += (long) postings.size() * MappedSegment.POSTING_BYTES;
+        }
+
+        long chunkTable = MappedSegment.HEADER_BYTES;
+        long termTable = chunkTable + (long) chunks.size() * MappedSegment.CHUNK_RECORD_BYTES;
+        long postingsStart = termTable + (long) termCount * MappedSegment.TERM_RECORD_BYTES;
+        long stringsStart = postingsStart + postingBytes;
+        long fileBytes = stringsStart + strings.size();
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IOException("Segment of " + chunks.size() + " chunks exceeds 2 GiB; lower maxSegmentBytes");
+        }
+
+        Path target = directory.resolve(String.format("%s%05d%s", FILE_PREFIX, sequence, FILE_SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MappedSegment.MAGIC);
+            out.writeInt(MappedSegment.FORMAT_VERSION);
+            out.writeInt(chunks.size());
+            out.writeInt(termCount);
+            out.writeLong(index.totalLength());
+            out.writeInt((int) chunkTable);
+            out.writeInt((int) termTable);
+            out.writeInt((int) postingsStart);
+            out.writeInt((int) stringsStart);
+
+            for (int value : chunkRecords) {
+                out.writeInt(value);
+            }
+            for (int value : termRecords) {
+                out.writeInt(value);
+            }
+            for (byte[] term : sortedTerms) {
+                PostingList postings = index.postings(dictionary.id(new String(term, StandardCharsets.UTF_8)));
+                PostingList.Cursor cursor = postings.cursor();
+                for (int ordinal = cursor.next(); ordinal != PostingList.END; ordinal = cursor.next()) {
+                    out.writeInt(ordinal);
+                    out.writeInt(cursor.termFrequency());
+                }
+            }
+            strings.writeTo(out);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * Conservative size estimate used to split chunks across files: worst-case UTF-8
+     * text plus records and at most one posting per character.
+     */
+    private static long estimateBytes(Chunk chunk) {
+        long characters = length(chunk.getChunkId()) + length(chunk.getDocumentId())
+                + length(chunk.getDocumentTitle()) + length(chunk.getText()) + length(chunk.getUrl())
+                + chunk.getTags().stream().mapToLong(tag -> length(tag) + 1).sum();
+        return MappedSegment.CHUNK_RECORD_BYTES + 20 + 3 * characters + MappedSegment.POSTING_BYTES * characters;
+    }
+
+    private static long length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * Deduplicating buffer of length-prefixed UTF-8 strings.
+     */
+    private static final class StringTable {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> refs = new HashMap<>();
+
+        int ref(String value) throws IOException {
+            if (value == null) {
+                return MappedSegment.NULL_REF;
+            }
+            Integer existing = refs.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            int ref = bytes.size();
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+            refs.put(value, ref);
+            return ref;
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            bytes.writeTo(target);
+        }
+    }
+}
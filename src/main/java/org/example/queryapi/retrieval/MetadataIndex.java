@@ -0,0 +1,232 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Precomputed chunk sets per metadata value of a segment: per document id, lowercased
+ * document title, url host and tag. A {@link RetrievalFilter} is resolved into a bitset
+ * of allowed local ordinals by OR-ing the sets of the values it names and AND-ing the
+ * criteria, so retrievers can restrict candidates before scoring them.
+ *
+ * A value held by at least one chunk in {@value #DENSE_RATIO} is kept as a bitset;
+ * rarer values, such as most document ids, as a sorted ordinal array, which costs less
+ * than a bitset spanning the whole segment. Immutable once built.
+ */
+final class MetadataIndex {
+
+    private static final int DENSE_RATIO = 32;
+
+    private final int size;
+    private final Map<String, Ordinals> documents;
+    private final NavigableMap<String, Ordinals> titles;
+    private final Map<String, Ordinals> hosts;
+    private final Map<String, Ordinals> tags;
+
+    private MetadataIndex(int size, Map<String, Ordinals> documents, NavigableMap<String, Ordinals> titles,
+                          Map<String, Ordinals> hosts, Map<String, Ordinals> tags) {
+        this.size = size;
+        this.documents = documents;
+        this.titles = titles;
+        this.hosts = hosts;
+        this.tags = tags;
+    }
+
+    /**
+     * Indexes the metadata of a batch of chunks under their positions in the list.
+     */
+    static MetadataIndex build(List<Chunk> chunks) {
+        Builder builder = new Builder();
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            builder.add(i, chunk.getDocumentId(), chunk.getDocumentTitle(), chunk.getUrl(), chunk.getTags());
+        }
+        return builder.build(chunks.size());
+    }
+
+    /**
+     * Concatenates indexes of adjacent segments into one.
+     * Ordinals of each index are shifted by the sizes of the indexes before it.
+     */
+    static MetadataIndex merge(List<MetadataIndex> indexes) {
+        Builder builder = new Builder();
+        int offset = 0;
+        for (MetadataIndex index : indexes) {
+            builder.addAll(builder.documents, index.documents, offset);
+            builder.addAll(builder.titles, index.titles, offset);
+            builder.addAll(builder.hosts, index.hosts, offset);
+            builder.addAll(builder.tags, index.tags, offset);
+            offset += index.size;
+        }
+        return builder.build(offset);
+    }
+
+    /**
+     * Resolves a filter into the local ordinals it allows.
+     *
+     * @return allowed ordinals, or null if the filter is empty and every chunk is allowed
+     */
+    BitSet select(RetrievalFilter filter) {
+        if (filter.isEmpty()) {
+            return null;
+        }
+        BitSet allowed = null;
+        if (!filter.getDocumentIds().isEmpty()) {
+            allowed = and(allowed, union(documents, filter.getDocumentIds()));
+        }
+        if (filter.getTitlePrefix() != null) {
+            BitSet matching = new BitSet(size);
+            String prefix = filter.getTitlePrefix();
+            for (Map.Entry<String, Ordinals> entry : titles.tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    break;
+                }
+                entry.getValue().addTo(matching);
+            }
+            allowed = and(allowed, matching);
+        }
+        if (filter.getUrlHost() != null) {
+            allowed = and(allowed, union(hosts, Set.of(filter.getUrlHost())));
+        }
+        if (!filter.getTags().isEmpty()) {
+            allowed = and(allowed, union(tags, filter.getTags()));
+        }
+        return allowed;
+    }
+
+    private BitSet union(Map<String, Ordinals> values, Set<String> keys) {
+        BitSet matching = new BitSet(size);
+        for (String key : keys) {
+            Ordinals ordinals = values.get(key);
+            if (ordinals != null) {
+                ordinals.addTo(matching);
+            }
+        }
+        return matching;
+    }
+
+    private static BitSet and(BitSet allowed, BitSet criterion) {
+        if (allowed == null) {
+            return criterion;
+        }
+        allowed.and(criterion);
+        return allowed;
+    }
+
+    /**
+     * Set of local ordinals, as a bitset when dense and a sorted array otherwise.
+     */
+    private static final class Ordinals {
+
+        private final int[] sparse;
+        private final BitSet dense;
+
+        private Ordinals(int[] sparse, BitSet dense) {
+            this.sparse = sparse;
+            this.dense = dense;
+        }
+
+        static Ordinals of(int[] ordinals, int count, int segmentSize) {
+            if ((long) count * DENSE_RATIO >= segmentSize) {
+                BitSet bits = new BitSet(segmentSize);
+                for (int i = 0; i < count; i++) {
+                    bits.set(ordinals[i]);
+                }
+                return new Ordinals(null, bits);
+            }
+            return new Ordinals(Arrays.copyOf(ordinals, count), null);
+        }
+
+        void addTo(BitSet bits) {
+            if (dense != null) {
+                bits.or(dense);
+                return;
+            }
+            for (int ordinal : sparse) {
+                bits.set(ordinal);
+            }
+        }
+
+        void appendTo(OrdinalsBuilder builder, int offset) {
+            if (dense != null) {
+                for (int i = dense.nextSetBit(0); i >= 0; i = dense.nextSetBit(i + 1)) {
+                    builder.add(i + offset);
+                }
+                return;
+            }
+            for (int ordinal : sparse) {
+                builder.add(ordinal + offset);
+            }
+        }
+    }
+
+    private static final class OrdinalsBuilder {
+
+        private int[] ordinals = new int[4];
+        private int count;
+
+        void add(int ordinal) {
+            // A chunk may repeat a tag; ordinals arrive in ascending order
+            if (count > 0 && ordinals[count - 1] == ordinal) {
+                return;
+            }
+            if (count == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, count * 2);
+            }
+            ordinals[count++] = ordinal;
+        }
+    }
+
+    /**
+     * Accumulates ordinals per metadata value before they are frozen into {@link Ordinals}.
+     * Ordinals must be added in ascending order.
+     */
+    static final class Builder {
+
+        private final Map<String, OrdinalsBuilder> documents = new HashMap<>();
+        private final Map<String, OrdinalsBuilder> titles = new HashMap<>();
+        private final Map<String, OrdinalsBuilder> hosts = new HashMap<>();
+        private final Map<String, OrdinalsBuilder> tags = new HashMap<>();
+
+        void add(int ordinal, String documentId, String title, String url, List<String> chunkTags) {
+            if (documentId != null) {
+                documents.computeIfAbsent(documentId, k -> new OrdinalsBuilder()).add(ordinal);
+            }
+            titles.computeIfAbsent(RetrievalFilter.normalizeTitle(title), k -> new OrdinalsBuilder()).add(ordinal);
+            String host = RetrievalFilter.host(url);
+            if (host != null) {
+                hosts.computeIfAbsent(host, k -> new OrdinalsBuilder()).add(ordinal);
+            }
+            for (String tag : chunkTags) {
+                tags.computeIfAbsent(tag, k -> new OrdinalsBuilder()).add(ordinal);
+            }
+        }
+
+        MetadataIndex build(int size) {
+            return new MetadataIndex(size, freeze(documents, new HashMap<>(), size), freeze(titles, new TreeMap<>(), size),
+                    freeze(hosts, new HashMap<>(), size), freeze(tags, new HashMap<>(), size));
+        }
+
+        private void addAll(Map<String, OrdinalsBuilder> target, Map<String, Ordinals> source, int offset) {
+            for (Map.Entry<String, Ordinals> entry : source.entrySet()) {
+                entry.getValue().appendTo(target.computeIfAbsent(entry.getKey(), k -> new OrdinalsBuilder()), offset);
+            }
+        }
+
+        private static <M extends Map<String, Ordinals>> M freeze(Map<String, OrdinalsBuilder> values, M target, int size) {
+            for (Map.Entry<String, OrdinalsBuilder> entry : values.entrySet()) {
+                OrdinalsBuilder builder = entry.getValue();
+                target.put(entry.getKey(), Ordinals.of(builder.ordinals, builder.count, size));
+            }
+            return target;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package org.example.queryapi.retrieval;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * Compressed list of chunk ordinals for a single term, with the term's frequency in each
+ * chunk and the positions it occurs at. Ordinals are appended in ascending order, so the
+ * list is always sorted.
+ *
+ * Postings are stored as variable-length byte codes: the gap to the previous ordinal
+ * followed by the term frequency, 7 bits per byte. A posting for a common term in a
+ * dense corpus takes two bytes instead of the eight of a pair of int arrays.
+ * Every {@value #BLOCK_SIZE} postings start a block, and a skip table holds the last
+ * ordinal and byte offset of each block, so {@link Cursor#advance(int)} binary searches
+ * the skip table and decodes at most one block. Conjunctive queries therefore only
+ * decode the blocks of long lists that can contain a match from the shortest list.
+ *
+ * Positions are gap-coded the same way in a second stream with its own block offsets,
+ * and a cursor only decodes them when asked, so ranking that needs term frequencies
+ * alone never reads them.
+ */
+final class PostingList {
+
+    /**
+     * Ordinal returned by a {@link Cursor} once it is exhausted.
+     */
+    static final int END = Integer.MAX_VALUE;
+
+    static final int BLOCK_SIZE = 128;
+
+    /**
+     * Largest ratio of the longest to the shortest list that
+     * {@link #intersect(PostingList[], BitSet)} still decodes in full rather than leapfrogs.
+     */
+    static final int DECODE_RATIO = 8;
+
+    private byte[] data;
+    private int byteSize;
+    private byte[] positionData;
+    private int positionByteSize;
+    private int[] blockLastOrdinals;
+    private int[] blockOffsets;
+    private int[] blockPositionOffsets;
+    private int blockCount;
+    private int size;
+    private int lastOrdinal = -1;
+
+    PostingList() {
+        this.data = new byte[8];
+        this.positionData = new byte[8];
+        this.blockLastOrdinals = new int[1];
+        this.blockOffsets = new int[1];
+        this.blockPositionOffsets = new int[1];
+    }
+
+    /**
+     * Appends an ordinal. Ordinals must be added in ascending order.
+     *
+     * @param positions term positions in the chunk, ascending, in the first {@code count} entries
+     * @param count number of positions, which is the term frequency
+     */
+    void add(int ordinal, int[] positions, int count) {
+        if (ordinal <= lastOrdinal) {
+            throw new IllegalArgumentException("Ordinal " + ordinal + " added after " + lastOrdinal);
+        }
+        if (size % BLOCK_SIZE == 0) {
+            if (blockCount == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                blockPositionOffsets = Arrays.copyOf(blockPositionOffsets, blockCount * 2);
+                blockLastOrdinals = Arrays.copyOf(blockLastOrdinals, blockCount * 2);
+            }
+            blockOffsets[blockCount] = byteSize;
+            blockPositionOffsets[blockCount] = positionByteSize;
+            blockCount++;
+        }
+        // Two 5-byte codes at most
+        if (byteSize + 10 > data.length) {
+            data = Arrays.copyOf(data, Math.max(byteSize + 10, data.length * 2));
+        }
+        byteSize = writeVarint(data, byteSize, ordinal - lastOrdinal);
+        byteSize = writeVarint(data, byteSize, count);
+
+        if (positionByteSize + 5L * count > positionData.length) {
+            positionData = Arrays.copyOf(positionData, Math.max(positionByteSize + 5 * count, positionData.length * 2));
+        }
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            positionByteSize = writeVarint(positionData, positionByteSize, positions[i] - previous);
+            previous = positions[i];
+        }
+
+        blockLastOrdinals[blockCount - 1] = ordinal;
+        lastOrdinal = ordinal;
+        size++;
+    }
+
+    /**
+     * Appends all entries of another list with their ordinals shifted by an offset.
+     * The shifted ordinals must all be greater than the ordinals already present.
+     */
+    void addAll(PostingList other, int offset) {
+        Cursor cursor = other.cursor();
+        for (int ordinal = cursor.next(); ordinal != END; ordinal = cursor.next()) {
+            add(ordinal + offset, cursor.positions(), cursor.termFrequency());
+        }
+    }
+
+    /**
+     * Releases spare capacity once the list is complete.
+     */
+    void trimToSize() {
+        data = Arrays.copyOf(data, byteSize);
+        positionData = Arrays.copyOf(positionData, positionByteSize);
+        blockOffsets = Arrays.copyOf(blockOffsets, blockCount);
+        blockPositionOffsets = Arrays.copyOf(blockPositionOffsets, blockCount);
+        blockLastOrdinals = Arrays.copyOf(blockLastOrdinals, blockCount);
+    }
+
+    /**
+     * Gets the number of chunks containing the term (its document frequency).
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the heap used by the encoded postings, positions and skip table, excluding object headers.
+     */
+    long sizeInBytes() {
+        return data.length + positionData.length
+                + 4L * (blockOffsets.length + blockPositionOffsets.length + blockLastOrdinals.length);
+    }
+
+    /**
+     * Opens a cursor positioned before the first posting.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Sets the bit of every ordinal in this list.
+     */
+    void addTo(BitSet bits) {
+        Cursor cursor = cursor();
+        for (int ordinal = cursor.next(); ordinal != END; ordinal = cursor.next()) {
+            bits.set(ordinal);
+        }
+    }
+
+    /**
+     * Sets the bit of every ordinal contained in all of the lists.
+     *
+     * The shortest list leads and every other list is advanced to its candidate;
+     * whenever a list overshoots, the lead jumps to the overshooting ordinal instead.
+     * Work is bounded by the shortest list times one skip-table search per other list.
+     *
+     * When no list is more than {@value #DECODE_RATIO} times the shortest, skips save
+     * little and the leapfrog's branches on which list is ahead mispredict about half the
+     * time, so every list is decoded into a bitset and the bitsets are ANDed instead.
+     */
+    static void intersect(PostingList[] lists, BitSet bits) {
+        if (lists.length < 2 || !similarSizes(lists)) {
+            leapfrog(lists, false, bits);
+            return;
+        }
+        BitSet all = new BitSet();
+        lists[0].addTo(all);
+        BitSet list = new BitSet();
+        for (int i = 1; i < lists.length && !all.isEmpty(); i++) {
+            list.clear();
+            lists[i].addTo(list);
+            all.and(list);
+        }
+        bits.or(all);
+    }
+
+    private static boolean similarSizes(PostingList[] lists) {
+        int shortest = Integer.MAX_VALUE;
+        int longest = 0;
+        for (PostingList list : lists) {
+            shortest = Math.min(shortest, list.size());
+            longest = Math.max(longest, list.size());
+        }
+        return longest <= (long) DECODE_RATIO * shortest;
+    }
+
+    /**
+     * Sets the bit of every ordinal whose chunk contains the lists' terms as a phrase,
+     * the term of list {@code i} at position {@code p + i} for some {@code p}.
+     * Chunks are intersected by the leapfrog of {@link #intersect(PostingList[], BitSet)}
+     * whatever the list sizes, and positions are decoded only for chunks containing every
+     * term. Checking positions costs more than the leapfrog for similar sizes, and
+     * decoding into bitsets first would then still need every cursor advanced to each
+     * common chunk.
+     *
+     * @param lists posting lists of the phrase terms, in phrase order; a term may repeat
+     */
+    static void matchPhrase(PostingList[] lists, BitSet bits) {
+        leapfrog(lists, true, bits);
+    }
+
+    private static void leapfrog(PostingList[] lists, boolean phrase, BitSet bits) {
+        if (lists.length == 0) {
+            return;
+        }
+        // Cursors stay in phrase order; the lead and advance order go by list size
+        Cursor[] cursors = new Cursor[lists.length];
+        Integer[] order = new Integer[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            cursors[i] = lists[i].cursor();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> lists[i].size()));
+        int[] offsets = new int[lists.length];
+
+        Cursor lead = cursors[order[0]];
+        int candidate = lead.next();
+        while (candidate != END) {
+            int agreed = 1;
+            while (agreed < order.length) {
+                int found = cursors[order[agreed]].advance(candidate);
+                if (found == candidate) {
+                    agreed++;
+                } else {
+                    break;
+                }
+            }
+            if (agreed == order.length) {
+                if (!phrase || containsPhrase(cursors, offsets)) {
+                    bits.set(candidate);
+                }
+                candidate = lead.next();
+            } else {
+                candidate = lead.advance(cursors[order[agreed]].ordinal());
+            }
+        }
+    }
+
+    /**
+     * Checks the current postings of the cursors for a phrase occurrence by merging
+     * their position lists.
+     *
+     * @param offsets scratch space with one slot per cursor
+     */
+    private static boolean containsPhrase(Cursor[] cursors, int[] offsets) {
+        Arrays.fill(offsets, 0);
+        int[] first = cursors[0].positions();
+        int firstCount = cursors[0].termFrequency();
+        for (int f = 0; f < firstCount; f++) {
+            int start = first[f];
+            boolean matched = true;
+            for (int i = 1; i < cursors.length && matched; i++) {
+                int[] positions = cursors[i].positions();
+                int count = cursors[i].termFrequency();
+                while (offsets[i] < count && positions[offsets[i]] < start + i) {
+                    offsets[i]++;
+                }
+                if (offsets[i] == count) {
+                    return false;
+                }
+                matched = positions[offsets[i]] == start + i;
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int writeVarint(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Forward-only iterator over the postings. Not thread-safe; open one per reader.
+     */
+    final class Cursor {
+
+        private final byte[] bytes = data;
+        private final byte[] positionBytes = positionData;
+        private int position;
+        private int index;
+        private int ordinal = -1;
+        private int termFrequency;
+        // Positions are read lazily: the stream offset, how many codes of earlier
+        // postings still precede the current posting's, and whether they were decoded
+        private int positionOffset;
+        private int pendingPositions;
+        private boolean positionsDecoded;
+        private int[] positionBuffer = new int[4];
+
+        /**
+         * Moves to the next posting.
+         *
+         * @return its ordinal, or {@link #END} when the list is exhausted
+         */
+        int next() {
+            if (index == size) {
+                ordinal = END;
+                return END;
+            }
+            if (!positionsDecoded) {
+                pendingPositions += termFrequency;
+            }
+            positionsDecoded = false;
+            ordinal += readVarint();
+            termFrequency = readVarint();
+            index++;
+            return ordinal;
+        }
+
+        /**
+         * Moves to the first posting whose ordinal is at least the target, skipping whole
+         * blocks that end before it. Does not move if the current ordinal already qualifies.
+         *
+         * @return the ordinal of that posting, or {@link #END} if there is none
+         */
+        int advance(int target) {
+            if (ordinal >= target) {
+                return ordinal;
+            }
+            if (index == size) {
+                ordinal = END;
+                return END;
+            }
+            int block = index / BLOCK_SIZE;
+            if (blockLastOrdinals[block] < target) {
+                int found = Arrays.binarySearch(blockLastOrdinals, block + 1, blockCount, target);
+                int targetBlock = found >= 0 ? found : -found - 1;
+                if (targetBlock == blockCount) {
+                    index = size;
+                    ordinal = END;
+                    return END;
+                }
+                // Gaps in a block are relative to the last ordinal of the block before it
+                position = blockOffsets[targetBlock];
+                positionOffset = blockPositionOffsets[targetBlock];
+                pendingPositions = 0;
+                positionsDecoded = true;
+                index = targetBlock * BLOCK_SIZE;
+                ordinal = blockLastOrdinals[targetBlock - 1];
+            }
+            // The block's last ordinal is at least the target, so this stops inside the block
+            while (ordinal < target) {
+                next();
+            }
+            return ordinal;
+        }
+
+        /**
+         * Gets the ordinal of the current posting, -1 before the first call to {@link #next()}.
+         */
+        int ordinal() {
+            return ordinal;
+        }
+
+        /**
+         * Gets the term frequency of the current posting.
+         */
+        int termFrequency() {
+            return termFrequency;
+        }
+
+        /**
+         * Decodes the positions of the current posting.
+         *
+         * @return buffer holding the positions, ascending, in its first {@link #termFrequency()}
+         *         entries; reused by later calls, so it must not be modified or kept
+         */
+        int[] positions() {
+            if (positionsDecoded) {
+                return positionBuffer;
+            }
+            // Skip the codes of postings nobody asked positions for; each code ends on a byte below 0x80
+            while (pendingPositions > 0) {
+                if (positionBytes[positionOffset++] >= 0) {
+                    pendingPositions--;
+                }
+            }
+            if (termFrequency > positionBuffer.length) {
+                positionBuffer = new int[Math.max(termFrequency, positionBuffer.length * 2)];
+            }
+            int value = 0;
+            for (int i = 0; i < termFrequency; i++) {
+                value += readPositionVarint();
+                positionBuffer[i] = value;
+            }
+            positionsDecoded = true;
+            return positionBuffer;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private int readPositionVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = positionBytes[positionOffset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.example.queryapi.retrieval;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Product quantizer: the vector is split into contiguous sub-vectors and each one is
+ * replaced by the index of its nearest centroid in a per-subspace codebook of up to 256
+ * entries learned with k-means. With 8-dimension sub-vectors a 768-dimension embedding
+ * shrinks from 3072 bytes to 96, a 32x reduction.
+ *
+ * Scoring uses asymmetric distance computation: the query is kept at full precision and
+ * its dot product with every centroid is tabulated once, so a code is scored with one
+ * table lookup per subspace.
+ */
+final class ProductQuantizer implements VectorQuantizer {
+
+    static final int MAX_CENTROIDS = 256;
+    private static final int TRAINING_ITERATIONS = 10;
+
+    private final int[] subspaceStarts;
+    private final int centroidCount;
+    // centroids[subspace][centroid * subspaceLength + i]
+    private final float[][] centroids;
+
+    private ProductQuantizer(int[] subspaceStarts, int centroidCount, float[][] centroids) {
+        this.subspaceStarts = subspaceStarts;
+        this.centroidCount = centroidCount;
+        this.centroids = centroids;
+    }
+
+    /**
+     * Learns one codebook per subspace with k-means.
+     *
+     * @param sample unit-length training vectors, at least one
+     * @param subvectorDimension dimensions per subspace; the last subspace takes the remainder
+     * @param seed seed for centroid initialization, so training is reproducible
+     */
+    static ProductQuantizer train(List<float[]> sample, int subvectorDimension, long seed) {
+        int dimension = sample.get(0).length;
+        if (subvectorDimension <= 0) {
+            throw new IllegalArgumentException("subvectorDimension must be positive");
+        }
+        int subspaces = (dimension + subvectorDimension - 1) / subvectorDimension;
+        int[] starts = new int[subspaces + 1];
+        for (int s = 0; s < subspaces; s++) {
+            starts[s] = s * subvectorDimension;
+        }
+        starts[subspaces] = dimension;
+
+        int centroidCount = Math.min(MAX_CENTROIDS, sample.size());
+        Random random = new Random(seed);
+        float[][] centroids = new float[subspaces][];
+        for (int s = 0; s < subspaces; s++) {
+            centroids[s] = kMeans(sample, starts[s], starts[s + 1] - starts[s], centroidCount, random);
+        }
+        return new ProductQuantizer(starts, centroidCount, centroids);
+    }
+
+    @Override
+    public int codeSize() {
+        return subspaceStarts.length - 1;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] codes, int offset) {
+        for (int s = 0; s < codeSize(); s++) {
+            int start = subspaceStarts[s];
+            codes[offset + s] = (byte) nearest(centroids[s], centroidCount, vector, start, subspaceStarts[s + 1] - start);
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] query) {
+        int subspaces = codeSize();
+        float[] table = new float[subspaces * MAX_CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            int start = subspaceStarts[s];
+            int length = subspaceStarts[s + 1] - start;
+            for (int c = 0; c < centroidCount; c++) {
+                float dot = 0f;
+                for (int i = 0; i < length; i++) {
+                    dot += query[start + i] * centroids[s][c * length + i];
+                }
+                table[s * MAX_CENTROIDS + c] = dot;
+            }
+        }
+        return (codes, offset) -> {
+            float score = 0f;
+            for (int s = 0, row = 0; s < subspaces; s++, row += MAX_CENTROIDS) {
+                score += table[row + (codes[offset + s] & 0xFF)];
+            }
+            return score;
+        };
+    }
+
+    /**
+     * Lloyd's k-means over one subspace, initialized from distinct random sample vectors.
+     */
+    private static float[] kMeans(List<float[]> sample, int start, int length, int k, Random random) {
+        float[] centroids = new float[k * length];
+        int[] picks = random.ints(0, sample.size()).distinct().limit(k).toArray();
+        for (int c = 0; c < k; c++) {
+            System.arraycopy(sample.get(picks[c]), start, centroids, c * length, length);
+        }
+
+        int[] assignment = new int[sample.size()];
+        for (int iteration = 0; iteration < TRAINING_ITERATIONS; iteration++) {
+            boolean changed = false;
+            for (int v = 0; v < sample.size(); v++) {
+                int nearest = nearest(centroids, k, sample.get(v), start, length);
+                changed |= iteration == 0 || nearest != assignment[v];
+                assignment[v] = nearest;
+            }
+            if (!changed) {
+                break;
+            }
+
+            float[] sums = new float[k * length];
+            int[] counts = new int[k];
+            for (int v = 0; v < sample.size(); v++) {
+                float[] vector = sample.get(v);
+                int c = assignment[v];
+                counts[c]++;
+                for (int i = 0; i < length; i++) {
+                    sums[c * length + i] += vector[start + i];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    // Keep an empty cluster's centroid where it was rather than collapsing it to zero
+                    continue;
+                }
+                for (int i = 0; i < length; i++) {
+                    centroids[c * length + i] = sums[c * length + i] / counts[c];
+                }
+            }
+        }
+        return centroids;
+    }
+
+    private static int nearest(float[] centroids, int k, float[] vector, int start, int length) {
+        int best = 0;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < k; c++) {
+            float distance = 0f;
+            for (int i = 0; i < length; i++) {
+                float delta = vector[start + i] - centroids[c * length + i];
+                distance += delta * delta;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
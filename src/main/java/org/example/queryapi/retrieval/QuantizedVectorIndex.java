@@ -0,0 +1,322 @@
+package org.example.queryapi.retrieval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Vector store that keeps only quantized codes on the heap.
+ *
+ * Full-precision unit vectors are appended to a scratch file and read back only for
+ * rescoring. A search scores every code, keeps the best {@code rescoreCount}
+ * candidates, and reranks those by their exact similarity read from the file, so recall
+ * stays close to exact search while resident memory shrinks by the quantizer's ratio.
+ *
+ * The quantizer is trained once {@code trainingSize} vectors have been added, on a
+ * sample spread evenly across them; until then searches are exact scans of the file.
+ * The quantizer and its code pages are published together, so a search never sees one
+ * without the other. Closing waits for searches already reading the file.
+ */
+final class QuantizedVectorIndex implements VectorStore {
+
+    private static final int PAGE_SHIFT = 14;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    private final int dimension;
+    private final Function<List<float[]>, VectorQuantizer> trainer;
+    private final int trainingSize;
+    private final int rescoreCount;
+    private final FileChannel channel;
+    private final Object writeLock = new Object();
+    // The store's own reference plus one per running search; the file closes when it drops to zero
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // Written before size, so a reader that sees a size also sees codes for that many vectors
+    private volatile Codes codes;
+    private volatile int size;
+
+    private QuantizedVectorIndex(int dimension, Function<List<float[]>, VectorQuantizer> trainer,
+                                 int trainingSize, int rescoreCount, FileChannel channel) {
+        this.dimension = dimension;
+        this.trainer = trainer;
+        this.trainingSize = trainingSize;
+        this.rescoreCount = rescoreCount;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates an empty store backed by a new scratch file, deleted when the store is closed.
+     *
+     * @param directory directory for the full-precision vector file
+     * @param trainer builds a quantizer from unit-length sample vectors
+     * @param trainingSize number of vectors to collect before training
+     * @param rescoreCount number of candidates reranked at full precision
+     * @throws RetrievalException if the file cannot be created
+     */
+    static QuantizedVectorIndex create(int dimension, Path directory, Function<List<float[]>, VectorQuantizer> trainer,
+                                       int trainingSize, int rescoreCount) {
+        if (dimension <= 0 || trainingSize <= 0 || rescoreCount <= 0) {
+            throw new IllegalArgumentException("dimension, trainingSize and rescoreCount must be positive");
+        }
+        try {
+            Files.createDirectories(directory);
+            Path file = Files.createTempFile(directory, "vectors-", ".f32");
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            return new QuantizedVectorIndex(dimension, trainer, trainingSize, rescoreCount, channel);
+        } catch (IOException e) {
+            throw new RetrievalException("Failed to create vector file in " + directory, e);
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of code bytes held per vector, or 0 before training.
+     */
+    int codeSize() {
+        Codes current = codes;
+        return current == null ? 0 : current.quantizer().codeSize();
+    }
+
+    @Override
+    public void addAll(List<float[]> batch) {
+        ByteBuffer buffer = ByteBuffer.allocate(batch.size() * dimension * Float.BYTES);
+        List<float[]> units = new ArrayList<>(batch.size());
+        for (float[] vector : batch) {
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "Expected embedding of dimension " + dimension + " but got " + vector.length);
+            }
+            float[] unit = VectorMath.normalized(vector);
+            units.add(unit);
+            buffer.asFloatBuffer().put(unit);
+            buffer.position(buffer.position() + dimension * Float.BYTES);
+        }
+        buffer.flip();
+
+        synchronized (writeLock) {
+            int from = size;
+            int count = from + batch.size();
+            try {
+                long position = (long) from * dimension * Float.BYTES;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                Codes current = codes;
+                if (current == null && count >= trainingSize) {
+                    VectorQuantizer trained = trainer.apply(trainingSample(count));
+                    codes = new Codes(trained, encode(trained, new byte[0][], 0, count, null));
+                } else if (current != null) {
+                    codes = new Codes(current.quantizer(), encode(current.quantizer(), current.pages(), from, count,
+                            units));
+                }
+            } catch (IOException e) {
+                throw new RetrievalException("Failed to store full-precision vectors", e);
+            }
+            size = count;
+        }
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        synchronized (writeLock) {
+            if (newSize < size) {
+                size = newSize;
+            }
+        }
+    }
+
+    @Override
+    public TopKCollector search(float[] query, int k, double minSimilarity, int limit, BitSet allowed) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException(
+                    "Expected embedding of dimension " + dimension + " but got " + query.length);
+        }
+        if (!acquire()) {
+            throw new RetrievalException("Vector store is closed");
+        }
+        int count = Math.min(limit, size);
+        Codes current = codes;
+        float[] unit = VectorMath.normalized(query);
+        try {
+            if (current == null) {
+                return exactScan(unit, k, minSimilarity, count, allowed);
+            }
+
+            VectorQuantizer.Scorer scorer = current.quantizer().scorer(unit);
+            int codeSize = current.quantizer().codeSize();
+            byte[][] codePages = current.pages();
+            TopKCollector candidates = new TopKCollector(Math.min(count, Math.max(k, rescoreCount)));
+            for (int ordinal = first(allowed, count); ordinal < count; ordinal = following(allowed, ordinal, count)) {
+                candidates.offer(ordinal, scorer.score(codePages[ordinal >>> PAGE_SHIFT], (ordinal & PAGE_MASK) * codeSize));
+            }
+
+            // Read candidates in file order so rescoring touches the disk sequentially
+            int[] ordinals = new int[candidates.drain()];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = candidates.ordinalAt(i);
+            }
+            Arrays.sort(ordinals);
+            TopKCollector topK = new TopKCollector(Math.min(k, ordinals.length));
+            float[] vector = new float[dimension];
+            ByteBuffer buffer = ByteBuffer.allocate(dimension * Float.BYTES);
+            for (int ordinal : ordinals) {
+                read(ordinal, buffer, vector);
+                float similarity = VectorMath.dot(vector, 0, unit);
+                if (similarity >= minSimilarity) {
+                    topK.offer(ordinal, similarity);
+                }
+            }
+            return topK;
+        } catch (IOException e) {
+            throw new RetrievalException("Failed to read full-precision vectors", e);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Closes the store. The scratch file is closed, and so deleted, once the searches
+     * still reading it finish; searches started afterwards fail.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    private boolean acquire() {
+        int current;
+        do {
+            current = references.get();
+            if (current == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void release() {
+        if (references.decrementAndGet() == 0) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RetrievalException("Failed to close vector file", e);
+            }
+        }
+    }
+
+    private TopKCollector exactScan(float[] unit, int k, double minSimilarity, int count, BitSet allowed)
+            throws IOException {
+        TopKCollector topK = new TopKCollector(Math.min(k, count));
+        float[] vector = new float[dimension];
+        ByteBuffer buffer = ByteBuffer.allocate(dimension * Float.BYTES);
+        for (int ordinal = first(allowed, count); ordinal < count; ordinal = following(allowed, ordinal, count)) {
+            read(ordinal, buffer, vector);
+            float similarity = VectorMath.dot(vector, 0, unit);
+            if (similarity >= minSimilarity) {
+                topK.offer(ordinal, similarity);
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * Gets the first allowed ordinal, or {@code count} if there is none.
+     */
+    private static int first(BitSet allowed, int count) {
+        return following(allowed, -1, count);
+    }
+
+    /**
+     * Gets the next allowed ordinal after the given one, or {@code count} if there is none.
+     */
+    private static int following(BitSet allowed, int ordinal, int count) {
+        if (allowed == null) {
+            return ordinal + 1;
+        }
+        int next = allowed.nextSetBit(ordinal + 1);
+        return next < 0 ? count : Math.min(next, count);
+    }
+
+    private List<float[]> trainingSample(int count) throws IOException {
+        int sampleSize = Math.min(count, trainingSize);
+        ByteBuffer buffer = ByteBuffer.allocate(dimension * Float.BYTES);
+        List<float[]> sample = new ArrayList<>(sampleSize);
+        for (int i = 0; i < sampleSize; i++) {
+            float[] vector = new float[dimension];
+            read((int) ((long) i * count / sampleSize), buffer, vector);
+            sample.add(vector);
+        }
+        return sample;
+    }
+
+    /**
+     * Encodes ordinals {@code [from, to)}, from the given unit vectors or, if null, from the file.
+     * Codes below {@code from} are left in place; readers only look at ordinals below the
+     * published size, so the pages can be shared with the codes already published.
+     *
+     * @return the page directory holding the codes, a copy when it had to grow
+     */
+    private byte[][] encode(VectorQuantizer quantizer, byte[][] pages, int from, int to, List<float[]> units)
+            throws IOException {
+        int codeSize = quantizer.codeSize();
+        byte[][] directory = pages;
+        int requiredPages = ((to - 1) >>> PAGE_SHIFT) + 1;
+        if (requiredPages > directory.length) {
+            directory = Arrays.copyOf(directory, Math.max(requiredPages, directory.length * 2));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(dimension * Float.BYTES);
+        float[] vector = new float[dimension];
+        for (int ordinal = from; ordinal < to; ordinal++) {
+            int page = ordinal >>> PAGE_SHIFT;
+            if (directory[page] == null) {
+                directory[page] = new byte[(1 << PAGE_SHIFT) * codeSize];
+            }
+            float[] unit = units != null ? units.get(ordinal - from) : vector;
+            if (units == null) {
+                read(ordinal, buffer, vector);
+            }
+            quantizer.encode(unit, directory[page], (ordinal & PAGE_MASK) * codeSize);
+        }
+        return directory;
+    }
+
+    private void read(int ordinal, ByteBuffer buffer, float[] into) throws IOException {
+        buffer.clear();
+        long position = (long) ordinal * dimension * Float.BYTES;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Vector file ends before ordinal " + ordinal);
+            }
+        }
+        buffer.flip();
+        buffer.asFloatBuffer().get(into);
+    }
+
+    /**
+     * Trained quantizer with the code pages it encoded, published as one.
+     */
+    private record Codes(VectorQuantizer quantizer, byte[][] pages) {
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.cache.CacheKeys;
+import org.example.queryapi.cache.CacheStats;
+import org.example.queryapi.cache.TinyLfuCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of retrieval results in front of the active {@link Retriever}.
+ *
+ * Entries are keyed by the normalized query text, the number of chunks asked for, the
+ * filter and the knowledge base version. Every ingestion publishes a new version, so
+ * results computed against an older corpus are never served again; they are simply
+ * left to age out of the bounded {@link TinyLfuCache}. Concurrent identical misses
+ * run a single retrieval and share its result. Incomplete results, such as a hybrid
+ * ranking whose vector leg timed out, are returned but not cached, so the next identical
+ * query retrieves again.
+ * Sized by {@code queryapi.cache.retrieval.max-entries}; zero disables caching.
+ */
+@Component
+public class RetrievalCache {
+
+    private final LongSupplier version;
+    private final TinyLfuCache<Key, RetrievalResult> cache;
+
+    @Autowired
+    public RetrievalCache(InMemoryKnowledgeBase knowledgeBase,
+                          @Value("${queryapi.cache.retrieval.max-entries:10000}") int maxEntries) {
+        this(knowledgeBase::getVersion, maxEntries);
+    }
+
+    RetrievalCache(LongSupplier version, int maxEntries) {
+        this.version = version;
+        this.cache = new TinyLfuCache<>(maxEntries);
+    }
+
+    /**
+     * Gets the cached result of a retrieval, running it on a miss.
+     *
+     * @return the result the retriever returns for these arguments; its chunks are shared,
+     *         so not modifiable
+     * @throws RetrievalException if the retrieval fails; failures are not cached
+     */
+    public RetrievalResult retrieve(Retriever retriever, String query, int maxChunks, RetrievalFilter filter) {
+        Key key = new Key(CacheKeys.normalizeQuery(query), maxChunks, filter, version.getAsLong());
+        try {
+            return cache.get(key, () -> {
+                RetrievalResult result = retriever.retrieveResult(query, maxChunks, filter);
+                if (!result.complete()) {
+                    // Thrown so the cache keeps nothing while callers waiting on this load still share it
+                    throw new Incomplete(result);
+                }
+                return new RetrievalResult(List.copyOf(result.chunks()), true);
+            });
+        } catch (Incomplete e) {
+            return e.result;
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private record Key(String query, int maxChunks, RetrievalFilter filter, long version) {
+    }
+
+    /**
+     * Carries an incomplete result out of the cache loader.
+     */
+    private static final class Incomplete extends RuntimeException {
+
+        private final RetrievalResult result;
+
+        private Incomplete(RetrievalResult result) {
+            super(null, null, false, false);
+            this.result = new RetrievalResult(List.copyOf(result.chunks()), false);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Metadata restriction on which chunks a retrieval may return.
+ *
+ * Every criterion that is set must hold: the chunk belongs to one of the document ids,
+ * its document title starts with the title prefix (ignoring case), its url has the
+ * given host (ignoring case), and it carries at least one of the tags. Unset criteria
+ * match every chunk, so {@link #none()} restricts nothing.
+ */
+public final class RetrievalFilter {
+
+    private static final RetrievalFilter NONE = new RetrievalFilter(null, null, null, null);
+
+    private final Set<String> documentIds;
+    private final String titlePrefix;
+    private final String urlHost;
+    private final Set<String> tags;
+
+    /**
+     * @param documentIds document ids to restrict to, or null or empty for any
+     * @param titlePrefix document title prefix, or null or blank for any
+     * @param urlHost url host, or null or blank for any
+     * @param tags tags of which a chunk needs at least one, or null or empty for any
+     */
+    public RetrievalFilter(Collection<String> documentIds, String titlePrefix, String urlHost, Collection<String> tags) {
+        this.documentIds = copy(documentIds);
+        this.titlePrefix = titlePrefix == null || titlePrefix.isBlank() ? null : normalizeTitle(titlePrefix);
+        this.urlHost = urlHost == null || urlHost.isBlank() ? null : urlHost.trim().toLowerCase(Locale.ROOT);
+        this.tags = copy(tags);
+    }
+
+    /**
+     * Gets the filter that matches every chunk.
+     */
+    public static RetrievalFilter none() {
+        return NONE;
+    }
+
+    /**
+     * Checks whether no criterion is set.
+     */
+    public boolean isEmpty() {
+        return documentIds.isEmpty() && titlePrefix == null && urlHost == null && tags.isEmpty();
+    }
+
+    public Set<String> getDocumentIds() {
+        return documentIds;
+    }
+
+    /**
+     * Gets the title prefix, lowercased, or null if unset.
+     */
+    public String getTitlePrefix() {
+        return titlePrefix;
+    }
+
+    /**
+     * Gets the url host, lowercased, or null if unset.
+     */
+    public String getUrlHost() {
+        return urlHost;
+    }
+
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    /**
+     * Checks a chunk against the filter directly. Retrievers over the in-memory knowledge
+     * base use its precomputed metadata bitsets instead.
+     */
+    public boolean matches(Chunk chunk) {
+        if (!documentIds.isEmpty() && !documentIds.contains(chunk.getDocumentId())) {
+            return false;
+        }
+        if (titlePrefix != null && !normalizeTitle(chunk.getDocumentTitle()).startsWith(titlePrefix)) {
+            return false;
+        }
+        if (urlHost != null && !urlHost.equals(host(chunk.getUrl()))) {
+            return false;
+        }
+        return tags.isEmpty() || chunk.getTags().stream().anyMatch(tags::contains);
+    }
+
+    /**
+     * Lowercases a title for prefix matching; null becomes the empty string.
+     */
+    static String normalizeTitle(String title) {
+        return title == null ? "" : title.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Extracts the lowercased host of a url.
+     *
+     * @return the host, or null if the url is null, malformed or has no host
+     */
+    static String host(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            String host = URI.create(url.trim()).getHost();
+            return host == null ? null : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Set<String> copy(Collection<String> values) {
+        if (values == null) {
+            return Set.of();
+        }
+        return values.stream()
+                .filter(value -> value != null && !value.isBlank())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RetrievalFilter other)) {
+            return false;
+        }
+        return documentIds.equals(other.documentIds) && Objects.equals(titlePrefix, other.titlePrefix)
+                && Objects.equals(urlHost, other.urlHost) && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(documentIds, titlePrefix, urlHost, tags);
+    }
+
+    @Override
+    public String toString() {
+        return "RetrievalFilter{documentIds=" + documentIds + ", titlePrefix=" + titlePrefix
+                + ", urlHost=" + urlHost + ", tags=" + tags + "}";
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.util.List;
+
+/**
+ * Chunks returned by a retriever, together with whether they were ranked over the whole
+ * knowledge base. An incomplete result is a degraded but usable answer: a hybrid leg
+ * timed out or failed, or an embedding-based retriever has not indexed every chunk yet.
+ * Caches keep only complete results, so a degraded ranking is not served for the rest
+ * of a knowledge base version.
+ *
+ * @param chunks chunks ordered by relevance score (descending)
+ * @param complete whether every chunk the filter allows was considered
+ */
+public record RetrievalResult(List<Chunk> chunks, boolean complete) {
+}
@@ -18,5 +18,31 @@ public interface Retriever {
      * @return list of chunks ordered by relevance score (descending), empty list if no matches
      * @throws RetrievalException if retrieval fails due to store/network errors
      */
-    List<Chunk> retrieve(String query, int maxChunks);
+    default List<Chunk> retrieve(String query, int maxChunks) {
+        return retrieve(query, maxChunks, RetrievalFilter.none());
+    }
+
+    /**
+     * Retrieves chunks relevant to the query among those the filter allows, ordered by
+     * relevance (highest first). Chunks outside the filter are excluded before scoring,
+     * so they never displace allowed chunks from the top {@code maxChunks}.
+     *
+     * @param query the search query
+     * @param maxChunks maximum number of chunks to retrieve
+     * @param filter metadata restriction; {@link RetrievalFilter#none()} allows every chunk
+     * @return list of chunks ordered by relevance score (descending), empty list if no matches
+     * @throws RetrievalException if retrieval fails due to store/network errors
+     */
+    List<Chunk> retrieve(String query, int maxChunks, RetrievalFilter filter);
+
+    /**
+     * Retrieves like {@link #retrieve(String, int, RetrievalFilter)}, also reporting
+     * whether the ranking covered the whole knowledge base. Retrievers that can return a
+     * degraded ranking override this; the default reports every result as complete.
+     *
+     * @throws RetrievalException if retrieval fails due to store/network errors
+     */
+    default RetrievalResult retrieveResult(String query, int maxChunks, RetrievalFilter filter) {
+        return new RetrievalResult(retrieve(query, maxChunks, filter), true);
+    }
 }
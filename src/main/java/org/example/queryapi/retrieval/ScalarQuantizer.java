@@ -0,0 +1,73 @@
+package org.example.queryapi.retrieval;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Int8 scalar quantizer: each dimension is mapped linearly from its trained
+ * [min, max] range onto the 256 signed byte values, a 4x reduction over float32.
+ *
+ * Scoring folds the per-dimension scale and offset into the query once, so a code is
+ * scored with a single float-by-byte dot product plus a constant.
+ */
+final class ScalarQuantizer implements VectorQuantizer {
+
+    private final float[] minimums;
+    private final float[] scales;
+
+    private ScalarQuantizer(float[] minimums, float[] scales) {
+        this.minimums = minimums;
+        this.scales = scales;
+    }
+
+    /**
+     * Learns per-dimension ranges from a sample; values outside them are clamped on encode.
+     *
+     * @param sample unit-length vectors, at least one
+     */
+    static ScalarQuantizer train(List<float[]> sample) {
+        int dimension = sample.get(0).length;
+        float[] minimums = new float[dimension];
+        float[] maximums = new float[dimension];
+        Arrays.fill(minimums, Float.POSITIVE_INFINITY);
+        Arrays.fill(maximums, Float.NEGATIVE_INFINITY);
+        for (float[] vector : sample) {
+            for (int i = 0; i < dimension; i++) {
+                minimums[i] = Math.min(minimums[i], vector[i]);
+                maximums[i] = Math.max(maximums[i], vector[i]);
+            }
+        }
+        float[] scales = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            float range = maximums[i] - minimums[i];
+            scales[i] = range > 0f ? range / 255f : 1f;
+        }
+        return new ScalarQuantizer(minimums, scales);
+    }
+
+    @Override
+    public int codeSize() {
+        return minimums.length;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] codes, int offset) {
+        for (int i = 0; i < minimums.length; i++) {
+            int level = Math.round((vector[i] - minimums[i]) / scales[i]);
+            codes[offset + i] = (byte) (Math.max(0, Math.min(255, level)) - 128);
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] query) {
+        // value ~= min + (code + 128) * scale, so q.value = sum(q * (min + 128 * scale)) + sum(q * scale * code)
+        float[] scaledQuery = new float[minimums.length];
+        float bias = 0f;
+        for (int i = 0; i < minimums.length; i++) {
+            scaledQuery[i] = query[i] * scales[i];
+            bias += query[i] * (minimums[i] + 128f * scales[i]);
+        }
+        float constant = bias;
+        return (codes, offset) -> constant + VectorMath.dot(scaledQuery, codes, offset);
+    }
+}
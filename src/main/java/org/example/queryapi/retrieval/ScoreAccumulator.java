@@ -0,0 +1,89 @@
+package org.example.queryapi.retrieval;
+
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Reusable scratch buffer for accumulating chunk scores by ordinal.
+ * Only the ordinals touched by a query are reset, so the cost of a query is
+ * proportional to the postings it visits, not to the corpus size.
+ *
+ * Buffers are pooled rather than thread-local: a corpus-sized array per servlet
+ * thread would cost far more than one per concurrently running query.
+ */
+final class ScoreAccumulator {
+
+    private static final Deque<ScoreAccumulator> POOL = new ConcurrentLinkedDeque<>();
+
+    private double[] scores = new double[0];
+    private int[] touched = new int[64];
+    private int touchedCount;
+
+    private ScoreAccumulator() {
+    }
+
+    /**
+     * Borrows an empty accumulator sized for the given corpus.
+     * Callers must hand it back with {@link #release()} once the query is ranked.
+     *
+     * @param chunkCount number of chunk ordinals that may be scored
+     * @return an empty accumulator owned by the caller until released
+     */
+    static ScoreAccumulator acquire(int chunkCount) {
+        ScoreAccumulator accumulator = POOL.pollFirst();
+        if (accumulator == null) {
+            accumulator = new ScoreAccumulator();
+        }
+        accumulator.reset(chunkCount);
+        return accumulator;
+    }
+
+    /**
+     * Returns this accumulator to the pool. It must not be used afterwards.
+     */
+    void release() {
+        POOL.offerFirst(this);
+    }
+
+    /**
+     * Adds a positive weight to the score of an ordinal.
+     */
+    void add(int ordinal, double weight) {
+        if (scores[ordinal] == 0.0) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = ordinal;
+        }
+        scores[ordinal] += weight;
+    }
+
+    /**
+     * Gets the number of ordinals with a non-zero score.
+     */
+    int touchedCount() {
+        return touchedCount;
+    }
+
+    /**
+     * Gets the i-th ordinal with a non-zero score, in first-touched order.
+     */
+    int touchedAt(int index) {
+        return touched[index];
+    }
+
+    double score(int ordinal) {
+        return scores[ordinal];
+    }
+
+    private void reset(int chunkCount) {
+        for (int i = 0; i < touchedCount; i++) {
+            scores[touched[i]] = 0.0;
+        }
+        touchedCount = 0;
+        if (scores.length < chunkCount) {
+            scores = new double[Math.max(chunkCount, scores.length * 2)];
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable batch of chunks together with their analyzed terms, inverted index and metadata index.
+ * Ordinals inside a segment are local (0-based); a snapshot maps them to
+ * corpus-wide ordinals by adding the segment's base.
+ */
+final class Segment {
+
+    private final List<Chunk> chunks;
+    private final List<int[]> terms;
+    private final InvertedIndex index;
+    private final MetadataIndex metadata;
+
+    private Segment(List<Chunk> chunks, List<int[]> terms, InvertedIndex index, MetadataIndex metadata) {
+        this.chunks = chunks;
+        this.terms = terms;
+        this.index = index;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Builds a segment by analyzing and indexing a batch of chunks in iteration order.
+     *
+     * @param analyzer analyzer applied to each chunk's text and document title
+     * @param dictionary dictionary the chunk terms are interned into
+     */
+    static Segment build(Collection<Chunk> batch, Analyzer analyzer, TermDictionary dictionary) {
+        List<Chunk> chunks = List.copyOf(batch);
+        List<int[]> terms = new ArrayList<>(chunks.size());
+        InvertedIndex index = new InvertedIndex();
+        for (int i = 0; i < chunks.size(); i++) {
+            int[] termIds = analyzer.analyze(InMemoryKnowledgeBase.indexedText(chunks.get(i))).stream()
+                    .mapToInt(dictionary::intern)
+                    .toArray();
+            terms.add(termIds);
+            index.add(i, termIds);
+        }
+        index.trimToSize();
+        return new Segment(chunks, List.copyOf(terms), index, MetadataIndex.build(chunks));
+    }
+
+    /**
+     * Merges adjacent segments into one, keeping chunk order.
+     * Posting lists are concatenated, so no text is re-analyzed.
+     */
+    static Segment merge(List<Segment> segments) {
+        List<Chunk> chunks = new ArrayList<>();
+        List<int[]> terms = new ArrayList<>();
+        List<InvertedIndex> indexes = new ArrayList<>(segments.size());
+        List<MetadataIndex> metadata = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            chunks.addAll(segment.chunks);
+            terms.addAll(segment.terms);
+            indexes.add(segment.index);
+            metadata.add(segment.metadata);
+        }
+        return new Segment(List.copyOf(chunks), List.copyOf(terms), InvertedIndex.merge(indexes),
+                MetadataIndex.merge(metadata));
+    }
+
+    int size() {
+        return chunks.size();
+    }
+
+    Chunk chunk(int localOrdinal) {
+        return chunks.get(localOrdinal);
+    }
+
+    /**
+     * Gets the term ids of a chunk's analyzed text in text order. The array must not be modified.
+     */
+    int[] terms(int localOrdinal) {
+        return terms.get(localOrdinal);
+    }
+
+    List<Chunk> chunks() {
+        return chunks;
+    }
+
+    InvertedIndex index() {
+        return index;
+    }
+
+    MetadataIndex metadata() {
+        return metadata;
+    }
+}
@@ -0,0 +1,239 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.cache.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache that matches queries by meaning rather than by text.
+ *
+ * Each entry holds the unit-length embedding of the query it was computed for, so a
+ * paraphrase whose embedding has at least {@code minSimilarity} cosine similarity with
+ * a cached query is served that query's value. Values are only shared between queries
+ * with an equal scope, which holds whatever else the value depends on, such as filters.
+ *
+ * Lookups scan the contiguous embedding slab with the {@link VectorMath} dot product,
+ * which for the few thousand entries such a cache holds is cheaper than the query
+ * embedding itself. The slab is a ring: once full, each new entry replaces the oldest.
+ * Entries computed against an older knowledge base version are dropped as soon as a
+ * newer version is seen; entries older than the expiry are skipped until overwritten.
+ * A query that cannot be embedded is a miss, so the cache never fails the request it
+ * sits in front of.
+ *
+ * @param <S> scope type, with value-based equals
+ * @param <V> value type
+ */
+public final class SemanticCache<S, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticCache.class);
+
+    private final ChunkEmbedder embedder;
+    private final LongSupplier version;
+    private final int maximumSize;
+    private final double minSimilarity;
+    private final long expireAfterWriteNanos;
+    private final LongSupplier nanoTime;
+    private final Object lock = new Object();
+    private float[] slab;
+    private int dimension;
+    private Object[] scopes;
+    private Object[] values;
+    private long[] writtenAt;
+    private long[] loadNanos;
+    private int count;
+    private int next;
+    private long entriesVersion;
+    private long hitCount;
+    private long missCount;
+    private long failureCount;
+    private long evictionCount;
+    private long savedNanos;
+
+    /**
+     * @param embeddingModel model queries are embedded with; not used when caching is disabled
+     * @param version current knowledge base version
+     * @param maximumSize maximum number of entries; zero disables caching
+     * @param minSimilarity cosine similarity a query needs with a cached one to be served its value
+     * @param expireAfterWrite age at which an entry expires; zero or negative never expires
+     * @param nanoTime clock entry ages and saved time are measured with
+     */
+    public SemanticCache(EmbeddingModel embeddingModel, LongSupplier version, int maximumSize,
+                         double minSimilarity, Duration expireAfterWrite, LongSupplier nanoTime) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum cache size must not be negative");
+        }
+        this.embedder = maximumSize == 0 ? null : new ChunkEmbedder(embeddingModel);
+        this.version = version;
+        this.maximumSize = maximumSize;
+        this.minSimilarity = minSimilarity;
+        this.expireAfterWriteNanos = expireAfterWrite.isNegative() ? 0L : expireAfterWrite.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Looks up the value cached for the most similar query with the same scope.
+     *
+     * @return the lookup, holding the value on a hit; pass it to {@link #put} after a miss.
+     *         If the query cannot be embedded the failure is logged and counted, and the
+     *         lookup is a miss that {@link #put} ignores
+     */
+    public Lookup<S, V> lookup(String query, S scope) {
+        long startedAt = nanoTime.getAsLong();
+        if (maximumSize == 0 || query == null || query.isBlank()) {
+            return new Lookup<>(scope, null, 0L, startedAt, null, 0.0);
+        }
+        float[] embedding;
+        try {
+            embedding = VectorMath.normalized(embedder.embedQuery(query));
+        } catch (RetrievalException e) {
+            log.warn("Semantic cache lookup failed; treating it as a miss: {}", e.getMessage());
+            synchronized (lock) {
+                missCount++;
+                failureCount++;
+            }
+            return new Lookup<>(scope, null, 0L, startedAt, null, 0.0);
+        }
+        long currentVersion = version.getAsLong();
+        synchronized (lock) {
+            if (currentVersion != entriesVersion) {
+                // Every answer may cite chunks that changed, so none of them is reusable
+                evictionCount += count;
+                count = 0;
+                next = 0;
+                entriesVersion = currentVersion;
+            }
+            int best = -1;
+            double bestSimilarity = minSimilarity;
+            if (embedding.length == dimension) {
+                long now = nanoTime.getAsLong();
+                for (int slot = 0; slot < count; slot++) {
+                    if (expireAfterWriteNanos > 0 && now - writtenAt[slot] >= expireAfterWriteNanos) {
+                        continue;
+                    }
+                    double similarity = VectorMath.dot(slab, slot * dimension, embedding);
+                    if (similarity >= bestSimilarity && scope.equals(scopes[slot])) {
+                        best = slot;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+            if (best < 0) {
+                missCount++;
+                return new Lookup<>(scope, embedding, currentVersion, startedAt, null, 0.0);
+            }
+            hitCount++;
+            // A hit still paid for the query embedding and the scan
+            savedNanos += Math.max(0L, loadNanos[best] - (nanoTime.getAsLong() - startedAt));
+            @SuppressWarnings("unchecked")
+            V value = (V) values[best];
+            return new Lookup<>(scope, embedding, currentVersion, startedAt, value, bestSimilarity);
+        }
+    }
+
+    /**
+     * Caches the value computed after a missed lookup. The time since the lookup started
+     * is kept as the cost a later hit on the entry saves. Values computed while the
+     * knowledge base changed are not cached.
+     */
+    public void put(Lookup<S, V> lookup, V value) {
+        if (lookup.embedding == null || value == null) {
+            return;
+        }
+        long now = nanoTime.getAsLong();
+        synchronized (lock) {
+            if (lookup.version != entriesVersion || lookup.version != version.getAsLong()) {
+                return;
+            }
+            if (slab == null || lookup.embedding.length != dimension) {
+                // First entry, or the embedding model changed under us
+                evictionCount += count;
+                dimension = lookup.embedding.length;
+                slab = new float[maximumSize * dimension];
+                scopes = new Object[maximumSize];
+                values = new Object[maximumSize];
+                writtenAt = new long[maximumSize];
+                loadNanos = new long[maximumSize];
+                count = 0;
+                next = 0;
+            }
+            if (count == maximumSize) {
+                evictionCount++;
+            } else {
+                count++;
+            }
+            int slot = next;
+            next = (next + 1) % maximumSize;
+            System.arraycopy(lookup.embedding, 0, slab, slot * dimension, dimension);
+            scopes[slot] = lookup.scope;
+            values[slot] = value;
+            writtenAt[slot] = now;
+            loadNanos[slot] = now - lookup.startedAt;
+        }
+    }
+
+    /**
+     * Removes every entry. Counters are kept.
+     */
+    public void clear() {
+        synchronized (lock) {
+            count = 0;
+            next = 0;
+        }
+    }
+
+    /**
+     * Gets the number of entries held, including expired ones not yet overwritten.
+     */
+    public int size() {
+        synchronized (lock) {
+            return count;
+        }
+    }
+
+    public CacheStats stats() {
+        synchronized (lock) {
+            return new CacheStats(hitCount, missCount, 0L, evictionCount, count, savedNanos, failureCount);
+        }
+    }
+
+    /**
+     * Outcome of a lookup, carrying the query embedding so a miss can be cached without
+     * embedding the query again.
+     */
+    public static final class Lookup<S, V> {
+
+        private final S scope;
+        private final float[] embedding;
+        private final long version;
+        private final long startedAt;
+        private final V value;
+        private final double similarity;
+
+        private Lookup(S scope, float[] embedding, long version, long startedAt, V value, double similarity) {
+            this.scope = scope;
+            this.embedding = embedding;
+            this.version = version;
+            this.startedAt = startedAt;
+            this.value = value;
+            this.similarity = similarity;
+        }
+
+        /**
+         * Gets the cached value, null on a miss.
+         */
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * Gets the cosine similarity between the query and the cached query that was hit.
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable partition of the knowledge base with its own segments and indexes.
+ *
+ * Chunks are striped across shards round-robin by corpus-wide ordinal, so with
+ * {@code n} shards the chunk at ordinal {@code o} is shard {@code o % n}'s chunk at
+ * shard ordinal {@code o / n}. Inside a shard, segments cover consecutive shard
+ * ordinals and are merged tiered, exactly as a single unsharded knowledge base would be.
+ */
+final class Shard {
+
+    private static final Shard EMPTY = new Shard(List.of());
+
+    private final List<Segment> segments;
+    private final int[] bases;
+    private final int size;
+    private final long totalLength;
+
+    private Shard(List<Segment> segments) {
+        this.segments = List.copyOf(segments);
+        this.bases = new int[segments.size()];
+        int base = 0;
+        long length = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            bases[i] = base;
+            base += segments.get(i).size();
+            length += segments.get(i).index().totalLength();
+        }
+        this.size = base;
+        this.totalLength = length;
+    }
+
+    static Shard empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a shard with the segment appended after this shard's chunks.
+     */
+    Shard append(Segment segment) {
+        List<Segment> appended = new ArrayList<>(segments);
+        appended.add(segment);
+        mergeTail(appended);
+        return new Shard(appended);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long totalLength() {
+        return totalLength;
+    }
+
+    List<Segment> segments() {
+        return segments;
+    }
+
+    /**
+     * Gets the shard ordinal of the first chunk of a segment.
+     */
+    int base(int segmentIndex) {
+        return bases[segmentIndex];
+    }
+
+    Chunk chunk(int shardOrdinal) {
+        int segmentIndex = segmentOf(shardOrdinal);
+        return segments.get(segmentIndex).chunk(shardOrdinal - bases[segmentIndex]);
+    }
+
+    /**
+     * Gets the number of chunks in this shard containing the term.
+     */
+    int documentFrequency(int termId) {
+        int frequency = 0;
+        for (Segment segment : segments) {
+            PostingList postings = segment.index().postings(termId);
+            if (postings != null) {
+                frequency += postings.size();
+            }
+        }
+        return frequency;
+    }
+
+    private int segmentOf(int shardOrdinal) {
+        if (shardOrdinal < 0 || shardOrdinal >= size) {
+            throw new IndexOutOfBoundsException("Ordinal " + shardOrdinal + " out of bounds for size " + size);
+        }
+        int position = Arrays.binarySearch(bases, shardOrdinal);
+        // Segments are non-empty, so an exact hit is the segment starting at the ordinal
+        return position >= 0 ? position : -position - 2;
+    }
+
+    /**
+     * Merges the newest segment into its predecessor while the predecessor is at most
+     * twice its size. Each merge grows a chunk's segment by at least half, so a chunk
+     * is copied O(log n) times and segment sizes decrease geometrically.
+     */
+    private static void mergeTail(List<Segment> segments) {
+        while (segments.size() >= 2) {
+            Segment last = segments.get(segments.size() - 1);
+            Segment previous = segments.get(segments.size() - 2);
+            if (previous.size() > 2 * last.size()) {
+                return;
+            }
+            segments.remove(segments.size() - 1);
+            segments.set(segments.size() - 1, Segment.merge(List.of(previous, last)));
+        }
+    }
+}
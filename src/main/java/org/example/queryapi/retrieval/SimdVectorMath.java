@@ -0,0 +1,55 @@
+package org.example.queryapi.retrieval;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels. Only referenced through {@link VectorMath} once the
+ * incubator module is known to be present.
+ */
+final class SimdVectorMath {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    // Eight bytes widen to eight floats, which every SIMD platform supports
+    private static final VectorSpecies<Byte> CODE_SPECIES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Float> WIDENED_SPECIES = FloatVector.SPECIES_256;
+
+    private SimdVectorMath() {
+    }
+
+    static float dot(float[] a, int offset, float[] b) {
+        int length = b.length;
+        int bound = SPECIES.loopBound(length);
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector left = FloatVector.fromArray(SPECIES, a, offset + i);
+            FloatVector right = FloatVector.fromArray(SPECIES, b, i);
+            sum = left.fma(right, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[offset + i] * b[i];
+        }
+        return result;
+    }
+
+    static float dot(float[] a, byte[] codes, int offset) {
+        int length = a.length;
+        int bound = CODE_SPECIES.loopBound(length);
+        FloatVector sum = FloatVector.zero(WIDENED_SPECIES);
+        int i = 0;
+        for (; i < bound; i += CODE_SPECIES.length()) {
+            FloatVector widened = (FloatVector) ByteVector.fromArray(CODE_SPECIES, codes, offset + i)
+                    .castShape(WIDENED_SPECIES, 0);
+            sum = FloatVector.fromArray(WIDENED_SPECIES, a, i).fma(widened, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[i] * codes[offset + i];
+        }
+        return result;
+    }
+}
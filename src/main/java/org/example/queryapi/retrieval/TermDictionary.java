@@ -0,0 +1,69 @@
+package org.example.queryapi.retrieval;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns analyzed terms as dense integer ids shared by every segment of a knowledge base.
+ *
+ * Ids are assigned on first sight and never reused, so segments indexed at different
+ * times can be merged by id and a query term resolves to the same id in every shard.
+ * Lookups are lock-free; only assigning a new id takes a lock.
+ */
+final class TermDictionary {
+
+    /**
+     * Id returned by {@link #id(String)} for a term that has never been indexed.
+     */
+    static final int MISSING = -1;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] terms = new String[1024];
+    private int size;
+
+    /**
+     * Gets the id of a term, assigning the next id if the term is new.
+     */
+    int intern(String term) {
+        Integer id = ids.get(term);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(term);
+            if (id != null) {
+                return id;
+            }
+            if (size == terms.length) {
+                terms = Arrays.copyOf(terms, size * 2);
+            }
+            terms[size] = term;
+            // Publish the id only once the term can be read back by id
+            ids.put(term, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Gets the id of a term without assigning one.
+     *
+     * @return the id, or {@link #MISSING} if no indexed chunk contains the term
+     */
+    int id(String term) {
+        return ids.getOrDefault(term, MISSING);
+    }
+
+    /**
+     * Gets the term an id was assigned to.
+     */
+    String term(int id) {
+        return terms[id];
+    }
+
+    /**
+     * Gets the number of distinct terms interned so far.
+     */
+    int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.queryapi.retrieval;
+
+/**
+ * Bounded min-heap keeping the k best (ordinal, score) pairs seen so far.
+ * Backed by primitive arrays so offering a candidate never allocates.
+ *
+ * Ordering is by score descending, then ordinal ascending, which matches a stable
+ * sort over chunks in insertion order. Offers may arrive in any ordinal order.
+ */
+final class TopKCollector {
+
+    private final int[] ordinals;
+    private final double[] scores;
+    private int size;
+
+    /**
+     * @param k maximum number of entries to keep
+     */
+    TopKCollector(int k) {
+        this.ordinals = new int[Math.max(0, k)];
+        this.scores = new double[Math.max(0, k)];
+    }
+
+    /**
+     * Offers a candidate; it is kept if it ranks among the best k seen so far.
+     */
+    void offer(int ordinal, double score) {
+        int capacity = ordinals.length;
+        if (size < capacity) {
+            ordinals[size] = ordinal;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (capacity > 0 && ranksAbove(score, ordinal, scores[0], ordinals[0])) {
+            ordinals[0] = ordinal;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gets the number of entries currently held.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Empties the heap into best-first order.
+     * After this call {@link #ordinalAt(int)} and {@link #scoreAt(int)} return the ranked
+     * entries and no further candidates may be offered.
+     *
+     * @return number of ranked entries
+     */
+    int drain() {
+        int count = size;
+        // Repeatedly move the worst entry behind the shrinking heap, leaving best-first order
+        while (size > 1) {
+            swap(0, --size);
+            siftDown(0);
+        }
+        size = 0;
+        return count;
+    }
+
+    int ordinalAt(int rank) {
+        return ordinals[rank];
+    }
+
+    double scoreAt(int rank) {
+        return scores[rank];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksAbove(scores[parent], ordinals[parent], scores[index], ordinals[index])) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && ranksAbove(scores[left], ordinals[left], scores[right], ordinals[right])) {
+                worst = right;
+            }
+            if (!ranksAbove(scores[index], ordinals[index], scores[worst], ordinals[worst])) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int ordinal = ordinals[i];
+        ordinals[i] = ordinals[j];
+        ordinals[j] = ordinal;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private static boolean ranksAbove(double score, int ordinal, double otherScore, int otherOrdinal) {
+        return score > otherScore || (score == otherScore && ordinal < otherOrdinal);
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.queryapi.retrieval;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Exact nearest-neighbour index over unit-length embeddings.
+ *
+ * All vectors live back to back in one {@code float[]} slab, so a search is a single
+ * sequential pass over memory with no per-vector objects or pointer chasing. Vectors
+ * are normalized on insert, which makes cosine similarity a plain dot product.
+ * Large indexes are scanned in parallel ranges whose top-k results are merged.
+ *
+ * Appends are single-writer; searches never block and see a consistent prefix.
+ */
+final class VectorIndex implements VectorStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    private final int dimension;
+    private final Object writeLock = new Object();
+    // Written before size, so a reader that sees a size also sees a slab holding that many vectors
+    private volatile float[] vectors;
+    private volatile int size;
+
+    VectorIndex(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("dimension must be positive");
+        }
+        this.dimension = dimension;
+        this.vectors = new float[0];
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void addAll(List<float[]> batch) {
+        for (float[] vector : batch) {
+            checkDimension(vector);
+        }
+        synchronized (writeLock) {
+            int count = size;
+            float[] slab = ensureCapacity(count + batch.size());
+            for (float[] vector : batch) {
+                System.arraycopy(VectorMath.normalized(vector), 0, slab, count * dimension, dimension);
+                count++;
+            }
+            vectors = slab;
+            size = count;
+        }
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        synchronized (writeLock) {
+            if (newSize < size) {
+                size = newSize;
+            }
+        }
+    }
+
+    @Override
+    public TopKCollector search(float[] query, int k, double minSimilarity, int limit, BitSet allowed) {
+        return search(query, k, minSimilarity, limit, allowed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Searches with an explicit bound on the number of ranges scanned in parallel.
+     */
+    TopKCollector search(float[] query, int k, double minSimilarity, int limit, int parallelism) {
+        return search(query, k, minSimilarity, limit, null, parallelism);
+    }
+
+    private TopKCollector search(float[] query, int k, double minSimilarity, int limit, BitSet allowed,
+                                 int parallelism) {
+        checkDimension(query);
+        int count = Math.min(limit, size);
+        float[] slab = vectors;
+        float[] unit = VectorMath.normalized(query);
+
+        // Parallelism follows the number of vectors actually scored
+        int scored = allowed == null ? count : allowed.get(0, count).cardinality();
+        int parts = Math.min(parallelism, scored / PARALLEL_THRESHOLD);
+        if (parts <= 1) {
+            TopKCollector topK = new TopKCollector(Math.min(k, count));
+            scan(slab, unit, 0, count, minSimilarity, allowed, topK);
+            return topK;
+        }
+
+        int step = (count + parts - 1) / parts;
+        List<TopKCollector> partials = IntStream.range(0, parts).parallel()
+                .mapToObj(part -> {
+                    int from = part * step;
+                    int to = Math.min(count, from + step);
+                    TopKCollector partial = new TopKCollector(Math.min(k, Math.max(0, to - from)));
+                    scan(slab, unit, from, to, minSimilarity, allowed, partial);
+                    return partial;
+                })
+                .toList();
+
+        TopKCollector merged = new TopKCollector(Math.min(k, count));
+        for (TopKCollector partial : partials) {
+            int drained = partial.drain();
+            for (int rank = 0; rank < drained; rank++) {
+                merged.offer(partial.ordinalAt(rank), partial.scoreAt(rank));
+            }
+        }
+        return merged;
+    }
+
+    private void scan(float[] slab, float[] unit, int from, int to, double minSimilarity, BitSet allowed,
+                      TopKCollector topK) {
+        if (allowed != null) {
+            for (int ordinal = allowed.nextSetBit(from); ordinal >= 0 && ordinal < to; ordinal = allowed.nextSetBit(ordinal + 1)) {
+                float similarity = VectorMath.dot(slab, ordinal * dimension, unit);
+                if (similarity >= minSimilarity) {
+                    topK.offer(ordinal, similarity);
+                }
+            }
+            return;
+        }
+        for (int ordinal = from, offset = from * dimension; ordinal < to; ordinal++, offset += dimension) {
+            float similarity = VectorMath.dot(slab, offset, unit);
+            if (similarity >= minSimilarity) {
+                topK.offer(ordinal, similarity);
+            }
+        }
+    }
+
+    private float[] ensureCapacity(int count) {
+        float[] slab = vectors;
+        long required = (long) count * dimension;
+        if (required <= slab.length) {
+            return slab;
+        }
+        if (required > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Vector index is full at " + size + " vectors of dimension " + dimension);
+        }
+        long grown = Math.max(required, Math.max((long) INITIAL_CAPACITY * dimension, (long) slab.length * 2));
+        // Readers may still hold the old slab; they only read the prefix it already contains
+        return Arrays.copyOf(slab, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    "Expected embedding of dimension " + dimension + " but got " + vector.length);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.queryapi.retrieval;
+
+/**
+ * Dense float vector kernels used by vector retrieval.
+ *
+ * Dot products use the JDK Vector API when the {@code jdk.incubator.vector} module is
+ * present at runtime ({@code --add-modules jdk.incubator.vector}) and an unrolled scalar
+ * loop otherwise. The SIMD kernel lives in its own class so it is never loaded without
+ * the module.
+ */
+final class VectorMath {
+
+    static final boolean SIMD_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private VectorMath() {
+    }
+
+    /**
+     * Dot product of {@code a[offset, offset + b.length)} and {@code b}.
+     */
+    static float dot(float[] a, int offset, float[] b) {
+        if (SIMD_AVAILABLE) {
+            return SimdVectorMath.dot(a, offset, b);
+        }
+        return dotScalar(a, offset, b);
+    }
+
+    static float dotScalar(float[] a, int offset, float[] b) {
+        int length = b.length;
+        // Independent accumulators let the CPU overlap the multiply-adds
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[offset + i] * b[i];
+            s1 += a[offset + i + 1] * b[i + 1];
+            s2 += a[offset + i + 2] * b[i + 2];
+            s3 += a[offset + i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[offset + i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Dot product of {@code a} and the signed bytes {@code codes[offset, offset + a.length)}.
+     */
+    static float dot(float[] a, byte[] codes, int offset) {
+        if (SIMD_AVAILABLE) {
+            return SimdVectorMath.dot(a, codes, offset);
+        }
+        return dotScalar(a, codes, offset);
+    }
+
+    static float dotScalar(float[] a, byte[] codes, int offset) {
+        int length = a.length;
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[i] * codes[offset + i];
+            s1 += a[i + 1] * codes[offset + i + 1];
+            s2 += a[i + 2] * codes[offset + i + 2];
+            s3 += a[i + 3] * codes[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * codes[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns a unit-length copy of the vector, or an all-zero copy if its norm is zero.
+     */
+    static float[] normalized(float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += (double) value * value;
+        }
+        float[] result = new float[vector.length];
+        if (norm == 0.0) {
+            return result;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i] * scale;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.queryapi.retrieval;
+
+/**
+ * Lossy compression of unit-length embeddings into fixed-size byte codes that can be
+ * scored against a query without decoding.
+ */
+interface VectorQuantizer {
+
+    /**
+     * Gets the number of bytes per encoded vector.
+     */
+    int codeSize();
+
+    /**
+     * Encodes a vector into {@code codes[offset, offset + codeSize())}.
+     */
+    void encode(float[] vector, byte[] codes, int offset);
+
+    /**
+     * Prepares per-query state for scoring many codes.
+     *
+     * @param query unit-length query vector
+     * @return scorer approximating the dot product between the query and a code
+     */
+    Scorer scorer(float[] query);
+
+    /**
+     * Approximate similarity between one query and encoded vectors.
+     */
+    @FunctionalInterface
+    interface Scorer {
+
+        float score(byte[] codes, int offset);
+    }
+}
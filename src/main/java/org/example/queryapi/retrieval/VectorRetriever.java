@@ -0,0 +1,245 @@
+package org.example.queryapi.retrieval;
+
+import jakarta.annotation.PreDestroy;
+import org.example.queryapi.domain.Chunk;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Retriever that ranks chunks by cosine similarity between query and chunk embeddings.
+ *
+ * Chunk embeddings are computed through the configured {@link EmbeddingModel} and kept
+ * in a {@link VectorIndex}. Chunks added to the knowledge base are embedded in batches
+ * by a background indexer, started by the ingestion itself; queries never wait for it
+ * and search the prefix of the corpus indexed so far. Each completed batch is published
+ * at once and kept even when a later batch fails. Search is exact brute force over the
+ * contiguous vector slab, using SIMD when the Vector API module is available.
+ *
+ * With {@code queryapi.retrieval.vector.quantization} set to {@code int8} or {@code pq}
+ * the embeddings are held as quantized codes in a {@link QuantizedVectorIndex} instead,
+ * with full-precision vectors kept on disk to rescore the best candidates.
+ * Metadata filters restrict the scan to the allowed chunks' vectors.
+ * Active when {@code queryapi.retrieval.strategy} is {@code vector}, and as a leg of {@code hybrid}.
+ */
+@Component
+@ConditionalOnExpression("'${queryapi.retrieval.strategy:keyword}' == 'vector' or '${queryapi.retrieval.strategy:keyword}' == 'hybrid'")
+public class VectorRetriever implements Retriever {
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final InMemoryKnowledgeBase knowledgeBase;
+    private final ChunkEmbedder embedder;
+    private final double minSimilarity;
+    private final IntFunction<VectorStore> storeFactory;
+    private final BackgroundIndexer indexer;
+    // Not a monitor: the holder waits on the embedding model, which would pin a virtual thread
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private volatile Indexed indexed;
+    private volatile boolean closed;
+
+    @Autowired
+    public VectorRetriever(InMemoryKnowledgeBase knowledgeBase,
+                           EmbeddingModel embeddingModel,
+                           @Value("${queryapi.retrieval.vector.min-similarity:0.5}") double minSimilarity,
+                           @Value("${queryapi.retrieval.vector.quantization:none}") String quantization,
+                           @Value("${queryapi.retrieval.vector.rescore:200}") int rescoreCount,
+                           @Value("${queryapi.retrieval.vector.training-size:4096}") int trainingSize,
+                           @Value("${queryapi.retrieval.vector.pq-subvector-dimension:8}") int subvectorDimension,
+                           @Value("${queryapi.retrieval.vector.directory:}") String directory) {
+        this(knowledgeBase, embeddingModel, minSimilarity, quantization, rescoreCount, trainingSize,
+                subvectorDimension, directory, null);
+    }
+
+    /**
+     * @param indexing runs the background indexer, or null for a virtual thread per run;
+     *                 tests pass {@code Runnable::run} to index synchronously on ingestion
+     */
+    VectorRetriever(InMemoryKnowledgeBase knowledgeBase, EmbeddingModel embeddingModel, double minSimilarity,
+                    String quantization, int rescoreCount, int trainingSize, int subvectorDimension,
+                    String directory, Executor indexing) {
+        if (knowledgeBase == null) {
+            throw new RetrievalException("Knowledge base cannot be null");
+        }
+        this.knowledgeBase = knowledgeBase;
+        this.embedder = new ChunkEmbedder(embeddingModel);
+        this.minSimilarity = minSimilarity;
+        this.storeFactory = storeFactory(quantization, rescoreCount, trainingSize, subvectorDimension,
+                directory.isBlank() ? Path.of(System.getProperty("java.io.tmpdir")) : Path.of(directory));
+        this.indexer = indexing == null
+                ? new BackgroundIndexer("vector-indexer", this::catchUp, RETRY_DELAY)
+                : new BackgroundIndexer("vector-indexer", this::catchUp, indexing, RETRY_DELAY, System::nanoTime);
+        knowledgeBase.onPublish(indexer::request);
+        indexer.request();
+    }
+
+    private static IntFunction<VectorStore> storeFactory(String quantization, int rescoreCount, int trainingSize,
+                                                         int subvectorDimension, Path directory) {
+        Function<List<float[]>, VectorQuantizer> trainer = switch (quantization.trim().toLowerCase(Locale.ROOT)) {
+            case "none" -> null;
+            case "int8" -> ScalarQuantizer::train;
+            case "pq" -> sample -> ProductQuantizer.train(sample, subvectorDimension, 42L);
+            default -> throw new RetrievalException(
+                    "Unknown vector quantization '" + quantization + "', expected none, int8 or pq");
+        };
+        if (trainer == null) {
+            return VectorIndex::new;
+        }
+        return dimension -> QuantizedVectorIndex.create(dimension, directory, trainer, trainingSize, rescoreCount);
+    }
+
+    @Override
+    public List<Chunk> retrieve(String query, int maxChunks, RetrievalFilter filter) {
+        return retrieveResult(query, maxChunks, filter).chunks();
+    }
+
+    /**
+     * {@inheritDoc} The result is incomplete while chunks remain to be indexed.
+     */
+    @Override
+    public RetrievalResult retrieveResult(String query, int maxChunks, RetrievalFilter filter) {
+        if (query == null || query.isBlank() || maxChunks <= 0) {
+            return new RetrievalResult(List.of(), true);
+        }
+
+        // The index is read before the snapshot, so the snapshot is never older than it
+        Indexed current = indexed;
+        KnowledgeBaseSnapshot snapshot = knowledgeBase.snapshot();
+        if (!covers(current, snapshot)) {
+            indexer.request();
+            current = indexed;
+            snapshot = knowledgeBase.snapshot();
+        }
+        int searchable = searchable(current, snapshot);
+        boolean complete = searchable == snapshot.size();
+        if (searchable == 0) {
+            return new RetrievalResult(List.of(), complete);
+        }
+        // Only allowed chunks are scored; a filter nothing passes skips the embedding call too
+        BitSet allowed = snapshot.select(filter);
+        if (allowed != null && allowed.get(0, searchable).isEmpty()) {
+            return new RetrievalResult(List.of(), complete);
+        }
+        float[] queryEmbedding = embedder.embedQuery(query);
+        if (queryEmbedding.length != current.index().dimension()) {
+            throw new RetrievalException("Query embedding has dimension " + queryEmbedding.length
+                    + " but chunks were embedded with dimension " + current.index().dimension());
+        }
+
+        TopKCollector topK = current.index().search(queryEmbedding, maxChunks, minSimilarity, searchable, allowed);
+        int count = topK.drain();
+        List<Chunk> result = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            double similarity = Math.min(1.0, topK.scoreAt(rank));
+            result.add(snapshot.getChunk(topK.ordinalAt(rank)).withRelevanceScore(similarity));
+        }
+        return new RetrievalResult(result, complete);
+    }
+
+    /**
+     * Gets how many leading chunks of the snapshot the index holds, zero when the index
+     * was built for chunks the snapshot no longer starts with.
+     */
+    private static int searchable(Indexed indexed, KnowledgeBaseSnapshot snapshot) {
+        if (indexed == null || !ChunkEmbedder.extendsPrefix(indexed.snapshot(), indexed.count(), snapshot)) {
+            return 0;
+        }
+        return indexed.count();
+    }
+
+    private static boolean covers(Indexed indexed, KnowledgeBaseSnapshot snapshot) {
+        return indexed != null && searchable(indexed, snapshot) == snapshot.size();
+    }
+
+    /**
+     * Embeds every chunk of the latest snapshot that is not yet in the index, or rebuilds
+     * the index when the snapshot no longer extends the one indexed last. Runs on the
+     * background indexer, one run at a time.
+     */
+    private void catchUp() {
+        indexLock.lock();
+        try {
+            KnowledgeBaseSnapshot latest = knowledgeBase.snapshot();
+            Indexed current = indexed;
+            if (closed || covers(current, latest)) {
+                return;
+            }
+            boolean extend = current != null && current.count() > 0 && searchable(current, latest) > 0;
+            VectorStore[] index = {extend ? current.index() : null};
+            int[] done = {extend ? current.count() : 0};
+            Indexed replaced = extend ? null : current;
+            try {
+                embedder.embedChunks(latest, done[0], (first, embeddings) -> {
+                    if (index[0] == null) {
+                        index[0] = storeFactory.apply(embeddings.get(0).length);
+                    }
+                    index[0].addAll(embeddings);
+                    done[0] = first + embeddings.size();
+                    publish(new Indexed(index[0], latest, done[0]), replaced);
+                    return !closed;
+                });
+            } catch (RuntimeException e) {
+                Indexed published = indexed;
+                if (index[0] != null && (published == null || published.index() != index[0])) {
+                    index[0].close();
+                } else if (index[0] != null && index[0].size() > done[0]) {
+                    // Drop the vectors of a batch that failed midway so the next run appends after the last good one
+                    index[0].truncate(done[0]);
+                }
+                throw e;
+            }
+            if (index[0] == null) {
+                publish(new Indexed(new VectorIndex(1), latest, 0), replaced);
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private void publish(Indexed next, Indexed replaced) {
+        Indexed previous = indexed;
+        indexed = next;
+        if (replaced != null && previous == replaced) {
+            // Queries still searching the old store finish first; it releases its file after them
+            replaced.index().close();
+        }
+    }
+
+    /**
+     * Releases the vector store, deleting any scratch file it holds.
+     */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        indexer.close();
+        indexLock.lock();
+        try {
+            Indexed current = indexed;
+            indexed = null;
+            if (current != null) {
+                current.index().close();
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Index whose vectors {@code [0, count)} are the first chunks of the snapshot.
+     */
+    private record Indexed(VectorStore index, KnowledgeBaseSnapshot snapshot, int count) {
+    }
+}
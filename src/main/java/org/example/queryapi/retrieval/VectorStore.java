@@ -0,0 +1,59 @@
+package org.example.queryapi.retrieval;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Append-only store of embeddings addressed by knowledge base ordinal, searchable by
+ * cosine similarity. Appends are single-writer; searches may run concurrently.
+ */
+interface VectorStore {
+
+    int dimension();
+
+    /**
+     * Gets the number of stored vectors.
+     */
+    int size();
+
+    /**
+     * Appends vectors; the first gets ordinal {@link #size()}.
+     *
+     * @throws IllegalArgumentException if a vector has the wrong dimension
+     */
+    void addAll(List<float[]> batch);
+
+    /**
+     * Drops every vector from the given ordinal on. Searches already running may still
+     * see them; callers bound searches by their own size anyway.
+     */
+    void truncate(int newSize);
+
+    /**
+     * Finds the most similar vectors by cosine similarity.
+     *
+     * @param query query embedding, any length-scale
+     * @param k maximum number of results
+     * @param minSimilarity results below this similarity are skipped
+     * @param limit only ordinals below this bound are considered
+     * @return undrained collector holding (ordinal, similarity) pairs
+     */
+    default TopKCollector search(float[] query, int k, double minSimilarity, int limit) {
+        return search(query, k, minSimilarity, limit, null);
+    }
+
+    /**
+     * Finds the most similar vectors among the allowed ordinals by cosine similarity.
+     * Only allowed vectors are scored, so a narrow filter makes the search cheaper.
+     *
+     * @param allowed ordinals that may be returned, or null to allow every ordinal
+     * @see #search(float[], int, double, int)
+     */
+    TopKCollector search(float[] query, int k, double minSimilarity, int limit, BitSet allowed);
+
+    /**
+     * Releases resources held outside the heap. The default does nothing.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,308 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of chunk batches in a single file.
+ *
+ * Each record is {@code [payload length][CRC32 of payload][payload]}, where the payload
+ * encodes one batch. Records are made durable with group commit: the first writer to
+ * reach the fsync forces everything written so far, and writers whose records were
+ * covered by that fsync return without forcing again. Under concurrency one fsync is
+ * shared by many batches and each batch costs only a sequential write.
+ *
+ * A record whose write fails partway is cut off again, so later records never land behind
+ * torn bytes that replay would stop at. A failed fsync leaves unknown data on disk, so the
+ * log is cut back to its last durable position, which drops the records of every writer
+ * that was told its batch was not logged, and it refuses further appends; closing it and
+ * opening a new log starts over. If a cut itself fails the log refuses appends as well.
+ *
+ * A batch payload holds the chunks' string fields followed by their tags. Tags were
+ * added later, so a payload that ends after the chunks decodes to untagged chunks.
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private long written;
+    private volatile long durable;
+    // Set once the log can no longer be appended to safely
+    private volatile IOException failure;
+
+    private WriteAheadLog(Path file, FileChannel channel, long position) {
+        this.file = file;
+        this.channel = channel;
+        this.written = position;
+        this.durable = position;
+    }
+
+    /**
+     * Opens a log for appending, creating it if missing. Appends go after any existing content.
+     */
+    static WriteAheadLog open(Path file) throws IOException {
+        return open(file, FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ));
+    }
+
+    static WriteAheadLog open(Path file, FileChannel channel) throws IOException {
+        long size = channel.size();
+        channel.position(size);
+        return new WriteAheadLog(file, channel, size);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * Checks whether the log refuses appends after a failure it could not clean up after.
+     */
+    boolean failed() {
+        return failure != null;
+    }
+
+    /**
+     * Writes a batch to the end of the log without forcing it to disk.
+     * Records are laid out in the order of the calls; use {@link #sync(long)} to make
+     * the record durable.
+     *
+     * @param batch chunks to log
+     * @return log position just past the record
+     * @throws IOException if the write fails, or the log refuses appends after an earlier failure
+     */
+    long write(Collection<Chunk> batch) throws IOException {
+        byte[] payload = encode(batch);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        long end;
+        synchronized (writeLock) {
+            ensureUsable();
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } catch (IOException e) {
+                cutBack(written, e);
+                throw e;
+            }
+            written += record.capacity();
+            end = written;
+        }
+        return end;
+    }
+
+    /**
+     * Returns once everything up to the given log position is durable.
+     * The first caller to get here forces all records written so far; callers whose
+     * records were covered by that fsync return without forcing again.
+     *
+     * @param end log position returned by {@link #write(Collection)}
+     * @throws IOException if the fsync fails, or failed earlier before covering the record
+     */
+    void sync(long end) throws IOException {
+        if (durable >= end) {
+            return;
+        }
+        synchronized (syncLock) {
+            // Another appender's fsync may have covered this record while we waited
+            if (durable >= end) {
+                return;
+            }
+            ensureUsable();
+            long target;
+            synchronized (writeLock) {
+                target = written;
+            }
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (writeLock) {
+                    failure = e;
+                    cutBack(durable, e);
+                }
+                throw e;
+            }
+            durable = target;
+        }
+    }
+
+    /**
+     * Forces and closes the log; a failed log is closed without forcing.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            try {
+                if (failure == null) {
+                    channel.force(false);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void ensureUsable() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log refuses appends after an earlier failure", failure);
+        }
+    }
+
+    /**
+     * Truncates the log back to a record boundary, marking it failed if that is impossible.
+     * Called with the write lock held.
+     */
+    private void cutBack(long position, IOException cause) {
+        try {
+            channel.truncate(position);
+            channel.position(position);
+            written = position;
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            failure = cause;
+        }
+    }
+
+    /**
+     * Replays every intact record of a log file in order.
+     * Reading stops at the first torn or corrupt record, which can only be the tail
+     * written during a crash; the file is truncated there so later appends stay readable.
+     *
+     * @param file log file
+     * @param consumer receives each batch
+     * @return number of batches replayed
+     * @throws IOException if the file cannot be read
+     */
+    static int replay(Path file, Consumer<List<Chunk>> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long position = 0;
+            int batches = 0;
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            while (position + RECORD_HEADER_BYTES <= size) {
+                header.clear();
+                readFully(channel, header, position);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 0 || position + RECORD_HEADER_BYTES + length > size) {
+                    break;
+                }
+
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, position + RECORD_HEADER_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                consumer.accept(decode(payload.array()));
+                batches++;
+                position += RECORD_HEADER_BYTES + length;
+            }
+            if (position < size) {
+                channel.truncate(position);
+                channel.force(true);
+            }
+            return batches;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of log file");
+            }
+        }
+    }
+
+    static byte[] encode(Collection<Chunk> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(batch.size());
+        for (Chunk chunk : batch) {
+            writeString(out, chunk.getChunkId());
+            writeString(out, chunk.getDocumentId());
+            writeString(out, chunk.getDocumentTitle());
+            writeString(out, chunk.getText());
+            writeString(out, chunk.getUrl());
+        }
+        for (Chunk chunk : batch) {
+            out.writeInt(chunk.getTags().size());
+            for (String tag : chunk.getTags()) {
+                writeString(out, tag);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Chunk> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readInt();
+        List<Chunk> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(new Chunk(readString(in), readString(in), readString(in), readString(in), readString(in), 0.0));
+        }
+        if (in.available() == 0) {
+            return batch;
+        }
+        List<Chunk> tagged = new ArrayList<>(count);
+        for (Chunk chunk : batch) {
+            int tagCount = in.readInt();
+            List<String> tags = new ArrayList<>(tagCount);
+            for (int t = 0; t < tagCount; t++) {
+                tags.add(readString(in));
+            }
+            tagged.add(new Chunk(chunk.getChunkId(), chunk.getDocumentId(), chunk.getDocumentTitle(),
+                    chunk.getText(), chunk.getUrl(), tags, 0.0));
+        }
+        return tagged;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] encoded = new byte[length];
+        in.readFully(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+}
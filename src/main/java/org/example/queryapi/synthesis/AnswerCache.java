@@ -0,0 +1,125 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.cache.CacheKeys;
+import org.example.queryapi.cache.CacheStats;
+import org.example.queryapi.cache.TinyLfuCache;
+import org.example.queryapi.domain.Chunk;
+import org.example.queryapi.domain.SynthesisResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of synthesized answers in front of the {@link Synthesizer}.
+ *
+ * Entries are keyed by the normalized query, the ids and text of the retrieved chunks in
+ * prompt order (citation markers refer to chunk positions), the answer token limit, the
+ * chat model and its generation options, so a chunk whose text was re-ingested, or a
+ * changed model or temperature, never serves an answer generated for something else.
+ * The key holds the chunks' own text instances rather than copies. Entries expire after
+ * {@code queryapi.cache.answer.ttl-seconds} and at most
+ * {@code queryapi.cache.answer.max-entries} are kept; zero entries disables caching.
+ * Concurrent requests for the same answer wait for the one synthesis in flight instead
+ * of each calling the model.
+ */
+@Component
+public class AnswerCache {
+
+    private final String model;
+    private final String options;
+    private final TinyLfuCache<Key, SynthesisResult> cache;
+
+    @Autowired
+    public AnswerCache(@Value("${spring.ai.ollama.chat.model:}") String model,
+                       @Value("${spring.ai.ollama.chat.options.temperature:}") String temperature,
+                       @Value("${queryapi.cache.answer.max-entries:1000}") int maxEntries,
+                       @Value("${queryapi.cache.answer.ttl-seconds:600}") long ttlSeconds) {
+        this(model, "temperature=" + temperature, maxEntries, Duration.ofSeconds(ttlSeconds), System::nanoTime);
+    }
+
+    AnswerCache(String model, String options, int maxEntries, Duration ttl, LongSupplier nanoTime) {
+        this.model = model;
+        this.options = options;
+        this.cache = new TinyLfuCache<>(maxEntries, ttl, nanoTime);
+    }
+
+    /**
+     * Gets the cached answer for a query over the given chunks, synthesizing it on a miss.
+     *
+     * @param maxTokens answer token limit of the request, or null for none
+     * @return the answer and whether it came from the cache or another request's synthesis
+     * @throws SynthesisException if synthesis fails; failures are not cached
+     */
+    public Answer synthesize(Synthesizer synthesizer, String query, List<Chunk> chunks, Integer maxTokens) {
+        boolean[] synthesized = {false};
+        SynthesisResult result = cache.get(key(query, chunks, maxTokens), () -> {
+            synthesized[0] = true;
+            return synthesizer.synthesize(query, chunks, maxTokens);
+        });
+        return new Answer(result, !synthesized[0]);
+    }
+
+    /**
+     * Gets the cached answer for a query over the given chunks without synthesizing it.
+     *
+     * @return the answer, or null if it is not cached
+     */
+    public SynthesisResult getIfPresent(String query, List<Chunk> chunks, Integer maxTokens) {
+        return cache.getIfPresent(key(query, chunks, maxTokens));
+    }
+
+    /**
+     * Caches an answer synthesized outside the cache, such as a streamed one.
+     */
+    public void put(String query, List<Chunk> chunks, Integer maxTokens, SynthesisResult result) {
+        cache.put(key(query, chunks, maxTokens), result);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private Key key(String query, List<Chunk> chunks, Integer maxTokens) {
+        List<String> chunkIds = new ArrayList<>(chunks.size());
+        List<String> chunkTexts = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            chunkIds.add(chunk.getChunkId());
+            chunkTexts.add(chunk.getText());
+        }
+        return new Key(CacheKeys.normalizeQuery(query), chunkIds, chunkTexts, maxTokens, model, options);
+    }
+
+    /**
+     * Synthesis result together with where it came from.
+     */
+    public static final class Answer {
+
+        private final SynthesisResult result;
+        private final boolean cached;
+
+        Answer(SynthesisResult result, boolean cached) {
+            this.result = result;
+            this.cached = cached;
+        }
+
+        public SynthesisResult getResult() {
+            return result;
+        }
+
+        /**
+         * Checks whether this request reused an answer instead of calling the model itself.
+         */
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    private record Key(String query, List<String> chunkIds, List<String> chunkTexts, Integer maxTokens, String model,
+                       String options) {
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds citation markers [1], [2], etc. in answer text fed piece by piece, as it is
+ * generated, and maps them to chunk IDs based on chunk order.
+ *
+ * A marker may be split across pieces; the unfinished tail is kept until the piece
+ * that closes it arrives. Markers outside the chunk range are ignored, and each chunk
+ * is reported once, in order of first citation.
+ */
+public final class CitationTracker {
+
+    // Longest citation number that still parses as an int
+    private static final int MAX_DIGITS = 9;
+
+    private final List<Chunk> chunks;
+    private final List<String> citedChunkIds = new ArrayList<>();
+    private final StringBuilder pending = new StringBuilder();
+
+    public CitationTracker(List<Chunk> chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * Feeds the next piece of answer text.
+     *
+     * @return IDs of the chunks cited for the first time by markers this piece completes
+     */
+    public List<String> accept(String text) {
+        List<String> newlyCited = List.of();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (pending.isEmpty()) {
+                if (c == '[') {
+                    pending.append(c);
+                }
+            } else if (c >= '0' && c <= '9' && pending.length() <= MAX_DIGITS) {
+                pending.append(c);
+            } else if (c == ']' && pending.length() > 1) {
+                int index = Integer.parseInt(pending, 1, pending.length(), 10) - 1;
+                pending.setLength(0);
+                if (index >= 0 && index < chunks.size()) {
+                    String chunkId = chunks.get(index).getChunkId();
+                    if (!citedChunkIds.contains(chunkId)) {
+                        citedChunkIds.add(chunkId);
+                        if (newlyCited.isEmpty()) {
+                            newlyCited = new ArrayList<>();
+                        }
+                        newlyCited.add(chunkId);
+                    }
+                }
+            } else {
+                pending.setLength(0);
+                if (c == '[') {
+                    pending.append(c);
+                }
+            }
+        }
+        return newlyCited;
+    }
+
+    /**
+     * Gets the IDs of all chunks cited so far, in order of first citation.
+     */
+    public List<String> getCitedChunkIds() {
+        return List.copyOf(citedChunkIds);
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.queryapi.synthesis;
+
+/**
+ * Point-in-time state and counters of one model endpoint of a {@link PooledSynthesizer}.
+ */
+public final class EndpointStats {
+
+    private final String baseUrl;
+    private final int outstanding;
+    private final boolean ejected;
+    private final long requestCount;
+    private final long failureCount;
+    private final long ejectionCount;
+    private final double meanLatencyMs;
+
+    public EndpointStats(String baseUrl, int outstanding, boolean ejected, long requestCount, long failureCount,
+                         long ejectionCount, double meanLatencyMs) {
+        this.baseUrl = baseUrl;
+        this.outstanding = outstanding;
+        this.ejected = ejected;
+        this.requestCount = requestCount;
+        this.failureCount = failureCount;
+        this.ejectionCount = ejectionCount;
+        this.meanLatencyMs = meanLatencyMs;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Gets the number of requests sent to the endpoint and not yet answered.
+     */
+    public int getOutstanding() {
+        return outstanding;
+    }
+
+    /**
+     * Checks whether the endpoint is out of rotation for failing or answering slowly.
+     */
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    /**
+     * Gets the number of requests sent to the endpoint, hedges included.
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Gets the number of requests the endpoint failed.
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Gets the number of times the endpoint was taken out of rotation.
+     */
+    public long getEjectionCount() {
+        return ejectionCount;
+    }
+
+    /**
+     * Gets the running mean latency of the endpoint since it was last taken back into
+     * rotation, in milliseconds, counting requests overtaken by their hedge at the time
+     * they were cancelled.
+     */
+    public double getMeanLatencyMs() {
+        return meanLatencyMs;
+    }
+}
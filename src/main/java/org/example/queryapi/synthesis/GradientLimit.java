@@ -0,0 +1,115 @@
+package org.example.queryapi.synthesis;
+
+/**
+ * Concurrency limit that follows the latency of the model, in the manner of a gradient
+ * limiter: it grows while syntheses run about as fast as they do unloaded and shrinks in
+ * proportion once they slow down.
+ *
+ * Each finished synthesis updates a smoothed recent latency and a baseline, the unloaded
+ * latency: the latency of syntheses that ran alone, lowered whenever the recent latency
+ * falls below it. The gradient is the tolerated latency, {@code tolerance} times the
+ * baseline, over the recent latency, clamped to [0.5, 1]. The new limit is the current
+ * one times the gradient plus one slot of headroom, blended into the current limit. When
+ * the model saturates, each extra concurrent request only adds latency, the gradient
+ * falls below one and the limit settles where the headroom balances the gradient, just
+ * past the concurrency of peak throughput. The limit grows only while requests are
+ * waiting for it, so a lightly loaded service keeps its limit instead of inflating it.
+ *
+ * Under sustained load no synthesis runs alone, and the latency the limit itself adds
+ * cannot be told apart from a slower model. So after every {@value #PROBE_INTERVAL}
+ * syntheses under load the limit drops to one until a synthesis has run alone, which
+ * costs about one synthesis time at reduced throughput and lets the baseline follow a
+ * model swap or a shared host. Not thread-safe; the scheduler calls it under its lock.
+ */
+final class GradientLimit {
+
+    private static final double MIN_GRADIENT = 0.5;
+    // Weight of each new latency sample in the recent latency
+    private static final double LATENCY_WEIGHT = 0.2;
+    // Weight of each new limit in the current one
+    private static final double LIMIT_SMOOTHING = 0.2;
+    // Weight of the latency of a synthesis that ran alone in the baseline
+    private static final double BASELINE_WEIGHT = 0.5;
+    private static final int PROBE_INTERVAL = 500;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private double limit;
+    private double latencyNanos;
+    private double baselineNanos;
+    private int sinceProbe;
+    private boolean probing;
+
+    /**
+     * @param tolerance how many times the baseline latency may grow before the limit shrinks
+     */
+    GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit <= 0 || maxLimit < minLimit || tolerance < 1.0) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= max and tolerance must be at least 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * Checks whether the limit is measuring unloaded latency, in which case no synthesis
+     * should start while another one runs.
+     */
+    boolean probing() {
+        return probing;
+    }
+
+    /**
+     * Folds in the latency of a finished synthesis.
+     *
+     * @param concurrency number of syntheses running when it finished, itself included
+     * @param saturated whether requests were waiting for a slot, or all slots were busy
+     * @return the new limit, which still applies to the expected drain time of the queue
+     *         while probing
+     */
+    int update(long sampleNanos, int concurrency, boolean saturated) {
+        latencyNanos = latencyNanos == 0 ? sampleNanos : latencyNanos + LATENCY_WEIGHT * (sampleNanos - latencyNanos);
+        if (baselineNanos == 0) {
+            baselineNanos = sampleNanos;
+        } else if (concurrency == 1) {
+            baselineNanos += BASELINE_WEIGHT * (sampleNanos - baselineNanos);
+        } else {
+            baselineNanos = Math.min(baselineNanos, latencyNanos);
+        }
+
+        if (concurrency == 1) {
+            probing = false;
+            sinceProbe = 0;
+        } else if (saturated && ++sinceProbe >= PROBE_INTERVAL) {
+            probing = true;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * baselineNanos / latencyNanos));
+        if (gradient < 1.0 || saturated) {
+            double target = limit * gradient + (saturated ? 1 : 0);
+            limit = Math.max(minLimit, Math.min(maxLimit, limit + LIMIT_SMOOTHING * (target - limit)));
+        }
+        return limit();
+    }
+
+    /**
+     * Gets the smoothed latency of recent syntheses, zero before the first.
+     */
+    long latencyNanos() {
+        return (long) latencyNanos;
+    }
+
+    /**
+     * Gets the latency the limit is measured against, zero before the first synthesis.
+     */
+    long baselineNanos() {
+        return (long) baselineNanos;
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.queryapi.synthesis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts of recorded values in fixed buckets, each holding the values up to its upper
+ * bound and above the previous one; the last bucket holds everything larger.
+ */
+final class Histogram {
+
+    private final long[] upperBounds;
+    private final AtomicLongArray counts;
+
+    /**
+     * @param upperBounds inclusive upper bounds of the buckets, ascending
+     */
+    Histogram(long... upperBounds) {
+        this.upperBounds = upperBounds.clone();
+        this.counts = new AtomicLongArray(upperBounds.length + 1);
+    }
+
+    void record(long value) {
+        int bucket = 0;
+        while (bucket < upperBounds.length && value > upperBounds[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+    }
+
+    /**
+     * Gets the count of each bucket keyed by its upper bound, {@code "+Inf"} for the last.
+     */
+    Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (int i = 0; i < upperBounds.length; i++) {
+            snapshot.put(Long.toString(upperBounds[i]), counts.get(i));
+        }
+        snapshot.put("+Inf", counts.get(upperBounds.length));
+        return snapshot;
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.queryapi.synthesis;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latency samples, up to a fixed number, for percentiles over recent
+ * traffic only. Thread-safe.
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the sample at the given quantile by nearest rank, zero while the window is empty.
+     *
+     * @param quantile between 0 and 1, such as 0.95 for the 95th percentile
+     */
+    long percentile(double quantile) {
+        long[] sorted;
+        synchronized (this) {
+            if (size == 0) {
+                return 0;
+            }
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
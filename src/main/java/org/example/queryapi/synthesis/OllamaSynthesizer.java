@@ -1,45 +1,78 @@
 package org.example.queryapi.synthesis;
 
+import org.example.queryapi.domain.AnswerDelta;
 import org.example.queryapi.domain.Chunk;
 import org.example.queryapi.domain.SynthesisResult;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Ollama-based implementation of Synthesizer using Spring AI.
  * Uses Spring AI's ChatModel abstraction for Ollama integration.
+ *
+ * Retrieved chunks are packed into the prompt within the model's context window,
+ * {@code queryapi.synthesis.context-tokens}, less the tokens reserved for the answer:
+ * the request's maxTokens, or {@code queryapi.synthesis.answer-tokens} when the request
+ * sets none, capped at half the window. A request's maxTokens is passed to Ollama as
+ * {@code num_predict} with the same cap, so prompt and answer always fit the window.
+ * Prompt and answer token counts reported by Ollama are returned with the answer.
  */
 @Component
 public class OllamaSynthesizer implements Synthesizer {
 
-    private static final Pattern CITATION_PATTERN = Pattern.compile("\\[(\\d+)\\]");
+    private static final String NO_INFORMATION =
+            "No relevant information found in the knowledge base to answer this question.";
+    private static final String SYSTEM_INSTRUCTION =
+            "You are a helpful assistant that answers questions based on provided context. " +
+            "Answer the question using ONLY the information from the numbered chunks below. " +
+            "Cite your sources using [1], [2], etc. to reference the chunk numbers. " +
+            "If the information is not in the provided chunks, say so.";
+    private static final String CONTEXT_HEADER = "Context Chunks:\n";
+    private static final String QUESTION_PREFIX = "\nQuestion: ";
+    private static final PromptPacker.ChunkLabel CHUNK_LABEL =
+            (number, text) -> String.format("Chunk %d: %s\n", number, text);
+
     private final ChatModel chatModel;
+    private final TokenEstimator estimator = new TokenEstimator();
+    private final PromptPacker packer;
 
     public OllamaSynthesizer(ChatModel chatModel) {
+        this(chatModel, 2048, 512);
+    }
+
+    /**
+     * @param contextTokens context window of the chat model; keep it equal to the model's {@code num_ctx}
+     * @param answerTokens tokens reserved for the answer when a request sets no maxTokens
+     */
+    @Autowired
+    public OllamaSynthesizer(ChatModel chatModel,
+                             @Value("${queryapi.synthesis.context-tokens:2048}") int contextTokens,
+                             @Value("${queryapi.synthesis.answer-tokens:512}") int answerTokens) {
         this.chatModel = chatModel;
+        this.packer = new PromptPacker(estimator, contextTokens, answerTokens);
     }
 
     @Override
-    public SynthesisResult synthesize(String query, List<Chunk> chunks) {
+    public SynthesisResult synthesize(String query, List<Chunk> chunks, Integer maxTokens) {
         if (chunks == null || chunks.isEmpty()) {
-            return new SynthesisResult(
-                    "No relevant information found in the knowledge base to answer this question.",
-                    List.of()
-            );
+            return new SynthesisResult(NO_INFORMATION, List.of());
         }
 
         try {
-            // Build prompt with system and user messages
-            Prompt prompt = buildPrompt(query, chunks);
+            // Build prompt with system and user messages, packed into the context window
+            PromptPacker.Packed packed = pack(query, chunks, maxTokens);
+            Prompt prompt = buildPrompt(query, packed.texts(), numPredict(packed, maxTokens));
 
             // Call Ollama via Spring AI ChatModel
             ChatResponse response = chatModel.call(prompt);
@@ -48,38 +81,77 @@ public class OllamaSynthesizer implements Synthesizer {
             // Extract citations from answer
             List<String> citedChunkIds = extractCitedChunkIds(answer, chunks);
 
-            return new SynthesisResult(answer, citedChunkIds);
+            Integer promptTokens = promptTokens(response);
+            calibrate(packed, promptTokens);
+            return new SynthesisResult(answer, citedChunkIds, promptTokens, outputTokens(response));
 
         } catch (Exception e) {
             throw new SynthesisException("Synthesis failed: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Streams the answer through {@link ChatModel#stream}, one piece per response the
+     * model sends, so the first tokens reach the caller while the rest is generated.
+     * Token counts come with the pieces that report them, normally the last one.
+     */
+    @Override
+    public Flux<AnswerDelta> stream(String query, List<Chunk> chunks, Integer maxTokens) {
+        if (chunks == null || chunks.isEmpty()) {
+            return Flux.just(new AnswerDelta(NO_INFORMATION));
+        }
+        return Flux.defer(() -> {
+                    PromptPacker.Packed packed = pack(query, chunks, maxTokens);
+                    return chatModel.stream(buildPrompt(query, packed.texts(), numPredict(packed, maxTokens)))
+                            .map(response -> {
+                                Integer promptTokens = promptTokens(response);
+                                calibrate(packed, promptTokens);
+                                return new AnswerDelta(text(response), promptTokens, outputTokens(response));
+                            });
+                })
+                .filter(delta -> !delta.getText().isEmpty() || delta.getPromptTokens() != null
+                        || delta.getOutputTokens() != null)
+                .onErrorMap(e -> !(e instanceof SynthesisException),
+                        e -> new SynthesisException("Synthesis failed: " + e.getMessage(), e));
+    }
+
+    private PromptPacker.Packed pack(String query, List<Chunk> chunks, Integer maxTokens) {
+        return packer.pack(SYSTEM_INSTRUCTION + CONTEXT_HEADER + QUESTION_PREFIX + query, chunks, CHUNK_LABEL,
+                maxTokens);
+    }
+
+    /**
+     * Gets the answer limit to send for a request, its maxTokens cut to the answer tokens
+     * the packer reserved, or null when the request sets none.
+     */
+    private static Integer numPredict(PromptPacker.Packed packed, Integer maxTokens) {
+        return maxTokens == null ? null : Math.min(maxTokens, packed.answerTokens());
+    }
+
     /**
      * Builds the prompt with system instruction, numbered chunks, and user question.
      * Uses Spring AI's SystemMessage and UserMessage for better structure.
+     *
+     * @param chunkTexts texts of the chunks to number, as packed
+     * @param maxTokens answer length limit passed to Ollama as {@code num_predict}, or null for none
      */
-    protected Prompt buildPrompt(String query, List<Chunk> chunks) {
-        // System instruction
-        String systemInstruction = 
-            "You are a helpful assistant that answers questions based on provided context. " +
-            "Answer the question using ONLY the information from the numbered chunks below. " +
-            "Cite your sources using [1], [2], etc. to reference the chunk numbers. " +
-            "If the information is not in the provided chunks, say so.";
-
+    protected Prompt buildPrompt(String query, List<String> chunkTexts, Integer maxTokens) {
         // Build user message with numbered chunks
         StringBuilder userMessage = new StringBuilder();
-        userMessage.append("Context Chunks:\n");
-        for (int i = 0; i < chunks.size(); i++) {
-            Chunk chunk = chunks.get(i);
-            userMessage.append(String.format("Chunk %d: %s\n", i + 1, chunk.getText()));
+        userMessage.append(CONTEXT_HEADER);
+        for (int i = 0; i < chunkTexts.size(); i++) {
+            userMessage.append(CHUNK_LABEL.format(i + 1, chunkTexts.get(i)));
         }
-        userMessage.append("\nQuestion: ").append(query);
+        userMessage.append(QUESTION_PREFIX).append(query);
 
-        return new Prompt(List.of(
-            new SystemMessage(systemInstruction),
+        List<org.springframework.ai.chat.messages.Message> messages = List.of(
+            new SystemMessage(SYSTEM_INSTRUCTION),
             new UserMessage(userMessage.toString())
-        ));
+        );
+        if (maxTokens == null) {
+            return new Prompt(messages);
+        }
+        return new Prompt(messages, OllamaOptions.builder().numPredict(maxTokens).build());
     }
 
     /**
@@ -87,25 +159,39 @@ public class OllamaSynthesizer implements Synthesizer {
      * and maps them to chunk IDs based on chunk order.
      */
     protected List<String> extractCitedChunkIds(String answer, List<Chunk> chunks) {
-        List<String> citedChunkIds = new ArrayList<>();
-        Matcher matcher = CITATION_PATTERN.matcher(answer);
-
-        while (matcher.find()) {
-            String citationNumber = matcher.group(1);
-            try {
-                int index = Integer.parseInt(citationNumber) - 1; // Convert to 0-based index
-                if (index >= 0 && index < chunks.size()) {
-                    String chunkId = chunks.get(index).getChunkId();
-                    // Add only if not already in list (preserve order)
-                    if (!citedChunkIds.contains(chunkId)) {
-                        citedChunkIds.add(chunkId);
-                    }
-                }
-            } catch (NumberFormatException e) {
-                // Skip invalid citation numbers
-            }
+        CitationTracker tracker = new CitationTracker(chunks);
+        tracker.accept(answer);
+        return tracker.getCitedChunkIds();
+    }
+
+    private void calibrate(PromptPacker.Packed packed, Integer promptTokens) {
+        if (promptTokens != null) {
+            estimator.calibrate(packed.countedTokens(), promptTokens);
         }
+    }
+
+    private static String text(ChatResponse response) {
+        if (response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
+        }
+        String text = response.getResult().getOutput().getText();
+        return text == null ? "" : text;
+    }
+
+    /**
+     * Gets the prompt token count a response reports; zero or missing counts are unknown.
+     */
+    private static Integer promptTokens(ChatResponse response) {
+        Usage usage = response.getMetadata() == null ? null : response.getMetadata().getUsage();
+        return usage == null ? null : positive(usage.getPromptTokens());
+    }
+
+    private static Integer outputTokens(ChatResponse response) {
+        Usage usage = response.getMetadata() == null ? null : response.getMetadata().getUsage();
+        return usage == null ? null : positive(usage.getCompletionTokens());
+    }
 
-        return citedChunkIds;
+    private static Integer positive(Number count) {
+        return count == null || count.intValue() <= 0 ? null : count.intValue();
     }
 }
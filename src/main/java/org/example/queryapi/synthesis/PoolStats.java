@@ -0,0 +1,47 @@
+package org.example.queryapi.synthesis;
+
+import java.util.List;
+
+/**
+ * Point-in-time state and counters of a {@link PooledSynthesizer}.
+ */
+public final class PoolStats {
+
+    private final double hedgeDelayMs;
+    private final long hedgedCount;
+    private final long hedgeWinCount;
+    private final List<EndpointStats> endpoints;
+
+    public PoolStats(double hedgeDelayMs, long hedgedCount, long hedgeWinCount, List<EndpointStats> endpoints) {
+        this.hedgeDelayMs = hedgeDelayMs;
+        this.hedgedCount = hedgedCount;
+        this.hedgeWinCount = hedgeWinCount;
+        this.endpoints = endpoints;
+    }
+
+    /**
+     * Gets how long a synthesis runs before a hedge is sent, in milliseconds; zero when
+     * hedging is off.
+     */
+    public double getHedgeDelayMs() {
+        return hedgeDelayMs;
+    }
+
+    /**
+     * Gets the number of syntheses that were also sent to a second endpoint.
+     */
+    public long getHedgedCount() {
+        return hedgedCount;
+    }
+
+    /**
+     * Gets the number of hedged syntheses answered by the hedge rather than the first request.
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount;
+    }
+
+    public List<EndpointStats> getEndpoints() {
+        return endpoints;
+    }
+}
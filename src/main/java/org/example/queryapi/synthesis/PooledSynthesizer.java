@@ -0,0 +1,419 @@
+package org.example.queryapi.synthesis;
+
+import jakarta.annotation.PreDestroy;
+import org.example.queryapi.domain.AnswerDelta;
+import org.example.queryapi.domain.Chunk;
+import org.example.queryapi.domain.SynthesisResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Synthesizer that spreads syntheses over several Ollama endpoints, listed in
+ * {@code queryapi.synthesis.endpoints}, each served through its own
+ * {@link OllamaSynthesizer} with the configured chat model.
+ *
+ * Each synthesis goes to the endpoint with the fewest outstanding requests, so a backend
+ * that stalls stops receiving new work as soon as its requests pile up. An endpoint is
+ * ejected, taken out of rotation for {@code queryapi.synthesis.pool.ejection-ms} times the
+ * number of ejections in a row, after {@code queryapi.synthesis.pool.max-failures}
+ * consecutive requests that failed or were overtaken by their hedge, or once its mean
+ * latency exceeds
+ * {@code queryapi.synthesis.pool.slow-factor} times the median of the other endpoints.
+ * The last endpoint in rotation is never ejected, and when none is in rotation all are
+ * used.
+ *
+ * With {@code queryapi.synthesis.pool.hedge} on, a synthesis still unanswered after the
+ * 95th percentile of recent latencies, and at least
+ * {@code queryapi.synthesis.pool.hedge.min-delay-ms}, is sent to a second endpoint as
+ * well, as is one whose first request failed; the first answer wins and the other request
+ * is cancelled. A first request overtaken by its hedge counts against its endpoint with
+ * its latency at the time. Hedges run outside
+ * the {@link SynthesisScheduler} slots, on top of about one synthesis in twenty. Streams
+ * are routed the same way but never hedged, since their tokens reach the client as they
+ * arrive. Active when {@code queryapi.synthesis.endpoints} is set.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "queryapi.synthesis.endpoints")
+public class PooledSynthesizer implements Synthesizer {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledSynthesizer.class);
+    private static final double HEDGE_QUANTILE = 0.95;
+    // Weight of each new sample in an endpoint's mean latency
+    private static final double LATENCY_WEIGHT = 0.2;
+    // Samples an endpoint needs before it can be judged slow or be the yardstick for others
+    private static final int MIN_SAMPLES = 3;
+    private static final int MAX_EJECTION_MULTIPLIER = 8;
+
+    private final List<Endpoint> endpoints;
+    private final int maxFailures;
+    private final double slowFactor;
+    private final long ejectionNanos;
+    private final boolean hedge;
+    private final long minHedgeDelayNanos;
+    private final LongSupplier nanoTime;
+    private final LatencyWindow latencies = new LatencyWindow(256);
+    private final AtomicInteger rotation = new AtomicInteger();
+    private final AtomicLong hedgedCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Autowired
+    public PooledSynthesizer(@Value("${queryapi.synthesis.endpoints}") List<String> baseUrls,
+                             @Value("${spring.ai.ollama.chat.model}") String model,
+                             @Value("${spring.ai.ollama.chat.options.temperature:0.7}") double temperature,
+                             @Value("${queryapi.synthesis.context-tokens:2048}") int contextTokens,
+                             @Value("${queryapi.synthesis.answer-tokens:512}") int answerTokens,
+                             @Value("${queryapi.synthesis.pool.max-failures:3}") int maxFailures,
+                             @Value("${queryapi.synthesis.pool.slow-factor:3.0}") double slowFactor,
+                             @Value("${queryapi.synthesis.pool.ejection-ms:30000}") long ejectionMs,
+                             @Value("${queryapi.synthesis.pool.hedge:false}") boolean hedge,
+                             @Value("${queryapi.synthesis.pool.hedge.min-delay-ms:500}") long minHedgeDelayMs) {
+        this(ollama(baseUrls, model, temperature, contextTokens, answerTokens), maxFailures, slowFactor,
+                Duration.ofMillis(ejectionMs), hedge, Duration.ofMillis(minHedgeDelayMs), System::nanoTime);
+    }
+
+    /**
+     * @param synthesizers synthesizer of each endpoint, keyed by its base URL
+     * @param minHedgeDelay shortest time a synthesis runs before it is hedged
+     */
+    PooledSynthesizer(Map<String, Synthesizer> synthesizers, int maxFailures, double slowFactor, Duration ejection,
+                      boolean hedge, Duration minHedgeDelay, LongSupplier nanoTime) {
+        if (synthesizers.isEmpty()) {
+            throw new SynthesisException("At least one synthesis endpoint is required");
+        }
+        if (maxFailures <= 0 || slowFactor <= 1.0) {
+            throw new SynthesisException("Max failures must be positive and slow factor above 1");
+        }
+        this.endpoints = synthesizers.entrySet().stream()
+                .map(entry -> new Endpoint(entry.getKey(), entry.getValue()))
+                .toList();
+        this.maxFailures = maxFailures;
+        this.slowFactor = slowFactor;
+        this.ejectionNanos = ejection.toNanos();
+        this.hedge = hedge;
+        this.minHedgeDelayNanos = minHedgeDelay.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Creates an {@link OllamaSynthesizer} for each endpoint, talking to the chat model at
+     * that base URL.
+     */
+    static Map<String, Synthesizer> ollama(List<String> baseUrls, String model, double temperature,
+                                           int contextTokens, int answerTokens) {
+        Map<String, Synthesizer> synthesizers = new LinkedHashMap<>();
+        for (String baseUrl : baseUrls) {
+            String url = baseUrl.trim();
+            if (url.isEmpty()) {
+                continue;
+            }
+            OllamaChatModel chatModel = OllamaChatModel.builder()
+                    .ollamaApi(new OllamaApi(url))
+                    .defaultOptions(OllamaOptions.builder().model(model).temperature(temperature).build())
+                    .build();
+            synthesizers.put(url, new OllamaSynthesizer(chatModel, contextTokens, answerTokens));
+        }
+        return synthesizers;
+    }
+
+    @Override
+    public SynthesisResult synthesize(String query, List<Chunk> chunks, Integer maxTokens) {
+        ExecutorCompletionService<SynthesisResult> race = new ExecutorCompletionService<>(executor);
+        List<Attempt> attempts = new ArrayList<>(2);
+        attempts.add(start(race, choose(null), query, chunks, maxTokens));
+        int pending = 1;
+        boolean hedged = !hedge;
+        boolean hedgeWon = false;
+        RuntimeException failure = null;
+        try {
+            while (pending > 0) {
+                Future<SynthesisResult> done = hedged ? race.take() : race.poll(hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+                if (done != null) {
+                    pending--;
+                    try {
+                        SynthesisResult result = done.get();
+                        if (attempts.size() > 1 && done == attempts.get(1).future) {
+                            hedgeWinCount.incrementAndGet();
+                            hedgeWon = true;
+                        }
+                        return result;
+                    } catch (ExecutionException e) {
+                        failure = failure != null ? failure : unwrap(e);
+                    }
+                }
+                // Hedge once the first request is late, or at once if it failed
+                if (!hedged) {
+                    hedged = true;
+                    Endpoint other = choose(attempts.get(0).endpoint);
+                    if (other != null) {
+                        attempts.add(start(race, other, query, chunks, maxTokens));
+                        hedgedCount.incrementAndGet();
+                        pending++;
+                    }
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SynthesisException("Interrupted while waiting for synthesis", e);
+        } finally {
+            for (int i = 0; i < attempts.size(); i++) {
+                attempts.get(i).abandon(i == 0 && hedgeWon ? Outcome.OVERTAKEN : Outcome.DROPPED);
+            }
+        }
+    }
+
+    @Override
+    public Flux<AnswerDelta> stream(String query, List<Chunk> chunks, Integer maxTokens) {
+        return Flux.defer(() -> {
+            Attempt attempt = new Attempt(choose(null));
+            return attempt.endpoint.synthesizer.stream(query, chunks, maxTokens)
+                    .doOnComplete(() -> attempt.settle(Outcome.SUCCEEDED))
+                    .doOnError(e -> attempt.settle(Outcome.FAILED))
+                    .doOnCancel(() -> attempt.settle(Outcome.DROPPED));
+        });
+    }
+
+    public PoolStats stats() {
+        long now = nanoTime.getAsLong();
+        List<EndpointStats> endpointStats = new ArrayList<>(endpoints.size());
+        synchronized (this) {
+            for (Endpoint endpoint : endpoints) {
+                endpointStats.add(new EndpointStats(endpoint.baseUrl, endpoint.outstanding.get(),
+                        endpoint.isEjected(now), endpoint.requestCount, endpoint.failureCount,
+                        endpoint.ejectionCount, endpoint.latencyNanos / 1e6));
+            }
+        }
+        return new PoolStats(hedge ? hedgeDelayNanos() / 1e6 : 0, hedgedCount.get(), hedgeWinCount.get(),
+                endpointStats);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private Attempt start(ExecutorCompletionService<SynthesisResult> race, Endpoint endpoint, String query,
+                          List<Chunk> chunks, Integer maxTokens) {
+        Attempt attempt = new Attempt(endpoint);
+        attempt.future = race.submit(() -> {
+            try {
+                SynthesisResult result = endpoint.synthesizer.synthesize(query, chunks, maxTokens);
+                attempt.settle(Outcome.SUCCEEDED);
+                return result;
+            } catch (RuntimeException e) {
+                attempt.settle(Outcome.FAILED);
+                throw e;
+            }
+        });
+        return attempt;
+    }
+
+    /**
+     * Picks the endpoint in rotation with the fewest outstanding requests, starting from a
+     * rotating position so ties are spread evenly; all endpoints count as in rotation when
+     * none is.
+     *
+     * @param exclude endpoint already serving the synthesis, or null
+     * @return the endpoint, or null if there is none besides {@code exclude}
+     */
+    private synchronized Endpoint choose(Endpoint exclude) {
+        long now = nanoTime.getAsLong();
+        int start = Math.floorMod(rotation.getAndIncrement(), endpoints.size());
+        Endpoint best = null;
+        Endpoint fallback = null;
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get((start + i) % endpoints.size());
+            if (endpoint == exclude) {
+                continue;
+            }
+            if (fallback == null || endpoint.outstanding.get() < fallback.outstanding.get()) {
+                fallback = endpoint;
+            }
+            if (!endpoint.isEjected(now) && (best == null || endpoint.outstanding.get() < best.outstanding.get())) {
+                best = endpoint;
+            }
+        }
+        Endpoint chosen = best != null ? best : fallback;
+        if (chosen != null) {
+            chosen.requestCount++;
+        }
+        return chosen;
+    }
+
+    private synchronized void record(Endpoint endpoint, Outcome outcome, long latencyNanos) {
+        long now = nanoTime.getAsLong();
+        if (outcome == Outcome.SUCCEEDED) {
+            endpoint.consecutiveFailures = 0;
+        } else {
+            if (outcome == Outcome.FAILED) {
+                endpoint.failureCount++;
+            }
+            if (++endpoint.consecutiveFailures >= maxFailures) {
+                eject(endpoint, now, endpoint.consecutiveFailures + " consecutive failed or overtaken requests");
+                return;
+            }
+            if (outcome == Outcome.FAILED) {
+                return;
+            }
+        }
+        endpoint.latencyNanos = endpoint.samples == 0
+                ? latencyNanos
+                : endpoint.latencyNanos + LATENCY_WEIGHT * (latencyNanos - endpoint.latencyNanos);
+        endpoint.samples++;
+        if (outcome == Outcome.SUCCEEDED) {
+            latencies.record(latencyNanos);
+        }
+
+        double median = medianLatencyOfOthers(endpoint, now);
+        if (endpoint.samples >= MIN_SAMPLES && median > 0 && endpoint.latencyNanos > slowFactor * median) {
+            eject(endpoint, now, String.format("mean latency %.0f ms against %.0f ms elsewhere",
+                    endpoint.latencyNanos / 1e6, median / 1e6));
+        } else if (outcome == Outcome.SUCCEEDED && endpoint.samples >= MIN_SAMPLES) {
+            // Judged healthy since it came back, so the next ejection starts short again
+            endpoint.ejectionsInARow = 0;
+        }
+    }
+
+    /**
+     * Takes an endpoint out of rotation, unless it is the last one in rotation, and clears
+     * its latency so it is judged afresh when it returns. Called with the lock held.
+     */
+    private void eject(Endpoint endpoint, long now, String reason) {
+        if (endpoint.isEjected(now) || endpoints.stream().filter(other -> !other.isEjected(now)).count() <= 1) {
+            return;
+        }
+        endpoint.ejectionsInARow = Math.min(endpoint.ejectionsInARow + 1, MAX_EJECTION_MULTIPLIER);
+        endpoint.ejectedUntil = now + ejectionNanos * endpoint.ejectionsInARow;
+        endpoint.ejectionCount++;
+        endpoint.consecutiveFailures = 0;
+        endpoint.latencyNanos = 0;
+        endpoint.samples = 0;
+        log.warn("Synthesis endpoint {} ejected for {} ms: {}", endpoint.baseUrl,
+                TimeUnit.NANOSECONDS.toMillis(ejectionNanos * endpoint.ejectionsInARow), reason);
+    }
+
+    /**
+     * Gets the median mean latency of the other endpoints in rotation with enough samples,
+     * zero if there are none. Called with the lock held.
+     */
+    private double medianLatencyOfOthers(Endpoint endpoint, long now) {
+        double[] others = endpoints.stream()
+                .filter(other -> other != endpoint && !other.isEjected(now) && other.samples >= MIN_SAMPLES)
+                .mapToDouble(other -> other.latencyNanos)
+                .sorted()
+                .toArray();
+        if (others.length == 0) {
+            return 0;
+        }
+        int middle = others.length / 2;
+        return others.length % 2 == 1 ? others[middle] : (others[middle - 1] + others[middle]) / 2;
+    }
+
+    private long hedgeDelayNanos() {
+        return Math.max(minHedgeDelayNanos, latencies.percentile(HEDGE_QUANTILE));
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException runtime
+                ? runtime
+                : new SynthesisException("Synthesis failed", e.getCause());
+    }
+
+    private enum Outcome {
+        SUCCEEDED,
+        FAILED,
+        // Cancelled because the hedge sent after it answered first; counts like a failure, with its latency so far
+        OVERTAKEN,
+        // Cancelled for any other reason, such as a losing hedge or a caller that went away
+        DROPPED
+    }
+
+    /**
+     * One request to an endpoint, counted as outstanding there until it settles, once.
+     */
+    private final class Attempt {
+
+        private final Endpoint endpoint;
+        private final long start;
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private Future<SynthesisResult> future;
+
+        private Attempt(Endpoint endpoint) {
+            this.endpoint = endpoint;
+            endpoint.outstanding.incrementAndGet();
+            this.start = nanoTime.getAsLong();
+        }
+
+        private void settle(Outcome outcome) {
+            if (settled.compareAndSet(false, true)) {
+                endpoint.outstanding.decrementAndGet();
+                if (outcome != Outcome.DROPPED) {
+                    record(endpoint, outcome, nanoTime.getAsLong() - start);
+                }
+            }
+        }
+
+        /**
+         * Cancels the request if it has not finished.
+         */
+        private void abandon(Outcome outcome) {
+            if (!future.isDone()) {
+                settle(outcome);
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static final class Endpoint {
+
+        private final String baseUrl;
+        private final Synthesizer synthesizer;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        // Guarded by the pool's lock
+        private double latencyNanos;
+        private long samples;
+        private int consecutiveFailures;
+        private int ejectionsInARow;
+        private long ejectedUntil;
+        private long requestCount;
+        private long failureCount;
+        private long ejectionCount;
+
+        private Endpoint(String baseUrl, Synthesizer synthesizer) {
+            this.baseUrl = baseUrl;
+            this.synthesizer = synthesizer;
+        }
+
+        private boolean isEjected(long now) {
+            return ejectedUntil != 0 && now - ejectedUntil < 0;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fits retrieved chunks into the token budget of a prompt.
+ *
+ * The budget is the model's context window less the tokens reserved for the answer,
+ * the instruction and question, and the chat template. Chunks are taken in rank order
+ * while they fit. The first chunk that does not fit is cut at a word boundary if at
+ * least {@value #MIN_TRIMMED_TOKENS} tokens of it fit, and dropped otherwise; every
+ * chunk ranked below it is dropped. The packed chunks are thus always a prefix of the
+ * retrieved ones, so citation numbers index the retrieved list either way.
+ */
+final class PromptPacker {
+
+    static final int MIN_TRIMMED_TOKENS = 32;
+    // Role headers and special tokens the chat template wraps each message in
+    static final int TEMPLATE_TOKENS = 16;
+    private static final String ELLIPSIS = " ...";
+
+    private final TokenEstimator estimator;
+    private final int contextTokens;
+    private final int defaultAnswerTokens;
+
+    /**
+     * @param contextTokens context window of the model, prompt and answer together
+     * @param defaultAnswerTokens tokens reserved for the answer when the request sets no limit
+     */
+    PromptPacker(TokenEstimator estimator, int contextTokens, int defaultAnswerTokens) {
+        if (contextTokens <= 0) {
+            throw new IllegalArgumentException("Context window must be positive");
+        }
+        this.estimator = estimator;
+        this.contextTokens = contextTokens;
+        this.defaultAnswerTokens = defaultAnswerTokens;
+    }
+
+    /**
+     * Chooses the chunk texts that go into a prompt.
+     *
+     * @param fixedText prompt text that is sent whatever the chunks are
+     * @param label formats the prompt line of a chunk from its 1-based number and text
+     * @param maxTokens answer length the request asked for, or null for the default
+     * @return the texts of the leading chunks that fit, the last one possibly trimmed, and
+     *         the answer tokens reserved for them
+     */
+    Packed pack(String fixedText, List<Chunk> chunks, ChunkLabel label, Integer maxTokens) {
+        // A huge answer limit must not crowd every chunk out of the prompt
+        int answerTokens = Math.min(maxTokens != null ? maxTokens : defaultAnswerTokens, contextTokens / 2);
+        int remaining = contextTokens - answerTokens - TEMPLATE_TOKENS - estimator.estimate(fixedText);
+        int counted = TEMPLATE_TOKENS + TokenEstimator.count(fixedText);
+
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < chunks.size() && remaining > 0; i++) {
+            String text = chunks.get(i).getText();
+            String line = label.format(i + 1, text);
+            int cost = estimator.estimate(line);
+            if (cost <= remaining) {
+                texts.add(text);
+                remaining -= cost;
+                counted += TokenEstimator.count(line);
+                continue;
+            }
+            int labelCost = estimator.estimate(label.format(i + 1, ""));
+            if (remaining - labelCost >= MIN_TRIMMED_TOKENS) {
+                String trimmed = trim(text, remaining - labelCost);
+                texts.add(trimmed);
+                counted += TokenEstimator.count(label.format(i + 1, trimmed));
+            }
+            break;
+        }
+        return new Packed(texts, counted, answerTokens);
+    }
+
+    /**
+     * Cuts a text at the last word boundary that keeps it, with an ellipsis, within a budget.
+     */
+    private String trim(String text, int budget) {
+        int low = 0;
+        int high = text.length();
+        // Longest prefix within the budget; the estimate never shrinks as a prefix grows
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (estimator.estimate(text.substring(0, middle) + ELLIPSIS) <= budget) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int end = low;
+        if (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+            int boundary = end;
+            while (boundary > 0 && !Character.isWhitespace(text.charAt(boundary - 1))) {
+                boundary--;
+            }
+            if (boundary > 0) {
+                end = boundary;
+            }
+        }
+        return text.substring(0, end).stripTrailing() + ELLIPSIS;
+    }
+
+    /**
+     * Formats the prompt line of a chunk.
+     */
+    @FunctionalInterface
+    interface ChunkLabel {
+
+        String format(int number, String text);
+    }
+
+    /**
+     * Chunk texts chosen for a prompt.
+     *
+     * @param texts texts of the leading chunks, in order
+     * @param countedTokens uncorrected token estimate of the packed prompt, for calibration
+     * @param answerTokens tokens left for the answer, at most half the context window; a
+     *        longer answer would push the start of the prompt out of the window
+     */
+    record Packed(List<String> texts, int countedTokens, int answerTokens) {
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.queryapi.synthesis;
+
+import java.util.Map;
+
+/**
+ * Point-in-time state and counters of a {@link SynthesisScheduler}.
+ */
+public final class SchedulerStats {
+
+    private final int concurrencyLimit;
+    private final int inFlight;
+    private final int queueDepth;
+    private final long admittedCount;
+    private final long queueFullCount;
+    private final long shedCount;
+    private final long timedOutCount;
+    private final double meanServiceTimeMs;
+    private final double baselineServiceTimeMs;
+    private final Map<String, Long> waitTimeMs;
+    private final Map<String, Long> queueDepthOnArrival;
+
+    public SchedulerStats(int concurrencyLimit, int inFlight, int queueDepth, long admittedCount,
+                          long queueFullCount, long shedCount, long timedOutCount,
+                          double meanServiceTimeMs, double baselineServiceTimeMs,
+                          Map<String, Long> waitTimeMs, Map<String, Long> queueDepthOnArrival) {
+        this.concurrencyLimit = concurrencyLimit;
+        this.inFlight = inFlight;
+        this.queueDepth = queueDepth;
+        this.admittedCount = admittedCount;
+        this.queueFullCount = queueFullCount;
+        this.shedCount = shedCount;
+        this.timedOutCount = timedOutCount;
+        this.meanServiceTimeMs = meanServiceTimeMs;
+        this.baselineServiceTimeMs = baselineServiceTimeMs;
+        this.waitTimeMs = waitTimeMs;
+        this.queueDepthOnArrival = queueDepthOnArrival;
+    }
+
+    /**
+     * Gets the number of syntheses allowed to run at once, which changes over time when the
+     * limit is adaptive.
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * Gets the number of syntheses running.
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets the number of requests waiting for a slot.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the number of requests that got a slot.
+     */
+    public long getAdmittedCount() {
+        return admittedCount;
+    }
+
+    /**
+     * Gets the number of requests turned away because the queue was full.
+     */
+    public long getQueueFullCount() {
+        return queueFullCount;
+    }
+
+    /**
+     * Gets the number of requests turned away on arrival because the expected wait
+     * exceeded their deadline.
+     */
+    public long getShedCount() {
+        return shedCount;
+    }
+
+    /**
+     * Gets the number of requests that reached their deadline while queued.
+     */
+    public long getTimedOutCount() {
+        return timedOutCount;
+    }
+
+    /**
+     * Gets the running mean of the time syntheses held their slot, in milliseconds.
+     */
+    public double getMeanServiceTimeMs() {
+        return meanServiceTimeMs;
+    }
+
+    /**
+     * Gets the unloaded synthesis time an adaptive limit measures latency against, in
+     * milliseconds; zero when the limit is fixed.
+     */
+    public double getBaselineServiceTimeMs() {
+        return baselineServiceTimeMs;
+    }
+
+    /**
+     * Gets the histogram of time admitted requests waited for a slot, in milliseconds,
+     * keyed by bucket upper bound.
+     */
+    public Map<String, Long> getWaitTimeMs() {
+        return waitTimeMs;
+    }
+
+    /**
+     * Gets the histogram of queue depth seen by arriving requests, keyed by bucket upper bound.
+     */
+    public Map<String, Long> getQueueDepthOnArrival() {
+        return queueDepthOnArrival;
+    }
+}
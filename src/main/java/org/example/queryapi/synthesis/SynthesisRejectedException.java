@@ -0,0 +1,33 @@
+package org.example.queryapi.synthesis;
+
+/**
+ * Exception thrown when the {@link SynthesisScheduler} turns a synthesis away instead of
+ * running it: the wait queue is full, or the request would reach its deadline before a
+ * slot frees up.
+ */
+public class SynthesisRejectedException extends SynthesisException {
+
+    private final boolean queueFull;
+    private final long retryAfterSeconds;
+
+    public SynthesisRejectedException(String message, boolean queueFull, long retryAfterSeconds) {
+        super(message);
+        this.queueFull = queueFull;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Checks whether the request was turned away because the wait queue was full, rather
+     * than because it would miss its deadline.
+     */
+    public boolean isQueueFull() {
+        return queueFull;
+    }
+
+    /**
+     * Gets how long the client should wait before retrying, in seconds.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
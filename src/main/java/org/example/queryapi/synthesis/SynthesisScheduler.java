@@ -0,0 +1,284 @@
+package org.example.queryapi.synthesis;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead in front of the chat model: at most {@code queryapi.synthesis.max-concurrent}
+ * syntheses run at once, matching the parallel slots of the Ollama server, and the rest
+ * wait in a FIFO queue of at most {@code queryapi.synthesis.queue.max-size} requests.
+ *
+ * Unless {@code queryapi.synthesis.limit.adaptive} is off, that is only the initial
+ * number of slots, which then follows the latency of successful syntheses through a
+ * {@link GradientLimit}, between {@code queryapi.synthesis.limit.min} and
+ * {@code queryapi.synthesis.limit.max}: it grows while syntheses run within
+ * {@code queryapi.synthesis.limit.tolerance} times their unloaded latency and shrinks once
+ * they slow down past it, so it tracks the peak throughput of whatever model and host
+ * serve the requests.
+ *
+ * Each request may wait {@code queryapi.synthesis.queue.deadline-ms} for a slot. A request
+ * that arrives to a full queue is turned away at once, as is one whose expected wait, from
+ * its queue position and the mean time a synthesis holds its slot, already exceeds the
+ * deadline; a queued request that reaches its deadline leaves the queue. Turned away
+ * requests fail with {@link SynthesisRejectedException}, which carries a retry delay
+ * estimated from the time the queue takes to drain.
+ */
+@Component
+public class SynthesisScheduler {
+
+    // Weight of each new sample in the running mean time a synthesis holds its slot
+    private static final double SERVICE_TIME_WEIGHT = 0.2;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private final int maxQueueSize;
+    private final long deadlineNanos;
+    private final LongSupplier nanoTime;
+    private final GradientLimit adaptiveLimit;
+    private final Histogram waitTimeMs = new Histogram(1, 5, 10, 50, 100, 500, 1_000, 5_000, 10_000, 30_000);
+    private final Histogram queueDepthOnArrival = new Histogram(0, 1, 2, 4, 8, 16, 32, 64, 128);
+
+    // Guarded by lock
+    private int limit;
+    private int inFlight;
+    private double meanServiceNanos;
+    private long admittedCount;
+    private long queueFullCount;
+    private long shedCount;
+    private long timedOutCount;
+
+    @Autowired
+    public SynthesisScheduler(@Value("${queryapi.synthesis.max-concurrent:4}") int maxConcurrent,
+                              @Value("${queryapi.synthesis.queue.max-size:32}") int maxQueueSize,
+                              @Value("${queryapi.synthesis.queue.deadline-ms:10000}") long deadlineMs,
+                              @Value("${queryapi.synthesis.limit.adaptive:true}") boolean adaptive,
+                              @Value("${queryapi.synthesis.limit.min:1}") int minLimit,
+                              @Value("${queryapi.synthesis.limit.max:16}") int maxLimit,
+                              @Value("${queryapi.synthesis.limit.tolerance:1.5}") double tolerance) {
+        this(maxConcurrent, maxQueueSize, Duration.ofMillis(deadlineMs), System::nanoTime,
+                adaptive ? new GradientLimit(maxConcurrent, minLimit, maxLimit, tolerance) : null);
+    }
+
+    SynthesisScheduler(int maxConcurrent, int maxQueueSize, Duration deadline, LongSupplier nanoTime) {
+        this(maxConcurrent, maxQueueSize, deadline, nanoTime, null);
+    }
+
+    /**
+     * @param maxConcurrent the limit, or the initial limit if it is adaptive
+     * @param nanoTime clock that wait and service times are measured with; the wait for a
+     *                 slot itself is bounded in real time
+     * @param adaptiveLimit adjusts the limit as syntheses finish, or null for a fixed limit
+     */
+    SynthesisScheduler(int maxConcurrent, int maxQueueSize, Duration deadline, LongSupplier nanoTime,
+                       GradientLimit adaptiveLimit) {
+        if (maxConcurrent <= 0 || maxQueueSize < 0) {
+            throw new IllegalArgumentException("Concurrency must be positive and queue size not negative");
+        }
+        this.limit = maxConcurrent;
+        this.maxQueueSize = maxQueueSize;
+        this.deadlineNanos = deadline.toNanos();
+        this.nanoTime = nanoTime;
+        this.adaptiveLimit = adaptiveLimit;
+        if (adaptiveLimit != null) {
+            this.limit = adaptiveLimit.limit();
+        }
+    }
+
+    /**
+     * Runs a synthesis in a slot, waiting for one if all are taken.
+     *
+     * @throws SynthesisRejectedException if no slot is free within the deadline
+     */
+    public <T> T call(Supplier<T> synthesis) {
+        try (Permit permit = acquire()) {
+            T result = synthesis.get();
+            permit.close(true);
+            return result;
+        }
+    }
+
+    /**
+     * Takes a slot, waiting for one if all are taken. The slot is held until the permit is
+     * closed, so it can cover a synthesis that completes on another thread, such as a stream.
+     *
+     * @throws SynthesisRejectedException if no slot is free within the deadline
+     */
+    public Permit acquire() {
+        long arrival = nanoTime.getAsLong();
+        lock.lock();
+        try {
+            queueDepthOnArrival.record(queue.size());
+            if (queue.isEmpty() && inFlight < slots()) {
+                inFlight++;
+                return admit(arrival);
+            }
+            if (queue.size() >= maxQueueSize) {
+                queueFullCount++;
+                throw rejected("Synthesis queue is full", true);
+            }
+            if (expectedWaitNanos(queue.size()) > deadlineNanos) {
+                shedCount++;
+                throw rejected("Synthesis queue wait would exceed the deadline", false);
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            queue.addLast(waiter);
+            long remaining = deadlineNanos;
+            while (!waiter.granted) {
+                if (remaining <= 0) {
+                    queue.remove(waiter);
+                    timedOutCount++;
+                    throw rejected("Synthesis deadline passed while queued", false);
+                }
+                try {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    if (waiter.granted) {
+                        // Pass the slot on unused
+                        inFlight--;
+                        dispatch();
+                    } else {
+                        queue.remove(waiter);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new SynthesisException("Interrupted while waiting for a synthesis slot", e);
+                }
+            }
+            return admit(arrival);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public SchedulerStats stats() {
+        lock.lock();
+        try {
+            return new SchedulerStats(limit, inFlight, queue.size(), admittedCount, queueFullCount, shedCount,
+                    timedOutCount, meanServiceNanos / 1e6,
+                    adaptiveLimit == null ? 0 : adaptiveLimit.baselineNanos() / 1e6,
+                    waitTimeMs.snapshot(), queueDepthOnArrival.snapshot());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit admit(long arrival) {
+        long start = nanoTime.getAsLong();
+        admittedCount++;
+        waitTimeMs.record(TimeUnit.NANOSECONDS.toMillis(start - arrival));
+        return new Permit(start);
+    }
+
+    private void release(long start, boolean succeeded) {
+        long serviceNanos = nanoTime.getAsLong() - start;
+        lock.lock();
+        try {
+            if (succeeded) {
+                meanServiceNanos = meanServiceNanos == 0
+                        ? serviceNanos
+                        : meanServiceNanos + SERVICE_TIME_WEIGHT * (serviceNanos - meanServiceNanos);
+                boolean saturated = !queue.isEmpty() || inFlight >= limit;
+                if (adaptiveLimit != null) {
+                    limit = adaptiveLimit.update(serviceNanos, inFlight, saturated);
+                }
+            }
+            inFlight--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands free slots to the longest waiting requests. Called with the lock held.
+     */
+    private void dispatch() {
+        while (inFlight < slots() && !queue.isEmpty()) {
+            Waiter waiter = queue.pollFirst();
+            waiter.granted = true;
+            inFlight++;
+            waiter.condition.signal();
+        }
+    }
+
+    /**
+     * Number of syntheses that may run now: the limit, or one while the adaptive limit
+     * probes for the unloaded latency. Called with the lock held.
+     */
+    private int slots() {
+        return adaptiveLimit != null && adaptiveLimit.probing() ? 1 : limit;
+    }
+
+    /**
+     * Expected wait of a request joining the queue behind {@code position} others: it gets
+     * a slot after {@code position + 1} syntheses finish, and with every slot busy one
+     * finishes every mean service time divided by the number of slots. Zero until a
+     * synthesis has finished. Called with the lock held.
+     */
+    private long expectedWaitNanos(int position) {
+        return (long) ((position + 1) * meanServiceNanos / limit);
+    }
+
+    private SynthesisRejectedException rejected(String message, boolean queueFull) {
+        long drainNanos = expectedWaitNanos(queue.size());
+        long retryAfterSeconds = Math.max(1, (drainNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        return new SynthesisRejectedException(message, queueFull, retryAfterSeconds);
+    }
+
+    /**
+     * A slot held for one synthesis; closing it frees the slot for the next request.
+     * Only the time of a synthesis that succeeded counts towards the mean service time and
+     * the adaptive limit: one that failed or was cancelled, such as on a timeout or a
+     * dropped client, may have ended at any point and says nothing about how long the
+     * model takes to answer. Closing again has no effect.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long start) {
+            this.start = start;
+        }
+
+        /**
+         * Frees the slot.
+         *
+         * @param succeeded whether the synthesis completed, so that its time is a latency sample
+         */
+        public void close(boolean succeeded) {
+            if (released.compareAndSet(false, true)) {
+                release(start, succeeded);
+            }
+        }
+
+        /**
+         * Frees the slot without taking the synthesis time as a latency sample, as for a
+         * synthesis that failed.
+         */
+        @Override
+        public void close() {
+            close(false);
+        }
+    }
+
+    private static final class Waiter {
+
+        private final Condition condition;
+        private boolean granted;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package org.example.queryapi.synthesis;
 
+import org.example.queryapi.domain.AnswerDelta;
 import org.example.queryapi.domain.Chunk;
 import org.example.queryapi.domain.SynthesisResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 
@@ -19,5 +23,41 @@ public interface Synthesizer {
      * @return synthesis result with answer text and citations
      * @throws SynthesisException if synthesis fails (timeout, API error, etc.)
      */
-    SynthesisResult synthesize(String query, List<Chunk> chunks);
+    default SynthesisResult synthesize(String query, List<Chunk> chunks) {
+        return synthesize(query, chunks, null);
+    }
+
+    /**
+     * Synthesizes an answer of at most {@code maxTokens} tokens from the query and
+     * retrieved chunks. Chunks that do not fit the model's context window next to an
+     * answer of that length may be trimmed or left out, lowest ranked first.
+     *
+     * @param query the user's question
+     * @param chunks the retrieved chunks to use as context, ordered by relevance
+     * @param maxTokens maximum answer length in tokens, or null for the model's default
+     * @return synthesis result with answer text, citations and token counts when known
+     * @throws SynthesisException if synthesis fails (timeout, API error, etc.)
+     */
+    SynthesisResult synthesize(String query, List<Chunk> chunks, Integer maxTokens);
+
+    /**
+     * Streams the answer as it is generated. Subscribing starts the synthesis and
+     * cancelling the subscription stops it.
+     * The default implementation synthesizes the whole answer off the calling thread and
+     * emits it as a single piece.
+     *
+     * @param query the user's question
+     * @param chunks the retrieved chunks to use as context, ordered by relevance
+     * @param maxTokens maximum answer length in tokens, or null for the model's default
+     * @return consecutive pieces of the answer, failing with {@link SynthesisException}
+     */
+    default Flux<AnswerDelta> stream(String query, List<Chunk> chunks, Integer maxTokens) {
+        return Mono.fromCallable(() -> {
+                    SynthesisResult result = synthesize(query, chunks, maxTokens);
+                    return new AnswerDelta(result.getAnswerText(), result.getPromptTokens(),
+                            result.getOutputTokens());
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flux();
+    }
 }
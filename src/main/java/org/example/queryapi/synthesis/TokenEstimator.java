@@ -0,0 +1,95 @@
+package org.example.queryapi.synthesis;
+
+/**
+ * Estimates how many tokens a llama-family tokenizer splits text into, without loading
+ * its vocabulary.
+ *
+ * Text is split the way the llama 3 pre-tokenizer splits it: runs of letters with the
+ * space before them, numbers in groups of up to three digits, runs of line breaks, and
+ * every other symbol on its own. A run of letters is charged one token per six letters,
+ * which makes common words one token and overestimates long or rare words slightly, so
+ * prompts packed against the estimate stay within their budget.
+ *
+ * The prompt token counts the model reports raise a correction factor when they show
+ * the estimate running low, as it does for code or non-English text. The factor never
+ * drops below one: models reuse cached prompt prefixes and then report fewer tokens
+ * than the prompt holds, so a low count is no evidence of overestimation.
+ */
+final class TokenEstimator {
+
+    private static final int LETTERS_PER_TOKEN = 6;
+    private static final int DIGITS_PER_TOKEN = 3;
+    private static final double MAX_CORRECTION = 2.0;
+    // Weight of each new report in the running correction factor
+    private static final double CALIBRATION_WEIGHT = 0.1;
+
+    private volatile double correction = 1.0;
+
+    /**
+     * Estimates the token count of a text, including the correction learned so far.
+     */
+    int estimate(CharSequence text) {
+        return (int) Math.ceil(count(text) * correction);
+    }
+
+    /**
+     * Folds in the prompt token count the model reported.
+     *
+     * @param counted uncorrected estimate of the prompt, from {@link #count}
+     * @param reported number of prompt tokens the model reported
+     */
+    void calibrate(int counted, int reported) {
+        if (counted <= 0 || reported <= counted) {
+            return;
+        }
+        double ratio = Math.min(MAX_CORRECTION, (double) reported / counted);
+        double updated = correction + CALIBRATION_WEIGHT * (ratio - correction);
+        correction = Math.max(1.0, Math.min(MAX_CORRECTION, updated));
+    }
+
+    double correction() {
+        return correction;
+    }
+
+    /**
+     * Counts the tokens of a text without the correction factor.
+     */
+    static int count(CharSequence text) {
+        int tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int start = i;
+            if (Character.isLetter(c)) {
+                while (i < length && Character.isLetter(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + LETTERS_PER_TOKEN - 1) / LETTERS_PER_TOKEN;
+            } else if (Character.isDigit(c)) {
+                while (i < length && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + DIGITS_PER_TOKEN - 1) / DIGITS_PER_TOKEN;
+            } else if (c == ' ') {
+                // A single space is part of the word that follows it
+                i++;
+                if (i < length && text.charAt(i) == ' ') {
+                    while (i < length && text.charAt(i) == ' ') {
+                        i++;
+                    }
+                    tokens++;
+                }
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(text.charAt(i)) && text.charAt(i) != ' ') {
+                    i++;
+                }
+                tokens++;
+            } else {
+                i++;
+                tokens++;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.queryapi.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TinyLfuCacheTest {
+
+    @Test
+    void loadsOnceAndServesHits() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get("a", () -> "A" + loads.incrementAndGet())).isEqualTo("A1");
+        assertThat(cache.get("a", () -> "A" + loads.incrementAndGet())).isEqualTo("A1");
+
+        CacheStats stats = cache.stats();
+        assertThat(stats.getMissCount()).isEqualTo(1);
+        assertThat(stats.getHitCount()).isEqualTo(1);
+        assertThat(stats.getSize()).isEqualTo(1);
+        assertThat(stats.getHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void staysWithinMaximumSize() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100);
+
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, i);
+        }
+
+        assertThat(cache.size()).isEqualTo(100);
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(900);
+    }
+
+    @Test
+    void frequentKeysSurviveAScanOfOneOffKeys() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100);
+        for (int round = 0; round < 5; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                cache.get(hot, () -> 0);
+            }
+        }
+
+        for (int cold = 1_000; cold < 11_000; cold++) {
+            cache.get(cold, () -> 0);
+        }
+
+        int hotHits = 0;
+        for (int hot = 0; hot < 50; hot++) {
+            if (cache.getIfPresent(hot) != null) {
+                hotHits++;
+            }
+        }
+        // Plain LRU would have lost every hot key to the scan
+        assertThat(hotHits).isGreaterThanOrEqualTo(45);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("q", () -> {
+                loading.countDown();
+                await(release);
+                return "answer-" + loads.incrementAndGet();
+            })));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> cache.get("q", () -> "answer-" + loads.incrementAndGet())));
+            }
+            // Waiters only count as coalesced once they have found the load in flight
+            while (cache.stats().getCoalescedCount() < 7) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("answer-1");
+            }
+            assertThat(loads).hasValue(1);
+            assertThat(cache.stats().getMissCount()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLoadIsRethrownAndNotCached() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+
+        assertThatThrownBy(() -> cache.get("q", () -> {
+            throw new IllegalStateException("backend down");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("backend down");
+
+        assertThat(cache.get("q", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    void entriesExpireAfterWrite() {
+        AtomicLong now = new AtomicLong();
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10, Duration.ofSeconds(30), now::get);
+        cache.put("a", "A");
+
+        now.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertThat(cache.getIfPresent("a")).isEqualTo("A");
+
+        // Reads do not extend the lifetime of an entry
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(cache.getIfPresent("a")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void zeroSizeCachesNothing() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(0);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("a", () -> "A" + loads.incrementAndGet());
+        cache.get("a", () -> "A" + loads.incrementAndGet());
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,23 +1,36 @@
 package org.example.queryapi.controller;
 
+import org.example.queryapi.domain.AnswerDelta;
 import org.example.queryapi.domain.Chunk;
 import org.example.queryapi.domain.SynthesisResult;
 import org.example.queryapi.dto.QueryRequest;
 import org.example.queryapi.dto.QueryResponse;
+import org.example.queryapi.retrieval.ChunkCompressor;
+import org.example.queryapi.retrieval.InMemoryKnowledgeBase;
+import org.example.queryapi.retrieval.RetrievalCache;
 import org.example.queryapi.retrieval.RetrievalException;
+import org.example.queryapi.retrieval.RetrievalFilter;
 import org.example.queryapi.retrieval.Retriever;
+import org.example.queryapi.synthesis.AnswerCache;
 import org.example.queryapi.synthesis.SynthesisException;
+import org.example.queryapi.synthesis.SynthesisRejectedException;
+import org.example.queryapi.synthesis.SynthesisScheduler;
 import org.example.queryapi.synthesis.Synthesizer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -27,6 +40,10 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(QueryController.class)
+@Import({RetrievalCache.class, InMemoryKnowledgeBase.class, AnswerCache.class, SemanticResponseCache.class,
+        ChunkCompressor.class, SynthesisScheduler.class})
+// Caching is off so every test sees its own stubbed retriever and synthesizer
+@TestPropertySource(properties = {"queryapi.cache.retrieval.max-entries=0", "queryapi.cache.answer.max-entries=0"})
 class QueryControllerTest {
 
     @Autowired
@@ -38,6 +55,12 @@ class QueryControllerTest {
     @MockBean
     private Synthesizer synthesizer;
 
+    @BeforeEach
+    void callDefaultRetrievalMethods() {
+        // Tests stub retrieve; the controller reaches it through the default retrieveResult
+        when(retriever.retrieveResult(anyString(), anyInt(), any())).thenCallRealMethod();
+    }
+
     @Test
     void postQueryEndpointAcceptsValidRequest() throws Exception {
         // Setup test data
@@ -50,8 +73,8 @@ class QueryControllerTest {
                 List.of("chunk-1")
         );
 
-        when(retriever.retrieve(anyString(), anyInt())).thenReturn(chunks);
-        when(synthesizer.synthesize(anyString(), any())).thenReturn(synthesisResult);
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.synthesize(anyString(), any(), any())).thenReturn(synthesisResult);
 
         String requestJson = """
                 {
@@ -92,7 +115,7 @@ class QueryControllerTest {
 
     @Test
     void emptyRetrievalReturns200WithAnswerSynthesizedFalse() throws Exception {
-        when(retriever.retrieve(anyString(), anyInt())).thenReturn(List.of());
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(List.of());
 
         String requestJson = """
                 {
@@ -112,7 +135,7 @@ class QueryControllerTest {
 
     @Test
     void retrievalExceptionReturns503() throws Exception {
-        when(retriever.retrieve(anyString(), anyInt()))
+        when(retriever.retrieve(anyString(), anyInt(), any()))
                 .thenThrow(new RetrievalException("Database connection failed"));
 
         String requestJson = """
@@ -135,8 +158,8 @@ class QueryControllerTest {
                 new Chunk("chunk-1", "doc-1", "Deployment Guide",
                         "The deployment topology is active-passive.", null, 0.9)
         );
-        when(retriever.retrieve(anyString(), anyInt())).thenReturn(chunks);
-        when(synthesizer.synthesize(anyString(), any()))
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.synthesize(anyString(), any(), any()))
                 .thenThrow(new SynthesisException("LLM timeout"));
 
         String requestJson = """
@@ -170,8 +193,8 @@ class QueryControllerTest {
                 List.of("chunk-1", "chunk-2", "chunk-3")
         );
 
-        when(retriever.retrieve(anyString(), anyInt())).thenReturn(chunks);
-        when(synthesizer.synthesize(anyString(), any())).thenReturn(synthesisResult);
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.synthesize(anyString(), any(), any())).thenReturn(synthesisResult);
 
         String requestJson = """
                 {
@@ -195,8 +218,8 @@ class QueryControllerTest {
         );
         SynthesisResult synthesisResult = new SynthesisResult("Answer [1].", List.of("chunk-1"));
 
-        when(retriever.retrieve(anyString(), anyInt())).thenReturn(chunks);
-        when(synthesizer.synthesize(anyString(), any())).thenReturn(synthesisResult);
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.synthesize(anyString(), any(), any())).thenReturn(synthesisResult);
 
         String requestJson = """
                 {
@@ -210,7 +233,7 @@ class QueryControllerTest {
                 .andExpect(status().isOk());
 
         // Verify default maxSources (10) was used
-        org.mockito.Mockito.verify(retriever).retrieve(anyString(), org.mockito.Mockito.eq(10));
+        org.mockito.Mockito.verify(retriever).retrieve(anyString(), org.mockito.Mockito.eq(10), any());
     }
 
     @Test
@@ -221,8 +244,8 @@ class QueryControllerTest {
         );
         SynthesisResult synthesisResult = new SynthesisResult("Answer [1].", List.of("chunk-1"));
 
-        when(retriever.retrieve(anyString(), anyInt())).thenReturn(chunks);
-        when(synthesizer.synthesize(anyString(), any())).thenReturn(synthesisResult);
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.synthesize(anyString(), any(), any())).thenReturn(synthesisResult);
 
         String requestJson = """
                 {
@@ -237,6 +260,203 @@ class QueryControllerTest {
                 .andExpect(jsonPath("$.metadata.totalChunksRetrieved").value(2))
                 .andExpect(jsonPath("$.metadata.totalDocumentsCited").value(1))
                 .andExpect(jsonPath("$.metadata.processingTimeMs").isNumber())
-                .andExpect(jsonPath("$.metadata.processingTimeMs").value(greaterThanOrEqualTo(0)));
+                .andExpect(jsonPath("$.metadata.processingTimeMs").value(greaterThanOrEqualTo(0)))
+                .andExpect(jsonPath("$.metadata.answerCached").value(false));
+    }
+
+    @Test
+    void filtersArePassedToRetriever() throws Exception {
+        List<Chunk> chunks = List.of(
+                new Chunk("chunk-1", "doc-1", "Deployment Guide", "Content", "https://docs.example.com/a", 0.9)
+        );
+        SynthesisResult synthesisResult = new SynthesisResult("Answer [1].", List.of("chunk-1"));
+
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.synthesize(anyString(), any(), any())).thenReturn(synthesisResult);
+
+        String requestJson = """
+                {
+                    "query": "What is the topology?",
+                    "filters": {
+                        "documentIds": ["doc-1"],
+                        "titlePrefix": "Deploy",
+                        "urlHost": "Docs.Example.com",
+                        "tags": ["ops"]
+                    }
+                }
+                """;
+
+        mockMvc.perform(post("/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestJson))
+                .andExpect(status().isOk());
+
+        RetrievalFilter expected = new RetrievalFilter(List.of("doc-1"), "deploy", "docs.example.com", List.of("ops"));
+        org.mockito.Mockito.verify(retriever).retrieve(anyString(), org.mockito.Mockito.eq(10), org.mockito.Mockito.eq(expected));
+    }
+
+    @Test
+    void missingFiltersRetrieveUnfiltered() throws Exception {
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(List.of());
+
+        String requestJson = """
+                {
+                    "query": "What is the topology?"
+                }
+                """;
+
+        mockMvc.perform(post("/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestJson))
+                .andExpect(status().isOk());
+
+        org.mockito.Mockito.verify(retriever).retrieve(anyString(), anyInt(), org.mockito.Mockito.eq(RetrievalFilter.none()));
+    }
+
+    @Test
+    void maxTokensIsPassedToSynthesisAndTokenCountsAreReported() throws Exception {
+        List<Chunk> chunks = List.of(new Chunk("chunk-1", "doc-1", "Doc", "Content", null, 0.9));
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.synthesize(anyString(), any(), org.mockito.ArgumentMatchers.eq(100)))
+                .thenReturn(new SynthesisResult("Answer [1].", List.of("chunk-1"), 640, 37));
+
+        mockMvc.perform(post("/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"What is the deployment topology?\", \"maxTokens\": 100}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.metadata.promptTokens").value(640))
+                .andExpect(jsonPath("$.metadata.outputTokens").value(37));
+    }
+
+    @Test
+    void synthesisSeesRelevantSentencesWhileCitationsKeepWholeChunks() throws Exception {
+        String text = "The service is packaged as a container image. Images are published on every merge. "
+                + "The deployment topology is active-passive across two regions. "
+                + "Failover to the passive region takes about a minute. Logs are shipped to the collector. "
+                + "Dashboards show request rates per endpoint.";
+        List<Chunk> chunks = List.of(new Chunk("chunk-1", "doc-1", "Deployment Guide", text, null, 0.9));
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.synthesize(anyString(), any(), any()))
+                .thenReturn(new SynthesisResult("It is active-passive [1].", List.of("chunk-1")));
+
+        mockMvc.perform(post("/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"What is the deployment topology?\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.citedDocuments[0].snippet").value(text));
+
+        org.mockito.ArgumentCaptor<List<Chunk>> context = org.mockito.ArgumentCaptor.forClass(List.class);
+        org.mockito.Mockito.verify(synthesizer).synthesize(anyString(), context.capture(), any());
+        assertThat(context.getValue()).extracting(Chunk::getChunkId).containsExactly("chunk-1");
+        assertThat(context.getValue().get(0).getText())
+                .contains("The deployment topology is active-passive")
+                .doesNotContain("container image", "Dashboards");
+    }
+
+    @Test
+    void rejectedSynthesisReturnsRetryAfter() throws Exception {
+        List<Chunk> chunks = List.of(new Chunk("chunk-1", "doc-1", "Doc", "Content", null, 0.9));
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.synthesize(anyString(), any(), any()))
+                .thenThrow(new SynthesisRejectedException("Synthesis queue is full", true, 7));
+
+        mockMvc.perform(post("/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"What is the deployment topology?\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "7"))
+                .andExpect(jsonPath("$.error").value("SYNTHESIS_OVERLOADED"));
+    }
+
+    @Test
+    void streamSendsTokensCitationsAndClosingEvent() throws Exception {
+        List<Chunk> chunks = List.of(
+                new Chunk("chunk-1", "doc-1", "Deployment Guide",
+                        "The deployment topology is active-passive.", "http://docs.example.com/deploy", 0.9),
+                new Chunk("chunk-2", "doc-2", "Node Config", "Each node runs the same version.", null, 0.85)
+        );
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        // The citation marker is split across tokens
+        when(synthesizer.stream(anyString(), any(), any())).thenReturn(Flux.just(new AnswerDelta("The topology is "),
+                new AnswerDelta("active-passive ["), new AnswerDelta("1]."), new AnswerDelta("", 812, 9)));
+
+        String requestJson = """
+                {
+                    "query": "What is the deployment topology?"
+                }
+                """;
+
+        MvcResult result = mockMvc.perform(post("/query/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestJson))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String events = result.getResponse().getContentAsString();
+        assertThat(events).containsSubsequence(
+                "event:token", "\"text\":\"The topology is \"",
+                "event:token", "\"text\":\"active-passive [\"",
+                "event:token", "\"text\":\"1].\"",
+                "event:citation", "\"id\":\"doc-1\"",
+                "event:done", "\"answerSynthesized\":true", "\"citedDocuments\":[{\"id\":\"doc-1\"",
+                "\"totalChunksRetrieved\":2", "\"timeToFirstTokenMs\"", "\"promptTokens\":812", "\"outputTokens\":9");
+        assertThat(events).doesNotContain("doc-2");
+    }
+
+    @Test
+    void streamWithEmptyRetrievalClosesWithoutSynthesis() throws Exception {
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(List.of());
+
+        MvcResult result = mockMvc.perform(post("/query/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"What is the deployment topology?\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsString()).containsSubsequence(
+                "event:token", "No relevant information found", "event:done", "\"answerSynthesized\":false");
+        org.mockito.Mockito.verify(synthesizer, org.mockito.Mockito.never()).stream(anyString(), any(), any());
+    }
+
+    @Test
+    void streamSynthesisFailureEndsWithErrorEvent() throws Exception {
+        List<Chunk> chunks = List.of(new Chunk("chunk-1", "doc-1", "Doc", "Content", null, 0.9));
+        when(retriever.retrieve(anyString(), anyInt(), any())).thenReturn(chunks);
+        when(synthesizer.stream(anyString(), any(), any()))
+                .thenReturn(Flux.concat(Flux.just(new AnswerDelta("Partial")), Flux.error(new SynthesisException("LLM timeout"))));
+
+        MvcResult result = mockMvc.perform(post("/query/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"What is the deployment topology?\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String events = result.getResponse().getContentAsString();
+        assertThat(events).containsSubsequence("event:token", "Partial", "event:error", "SYNTHESIS_FAILED", "LLM timeout");
+        assertThat(events).doesNotContain("event:done");
+    }
+
+    @Test
+    void streamRetrievalFailureEndsWithErrorEvent() throws Exception {
+        when(retriever.retrieve(anyString(), anyInt(), any()))
+                .thenThrow(new RetrievalException("Database connection failed"));
+
+        MvcResult result = mockMvc.perform(post("/query/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"What is the deployment topology?\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsString())
+                .containsSubsequence("event:error", "RETRIEVAL_FAILED", "Database connection failed");
+    }
+
+    @Test
+    void streamValidationFailureReturns400() throws Exception {
+        mockMvc.perform(post("/query/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("VALIDATION_ERROR"));
     }
 }
@@ -2,6 +2,8 @@ package org.example.queryapi.domain;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class ChunkTest {
@@ -39,4 +41,29 @@ class ChunkTest {
         assertThat(chunk.getUrl()).isNull();
         assertThat(chunk.getChunkId()).isNotNull();
     }
+
+    @Test
+    void withRelevanceScoreCopiesAllOtherFields() {
+        Chunk chunk = new Chunk("chunk-1", "doc-1", "Document Title", "Text", "https://example.com/doc1", 0.0);
+
+        Chunk scored = chunk.withRelevanceScore(0.9);
+
+        assertThat(scored.getRelevanceScore()).isEqualTo(0.9);
+        assertThat(scored.getChunkId()).isEqualTo("chunk-1");
+        assertThat(scored.getDocumentId()).isEqualTo("doc-1");
+        assertThat(scored.getDocumentTitle()).isEqualTo("Document Title");
+        assertThat(scored.getText()).isEqualTo("Text");
+        assertThat(scored.getUrl()).isEqualTo("https://example.com/doc1");
+        assertThat(chunk.getRelevanceScore()).isEqualTo(0.0);
+    }
+
+    @Test
+    void tagsDefaultToEmptyAndAreCopied() {
+        Chunk untagged = new Chunk("chunk-1", "doc-1", "Title", "Text", null, 0.0);
+        Chunk tagged = new Chunk("chunk-2", "doc-1", "Title", "Text", null, List.of("ops", "kafka"), 0.0);
+
+        assertThat(untagged.getTags()).isEmpty();
+        assertThat(tagged.withRelevanceScore(0.9).getTags()).containsExactly("ops", "kafka");
+        assertThat(new Chunk("chunk-3", "doc-1", "Title", "Text", null, null, 0.0).getTags()).isEmpty();
+    }
 }
@@ -0,0 +1,115 @@
+package org.example.queryapi.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AhoCorasickMatcherTest {
+
+    @Test
+    void countsSingleTermPatterns() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(new int[][]{{1}, {2}, {3}});
+        int[] counts = new int[3];
+
+        matcher.count(new int[]{1, 4, 1, 2, 5}, counts);
+
+        assertThat(counts).containsExactly(2, 1, 0);
+    }
+
+    @Test
+    void countsOverlappingAndNestedPatterns() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(new int[][]{{1, 2}, {2, 3}, {1, 2, 3}, {3}, {7, 7}});
+        int[] counts = new int[5];
+
+        matcher.count(new int[]{1, 2, 3, 1, 2, 7, 7, 7}, counts);
+
+        assertThat(counts).containsExactly(2, 1, 1, 1, 2);
+    }
+
+    @Test
+    void multiTermPatternsMatchOnlyContiguously() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(new int[][]{{1, 2}});
+        int[] counts = new int[1];
+
+        matcher.count(new int[]{1, 3, 2, 2, 1}, counts);
+
+        assertThat(counts).containsExactly(0);
+    }
+
+    @Test
+    void repeatedPatternsShareCounts() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(new int[][]{{4}, {5, 6}, {4}, {5, 6}});
+        int[] counts = new int[4];
+
+        matcher.count(new int[]{4, 5, 6, 4}, counts);
+
+        assertThat(counts).containsExactly(2, 1, 2, 1);
+    }
+
+    @Test
+    void emptyAndMissingPatternsNeverMatch() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(
+                new int[][]{{}, {TermDictionary.MISSING}, {1, TermDictionary.MISSING}, {1}});
+        int[] counts = {9, 9, 9, 9};
+
+        matcher.count(new int[]{1, 1}, counts);
+
+        assertThat(counts).containsExactly(0, 0, 0, 2);
+        assertThat(matcher.patternCount()).isEqualTo(4);
+    }
+
+    @Test
+    void agreesWithNaiveCountingOnRandomText() {
+        Random random = new Random(13);
+        for (int round = 0; round < 200; round++) {
+            int[][] patterns = new int[1 + random.nextInt(30)][];
+            for (int p = 0; p < patterns.length; p++) {
+                patterns[p] = random.ints(1 + random.nextInt(3), 0, 4).toArray();
+            }
+            int[] text = random.ints(random.nextInt(60), 0, 4).toArray();
+            int[] counts = new int[patterns.length];
+
+            AhoCorasickMatcher.compile(patterns).count(text, counts);
+
+            for (int p = 0; p < patterns.length; p++) {
+                assertThat(counts[p]).as("pattern %d in round %d", p, round).isEqualTo(naiveCount(patterns[p], text));
+            }
+        }
+    }
+
+    @Test
+    void proximityComparesMatchedLengthWithShortestWindow() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(new int[][]{{1}, {2, 3}, {9}});
+        int[] counts = new int[3];
+        int[] lastStarts = new int[3];
+
+        double adjacent = matcher.countWithProximity(new int[]{5, 1, 2, 3, 5}, counts, lastStarts);
+        assertThat(counts).containsExactly(1, 1, 0);
+        double apart = matcher.countWithProximity(new int[]{1, 5, 5, 5, 2, 3, 5, 1}, counts, lastStarts);
+        assertThat(counts).containsExactly(2, 1, 0);
+        double single = matcher.countWithProximity(new int[]{5, 1, 5}, counts, lastStarts);
+        double none = matcher.countWithProximity(new int[]{5, 5}, counts, lastStarts);
+
+        assertThat(adjacent).isEqualTo(1.0);
+        // Shortest window is "2 3 5 1": three matched terms in four
+        assertThat(apart).isEqualTo(0.75);
+        assertThat(single).isEqualTo(1.0);
+        assertThat(none).isEqualTo(0.0);
+    }
+
+    private static int naiveCount(int[] pattern, int[] text) {
+        int count = 0;
+        outer:
+        for (int start = 0; start + pattern.length <= text.length; start++) {
+            for (int i = 0; i < pattern.length; i++) {
+                if (text[start + i] != pattern[i]) {
+                    continue outer;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+}
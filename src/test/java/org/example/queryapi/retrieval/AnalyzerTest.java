@@ -0,0 +1,38 @@
+package org.example.queryapi.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalyzerTest {
+
+    @Test
+    void standardAnalyzerSplitsOnNonAlphanumericsAndLowercases() {
+        assertThat(Analyzer.standard().analyze("Active-passive TOPOLOGY, v2.1?"))
+                .containsExactly("active", "passive", "topology", "v2", "1");
+    }
+
+    @Test
+    void compatibilityCharactersAreNormalized() {
+        assertThat(Analyzer.standard().analyze("ｆｕｌｌ-width ﬁle Straße"))
+                .containsExactly("full", "width", "file", "straße");
+    }
+
+    @Test
+    void stopwordsAndPluralsAreHandledWhenEnabled() {
+        Analyzer analyzer = new Analyzer(true, true);
+
+        assertThat(analyzer.analyze("What are the policies for the classes of nodes?"))
+                .containsExactly("policy", "class", "node");
+    }
+
+    @Test
+    void pluralStemmerLeavesNonPluralsAlone() {
+        assertThat(Analyzer.stemPlural("status")).isEqualTo("status");
+        assertThat(Analyzer.stemPlural("access")).isEqualTo("access");
+        assertThat(Analyzer.stemPlural("queries")).isEqualTo("query");
+        assertThat(Analyzer.stemPlural("caches")).isEqualTo("cache");
+        assertThat(Analyzer.stemPlural("addresses")).isEqualTo("address");
+        assertThat(Analyzer.stemPlural("is")).isEqualTo("is");
+    }
+}
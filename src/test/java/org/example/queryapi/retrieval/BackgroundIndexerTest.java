@@ -0,0 +1,65 @@
+package org.example.queryapi.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BackgroundIndexerTest {
+
+    @Test
+    void requestsDuringARunAreCoalescedIntoOneMoreRun() {
+        List<Runnable> scheduled = new ArrayList<>();
+        AtomicInteger runs = new AtomicInteger();
+        BackgroundIndexer[] indexer = new BackgroundIndexer[1];
+        indexer[0] = new BackgroundIndexer("test-indexer", () -> {
+            if (runs.incrementAndGet() == 1) {
+                indexer[0].request();
+                indexer[0].request();
+            }
+        }, scheduled::add, Duration.ZERO, System::nanoTime);
+
+        indexer[0].request();
+        indexer[0].request();
+
+        assertThat(scheduled).hasSize(1);
+        scheduled.get(0).run();
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    void failedRunIsRetriedOnlyAfterTheDelay() {
+        AtomicLong now = new AtomicLong();
+        AtomicInteger runs = new AtomicInteger();
+        BackgroundIndexer indexer = new BackgroundIndexer("test-indexer", () -> {
+            runs.incrementAndGet();
+            throw new RetrievalException("embedding service down");
+        }, Runnable::run, Duration.ofSeconds(1), now::get);
+
+        indexer.request();
+        indexer.request();
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(indexer.failed()).isTrue();
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        indexer.request();
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    void closedIndexerIgnoresRequests() {
+        AtomicInteger runs = new AtomicInteger();
+        BackgroundIndexer indexer = new BackgroundIndexer("test-indexer", runs::incrementAndGet, Runnable::run,
+                Duration.ZERO, System::nanoTime);
+
+        indexer.close();
+        indexer.request();
+
+        assertThat(runs.get()).isZero();
+    }
+}
@@ -0,0 +1,181 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Bm25RetrieverTest {
+
+    private InMemoryKnowledgeBase knowledgeBase;
+    private Bm25Retriever retriever;
+
+    @BeforeEach
+    void setUp() {
+        knowledgeBase = new InMemoryKnowledgeBase();
+        retriever = new Bm25Retriever(knowledgeBase);
+    }
+
+    @Test
+    void emptyKnowledgeBaseReturnsEmptyList() {
+        assertThat(retriever.retrieve("deployment topology", 10)).isEmpty();
+    }
+
+    @Test
+    void chunkMatchingAllTermsPassesThreshold() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Test",
+                "deployment topology active-passive", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Test",
+                "deployment configuration", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-3", "doc-3", "Test",
+                "unrelated content", null, 0.0));
+
+        List<Chunk> chunks = retriever.retrieve("What is the deployment topology?", 10);
+
+        assertThat(chunks).extracting(Chunk::getChunkId).containsExactly("chunk-1");
+        assertThat(chunks.get(0).getRelevanceScore()).isBetween(0.8, 1.0);
+    }
+
+    @Test
+    void weakSingleTermMatchIsFilteredOut() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Test",
+                "deployment topology", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Test",
+                "deployment of the new release", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-3", "doc-3", "Test",
+                "security policies", null, 0.0));
+
+        List<Chunk> chunks = retriever.retrieve("deployment topology", 10);
+
+        assertThat(chunks).extracting(Chunk::getChunkId).doesNotContain("chunk-2");
+    }
+
+    @Test
+    void rareTermsOutweighCommonTerms() {
+        for (int i = 0; i < 5; i++) {
+            knowledgeBase.addChunk(new Chunk("common-" + i, "doc-" + i, "Test",
+                    "node configuration", null, 0.0));
+        }
+        knowledgeBase.addChunk(new Chunk("rare", "doc-rare", "Test",
+                "node failover", null, 0.0));
+
+        List<Chunk> chunks = retriever.retrieve("node failover", 10);
+
+        assertThat(chunks).isNotEmpty();
+        assertThat(chunks.get(0).getChunkId()).isEqualTo("rare");
+        assertThat(chunks).extracting(Chunk::getChunkId).doesNotContain("common-0");
+    }
+
+    @Test
+    void resultsAreOrderedAndLimited() {
+        for (int i = 0; i < 10; i++) {
+            knowledgeBase.addChunk(new Chunk("chunk-" + i, "doc-" + i, "Test",
+                    "deployment topology " + "topology ".repeat(i % 3), null, 0.0));
+        }
+        knowledgeBase.addChunk(new Chunk("other", "doc-other", "Test", "unrelated", null, 0.0));
+
+        List<Chunk> chunks = retriever.retrieve("deployment topology", 4);
+
+        assertThat(chunks).hasSize(4);
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            assertThat(chunks.get(i).getRelevanceScore())
+                    .isGreaterThanOrEqualTo(chunks.get(i + 1).getRelevanceScore());
+        }
+    }
+
+    @Test
+    void statisticsFollowIngestion() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Test", "failover", null, 0.0));
+        assertThat(retriever.retrieve("failover", 10)).hasSize(1);
+
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Test", "failover failover", null, 0.0));
+        List<Chunk> chunks = retriever.retrieve("failover", 10);
+
+        assertThat(chunks).isNotEmpty();
+        assertThat(chunks.get(0).getChunkId()).isEqualTo("chunk-2");
+    }
+
+    @Test
+    void scoreNormalizationIsBounded() {
+        assertThat(Bm25Retriever.normalize(5.0, 2.0)).isEqualTo(1.0);
+        assertThat(Bm25Retriever.normalize(1.0, 2.0)).isEqualTo(0.5);
+        assertThat(Bm25Retriever.normalize(1.0, 0.0)).isEqualTo(0.0);
+        assertThat(Bm25Retriever.termWeight(1, 10, 10.0)).isEqualTo(1.0);
+    }
+
+    @Test
+    void nullKnowledgeBaseThrowsException() {
+        assertThatThrownBy(() -> new Bm25Retriever(null))
+                .isInstanceOf(RetrievalException.class)
+                .hasMessageContaining("Knowledge base cannot be null");
+    }
+
+    @Test
+    void shardedKnowledgeBaseRanksLikeUnsharded() {
+        InMemoryKnowledgeBase sharded = new InMemoryKnowledgeBase(3);
+        for (int i = 0; i < 200; i++) {
+            Chunk chunk = new Chunk("chunk-" + i, "doc-" + i, "Guide",
+                    "deployment " + (i % 3 == 0 ? "topology " : "") + "note " + (i % 11), null, 0.0);
+            knowledgeBase.addChunk(chunk);
+            sharded.addChunk(chunk);
+        }
+
+        List<Chunk> expected = retriever.retrieve("deployment topology", 15);
+        List<Chunk> actual = new Bm25Retriever(sharded).retrieve("deployment topology", 15);
+
+        assertThat(actual).isNotEmpty();
+        assertThat(actual).extracting(Chunk::getChunkId)
+                .containsExactlyElementsOf(expected.stream().map(Chunk::getChunkId).toList());
+        assertThat(actual).extracting(Chunk::getRelevanceScore)
+                .containsExactlyElementsOf(expected.stream().map(Chunk::getRelevanceScore).toList());
+    }
+
+    @Test
+    void filterRestrictsCandidatesBeforeScoring() {
+        for (int i = 0; i < 300; i++) {
+            knowledgeBase.addChunk(new Chunk("chunk-" + i, "doc-" + (i % 10), "Guide " + (i % 2 == 0 ? "Ops" : "Dev"),
+                    "deployment topology note " + i, "https://" + (i % 3 == 0 ? "wiki" : "docs") + ".example.com/" + i,
+                    i % 5 == 0 ? List.of("runbook") : List.of(), 0.0));
+        }
+
+        RetrievalFilter filter = new RetrievalFilter(List.of("doc-0", "doc-5"), "guide o", "WIKI.example.com", List.of("runbook"));
+        List<Chunk> chunks = retriever.retrieve("deployment topology", 300, filter);
+
+        // Only chunks with i % 30 == 0 pass every criterion
+        assertThat(chunks).hasSize(10);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(filter.matches(chunk)).isTrue());
+    }
+
+    @Test
+    void narrowFilterScoresLikeUnfilteredRanking() {
+        for (int i = 0; i < 2_000; i++) {
+            knowledgeBase.addChunk(new Chunk("chunk-" + i, "doc-" + (i % 400), "Guide",
+                    "deployment " + (i % 3 == 0 ? "topology " : "") + "note " + (i % 11), null, 0.0));
+        }
+        RetrievalFilter filter = new RetrievalFilter(List.of("doc-3", "doc-9"), null, null, null);
+
+        List<Chunk> filtered = retriever.retrieve("deployment topology", 20, filter);
+        List<Chunk> expected = retriever.retrieve("deployment topology", 2_000).stream()
+                .filter(filter::matches)
+                .limit(20)
+                .toList();
+
+        assertThat(filtered).isNotEmpty();
+        assertThat(filtered).extracting(Chunk::getChunkId)
+                .containsExactlyElementsOf(expected.stream().map(Chunk::getChunkId).toList());
+        assertThat(filtered).extracting(Chunk::getRelevanceScore)
+                .containsExactlyElementsOf(expected.stream().map(Chunk::getRelevanceScore).toList());
+    }
+
+    @Test
+    void filterMatchingNothingReturnsEmptyList() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Test", "deployment topology", null, 0.0));
+
+        assertThat(retriever.retrieve("deployment topology", 10,
+                new RetrievalFilter(null, null, null, List.of("missing")))).isEmpty();
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkCompressorTest {
+
+    private static final String DEPLOYMENT = "The service is packaged as a container image. "
+            + "Images are published on every merge. "
+            + "The deployment topology is active-passive across two regions. "
+            + "Failover to the passive region takes about a minute. "
+            + "Logs are shipped to the central collector. "
+            + "Dashboards show request rates per endpoint.";
+
+    private static Chunk chunk(String id, String text) {
+        return new Chunk(id, "doc-" + id, "Title " + id, text, "http://docs.example.com/" + id, List.of("ops"), 0.9);
+    }
+
+    @Test
+    void keepsTheBestSentencesWithTheirNeighbours() {
+        ChunkCompressor compressor = new ChunkCompressor(1, 1);
+
+        List<Chunk> compressed = compressor.compress("What is the deployment topology?", List.of(chunk("1", DEPLOYMENT)));
+
+        assertThat(compressed.get(0).getText()).isEqualTo("... Images are published on every merge. "
+                + "The deployment topology is active-passive across two regions. "
+                + "Failover to the passive region takes about a minute. ...");
+    }
+
+    @Test
+    void chunkOrderIdsAndMetadataArePreserved() {
+        ChunkCompressor compressor = new ChunkCompressor(1, 0);
+        Chunk logging = chunk("2", "Logs are shipped to the collector. Retention is thirty days. Alerts page the on-call.");
+        List<Chunk> chunks = List.of(chunk("1", DEPLOYMENT), logging);
+
+        List<Chunk> compressed = compressor.compress("deployment topology", chunks);
+
+        assertThat(compressed).extracting(Chunk::getChunkId).containsExactly("1", "2");
+        Chunk first = compressed.get(0);
+        assertThat(first.getDocumentId()).isEqualTo("doc-1");
+        assertThat(first.getDocumentTitle()).isEqualTo("Title 1");
+        assertThat(first.getUrl()).isEqualTo("http://docs.example.com/1");
+        assertThat(first.getTags()).containsExactly("ops");
+        assertThat(first.getRelevanceScore()).isEqualTo(0.9);
+        // A chunk without a matching sentence keeps its first one
+        assertThat(compressed.get(1).getText()).isEqualTo("Logs are shipped to the collector. ...");
+    }
+
+    @Test
+    void rareQueryTermsOutweighCommonOnes() {
+        ChunkCompressor compressor = new ChunkCompressor(1, 0);
+        String text = "The service runs in two regions. The service scales on CPU. "
+                + "The service retries failed calls. Failover of the service takes a minute.";
+
+        List<Chunk> compressed = compressor.compress("service failover", List.of(chunk("1", text)));
+
+        assertThat(compressed.get(0).getText()).isEqualTo("... Failover of the service takes a minute.");
+    }
+
+    @Test
+    void shortChunksAndUnmatchedQueriesAreLeftAlone() {
+        ChunkCompressor compressor = new ChunkCompressor(2, 1);
+        Chunk shortChunk = chunk("1", "The topology is active-passive. Failover takes a minute.");
+        List<Chunk> chunks = List.of(shortChunk);
+
+        assertThat(compressor.compress("deployment topology", chunks).get(0)).isSameAs(shortChunk);
+        // Stopwords alone give nothing to score sentences by
+        assertThat(compressor.compress("what is the", List.of(chunk("2", DEPLOYMENT))))
+                .extracting(Chunk::getText).containsExactly(DEPLOYMENT);
+    }
+
+    @Test
+    void zeroSentencesDisablesCompression() {
+        List<Chunk> chunks = List.of(chunk("1", DEPLOYMENT));
+
+        assertThat(new ChunkCompressor(0, 1).compress("deployment topology", chunks)).isSameAs(chunks);
+    }
+
+    @Test
+    void lineBreaksEndSentences() {
+        assertThat(ChunkCompressor.splitSentences("Setup\n- Install the agent\n- Start it. Then verify.\n"))
+                .containsExactly("Setup", "- Install the agent", "- Start it.", "Then verify.");
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.queryapi.retrieval;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deterministic local embedder for tests: each term and its character trigrams are
+ * hashed into signed buckets, so texts sharing terms get similar vectors without
+ * calling a model server.
+ */
+class HashingEmbeddingModel implements EmbeddingModel {
+
+    private final int dimension;
+    private final AtomicInteger embeddedTexts = new AtomicInteger();
+
+    HashingEmbeddingModel(int dimension) {
+        this.dimension = dimension;
+    }
+
+    /**
+     * Gets the number of texts embedded so far.
+     */
+    int embeddedTexts() {
+        return embeddedTexts.get();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<Embedding> embeddings = new ArrayList<>();
+        List<String> texts = request.getInstructions();
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(vectorFor(texts.get(i)), i));
+        }
+        embeddedTexts.addAndGet(texts.size());
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        embeddedTexts.incrementAndGet();
+        return vectorFor(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimension;
+    }
+
+    private float[] vectorFor(String text) {
+        float[] vector = new float[dimension];
+        for (String term : Analyzer.standard().analyze(text)) {
+            add(vector, term, 1f);
+            // Character trigrams grade similarity between related terms, as dense models do
+            String padded = "#" + term + "#";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                add(vector, padded.substring(i, i + 3), 0.5f);
+            }
+        }
+        return vector;
+    }
+
+    private void add(float[] vector, String feature, float weight) {
+        int hash = feature.hashCode() * 0x9E3779B9;
+        vector[Math.floorMod(hash, dimension)] += (hash & 0x100) == 0 ? weight : -weight;
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.queryapi.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int K = 10;
+
+    @Test
+    void emptyIndexReturnsNothing() {
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100);
+
+        assertThat(index.search(new float[DIMENSION], K, 50, -1.0, Integer.MAX_VALUE).drain()).isZero();
+    }
+
+    @Test
+    void recallAgainstExactSearchIsHigh() {
+        List<float[]> vectors = randomVectors(new Random(1), 5_000);
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100);
+        for (int i = 0; i < vectors.size(); i++) {
+            index.insert(i, vectors.get(i));
+        }
+
+        assertThat(recall(index, vectors, new Random(2), 64)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void concurrentInsertsBuildASearchableGraph() {
+        List<float[]> vectors = randomVectors(new Random(3), 5_000);
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100);
+
+        // Ordinals arrive out of order from several threads
+        IntStream.range(0, vectors.size()).parallel().forEach(i -> index.insert(i, vectors.get(i)));
+
+        assertThat(index.size()).isEqualTo(vectors.size());
+        assertThat(recall(index, vectors, new Random(4), 64)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void resultsRespectLimitAndThreshold() {
+        HnswIndex index = new HnswIndex(2, 4, 20);
+        index.insert(0, new float[]{1f, 0f});
+        index.insert(1, new float[]{0f, 1f});
+        index.insert(2, new float[]{1f, 0.05f});
+
+        TopKCollector topK = index.search(new float[]{1f, 0f}, K, 10, 0.5, 2);
+
+        assertThat(topK.drain()).isEqualTo(1);
+        assertThat(topK.ordinalAt(0)).isZero();
+    }
+
+    @Test
+    void writtenGraphReadsBackWithSameResults() throws IOException {
+        List<float[]> vectors = randomVectors(new Random(5), 500);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        for (int i = 0; i < vectors.size(); i++) {
+            index.insert(i, vectors.get(i));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+
+        HnswIndex loaded = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        float[] query = randomVectors(new Random(6), 1).get(0);
+        assertThat(loaded.size()).isEqualTo(index.size());
+        assertThat(ordinals(loaded.search(query, K, 50, -1.0, Integer.MAX_VALUE)))
+                .isEqualTo(ordinals(index.search(query, K, 50, -1.0, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    void duplicateOrdinalIsRejected() {
+        HnswIndex index = new HnswIndex(2, 4, 20);
+        index.insert(0, new float[]{1f, 0f});
+
+        assertThatThrownBy(() -> index.insert(0, new float[]{0f, 1f}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Mean fraction of the exact top-k found by the graph over a set of random queries.
+     */
+    static double recall(HnswIndex index, List<float[]> vectors, Random random, int efSearch) {
+        VectorIndex exact = new VectorIndex(DIMENSION);
+        exact.addAll(vectors);
+        int queries = 50;
+        double total = 0.0;
+        for (float[] query : randomVectors(random, queries)) {
+            Set<Integer> expected = new HashSet<>(ordinals(exact.search(query, K, -1.0, vectors.size())));
+            List<Integer> actual = ordinals(index.search(query, K, efSearch, -1.0, vectors.size()));
+            total += actual.stream().filter(expected::contains).count() / (double) K;
+        }
+        return total / queries;
+    }
+
+    private static List<Integer> ordinals(TopKCollector topK) {
+        int count = topK.drain();
+        List<Integer> ordinals = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            ordinals.add(topK.ordinalAt(rank));
+        }
+        return ordinals;
+    }
+
+    private static List<float[]> randomVectors(Random random, int count) {
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int j = 0; j < DIMENSION; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    @Test
+    void filteredSearchReturnsOnlyAllowedOrdinals() {
+        List<float[]> vectors = randomVectors(new Random(6), 2_000);
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100);
+        VectorIndex exact = new VectorIndex(DIMENSION);
+        exact.addAll(vectors);
+        for (int i = 0; i < vectors.size(); i++) {
+            index.insert(i, vectors.get(i));
+        }
+        // A narrow filter is scored exactly; a broad one goes through the widened graph search
+        BitSet narrow = new BitSet();
+        BitSet broad = new BitSet();
+        for (int i = 0; i < vectors.size(); i++) {
+            if (i % 97 == 0) {
+                narrow.set(i);
+            }
+            if (i % 2 == 0) {
+                broad.set(i);
+            }
+        }
+        float[] query = randomVectors(new Random(7), 1).get(0);
+
+        List<Integer> narrowResults = ordinals(index.search(query, K, 64, -1.0, vectors.size(), narrow));
+        List<Integer> broadResults = ordinals(index.search(query, K, 64, -1.0, vectors.size(), broad));
+
+        assertThat(narrowResults).isEqualTo(ordinals(exact.search(query, K, -1.0, vectors.size(), narrow)));
+        assertThat(broadResults).hasSize(K).allSatisfy(ordinal -> assertThat(ordinal % 2).isZero());
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HnswRetrieverTest {
+
+    @TempDir
+    Path directory;
+
+    private InMemoryKnowledgeBase knowledgeBase;
+    private HashingEmbeddingModel embeddingModel;
+
+    @BeforeEach
+    void setUp() {
+        knowledgeBase = new InMemoryKnowledgeBase();
+        embeddingModel = new HashingEmbeddingModel(256);
+    }
+
+    @Test
+    void emptyKnowledgeBaseReturnsEmptyList() {
+        assertThat(retriever(null).retrieve("deployment topology", 10)).isEmpty();
+    }
+
+    @Test
+    void mostSimilarChunkRanksFirst() {
+        knowledgeBase.addChunks(corpus(200));
+        knowledgeBase.addChunk(new Chunk("target", "doc-x", "Guide",
+                "deployment topology is active passive", null, 0.0));
+
+        List<Chunk> chunks = retriever(null).retrieve("deployment topology active passive", 5);
+
+        assertThat(chunks).isNotEmpty();
+        assertThat(chunks.get(0).getChunkId()).isEqualTo("target");
+        assertThat(chunks.get(0).getRelevanceScore()).isBetween(0.3, 1.0);
+    }
+
+    @Test
+    void chunksAddedBetweenQueriesBecomeSearchable() {
+        HnswRetriever retriever = retriever(null);
+        knowledgeBase.addChunks(corpus(100));
+        retriever.retrieve("topic 1", 5);
+
+        knowledgeBase.addChunk(new Chunk("late", "doc-late", "Runbook", "failover runbook steps", null, 0.0));
+
+        assertThat(retriever.retrieve("failover runbook steps", 1))
+                .extracting(Chunk::getChunkId)
+                .containsExactly("late");
+    }
+
+    @Test
+    void queriesSearchTheInsertedPrefixWithoutWaiting() {
+        List<Runnable> pending = new ArrayList<>();
+        HnswRetriever retriever = new HnswRetriever(knowledgeBase, embeddingModel, 8, 50, 32, 0.3, "", 0,
+                pending::add);
+        pending.forEach(Runnable::run);
+        pending.clear();
+        knowledgeBase.addChunk(new Chunk("first", "doc-1", "Runbook", "failover runbook steps", null, 0.0));
+        pending.forEach(Runnable::run);
+        pending.clear();
+
+        knowledgeBase.addChunk(new Chunk("second", "doc-2", "Runbook", "failover runbook checklist", null, 0.0));
+
+        assertThat(retriever.retrieve("failover runbook", 5))
+                .extracting(Chunk::getChunkId)
+                .containsExactly("first");
+        pending.forEach(Runnable::run);
+        assertThat(retriever.retrieve("failover runbook", 5))
+                .extracting(Chunk::getChunkId)
+                .containsExactlyInAnyOrder("first", "second");
+    }
+
+    @Test
+    void savedGraphIsReloadedWithoutReembedding() throws IOException {
+        knowledgeBase.addChunks(corpus(100));
+        HnswRetriever first = retriever(directory);
+        List<Chunk> before = first.retrieve("topic 7 notes", 5);
+        first.close();
+        assertThat(directory.resolve(HnswRetriever.GRAPH_FILE)).exists();
+
+        HashingEmbeddingModel freshModel = new HashingEmbeddingModel(256);
+        HnswRetriever second = new HnswRetriever(knowledgeBase, freshModel, 8, 50, 32, 0.3, directory.toString(), 0,
+                Runnable::run);
+        List<Chunk> after = second.retrieve("topic 7 notes", 5);
+
+        // Only the query is embedded
+        assertThat(freshModel.embeddedTexts()).isEqualTo(1);
+        assertThat(after).extracting(Chunk::getChunkId)
+                .containsExactlyElementsOf(before.stream().map(Chunk::getChunkId).toList());
+    }
+
+    @Test
+    void savedGraphIsLoadedOnceRecoveryCatchesUp() throws IOException {
+        List<Chunk> corpus = corpus(100);
+        knowledgeBase.addChunks(corpus);
+        HnswRetriever first = retriever(directory);
+        List<Chunk> before = first.retrieve("topic 7 notes", 5);
+        first.close();
+
+        // As on a restart: the retriever is built before the journal refills the knowledge base
+        InMemoryKnowledgeBase recovered = new InMemoryKnowledgeBase();
+        HashingEmbeddingModel freshModel = new HashingEmbeddingModel(256);
+        HnswRetriever second = new HnswRetriever(recovered, freshModel, 8, 50, 32, 0.3, directory.toString(), 0,
+                Runnable::run);
+        recovered.addChunks(corpus.subList(0, 40));
+        assertThat(second.retrieve("topic 7 notes", 5)).isEmpty();
+        recovered.addChunks(corpus.subList(40, 100));
+        List<Chunk> after = second.retrieve("topic 7 notes", 5);
+
+        // Nothing but the one query that found the graph loaded is embedded
+        assertThat(freshModel.embeddedTexts()).isEqualTo(1);
+        assertThat(after).extracting(Chunk::getChunkId)
+                .containsExactlyElementsOf(before.stream().map(Chunk::getChunkId).toList());
+    }
+
+    @Test
+    void graphForDifferentChunksIsIgnored() throws IOException {
+        knowledgeBase.addChunks(corpus(50));
+        HnswRetriever first = retriever(directory);
+        first.retrieve("topic 1", 5);
+        first.close();
+
+        InMemoryKnowledgeBase other = new InMemoryKnowledgeBase();
+        other.addChunk(new Chunk("other", "doc-o", "Other", "failover runbook", null, 0.0));
+        HnswRetriever second = new HnswRetriever(other, embeddingModel, 8, 50, 32, 0.3, directory.toString(), 0,
+                Runnable::run);
+
+        assertThat(second.retrieve("failover runbook", 5))
+                .extracting(Chunk::getChunkId)
+                .containsExactly("other");
+    }
+
+    @Test
+    void constructorRejectsNullKnowledgeBase() {
+        assertThatThrownBy(() -> new HnswRetriever(null, embeddingModel, 8, 50, 32, 0.3, "", 0))
+                .isInstanceOf(RetrievalException.class);
+    }
+
+    private HnswRetriever retriever(Path graphDirectory) {
+        return new HnswRetriever(knowledgeBase, embeddingModel, 8, 50, 32, 0.3,
+                graphDirectory == null ? "" : graphDirectory.toString(), 0, Runnable::run);
+    }
+
+    private static List<Chunk> corpus(int size) {
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            chunks.add(new Chunk("chunk-" + i, "doc-" + i, "Notes " + i,
+                    "topic " + i + " notes about subject " + (i % 7), null, 0.0));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HybridRetrieverTest {
+
+    @Test
+    void chunksRankedByBothLegsComeFirst() {
+        Retriever keyword = (query, max, filter) -> List.of(chunk("a"), chunk("b"), chunk("c"));
+        Retriever vector = (query, max, filter) -> List.of(chunk("c"), chunk("d"), chunk("a"));
+        HybridRetriever retriever = new HybridRetriever(keyword, vector, 1000, 60, 10);
+
+        List<Chunk> chunks = retriever.retrieve("query", 10);
+
+        assertThat(chunks).extracting(Chunk::getChunkId).containsExactly("a", "c", "b", "d");
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.getRelevanceScore()).isBetween(0.8, 1.0));
+        retriever.close();
+    }
+
+    @Test
+    void chunkRankedFirstByBothLegsScoresOne() {
+        Retriever leg = (query, max, filter) -> List.of(chunk("a"), chunk("b"));
+        HybridRetriever retriever = new HybridRetriever(leg, leg, 1000, 60, 10);
+
+        List<Chunk> chunks = retriever.retrieve("query", 1);
+
+        assertThat(chunks).hasSize(1);
+        assertThat(chunks.get(0).getRelevanceScore()).isEqualTo(1.0);
+        retriever.close();
+    }
+
+    @Test
+    void legsRunConcurrently() {
+        // Each leg waits for the other to start, which only completes if both run at once
+        CountDownLatch started = new CountDownLatch(2);
+        Retriever keyword = (query, max, filter) -> awaitBoth(started, chunk("a"));
+        Retriever vector = (query, max, filter) -> awaitBoth(started, chunk("b"));
+        HybridRetriever retriever = new HybridRetriever(keyword, vector, 2000, 60, 10);
+
+        assertThat(retriever.retrieve("query", 10)).extracting(Chunk::getChunkId).containsExactly("a", "b");
+        retriever.close();
+    }
+
+    @Test
+    void slowLegIsDroppedAtDeadline() {
+        Retriever keyword = (query, max, filter) -> List.of(chunk("a"));
+        Retriever vector = (query, max, filter) -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(chunk("b"));
+        };
+        HybridRetriever retriever = new HybridRetriever(keyword, vector, 100, 60, 10);
+
+        long start = System.nanoTime();
+        List<Chunk> chunks = retriever.retrieve("query", 10);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5_000);
+        assertThat(chunks).extracting(Chunk::getChunkId).containsExactly("a");
+        assertThat(chunks.get(0).getRelevanceScore()).isEqualTo(1.0);
+        retriever.close();
+    }
+
+    @Test
+    void legSlowOnItsFirstCallIsAbandonedWithoutInterrupt() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch firstCallDone = new CountDownLatch(1);
+        Retriever keyword = (query, max, filter) -> List.of(chunk("a"));
+        Retriever vector = (query, max, filter) -> {
+            if (calls.incrementAndGet() == 1) {
+                // Like a vector leg catching up on its first query
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                } finally {
+                    firstCallDone.countDown();
+                }
+            }
+            return List.of(chunk("b"));
+        };
+        HybridRetriever retriever = new HybridRetriever(keyword, vector, 100, 60, 10);
+
+        assertThat(retriever.retrieve("query", 10)).extracting(Chunk::getChunkId).containsExactly("a");
+        assertThat(firstCallDone.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(interrupted.get()).isFalse();
+
+        assertThat(retriever.retrieve("query", 10)).extracting(Chunk::getChunkId).containsExactly("a", "b");
+        retriever.close();
+    }
+
+    @Test
+    void failingLegIsDropped() {
+        Retriever keyword = (query, max, filter) -> {
+            throw new RetrievalException("index unavailable");
+        };
+        Retriever vector = (query, max, filter) -> List.of(chunk("b"));
+        HybridRetriever retriever = new HybridRetriever(keyword, vector, 1000, 60, 10);
+
+        assertThat(retriever.retrieve("query", 10)).extracting(Chunk::getChunkId).containsExactly("b");
+        retriever.close();
+    }
+
+    @Test
+    void failureOfBothLegsIsReported() {
+        Retriever failing = (query, max, filter) -> {
+            throw new RetrievalException("embedding service down");
+        };
+        HybridRetriever retriever = new HybridRetriever(failing, failing, 1000, 60, 10);
+
+        assertThatThrownBy(() -> retriever.retrieve("query", 10))
+                .isInstanceOf(RetrievalException.class)
+                .hasMessageContaining("embedding service down");
+        retriever.close();
+    }
+
+    @Test
+    void legsAreAskedForDeeperCandidateLists() {
+        int[] requested = new int[1];
+        Retriever keyword = (query, max, filter) -> {
+            requested[0] = max;
+            return List.of();
+        };
+        HybridRetriever retriever = new HybridRetriever(keyword, (query, max, filter) -> List.of(), 1000, 60, 25);
+
+        assertThat(retriever.retrieve("query", 5)).isEmpty();
+        assertThat(requested[0]).isEqualTo(25);
+        retriever.close();
+    }
+
+    @Test
+    void hybridOverKnowledgeBaseFindsKeywordAndSemanticMatches() {
+        InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase();
+        knowledgeBase.addChunk(new Chunk("exact", "doc-1", "Deployment", "deployment topology", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("other", "doc-2", "Security", "firewall rules", null, 0.0));
+        VectorRetriever vector = new VectorRetriever(knowledgeBase, new HashingEmbeddingModel(256), 0.3,
+                "none", 200, 4096, 8, "", Runnable::run);
+        HybridRetriever retriever = new HybridRetriever(new Bm25Retriever(knowledgeBase), vector, 2000, 60, 10);
+
+        assertThat(retriever.retrieve("deployment topology", 10))
+                .extracting(Chunk::getChunkId)
+                .containsExactly("exact");
+        retriever.close();
+    }
+
+    private static List<Chunk> awaitBoth(CountDownLatch started, Chunk result) {
+        started.countDown();
+        try {
+            if (!started.await(1, TimeUnit.SECONDS)) {
+                return List.of();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return List.of(result);
+    }
+
+    private static Chunk chunk(String id) {
+        return new Chunk(id, "doc-" + id, "Title", "text", null, 0.9);
+    }
+}
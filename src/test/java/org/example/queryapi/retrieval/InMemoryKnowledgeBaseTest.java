@@ -4,9 +4,11 @@ import org.example.queryapi.domain.Chunk;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class InMemoryKnowledgeBaseTest {
 
@@ -57,4 +59,137 @@ class InMemoryKnowledgeBaseTest {
 
         assertThat(chunks).isEmpty();
     }
+
+    @Test
+    void findCandidatesReturnsOnlyChunksWithMatchingTerms() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Deployment Guide", "Active-passive topology", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Security", "Policies are enforced", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-3", "doc-3", "Nodes", "Each node runs the same topology", null, 0.0));
+
+        List<Chunk> candidates = knowledgeBase.findCandidates(List.of("topology"));
+
+        assertThat(candidates).extracting(Chunk::getChunkId).containsExactly("chunk-1", "chunk-3");
+    }
+
+    @Test
+    void findCandidatesMatchesWholeTermsAndDocumentTitles() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Deployment Guide", "Active-passive setup", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Security", "Start the rollout", null, 0.0));
+
+        assertThat(knowledgeBase.findCandidates(List.of("DEPLOYMENT"))).extracting(Chunk::getChunkId).containsExactly("chunk-1");
+        assertThat(knowledgeBase.findCandidates(List.of("passive"))).extracting(Chunk::getChunkId).containsExactly("chunk-1");
+        assertThat(knowledgeBase.findCandidates(List.of("ploy"))).isEmpty();
+        assertThat(knowledgeBase.findCandidates(List.of("art"))).isEmpty();
+        assertThat(knowledgeBase.findCandidates(List.of("missing"))).isEmpty();
+    }
+
+    @Test
+    void findCandidatesIgnoresKeywordsWithoutLettersOrDigits() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Doc", "a - b", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Doc", "c d", null, 0.0));
+
+        assertThat(knowledgeBase.findCandidates(List.of("-"))).isEmpty();
+    }
+
+    @Test
+    void chunksAreAnalyzedOnceIntoSharedTermIds() {
+        InMemoryKnowledgeBase analyzed = new InMemoryKnowledgeBase(1, true, true);
+        analyzed.addChunk(new Chunk("chunk-1", "doc-1", "Guide", "The Ｃａｃｈｅｓ of the nodes", null, 0.0));
+        analyzed.addChunk(new Chunk("chunk-2", "doc-2", "Guides", "One cache per node", null, 0.0));
+
+        Segment first = analyzed.snapshot().shards().get(0).segments().get(0);
+        TermDictionary dictionary = analyzed.dictionary();
+
+        // Full-width letters are folded by NFKC, stopwords dropped and plurals stemmed
+        assertThat(first.terms(0)).containsExactly(
+                dictionary.id("cache"), dictionary.id("node"), dictionary.id("guide"));
+        assertThat(first.terms(1)).containsExactly(
+                dictionary.id("one"), dictionary.id("cache"), dictionary.id("per"), dictionary.id("node"),
+                dictionary.id("guide"));
+        assertThat(analyzed.findCandidates(List.of("Nodes"))).hasSize(2);
+    }
+
+    @Test
+    void everyWritePublishesSnapshotWithHigherVersion() {
+        long initial = knowledgeBase.getVersion();
+
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Doc", "Content", null, 0.0));
+        long afterAdd = knowledgeBase.getVersion();
+        knowledgeBase.addChunks(List.of(
+                new Chunk("chunk-2", "doc-2", "Doc", "Content", null, 0.0),
+                new Chunk("chunk-3", "doc-3", "Doc", "Content", null, 0.0)));
+        long afterBatch = knowledgeBase.getVersion();
+        knowledgeBase.clear();
+
+        assertThat(afterAdd).isGreaterThan(initial);
+        assertThat(afterBatch).isEqualTo(afterAdd + 1);
+        assertThat(knowledgeBase.getVersion()).isGreaterThan(afterBatch);
+    }
+
+    @Test
+    void snapshotIsUnaffectedByLaterWrites() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Doc", "Content", null, 0.0));
+        KnowledgeBaseSnapshot snapshot = knowledgeBase.snapshot();
+
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Doc", "Content", null, 0.0));
+        knowledgeBase.clear();
+
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.getChunks()).extracting(Chunk::getChunkId).containsExactly("chunk-1");
+    }
+
+    @Test
+    void chunksAreUnmodifiable() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Doc", "Content", null, 0.0));
+
+        assertThatThrownBy(() -> knowledgeBase.getAllChunks().add(new Chunk("x", "x", "x", "x", null, 0.0)))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void singleAddsAreMergedIntoFewSegments() {
+        for (int i = 0; i < 1_000; i++) {
+            knowledgeBase.addChunk(new Chunk("chunk-" + i, "doc-" + i, "Doc", "term" + (i % 7) + " shared", null, 0.0));
+        }
+
+        KnowledgeBaseSnapshot snapshot = knowledgeBase.snapshot();
+
+        assertThat(snapshot.shards().get(0).segments().size()).isLessThanOrEqualTo(11);
+        assertThat(snapshot.documentFrequency(knowledgeBase.dictionary().id("shared"))).isEqualTo(1_000);
+        assertThat(snapshot.getChunk(999).getChunkId()).isEqualTo("chunk-999");
+        assertThat(knowledgeBase.findCandidates(List.of("term3")))
+                .hasSize(143)
+                .allMatch(chunk -> chunk.getText().startsWith("term3"));
+        assertThat(knowledgeBase.getAllChunks()).extracting(Chunk::getChunkId)
+                .startsWith("chunk-0", "chunk-1", "chunk-2");
+    }
+
+    @Test
+    void shardedKnowledgeBaseKeepsInsertionOrder() {
+        InMemoryKnowledgeBase sharded = new InMemoryKnowledgeBase(4);
+        for (int i = 0; i < 50; i++) {
+            sharded.addChunk(new Chunk("single-" + i, "doc", "Doc", "term" + (i % 7) + " shared", null, 0.0));
+        }
+        List<Chunk> batch = new ArrayList<>();
+        for (int i = 0; i < 103; i++) {
+            batch.add(new Chunk("batch-" + i, "doc", "Doc", "term" + (i % 7) + " shared", null, 0.0));
+        }
+        sharded.addChunks(batch);
+
+        KnowledgeBaseSnapshot snapshot = sharded.snapshot();
+
+        assertThat(snapshot.shards()).hasSize(4);
+        assertThat(snapshot.shards()).allSatisfy(shard -> assertThat(shard.size()).isBetween(38, 39));
+        assertThat(snapshot.getChunk(49).getChunkId()).isEqualTo("single-49");
+        assertThat(snapshot.getChunk(50).getChunkId()).isEqualTo("batch-0");
+        assertThat(snapshot.getChunk(152).getChunkId()).isEqualTo("batch-102");
+        assertThat(snapshot.documentFrequency(sharded.dictionary().id("shared"))).isEqualTo(153);
+        assertThat(sharded.findCandidates(List.of("term3")))
+                .extracting(Chunk::getChunkId)
+                .startsWith("single-3", "single-10");
+
+        sharded.clear();
+        assertThat(sharded.snapshot().shards()).hasSize(4);
+        assertThat(sharded.size()).isZero();
+    }
 }
@@ -148,10 +148,109 @@ class InMemoryRetrieverTest {
         }
     }
 
+    @Test
+    void partialWordKeywordsDoNotMatch() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Test",
+                "The deployment topology uses active-passive configuration.", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Test",
+                "Start the art exhibition.", null, 0.0));
+
+        assertThat(retriever.retrieve("ploy e-pass", 10)).isEmpty();
+        assertThat(retriever.retrieve("art", 10)).extracting(Chunk::getChunkId).containsExactly("chunk-2");
+        assertThat(retriever.retrieve("active passive", 10)).extracting(Chunk::getChunkId).containsExactly("chunk-1");
+    }
+
+    @Test
+    void hyphenatedKeywordMatchesOnlyAsPhrase() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Test",
+                "The deployment topology uses active-passive configuration.", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Test",
+                "Passive monitoring with an active probe.", null, 0.0));
+
+        assertThat(retriever.retrieve("active-passive", 10)).extracting(Chunk::getChunkId).containsExactly("chunk-1");
+        assertThat(retriever.retrieve("active passive", 10)).extracting(Chunk::getChunkId)
+                .containsExactlyInAnyOrder("chunk-1", "chunk-2");
+    }
+
+    @Test
+    void quotedKeywordsMatchOnlyAsPhrase() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Errors",
+                "Request failed: connection pool timeout after 30s.", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Errors",
+                "The pool grew until a connection hit its timeout.", null, 0.0));
+
+        assertThat(retriever.retrieve("\"connection pool timeout\"", 10)).extracting(Chunk::getChunkId)
+                .containsExactly("chunk-1");
+        assertThat(retriever.retrieve("connection pool timeout", 10)).extracting(Chunk::getChunkId)
+                .containsExactlyInAnyOrder("chunk-1", "chunk-2");
+    }
+
+    @Test
+    void keywordsCloseTogetherRankAboveKeywordsFarApart() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Errors",
+                "The pool grew slowly while every new connection waited for a timeout.", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Errors",
+                "Request failed: connection pool timeout after 30s.", null, 0.0));
+
+        List<Chunk> chunks = retriever.retrieve("connection pool timeout", 10);
+
+        assertThat(chunks).extracting(Chunk::getChunkId).containsExactly("chunk-2", "chunk-1");
+        assertThat(chunks.get(0).getRelevanceScore()).isEqualTo(1.0);
+        assertThat(chunks.get(1).getRelevanceScore()).isBetween(0.8, 1.0).isLessThan(1.0);
+    }
+
+    @Test
+    void punctuationInQueryDoesNotPreventMatch() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Test",
+                "The deployment topology uses active-passive configuration.", null, 0.0));
+
+        assertThat(retriever.retrieve("What is the deployment topology?", 10))
+                .extracting(Chunk::getChunkId)
+                .containsExactly("chunk-1");
+    }
+
     @Test
     void nullKnowledgeBaseThrowsException() {
         assertThatThrownBy(() -> new InMemoryRetriever(null))
                 .isInstanceOf(RetrievalException.class)
                 .hasMessageContaining("Knowledge base cannot be null");
     }
+
+    @Test
+    void shardedKnowledgeBaseRanksLikeUnsharded() {
+        InMemoryKnowledgeBase sharded = new InMemoryKnowledgeBase(3);
+        for (int i = 0; i < 200; i++) {
+            Chunk chunk = new Chunk("chunk-" + i, "doc-" + i, "Guide",
+                    "deployment " + (i % 3 == 0 ? "topology " : "") + "note " + (i % 11), null, 0.0);
+            knowledgeBase.addChunk(chunk);
+            sharded.addChunk(chunk);
+        }
+
+        List<Chunk> expected = retriever.retrieve("deployment topology", 15);
+        List<Chunk> actual = new InMemoryRetriever(sharded).retrieve("deployment topology", 15);
+
+        assertThat(actual).isNotEmpty();
+        assertThat(actual).extracting(Chunk::getChunkId)
+                .containsExactlyElementsOf(expected.stream().map(Chunk::getChunkId).toList());
+        assertThat(actual).extracting(Chunk::getRelevanceScore)
+                .containsExactlyElementsOf(expected.stream().map(Chunk::getRelevanceScore).toList());
+    }
+
+    @Test
+    void filterRestrictsResultsAcrossShardsAndSegments() {
+        InMemoryKnowledgeBase sharded = new InMemoryKnowledgeBase(3);
+        for (int i = 0; i < 200; i++) {
+            sharded.addChunk(new Chunk("chunk-" + i, "doc-" + i, i % 4 == 0 ? "Release Notes" : "Guide",
+                    "deployment topology note " + i, null, i % 2 == 0 ? List.of("current") : List.of("archived"), 0.0));
+        }
+        RetrievalFilter filter = new RetrievalFilter(null, "release", null, List.of("current"));
+
+        List<Chunk> chunks = new InMemoryRetriever(sharded).retrieve("deployment topology", 200, filter);
+
+        assertThat(chunks).hasSize(50);
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat(chunk.getDocumentTitle()).isEqualTo("Release Notes");
+            assertThat(chunk.getTags()).containsExactly("current");
+        });
+    }
 }
@@ -0,0 +1,178 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KnowledgeBaseJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<KnowledgeBaseJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (KnowledgeBaseJournal journal : journals) {
+            journal.close();
+        }
+    }
+
+    private KnowledgeBaseJournal open(InMemoryKnowledgeBase knowledgeBase) throws IOException {
+        KnowledgeBaseJournal journal = new KnowledgeBaseJournal(knowledgeBase, directory.toString(), 0);
+        journal.start();
+        journals.add(journal);
+        return journal;
+    }
+
+    private static Chunk chunk(int i) {
+        return new Chunk("chunk-" + i, "doc-" + i, "Title " + i, "text " + i, i % 2 == 0 ? null : "https://example.com/" + i, 0.0);
+    }
+
+    private InMemoryKnowledgeBase restart(KnowledgeBaseJournal journal) throws IOException {
+        journal.close();
+        InMemoryKnowledgeBase recovered = new InMemoryKnowledgeBase();
+        open(recovered);
+        return recovered;
+    }
+
+    @Test
+    void replaysLoggedBatchesAfterRestart() throws IOException {
+        InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase();
+        KnowledgeBaseJournal journal = open(knowledgeBase);
+        journal.addChunks(List.of(chunk(0), chunk(1)));
+        journal.addChunk(chunk(2));
+
+        InMemoryKnowledgeBase recovered = restart(journal);
+
+        assertThat(recovered.getAllChunks()).extracting(Chunk::getChunkId)
+                .containsExactly("chunk-0", "chunk-1", "chunk-2");
+        assertThat(recovered.getAllChunks().get(1).getUrl()).isEqualTo("https://example.com/1");
+        assertThat(recovered.getAllChunks().get(0).getUrl()).isNull();
+    }
+
+    @Test
+    void recoversFromSnapshotPlusLogTail() throws IOException {
+        InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase();
+        KnowledgeBaseJournal journal = open(knowledgeBase);
+        journal.addChunks(List.of(chunk(0), chunk(1)));
+        journal.snapshot();
+        journal.addChunk(chunk(2));
+
+        InMemoryKnowledgeBase recovered = restart(journal);
+
+        assertThat(recovered.getAllChunks()).extracting(Chunk::getChunkId)
+                .containsExactly("chunk-0", "chunk-1", "chunk-2");
+    }
+
+    @Test
+    void snapshotDeletesCoveredLogsAndOlderSnapshots() throws IOException {
+        KnowledgeBaseJournal journal = open(new InMemoryKnowledgeBase());
+        journal.addChunk(chunk(0));
+        journal.snapshot();
+        journal.addChunk(chunk(1));
+        journal.snapshot();
+
+        List<String> names;
+        try (Stream<Path> entries = Files.list(directory)) {
+            names = entries.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+
+        assertThat(names).filteredOn(name -> name.startsWith("snapshot-")).hasSize(1);
+        assertThat(names).filteredOn(name -> name.startsWith("wal-")).hasSize(1);
+    }
+
+    @Test
+    void tornTailIsDiscardedOnReplay() throws IOException {
+        KnowledgeBaseJournal journal = open(new InMemoryKnowledgeBase());
+        journal.addChunk(chunk(0));
+        journal.addChunk(chunk(1));
+        journal.close();
+
+        Path wal;
+        try (Stream<Path> entries = Files.list(directory)) {
+            wal = entries.filter(path -> path.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+        }
+        // Simulate a crash in the middle of writing a third record
+        Files.write(wal, new byte[]{0, 0, 1, 0, 7, 7}, StandardOpenOption.APPEND);
+
+        InMemoryKnowledgeBase recovered = new InMemoryKnowledgeBase();
+        open(recovered);
+
+        assertThat(recovered.getAllChunks()).extracting(Chunk::getChunkId).containsExactly("chunk-0", "chunk-1");
+    }
+
+    @Test
+    void concurrentAppendsAreAllDurable() throws Exception {
+        InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase();
+        KnowledgeBaseJournal journal = open(knowledgeBase);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int id = i;
+                futures.add(executor.submit(() -> journal.addChunk(chunk(id))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        InMemoryKnowledgeBase recovered = restart(journal);
+
+        assertThat(recovered.size()).isEqualTo(200);
+        assertThat(recovered.getAllChunks()).extracting(Chunk::getChunkId)
+                .containsExactlyElementsOf(knowledgeBase.getAllChunks().stream().map(Chunk::getChunkId).toList());
+    }
+
+    @Test
+    void recoveryRequiresEmptyKnowledgeBase() {
+        InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase();
+        knowledgeBase.addChunk(chunk(0));
+
+        assertThatThrownBy(() -> open(knowledgeBase))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void tagsSurviveLogReplayAndSnapshots() throws IOException {
+        InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase();
+        KnowledgeBaseJournal journal = open(knowledgeBase);
+        journal.addChunk(new Chunk("tagged", "doc-t", "Title", "text", null, List.of("ops", "runbook"), 0.0));
+        journal.snapshot();
+        journal.addChunk(new Chunk("logged", "doc-l", "Title", "text", null, List.of("draft"), 0.0));
+
+        InMemoryKnowledgeBase recovered = restart(journal);
+
+        assertThat(recovered.getAllChunks()).extracting(Chunk::getTags)
+                .containsExactly(List.of("ops", "runbook"), List.of("draft"));
+    }
+
+    @Test
+    void payloadsWithoutTagsDecodeAsUntagged() throws IOException {
+        // Logs written before chunks carried tags end right after the chunk fields
+        byte[] tagged = WriteAheadLog.encode(List.of(chunk(0), chunk(1)));
+        byte[] untagged = Arrays.copyOf(tagged, tagged.length - 2 * Integer.BYTES);
+
+        assertThat(WriteAheadLog.decode(untagged)).extracting(Chunk::getChunkId).containsExactly("chunk-0", "chunk-1");
+        assertThat(WriteAheadLog.decode(untagged)).allSatisfy(chunk -> assertThat(chunk.getTags()).isEmpty());
+    }
+}
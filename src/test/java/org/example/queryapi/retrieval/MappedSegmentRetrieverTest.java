@@ -0,0 +1,121 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedSegmentRetrieverTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<Chunk> corpus() {
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            chunks.add(new Chunk("chunk-" + i, "doc-" + (i / 5), "Guide " + (i % 3),
+                    "node configuration " + (i % 4 == 0 ? "failover topology " : "") + "item" + i, null, 0.0));
+        }
+        chunks.add(new Chunk("unicode", "doc-u", "Überblick", "Größe und Maßstab — déploiement", "https://example.com/u", 0.0));
+        return chunks;
+    }
+
+    @Test
+    void roundTripsChunkFields() throws IOException {
+        new MappedSegmentWriter().write(corpus(), directory);
+        MappedSegmentRetriever retriever = MappedSegmentRetriever.open(directory);
+
+        List<Chunk> chunks = retriever.retrieve("déploiement größe", 5);
+
+        assertThat(retriever.size()).isEqualTo(51);
+        assertThat(chunks).hasSize(1);
+        Chunk chunk = chunks.get(0);
+        assertThat(chunk.getChunkId()).isEqualTo("unicode");
+        assertThat(chunk.getDocumentId()).isEqualTo("doc-u");
+        assertThat(chunk.getDocumentTitle()).isEqualTo("Überblick");
+        assertThat(chunk.getText()).isEqualTo("Größe und Maßstab — déploiement");
+        assertThat(chunk.getUrl()).isEqualTo("https://example.com/u");
+    }
+
+    @Test
+    void ranksLikeInMemoryBm25() throws IOException {
+        new MappedSegmentWriter().write(corpus(), directory);
+        MappedSegmentRetriever mapped = MappedSegmentRetriever.open(directory);
+        InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase();
+        knowledgeBase.addChunks(corpus());
+        Bm25Retriever inMemory = new Bm25Retriever(knowledgeBase);
+
+        for (String query : List.of("failover topology", "node item7", "guide 2 configuration")) {
+            List<Chunk> expected = inMemory.retrieve(query, 10);
+            List<Chunk> actual = mapped.retrieve(query, 10);
+
+            assertThat(actual).extracting(Chunk::getChunkId)
+                    .containsExactlyElementsOf(expected.stream().map(Chunk::getChunkId).toList());
+            assertThat(actual).extracting(Chunk::getRelevanceScore)
+                    .containsExactlyElementsOf(expected.stream().map(Chunk::getRelevanceScore).toList());
+        }
+    }
+
+    @Test
+    void splitsLargeCorporaAcrossSegmentFiles() throws IOException {
+        List<Path> files = new MappedSegmentWriter(2_000).write(corpus(), directory);
+        MappedSegmentRetriever retriever = MappedSegmentRetriever.open(directory);
+
+        assertThat(files.size()).isGreaterThan(1);
+        assertThat(retriever.size()).isEqualTo(51);
+        assertThat(retriever.retrieve("item42", 5)).extracting(Chunk::getChunkId).containsExactly("chunk-42");
+    }
+
+    @Test
+    void emptyDirectoryServesNoResults() {
+        MappedSegmentRetriever retriever = MappedSegmentRetriever.open(directory);
+
+        assertThat(retriever.retrieve("failover", 5)).isEmpty();
+    }
+
+    @Test
+    void writerRefusesDirectoryWithSegments() throws IOException {
+        MappedSegmentWriter writer = new MappedSegmentWriter();
+        writer.write(corpus(), directory);
+
+        assertThatThrownBy(() -> writer.write(corpus(), directory))
+                .isInstanceOf(FileAlreadyExistsException.class);
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSegments() throws IOException {
+        Files.write(directory.resolve("segment-00000.seg"), new byte[64]);
+
+        assertThatThrownBy(() -> MappedSegmentRetriever.open(directory))
+                .isInstanceOf(RetrievalException.class)
+                .hasMessageContaining("Not a knowledge base segment file");
+    }
+
+    @Test
+    void filtersUseTagsStoredInSegmentFiles() throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            chunks.add(new Chunk("chunk-" + i, "doc-" + i, "Guide", "failover topology " + i,
+                    "https://" + (i % 2 == 0 ? "a" : "b") + ".example.com/" + i, i % 4 == 0 ? List.of("ha", "ops") : List.of(), 0.0));
+        }
+        new MappedSegmentWriter(2_000).write(chunks, directory);
+        MappedSegmentRetriever retriever = MappedSegmentRetriever.open(directory);
+
+        List<Chunk> tagged = retriever.retrieve("failover topology", 20, new RetrievalFilter(null, null, null, List.of("ops")));
+        List<Chunk> hosted = retriever.retrieve("failover topology", 20, new RetrievalFilter(null, null, "b.example.com", null));
+
+        assertThat(tagged).extracting(Chunk::getChunkId)
+                .containsExactlyInAnyOrder("chunk-0", "chunk-4", "chunk-8", "chunk-12", "chunk-16");
+        assertThat(tagged).allSatisfy(chunk -> assertThat(chunk.getTags()).containsExactly("ha", "ops"));
+        assertThat(hosted).hasSize(10).allSatisfy(chunk -> assertThat(chunk.getUrl()).startsWith("https://b."));
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetadataIndexTest {
+
+    private static final List<Chunk> CHUNKS = List.of(
+            new Chunk("c0", "doc-1", "Deployment Guide", "text", "https://docs.example.com/a", List.of("ops"), 0.0),
+            new Chunk("c1", "doc-1", "Deployment Guide", "text", "https://docs.example.com/b", List.of(), 0.0),
+            new Chunk("c2", "doc-2", "Design Notes", "text", "https://WIKI.example.com/c", List.of("ops", "draft"), 0.0),
+            new Chunk("c3", "doc-3", null, "text", "not a url", List.of("draft"), 0.0),
+            new Chunk("c4", "doc-4", "deploying at scale", "text", null, List.of(), 0.0)
+    );
+
+    @Test
+    void emptyFilterAllowsEverything() {
+        assertThat(MetadataIndex.build(CHUNKS).select(RetrievalFilter.none())).isNull();
+    }
+
+    @Test
+    void eachCriterionSelectsMatchingChunks() {
+        MetadataIndex index = MetadataIndex.build(CHUNKS);
+
+        assertThat(select(index, new RetrievalFilter(List.of("doc-1", "doc-3", "doc-9"), null, null, null)))
+                .containsExactly(0, 1, 3);
+        assertThat(select(index, new RetrievalFilter(null, "DEPLOY", null, null))).containsExactly(0, 1, 4);
+        assertThat(select(index, new RetrievalFilter(null, null, "wiki.example.com", null))).containsExactly(2);
+        assertThat(select(index, new RetrievalFilter(null, null, null, List.of("draft", "missing")))).containsExactly(2, 3);
+    }
+
+    @Test
+    void criteriaAreCombinedWithAnd() {
+        MetadataIndex index = MetadataIndex.build(CHUNKS);
+
+        assertThat(select(index, new RetrievalFilter(null, "de", "docs.example.com", List.of("ops")))).containsExactly(0);
+        assertThat(select(index, new RetrievalFilter(List.of("doc-4"), null, null, List.of("ops")))).isEmpty();
+    }
+
+    @Test
+    void mergeShiftsOrdinalsAndMatchesDirectFiltering() {
+        Random random = new Random(11);
+        List<Chunk> chunks = new ArrayList<>();
+        List<MetadataIndex> parts = new ArrayList<>();
+        for (int part = 0; part < 4; part++) {
+            List<Chunk> batch = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                // Tag "common" is dense and document ids are sparse, exercising both representations
+                batch.add(new Chunk("c" + chunks.size() + i, "doc-" + random.nextInt(200), "Title " + random.nextInt(20),
+                        "text", "https://host" + random.nextInt(5) + ".example.com/", random.nextBoolean()
+                        ? List.of("common") : List.of("rare-" + random.nextInt(100)), 0.0));
+            }
+            chunks.addAll(batch);
+            parts.add(MetadataIndex.build(batch));
+        }
+        MetadataIndex merged = MetadataIndex.merge(parts);
+
+        for (RetrievalFilter filter : List.of(
+                new RetrievalFilter(List.of("doc-7", "doc-150"), null, null, null),
+                new RetrievalFilter(null, "title 1", "host3.example.com", null),
+                new RetrievalFilter(null, null, null, List.of("common", "rare-5")),
+                new RetrievalFilter(List.of("doc-1", "doc-2", "doc-3"), null, null, List.of("common")))) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                if (filter.matches(chunks.get(i))) {
+                    expected.add(i);
+                }
+            }
+
+            assertThat(select(merged, filter)).as(filter.toString()).containsExactlyElementsOf(expected);
+        }
+    }
+
+    private static List<Integer> select(MetadataIndex index, RetrievalFilter filter) {
+        BitSet allowed = index.select(filter);
+        return allowed.stream().boxed().toList();
+    }
+}
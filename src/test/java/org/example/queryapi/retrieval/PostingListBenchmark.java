@@ -0,0 +1,202 @@
+package org.example.queryapi.retrieval;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Measures {@link PostingList} memory per posting at several densities, and AND and OR
+ * time against decoding every list into a bitset and against the previous layout, an int
+ * array of ordinals per term set into bitsets. Not a unit test; run it on the test
+ * classpath:
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.example.queryapi.retrieval.PostingListBenchmark
+ * </pre>
+ *
+ * Lists are drawn over 2M chunks with one to three positions per posting. Times are the
+ * best of the last 20 of 30 rounds, on one core:
+ *
+ * <pre>
+ * density   postings  bytes/posting  with positions
+ *   50.0%    1000571           2.09            4.09
+ *   10.0%     200205           2.09            4.09
+ *    1.0%      20046           2.37            4.38
+ *    0.1%       1922           2.98            5.01
+ *
+ * postings                  AND    decoded  int arrays         OR  int arrays
+ * 1M x 499K             5.03 ms    4.70 ms     3.12 ms    4.43 ms     4.14 ms
+ * 1M x 199K             4.20 ms    3.87 ms     2.82 ms    3.61 ms     3.35 ms
+ * 1M x 100K             4.13 ms    3.61 ms     2.55 ms    3.28 ms     3.13 ms
+ * 1M x 40K              2.60 ms    3.36 ms     2.52 ms    3.19 ms     3.05 ms
+ * 1M x 20K              1.91 ms    3.31 ms     2.22 ms    3.21 ms     2.96 ms
+ * 1M x 2K               0.48 ms    3.05 ms     2.20 ms    3.03 ms     2.79 ms
+ * 1M x 199K x 2K        0.36 ms    3.82 ms     2.71 ms    3.57 ms     3.42 ms
+ * </pre>
+ *
+ * The int arrays took 8 bytes per posting without positions, before spare capacity.
+ * Before {@link PostingList#intersect(PostingList[], BitSet)} decoded lists of similar
+ * size, its leapfrog took 14.16 ms for 1M x 499K, 7.61 ms for 1M x 199K and 4.85 ms for
+ * 1M x 100K: which list is ahead is a coin flip, and mispredicting it costs more than
+ * the skips save. It now decodes up to a ratio of {@value PostingList#DECODE_RATIO}, less
+ * than 10% over the decoded column for the copy into the caller's bits, and leapfrogs
+ * beyond it, where it is up to 10x faster. The two cross near 10x, where 1M x 100K falls.
+ * Decoding costs about 1 ms over the int arrays per million postings; OR always decodes.
+ */
+public final class PostingListBenchmark {
+
+    private static final int CHUNKS = 2_000_000;
+    private static final int ROUNDS = 30;
+
+    private PostingListBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(3);
+        System.out.println("density   postings  bytes/posting  with positions");
+        for (double density : new double[]{0.5, 0.1, 0.01, 0.001}) {
+            PostingList list = postings(random, density);
+            long positions = positionBytes(list);
+            System.out.printf("%6.1f%%  %9d  %13.2f  %14.2f%n", density * 100, list.size(),
+                    (double) (list.sizeInBytes() - positions) / list.size(), (double) list.sizeInBytes() / list.size());
+        }
+
+        PostingList half = postings(random, 0.5);
+        PostingList tenth = postings(random, 0.1);
+        PostingList[][] cases = {{half, postings(random, 0.25)}, {half, tenth}, {half, postings(random, 0.05)},
+                {half, postings(random, 0.02)}, {half, postings(random, 0.01)}, {half, postings(random, 0.001)},
+                {half, tenth, postings(random, 0.001)}};
+        int[][][] arrays = new int[cases.length][][];
+        for (int c = 0; c < cases.length; c++) {
+            arrays[c] = Arrays.stream(cases[c]).map(PostingListBenchmark::ordinals).toArray(int[][]::new);
+        }
+
+        // Every case runs in each round so that JIT warm-up favours none; the first third only warms up
+        long[][] best = new long[cases.length][5];
+        for (long[] times : best) {
+            Arrays.fill(times, Long.MAX_VALUE);
+        }
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int c = 0; c < cases.length; c++) {
+                long[] times = new long[5];
+                long start = System.nanoTime();
+                BitSet and = new BitSet(CHUNKS);
+                PostingList.intersect(cases[c], and);
+                times[0] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                BitSet decodedAnd = new BitSet(CHUNKS);
+                cases[c][0].addTo(decodedAnd);
+                for (int i = 1; i < cases[c].length; i++) {
+                    BitSet other = new BitSet(CHUNKS);
+                    cases[c][i].addTo(other);
+                    decodedAnd.and(other);
+                }
+                times[1] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                BitSet arrayAnd = bits(arrays[c][0]);
+                for (int i = 1; i < arrays[c].length; i++) {
+                    arrayAnd.and(bits(arrays[c][i]));
+                }
+                times[2] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                BitSet or = new BitSet(CHUNKS);
+                for (PostingList list : cases[c]) {
+                    list.addTo(or);
+                }
+                times[3] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                BitSet arrayOr = new BitSet(CHUNKS);
+                for (int[] ordinals : arrays[c]) {
+                    for (int ordinal : ordinals) {
+                        arrayOr.set(ordinal);
+                    }
+                }
+                times[4] = System.nanoTime() - start;
+
+                if (!and.equals(decodedAnd) || !and.equals(arrayAnd) || !or.equals(arrayOr)) {
+                    throw new IllegalStateException("Results differ for case " + c);
+                }
+                sink += and.cardinality() + or.cardinality();
+                for (int t = 0; round >= ROUNDS / 3 && t < times.length; t++) {
+                    best[c][t] = Math.min(best[c][t], times[t]);
+                }
+            }
+        }
+
+        System.out.printf("%-18s  %9s  %9s  %10s  %9s  %10s%n", "postings", "AND", "decoded", "int arrays", "OR",
+                "int arrays");
+        for (int c = 0; c < cases.length; c++) {
+            String label = Arrays.stream(cases[c]).map(list -> thousands(list.size()))
+                    .collect(Collectors.joining(" x "));
+            System.out.printf("%-18s  %6.2f ms  %6.2f ms  %7.2f ms  %6.2f ms  %7.2f ms%n", label, best[c][0] / 1e6,
+                    best[c][1] / 1e6, best[c][2] / 1e6, best[c][3] / 1e6, best[c][4] / 1e6);
+        }
+        System.out.println(sink == 42 ? "!" : "");
+    }
+
+    private static String thousands(int size) {
+        return size >= 1_000_000 ? Math.round(size / 1e6) + "M" : Math.round(size / 1e3) + "K";
+    }
+
+    /**
+     * Builds a list holding each chunk with the given probability, with a term frequency
+     * of one to three at random positions, as body text gives.
+     */
+    private static PostingList postings(Random random, double density) {
+        PostingList list = new PostingList();
+        int[] positions = new int[3];
+        for (int ordinal = 0; ordinal < CHUNKS; ordinal++) {
+            if (random.nextDouble() < density) {
+                int count = 1 + random.nextInt(3);
+                int position = 0;
+                for (int i = 0; i < count; i++) {
+                    position += 1 + random.nextInt(60);
+                    positions[i] = position;
+                }
+                list.add(ordinal, positions, count);
+            }
+        }
+        list.trimToSize();
+        return list;
+    }
+
+    /**
+     * Gets the bytes of a list's position stream and its block offsets.
+     */
+    private static long positionBytes(PostingList list) {
+        PostingList withoutPositions = new PostingList();
+        PostingList.Cursor cursor = list.cursor();
+        int[] none = new int[0];
+        for (int ordinal = cursor.next(); ordinal != PostingList.END; ordinal = cursor.next()) {
+            withoutPositions.add(ordinal, none, 0);
+        }
+        withoutPositions.trimToSize();
+        // The copy still codes a zero term frequency in one byte, as the original codes 1 to 3
+        return list.sizeInBytes() - withoutPositions.sizeInBytes();
+    }
+
+    private static int[] ordinals(PostingList list) {
+        int[] ordinals = new int[list.size()];
+        PostingList.Cursor cursor = list.cursor();
+        int i = 0;
+        for (int ordinal = cursor.next(); ordinal != PostingList.END; ordinal = cursor.next()) {
+            ordinals[i++] = ordinal;
+        }
+        return ordinals;
+    }
+
+    private static BitSet bits(int[] ordinals) {
+        BitSet bits = new BitSet(CHUNKS);
+        for (int ordinal : ordinals) {
+            bits.set(ordinal);
+        }
+        return bits;
+    }
+}
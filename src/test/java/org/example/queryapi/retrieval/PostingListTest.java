@@ -0,0 +1,229 @@
+package org.example.queryapi.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PostingListTest {
+
+    @Test
+    void cursorReturnsPostingsInOrder() {
+        PostingList postings = list(new int[]{0, 3, 200, 70_000, Integer.MAX_VALUE - 1}, new int[]{1, 2, 300, 1, 7});
+        postings.trimToSize();
+
+        PostingList.Cursor cursor = postings.cursor();
+
+        assertThat(cursor.next()).isEqualTo(0);
+        assertThat(cursor.termFrequency()).isEqualTo(1);
+        assertThat(cursor.next()).isEqualTo(3);
+        assertThat(cursor.next()).isEqualTo(200);
+        assertThat(cursor.termFrequency()).isEqualTo(300);
+        assertThat(cursor.next()).isEqualTo(70_000);
+        assertThat(cursor.next()).isEqualTo(Integer.MAX_VALUE - 1);
+        assertThat(cursor.termFrequency()).isEqualTo(7);
+        assertThat(cursor.next()).isEqualTo(PostingList.END);
+        assertThat(postings.size()).isEqualTo(5);
+    }
+
+    @Test
+    void advanceSkipsBlocksAndNeverMovesBackwards() {
+        PostingList postings = new PostingList();
+        for (int i = 0; i < 1000; i++) {
+            add(postings, i * 3, i + 1);
+        }
+
+        PostingList.Cursor cursor = postings.cursor();
+
+        assertThat(cursor.advance(500)).isEqualTo(501);
+        assertThat(cursor.termFrequency()).isEqualTo(168);
+        assertThat(cursor.advance(100)).isEqualTo(501);
+        assertThat(cursor.advance(501)).isEqualTo(501);
+        assertThat(cursor.next()).isEqualTo(504);
+        assertThat(cursor.advance(2997)).isEqualTo(2997);
+        assertThat(cursor.advance(2998)).isEqualTo(PostingList.END);
+        assertThat(cursor.next()).isEqualTo(PostingList.END);
+    }
+
+    @Test
+    void rejectsOrdinalsOutOfOrder() {
+        PostingList postings = new PostingList();
+        add(postings, 5, 1);
+
+        assertThatThrownBy(() -> add(postings, 5, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void addAllShiftsOrdinals() {
+        PostingList postings = list(new int[]{1, 4}, new int[]{2, 3});
+
+        postings.addAll(list(new int[]{0, 2}, new int[]{5, 6}), 10);
+
+        assertThat(ordinals(postings)).containsExactly(1, 4, 10, 12);
+        PostingList.Cursor cursor = postings.cursor();
+        cursor.advance(12);
+        assertThat(cursor.termFrequency()).isEqualTo(6);
+    }
+
+    @Test
+    void intersectMatchesNaiveIntersection() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            int chunkCount = 5_000;
+            BitSet[] sets = new BitSet[2 + random.nextInt(3)];
+            PostingList[] lists = new PostingList[sets.length];
+            for (int l = 0; l < sets.length; l++) {
+                double density = 0.01 + random.nextDouble() * 0.8;
+                sets[l] = new BitSet(chunkCount);
+                lists[l] = new PostingList();
+                for (int ordinal = 0; ordinal < chunkCount; ordinal++) {
+                    if (random.nextDouble() < density) {
+                        sets[l].set(ordinal);
+                        add(lists[l], ordinal, 1);
+                    }
+                }
+            }
+            BitSet expected = (BitSet) sets[0].clone();
+            for (int l = 1; l < sets.length; l++) {
+                expected.and(sets[l]);
+            }
+
+            BitSet actual = new BitSet();
+            PostingList.intersect(lists, actual);
+
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void intersectAddsToTheBitsWhetherItDecodesOrLeapfrogs() {
+        PostingList evens = new PostingList();
+        PostingList threes = new PostingList();
+        PostingList hundreds = new PostingList();
+        for (int ordinal = 0; ordinal < 3_000; ordinal++) {
+            if (ordinal % 2 == 0) {
+                add(evens, ordinal, 1);
+            }
+            if (ordinal % 3 == 0) {
+                add(threes, ordinal, 1);
+            }
+            if (ordinal % 100 == 0) {
+                add(hundreds, ordinal, 1);
+            }
+        }
+        assertThat(evens.size()).isLessThanOrEqualTo(PostingList.DECODE_RATIO * threes.size());
+        assertThat(evens.size()).isGreaterThan(PostingList.DECODE_RATIO * hundreds.size());
+
+        BitSet similar = new BitSet();
+        similar.set(1);
+        PostingList.intersect(new PostingList[]{evens, threes}, similar);
+        BitSet skewed = new BitSet();
+        skewed.set(1);
+        PostingList.intersect(new PostingList[]{evens, hundreds}, skewed);
+
+        assertThat(similar.cardinality()).isEqualTo(1 + 500);
+        assertThat(similar.get(1)).isTrue();
+        assertThat(similar.get(2_994)).isTrue();
+        assertThat(skewed.cardinality()).isEqualTo(1 + 30);
+        assertThat(skewed.get(1)).isTrue();
+        assertThat(skewed.get(2_900)).isTrue();
+    }
+
+    @Test
+    void positionsAreDecodedOnlyWhenAskedFor() {
+        PostingList postings = new PostingList();
+        for (int i = 0; i < 300; i++) {
+            postings.add(i, new int[]{i, i + 1000, i + 100_000}, 1 + i % 3);
+        }
+
+        PostingList.Cursor cursor = postings.cursor();
+        cursor.next();
+        cursor.next();
+        assertThat(cursor.positions()).startsWith(1, 1001);
+        cursor.advance(5);
+        cursor.next();
+        assertThat(cursor.termFrequency()).isEqualTo(1);
+        assertThat(cursor.positions()).startsWith(6);
+        cursor.advance(290);
+        assertThat(cursor.termFrequency()).isEqualTo(3);
+        assertThat(cursor.positions()).startsWith(290, 1290, 100_290);
+    }
+
+    @Test
+    void addAllKeepsPositions() {
+        PostingList source = new PostingList();
+        source.add(0, new int[]{4, 9}, 2);
+        PostingList postings = new PostingList();
+
+        postings.addAll(source, 3);
+
+        PostingList.Cursor cursor = postings.cursor();
+        assertThat(cursor.next()).isEqualTo(3);
+        assertThat(cursor.positions()).startsWith(4, 9);
+    }
+
+    @Test
+    void matchPhraseRequiresConsecutivePositions() {
+        // Chunk 0: "a b c", chunk 1: "b a c", chunk 2: "a a b", chunk 3: "a x b"
+        PostingList a = new PostingList();
+        a.add(0, new int[]{0}, 1);
+        a.add(1, new int[]{1}, 1);
+        a.add(2, new int[]{0, 1}, 2);
+        a.add(3, new int[]{0}, 1);
+        PostingList b = new PostingList();
+        b.add(0, new int[]{1}, 1);
+        b.add(1, new int[]{0}, 1);
+        b.add(2, new int[]{2}, 1);
+        b.add(3, new int[]{2}, 1);
+
+        BitSet phrase = new BitSet();
+        PostingList.matchPhrase(new PostingList[]{a, b}, phrase);
+        BitSet repeated = new BitSet();
+        PostingList.matchPhrase(new PostingList[]{a, a, b}, repeated);
+
+        assertThat(phrase.stream().toArray()).containsExactly(0, 2);
+        assertThat(repeated.stream().toArray()).containsExactly(2);
+    }
+
+    @Test
+    void densePostingsTakeThreeBytesEachWithOnePosition() {
+        PostingList postings = new PostingList();
+        for (int i = 0; i < 100_000; i++) {
+            add(postings, i * 5, 1);
+        }
+        postings.trimToSize();
+
+        // Gap, frequency and position fit one byte each, plus 12 bytes of skip table per 128 postings
+        assertThat(postings.sizeInBytes()).isLessThan(100_000L * 31 / 10);
+    }
+
+    private static PostingList list(int[] ordinals, int[] termFrequencies) {
+        PostingList postings = new PostingList();
+        for (int i = 0; i < ordinals.length; i++) {
+            add(postings, ordinals[i], termFrequencies[i]);
+        }
+        return postings;
+    }
+
+    private static void add(PostingList postings, int ordinal, int termFrequency) {
+        int[] positions = new int[termFrequency];
+        for (int i = 0; i < termFrequency; i++) {
+            positions[i] = i * 2;
+        }
+        postings.add(ordinal, positions, termFrequency);
+    }
+
+    private static List<Integer> ordinals(PostingList postings) {
+        List<Integer> ordinals = new ArrayList<>();
+        PostingList.Cursor cursor = postings.cursor();
+        for (int ordinal = cursor.next(); ordinal != PostingList.END; ordinal = cursor.next()) {
+            ordinals.add(ordinal);
+        }
+        return ordinals;
+    }
+}
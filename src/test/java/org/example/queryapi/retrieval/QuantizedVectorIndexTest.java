@@ -0,0 +1,246 @@
+package org.example.queryapi.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class QuantizedVectorIndexTest {
+
+    private static final int DIMENSION = 64;
+    private static final int SIZE = 3000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void simdAndScalarCodeDotProductsAgree() {
+        Random random = new Random(3);
+        for (int length : new int[]{1, 7, 8, 19, 384}) {
+            float[] a = clustered(random, new float[length], 1f);
+            byte[] codes = new byte[length + 4];
+            random.nextBytes(codes);
+            double expected = 0.0;
+            for (int i = 0; i < length; i++) {
+                expected += a[i] * codes[4 + i];
+            }
+
+            assertThat(VectorMath.dotScalar(a, codes, 4)).isCloseTo((float) expected, within(1e-2f));
+            assertThat(SimdVectorMath.dot(a, codes, 4)).isCloseTo((float) expected, within(1e-2f));
+        }
+    }
+
+    @Test
+    void int8RecallAfterRescoringMatchesExactSearch() {
+        assertThat(recallAtTen(ScalarQuantizer::train, 50)).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void productQuantizationRecallAfterRescoringMatchesExactSearch() {
+        assertThat(recallAtTen(sample -> ProductQuantizer.train(sample, 8, 42L), 150)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void codesAreSmallerThanFullPrecisionVectors() {
+        List<float[]> vectors = dataset(new Random(5), 300);
+        QuantizedVectorIndex int8 = QuantizedVectorIndex.create(DIMENSION, directory, ScalarQuantizer::train, 100, 50);
+        QuantizedVectorIndex pq = QuantizedVectorIndex.create(DIMENSION, directory,
+                sample -> ProductQuantizer.train(sample, 8, 42L), 100, 50);
+        try {
+            int8.addAll(vectors);
+            pq.addAll(vectors);
+
+            assertThat(int8.codeSize() * 4).isEqualTo(DIMENSION * Float.BYTES);
+            assertThat(pq.codeSize() * 32).isEqualTo(DIMENSION * Float.BYTES);
+        } finally {
+            int8.close();
+            pq.close();
+        }
+    }
+
+    @Test
+    void searchIsExactBeforeTraining() {
+        QuantizedVectorIndex index = QuantizedVectorIndex.create(2, directory, ScalarQuantizer::train, 100, 10);
+        try {
+            index.addAll(List.of(new float[]{0f, 1f}, new float[]{10f, 1f}, new float[]{1f, 1f}));
+
+            TopKCollector topK = index.search(new float[]{1f, 0f}, 2, -1.0, index.size());
+
+            assertThat(index.codeSize()).isZero();
+            assertThat(topK.drain()).isEqualTo(2);
+            assertThat(topK.ordinalAt(0)).isEqualTo(1);
+            assertThat(topK.ordinalAt(1)).isEqualTo(2);
+            assertThat(topK.scoreAt(1)).isCloseTo(Math.sqrt(0.5), within(1e-6));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    void truncatedVectorsAreOverwrittenByLaterAppends() {
+        Random random = new Random(9);
+        List<float[]> vectors = dataset(random, 200);
+        QuantizedVectorIndex index = QuantizedVectorIndex.create(DIMENSION, directory, ScalarQuantizer::train, 100, 20);
+        try {
+            index.addAll(vectors);
+            index.truncate(150);
+            float[] replacement = vectors.get(3);
+            index.addAll(List.<float[]>of(replacement));
+
+            TopKCollector topK = index.search(replacement, 2, -1.0, index.size());
+
+            assertThat(index.size()).isEqualTo(151);
+            assertThat(topK.drain()).isEqualTo(2);
+            assertThat(Set.of(topK.ordinalAt(0), topK.ordinalAt(1))).containsExactlyInAnyOrder(3, 150);
+            assertThat(topK.scoreAt(1)).isCloseTo(1.0, within(1e-5));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    void closeDeletesVectorFile() throws Exception {
+        QuantizedVectorIndex index = QuantizedVectorIndex.create(2, directory, ScalarQuantizer::train, 100, 10);
+        index.addAll(List.<float[]>of(new float[]{1f, 0f}));
+
+        index.close();
+
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void searchesRunningDuringTrainingSeeCodesForEveryVectorTheyScore() throws Exception {
+        List<float[]> vectors = dataset(new Random(13), 2_000);
+        ExecutorService searcher = Executors.newSingleThreadExecutor();
+        try {
+            for (int attempt = 0; attempt < 20; attempt++) {
+                QuantizedVectorIndex index = QuantizedVectorIndex.create(DIMENSION, directory, ScalarQuantizer::train,
+                        1_000, 20);
+                try {
+                    index.addAll(vectors.subList(0, 999));
+                    AtomicBoolean appended = new AtomicBoolean();
+                    Future<?> searches = searcher.submit(() -> {
+                        // Keeps searching across the append that trains the quantizer and encodes every vector
+                        while (!appended.get()) {
+                            index.search(vectors.get(7), 10, -1.0, Integer.MAX_VALUE).drain();
+                        }
+                        return null;
+                    });
+                    index.addAll(vectors.subList(999, vectors.size()));
+                    appended.set(true);
+
+                    searches.get(10, TimeUnit.SECONDS);
+                    assertThat(index.codeSize()).isPositive();
+                } finally {
+                    index.close();
+                }
+            }
+        } finally {
+            searcher.shutdownNow();
+        }
+    }
+
+    @Test
+    void closeWaitsForRunningSearches() throws Exception {
+        QuantizedVectorIndex index = QuantizedVectorIndex.create(2, directory, ScalarQuantizer::train, 100, 10);
+        index.addAll(List.of(new float[]{0f, 1f}, new float[]{1f, 0f}, new float[]{1f, 1f}));
+        // The filter is consulted mid-search, so the store is closed while the search still reads the file
+        BitSet closingFilter = new BitSet() {
+            @Override
+            public int nextSetBit(int fromIndex) {
+                index.close();
+                return super.nextSetBit(fromIndex);
+            }
+        };
+        closingFilter.set(0, 3);
+
+        TopKCollector topK = index.search(new float[]{1f, 0f}, 1, -1.0, 3, closingFilter);
+
+        assertThat(topK.drain()).isEqualTo(1);
+        assertThat(topK.ordinalAt(0)).isEqualTo(1);
+        assertThatThrownBy(() -> index.search(new float[]{1f, 0f}, 1, -1.0, 3))
+                .isInstanceOf(RetrievalException.class)
+                .hasMessageContaining("closed");
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private double recallAtTen(Function<List<float[]>, VectorQuantizer> trainer, int rescoreCount) {
+        Random random = new Random(11);
+        List<float[]> vectors = dataset(random, SIZE);
+        VectorIndex exact = new VectorIndex(DIMENSION);
+        exact.addAll(vectors);
+        QuantizedVectorIndex quantized = QuantizedVectorIndex.create(DIMENSION, directory, trainer, 1000, rescoreCount);
+        try {
+            // Added in batches so vectors after training are encoded incrementally
+            for (int from = 0; from < SIZE; from += 250) {
+                quantized.addAll(vectors.subList(from, from + 250));
+            }
+
+            int found = 0;
+            int queries = 50;
+            for (int q = 0; q < queries; q++) {
+                float[] query = clustered(random, vectors.get(random.nextInt(SIZE)), 0.3f);
+                Set<Integer> expected = ordinals(exact.search(query, 10, -1.0, SIZE));
+                Set<Integer> actual = ordinals(quantized.search(query, 10, -1.0, SIZE));
+                actual.retainAll(expected);
+                found += actual.size();
+            }
+            return found / (queries * 10.0);
+        } finally {
+            quantized.close();
+        }
+    }
+
+    private static Set<Integer> ordinals(TopKCollector topK) {
+        int count = topK.drain();
+        Set<Integer> ordinals = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            ordinals.add(topK.ordinalAt(i));
+        }
+        return ordinals;
+    }
+
+    /**
+     * Vectors scattered around a few dozen centres, closer to real embeddings than uniform noise.
+     */
+    private static List<float[]> dataset(Random random, int size) {
+        List<float[]> centres = new ArrayList<>();
+        for (int c = 0; c < 32; c++) {
+            centres.add(clustered(random, new float[DIMENSION], 1f));
+        }
+        List<float[]> vectors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            vectors.add(clustered(random, centres.get(random.nextInt(centres.size())), 0.5f));
+        }
+        return vectors;
+    }
+
+    private static float[] clustered(Random random, float[] centre, float spread) {
+        float[] vector = new float[centre.length];
+        for (int i = 0; i < centre.length; i++) {
+            vector[i] = centre[i] + spread * (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
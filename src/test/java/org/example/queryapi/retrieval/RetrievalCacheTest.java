@@ -0,0 +1,114 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetrievalCacheTest {
+
+    private final AtomicInteger retrievals = new AtomicInteger();
+    private final Retriever retriever = (query, max, filter) -> {
+        retrievals.incrementAndGet();
+        return List.of(new Chunk("chunk-" + retrievals.get(), "doc", "Title", query, null, 0.9));
+    };
+
+    @Test
+    void repeatedQueryIsServedFromCache() {
+        RetrievalCache cache = new RetrievalCache(() -> 1L, 100);
+
+        List<Chunk> first = cache.retrieve(retriever, "What is the topology?", 5, RetrievalFilter.none()).chunks();
+        List<Chunk> second = cache.retrieve(retriever, "  what is   the TOPOLOGY? ", 5, RetrievalFilter.none())
+                .chunks();
+
+        assertThat(second).isSameAs(first);
+        assertThat(retrievals).hasValue(1);
+        assertThat(cache.stats().getHitCount()).isEqualTo(1);
+        assertThat(cache.stats().getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void maxChunksAndFilterArePartOfTheKey() {
+        RetrievalCache cache = new RetrievalCache(() -> 1L, 100);
+
+        cache.retrieve(retriever, "topology", 5, RetrievalFilter.none());
+        cache.retrieve(retriever, "topology", 10, RetrievalFilter.none());
+        cache.retrieve(retriever, "topology", 5, new RetrievalFilter(List.of("doc-1"), null, null, null));
+        cache.retrieve(retriever, "topology", 5, new RetrievalFilter(List.of("doc-1"), null, null, null));
+
+        assertThat(retrievals).hasValue(3);
+    }
+
+    @Test
+    void newKnowledgeBaseVersionInvalidatesEntries() {
+        AtomicLong version = new AtomicLong(1);
+        RetrievalCache cache = new RetrievalCache(version::get, 100);
+
+        cache.retrieve(retriever, "topology", 5, RetrievalFilter.none());
+        version.incrementAndGet();
+        List<Chunk> chunks = cache.retrieve(retriever, "topology", 5, RetrievalFilter.none()).chunks();
+
+        assertThat(retrievals).hasValue(2);
+        assertThat(chunks).extracting(Chunk::getChunkId).containsExactly("chunk-2");
+    }
+
+    @Test
+    void ingestionIntoKnowledgeBaseInvalidatesEntries() {
+        InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase();
+        RetrievalCache cache = new RetrievalCache(knowledgeBase, 100);
+        InMemoryRetriever keyword = new InMemoryRetriever(knowledgeBase);
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Guide", "failover topology", null, 0.0));
+
+        assertThat(cache.retrieve(keyword, "failover", 5, RetrievalFilter.none()).chunks()).hasSize(1);
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Guide", "failover drills", null, 0.0));
+
+        assertThat(cache.retrieve(keyword, "failover", 5, RetrievalFilter.none()).chunks()).hasSize(2);
+    }
+
+    @Test
+    void hybridRankingWithATimedOutVectorLegIsNotCached() throws InterruptedException {
+        AtomicInteger vectorCalls = new AtomicInteger();
+        CountDownLatch firstVectorCallDone = new CountDownLatch(1);
+        Retriever keyword = (query, max, filter) -> {
+            retrievals.incrementAndGet();
+            return List.of(new Chunk("keyword", "doc-k", "Title", query, null, 0.9));
+        };
+        Retriever vector = (query, max, filter) -> {
+            if (vectorCalls.incrementAndGet() == 1) {
+                // Slower than the hybrid deadline, like a first query right after an ingest
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    firstVectorCallDone.countDown();
+                }
+            }
+            return List.of(new Chunk("vector", "doc-v", "Title", query, null, 0.9));
+        };
+        HybridRetriever hybrid = new HybridRetriever(keyword, vector, 100, 60, 10);
+        RetrievalCache cache = new RetrievalCache(() -> 1L, 100);
+        try {
+            RetrievalResult degraded = cache.retrieve(hybrid, "topology", 5, RetrievalFilter.none());
+            assertThat(degraded.complete()).isFalse();
+            assertThat(degraded.chunks()).extracting(Chunk::getChunkId).containsExactly("keyword");
+            assertThat(firstVectorCallDone.await(5, TimeUnit.SECONDS)).isTrue();
+
+            RetrievalResult full = cache.retrieve(hybrid, "topology", 5, RetrievalFilter.none());
+            RetrievalResult cached = cache.retrieve(hybrid, "topology", 5, RetrievalFilter.none());
+
+            assertThat(full.complete()).isTrue();
+            assertThat(full.chunks()).extracting(Chunk::getChunkId).containsExactlyInAnyOrder("keyword", "vector");
+            assertThat(cached).isSameAs(full);
+            assertThat(retrievals).hasValue(2);
+        } finally {
+            hybrid.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.cache.CacheStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SemanticCacheTest {
+
+    private final HashingEmbeddingModel embeddingModel = new HashingEmbeddingModel(256);
+    private final AtomicLong version = new AtomicLong(1);
+    private final AtomicLong now = new AtomicLong();
+
+    private SemanticCache<String, String> cache(int maximumSize, double minSimilarity) {
+        return new SemanticCache<>(embeddingModel, version::get, maximumSize, minSimilarity,
+                Duration.ofMinutes(10), now::get);
+    }
+
+    @Test
+    void similarQueryIsServedTheCachedValue() {
+        SemanticCache<String, String> cache = cache(100, 0.8);
+        SemanticCache.Lookup<String, String> miss = cache.lookup("how do I deploy the service", "scope");
+        assertThat(miss.getValue()).isNull();
+        cache.put(miss, "answer");
+
+        SemanticCache.Lookup<String, String> hit = cache.lookup("how do I deploy the services?", "scope");
+
+        assertThat(hit.getValue()).isEqualTo("answer");
+        assertThat(hit.getSimilarity()).isGreaterThanOrEqualTo(0.8);
+        assertThat(cache.lookup("rotate the database credentials", "scope").getValue()).isNull();
+    }
+
+    @Test
+    void valuesAreOnlySharedWithinAScope() {
+        SemanticCache<String, String> cache = cache(100, 0.8);
+        cache.put(cache.lookup("deployment topology", "maxSources=5"), "answer");
+
+        assertThat(cache.lookup("deployment topology", "maxSources=10").getValue()).isNull();
+        assertThat(cache.lookup("deployment topology", "maxSources=5").getValue()).isEqualTo("answer");
+    }
+
+    @Test
+    void newKnowledgeBaseVersionDropsEntries() {
+        SemanticCache<String, String> cache = cache(100, 0.8);
+        cache.put(cache.lookup("deployment topology", "scope"), "answer");
+
+        version.incrementAndGet();
+
+        assertThat(cache.lookup("deployment topology", "scope").getValue()).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void valueComputedWhileTheKnowledgeBaseChangedIsNotCached() {
+        SemanticCache<String, String> cache = cache(100, 0.8);
+        SemanticCache.Lookup<String, String> miss = cache.lookup("deployment topology", "scope");
+
+        version.incrementAndGet();
+        cache.put(miss, "stale answer");
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void entriesExpireAfterWrite() {
+        SemanticCache<String, String> cache = cache(100, 0.8);
+        cache.put(cache.lookup("deployment topology", "scope"), "answer");
+
+        now.addAndGet(Duration.ofMinutes(10).toNanos());
+
+        assertThat(cache.lookup("deployment topology", "scope").getValue()).isNull();
+    }
+
+    @Test
+    void oldestEntryIsReplacedWhenFull() {
+        SemanticCache<String, String> cache = cache(2, 0.99);
+        cache.put(cache.lookup("deployment topology", "scope"), "first");
+        cache.put(cache.lookup("database credentials", "scope"), "second");
+        cache.put(cache.lookup("network latency budget", "scope"), "third");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.lookup("deployment topology", "scope").getValue()).isNull();
+        assertThat(cache.lookup("database credentials", "scope").getValue()).isEqualTo("second");
+        assertThat(cache.lookup("network latency budget", "scope").getValue()).isEqualTo("third");
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void statsReportHitRateAndTimeSavedPerHit() {
+        SemanticCache<String, String> cache = cache(100, 0.8);
+        SemanticCache.Lookup<String, String> miss = cache.lookup("deployment topology", "scope");
+        // Retrieval and synthesis of the first answer took two seconds
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        cache.put(miss, "answer");
+
+        cache.lookup("deployment topology", "scope");
+        cache.lookup("the deployment topology", "scope");
+
+        CacheStats stats = cache.stats();
+        assertThat(stats.getHitCount()).isEqualTo(2);
+        assertThat(stats.getMissCount()).isEqualTo(1);
+        assertThat(stats.getHitRate()).isEqualTo(2.0 / 3);
+        assertThat(stats.getTimeSavedPerHitMs()).isEqualTo(2_000.0);
+        assertThat(stats.getTimeSavedMs()).isEqualTo(4_000.0);
+    }
+
+    @Test
+    void zeroSizeNeverEmbedsQueries() {
+        SemanticCache<String, String> cache = new SemanticCache<>(null, version::get, 0, 0.8,
+                Duration.ofMinutes(10), now::get);
+
+        SemanticCache.Lookup<String, String> lookup = cache.lookup("deployment topology", "scope");
+        cache.put(lookup, "answer");
+
+        assertThat(cache.lookup("deployment topology", "scope").getValue()).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void embeddingFailureIsAMiss() {
+        EmbeddingModel flaky = mock(EmbeddingModel.class);
+        when(flaky.embed(anyList()))
+                .thenThrow(new IllegalStateException("connection refused"))
+                .thenAnswer(invocation -> embeddingModel.embed((List<String>) invocation.getArgument(0)));
+        SemanticCache<String, String> cache = new SemanticCache<>(flaky, version::get, 100, 0.8,
+                Duration.ofMinutes(10), now::get);
+
+        SemanticCache.Lookup<String, String> failed = cache.lookup("deployment topology", "scope");
+        cache.put(failed, "answer");
+
+        assertThat(failed.getValue()).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.stats().getMissCount()).isEqualTo(1);
+        assertThat(cache.stats().getFailureCount()).isEqualTo(1);
+
+        // The model is back, so the next miss is cached as usual
+        cache.put(cache.lookup("deployment topology", "scope"), "answer");
+        assertThat(cache.lookup("deployment topology", "scope").getValue()).isEqualTo("answer");
+        assertThat(cache.stats().getFailureCount()).isEqualTo(1);
+    }
+}
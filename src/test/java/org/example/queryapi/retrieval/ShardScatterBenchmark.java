@@ -0,0 +1,127 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures single-query BM25 latency over a sharded knowledge base, for shard counts up
+ * to twice the core count (at least eight), to show how far scatter-gather speeds up
+ * one query. Not a unit test; run it on the test classpath:
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.example.queryapi.retrieval.ShardScatterBenchmark \
+ *     -Dexec.args="200000"
+ * </pre>
+ *
+ * Chunks hold 40 terms drawn from a Zipf-like vocabulary of 50,000 words and queries
+ * are three mid-frequency terms, so every query scores a few percent of the corpus.
+ * Queries run one at a time; the speedup is the one-shard mean over the n-shard mean.
+ * On a single-core host (the only one available when this was written), 200,000 chunks:
+ *
+ * <pre>
+ * shards  1  mean  0.46 ms  p99  1.27 ms  speedup 1.00
+ * shards  2  mean  0.38 ms  p99  1.41 ms  speedup 1.22
+ * shards  4  mean  0.35 ms  p99  2.92 ms  speedup 1.30
+ * shards  8  mean  0.36 ms  p99  3.74 ms  speedup 1.27
+ * </pre>
+ *
+ * One core cannot score shards concurrently, so these gains come from each shard's
+ * smaller scoring state, and the longer tail is the cost of the fan-out. Near-linear
+ * speedup up to the core count has not been shown yet; run this on a multi-core host
+ * and record the table here.
+ */
+public final class ShardScatterBenchmark {
+
+    private static final int VOCABULARY = 50_000;
+    private static final int TERMS_PER_CHUNK = 40;
+    private static final int QUERIES = 300;
+    private static final int MAX_CHUNKS = 10;
+    private static final int ROUNDS = 5;
+
+    private ShardScatterBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Chunk> corpus = corpus(new Random(11), size);
+        List<String> queries = queries(new Random(12));
+        System.out.printf("%d chunks, %d cores, common pool parallelism %d%n", size, cores,
+                ForkJoinPool.getCommonPoolParallelism());
+
+        List<Integer> shardCounts = new ArrayList<>();
+        List<Bm25Retriever> retrievers = new ArrayList<>();
+        for (int shards = 1; shards <= Math.max(8, cores * 2); shards *= 2) {
+            InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase(shards);
+            for (int from = 0; from < size; from += 10_000) {
+                knowledgeBase.addChunks(corpus.subList(from, Math.min(size, from + 10_000)));
+            }
+            shardCounts.add(shards);
+            retrievers.add(new Bm25Retriever(knowledgeBase));
+        }
+
+        // Rounds alternate between shard counts so JIT warm-up and GC favour none of them;
+        // the first two rounds only warm up
+        long[][] nanos = new long[retrievers.size()][QUERIES * ROUNDS];
+        for (int round = -2; round < ROUNDS; round++) {
+            for (int r = 0; r < retrievers.size(); r++) {
+                for (int q = 0; q < QUERIES; q++) {
+                    long start = System.nanoTime();
+                    retrievers.get(r).retrieve(queries.get(q), MAX_CHUNKS);
+                    if (round >= 0) {
+                        nanos[r][round * QUERIES + q] = System.nanoTime() - start;
+                    }
+                }
+            }
+        }
+
+        double baseline = Arrays.stream(nanos[0]).average().orElse(0) / 1e6;
+        for (int r = 0; r < retrievers.size(); r++) {
+            long[] sorted = nanos[r].clone();
+            Arrays.sort(sorted);
+            double mean = Arrays.stream(sorted).average().orElse(0) / 1e6;
+            System.out.printf("shards %2d  mean %5.2f ms  p99 %5.2f ms  speedup %.2f%n", shardCounts.get(r), mean,
+                    sorted[(int) Math.ceil(0.99 * sorted.length) - 1] / 1e6, baseline / mean);
+        }
+    }
+
+    private static List<Chunk> corpus(Random random, int size) {
+        List<Chunk> chunks = new ArrayList<>(size);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            text.setLength(0);
+            for (int t = 0; t < TERMS_PER_CHUNK; t++) {
+                text.append(word(zipf(random))).append(' ');
+            }
+            chunks.add(new Chunk("chunk-" + i, "doc-" + i / 10, "Document " + i / 10, text.toString(), null, 0.0));
+        }
+        return chunks;
+    }
+
+    private static List<String> queries(Random random) {
+        List<String> queries = new ArrayList<>(QUERIES);
+        for (int q = 0; q < QUERIES; q++) {
+            // Ranks 20 to 520 appear in a few percent of chunks each
+            queries.add(word(20 + random.nextInt(500)) + " " + word(20 + random.nextInt(500)) + " "
+                    + word(20 + random.nextInt(500)));
+        }
+        return queries;
+    }
+
+    /**
+     * Draws a word rank with probability roughly proportional to 1 / rank.
+     */
+    private static int zipf(Random random) {
+        return (int) Math.min(VOCABULARY - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(VOCABULARY))) - 1);
+    }
+
+    private static String word(int rank) {
+        return "w" + Integer.toString(rank, 36);
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.queryapi.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKCollectorTest {
+
+    @Test
+    void keepsHighestScoresInDescendingOrder() {
+        TopKCollector topK = new TopKCollector(3);
+        double[] scores = {0.1, 0.9, 0.5, 0.7, 0.3, 0.8};
+        for (int i = 0; i < scores.length; i++) {
+            topK.offer(i, scores[i]);
+        }
+
+        int count = topK.drain();
+
+        assertThat(count).isEqualTo(3);
+        assertThat(new int[]{topK.ordinalAt(0), topK.ordinalAt(1), topK.ordinalAt(2)}).containsExactly(1, 5, 3);
+        assertThat(topK.scoreAt(0)).isEqualTo(0.9);
+        assertThat(topK.scoreAt(2)).isEqualTo(0.7);
+    }
+
+    @Test
+    void tiesPreferLowerOrdinalRegardlessOfOfferOrder() {
+        TopKCollector topK = new TopKCollector(2);
+        topK.offer(7, 1.0);
+        topK.offer(3, 1.0);
+        topK.offer(5, 1.0);
+
+        topK.drain();
+
+        assertThat(new int[]{topK.ordinalAt(0), topK.ordinalAt(1)}).containsExactly(3, 5);
+    }
+
+    @Test
+    void holdsFewerEntriesThanCapacity() {
+        TopKCollector topK = new TopKCollector(10);
+        topK.offer(0, 0.5);
+        topK.offer(1, 0.6);
+
+        assertThat(topK.drain()).isEqualTo(2);
+        assertThat(topK.ordinalAt(0)).isEqualTo(1);
+    }
+
+    @Test
+    void zeroCapacityKeepsNothing() {
+        TopKCollector topK = new TopKCollector(0);
+        topK.offer(0, 1.0);
+
+        assertThat(topK.drain()).isZero();
+    }
+
+    @Test
+    void matchesFullSortOnRandomInput() {
+        Random random = new Random(42);
+        List<double[]> all = new ArrayList<>();
+        TopKCollector topK = new TopKCollector(25);
+        for (int i = 0; i < 5_000; i++) {
+            // Coarse scores so that ties are common
+            double score = random.nextInt(100) / 100.0;
+            all.add(new double[]{i, score});
+            topK.offer(i, score);
+        }
+
+        all.sort(Comparator.<double[]>comparingDouble(entry -> entry[1]).reversed()
+                .thenComparingDouble(entry -> entry[0]));
+        int count = topK.drain();
+
+        assertThat(count).isEqualTo(25);
+        for (int rank = 0; rank < count; rank++) {
+            assertThat(topK.ordinalAt(rank)).isEqualTo((int) all.get(rank)[0]);
+        }
+    }
+}
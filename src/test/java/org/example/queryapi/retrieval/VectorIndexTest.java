@@ -0,0 +1,127 @@
+package org.example.queryapi.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class VectorIndexTest {
+
+    @Test
+    void simdAndScalarDotProductsAgree() {
+        Random random = new Random(7);
+        for (int length : new int[]{1, 3, 8, 17, 384}) {
+            float[] a = randomVector(random, length + 5);
+            float[] b = randomVector(random, length);
+            double expected = 0.0;
+            for (int i = 0; i < length; i++) {
+                expected += a[5 + i] * b[i];
+            }
+
+            assertThat(VectorMath.dotScalar(a, 5, b)).isCloseTo((float) expected, within(1e-4f));
+            assertThat(SimdVectorMath.dot(a, 5, b)).isCloseTo((float) expected, within(1e-4f));
+        }
+    }
+
+    @Test
+    void searchRanksByCosineSimilarity() {
+        VectorIndex index = new VectorIndex(2);
+        index.addAll(List.of(new float[]{0f, 1f}, new float[]{10f, 1f}, new float[]{1f, 1f}));
+
+        TopKCollector topK = index.search(new float[]{1f, 0f}, 2, -1.0, index.size());
+
+        assertThat(topK.drain()).isEqualTo(2);
+        assertThat(topK.ordinalAt(0)).isEqualTo(1);
+        assertThat(topK.ordinalAt(1)).isEqualTo(2);
+        assertThat(topK.scoreAt(1)).isCloseTo(Math.sqrt(0.5), within(1e-6));
+    }
+
+    @Test
+    void parallelSearchMatchesBruteForce() {
+        int dimension = 8;
+        int size = VectorIndex.PARALLEL_THRESHOLD * 3 + 11;
+        Random random = new Random(42);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            vectors.add(randomVector(random, dimension));
+        }
+        VectorIndex index = new VectorIndex(dimension);
+        index.addAll(vectors);
+        float[] query = VectorMath.normalized(randomVector(random, dimension));
+
+        TopKCollector topK = index.search(query, 10, -1.0, size, 4);
+        int count = topK.drain();
+        List<Integer> actual = IntStream.range(0, count).mapToObj(topK::ordinalAt).toList();
+
+        List<Integer> expected = IntStream.range(0, size).boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> -VectorMath.dotScalar(VectorMath.normalized(vectors.get(i)), 0, query)))
+                .limit(10)
+                .toList();
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void searchIsBoundedByLimitAndThreshold() {
+        VectorIndex index = new VectorIndex(2);
+        index.addAll(List.of(new float[]{1f, 0f}, new float[]{0f, 1f}, new float[]{1f, 0.1f}));
+
+        TopKCollector topK = index.search(new float[]{1f, 0f}, 10, 0.5, 2);
+
+        assertThat(topK.drain()).isEqualTo(1);
+        assertThat(topK.ordinalAt(0)).isZero();
+    }
+
+    @Test
+    void truncateDropsTrailingVectors() {
+        VectorIndex index = new VectorIndex(2);
+        index.addAll(List.of(new float[]{1f, 0f}, new float[]{0f, 1f}));
+
+        index.truncate(1);
+        index.addAll(List.<float[]>of(new float[]{1f, 1f}));
+
+        assertThat(index.size()).isEqualTo(2);
+        TopKCollector topK = index.search(new float[]{0f, 1f}, 1, -1.0, 2);
+        topK.drain();
+        assertThat(topK.ordinalAt(0)).isEqualTo(1);
+        assertThat(topK.scoreAt(0)).isCloseTo(Math.sqrt(0.5), within(1e-6));
+    }
+
+    @Test
+    void wrongDimensionIsRejected() {
+        VectorIndex index = new VectorIndex(3);
+
+        assertThatThrownBy(() -> index.addAll(List.<float[]>of(new float[2])))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Test
+    void filteredSearchOnlyScoresAllowedOrdinals() {
+        VectorIndex index = new VectorIndex(2);
+        index.addAll(List.of(new float[]{1f, 0f}, new float[]{0f, 1f}, new float[]{1f, 0.1f}, new float[]{1f, 0.5f}));
+        BitSet allowed = new BitSet();
+        allowed.set(1);
+        allowed.set(3);
+
+        TopKCollector topK = index.search(new float[]{1f, 0f}, 10, -1.0, index.size(), allowed);
+
+        assertThat(topK.drain()).isEqualTo(2);
+        assertThat(topK.ordinalAt(0)).isEqualTo(3);
+        assertThat(topK.ordinalAt(1)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,234 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VectorRetrieverTest {
+
+    private InMemoryKnowledgeBase knowledgeBase;
+    private HashingEmbeddingModel embeddingModel;
+    private VectorRetriever retriever;
+
+    @BeforeEach
+    void setUp() {
+        knowledgeBase = new InMemoryKnowledgeBase();
+        embeddingModel = new HashingEmbeddingModel(256);
+        retriever = new VectorRetriever(knowledgeBase, embeddingModel, 0.3, "none", 200, 4096, 8, "", Runnable::run);
+    }
+
+    @Test
+    void emptyKnowledgeBaseReturnsEmptyList() {
+        assertThat(retriever.retrieve("deployment topology", 10)).isEmpty();
+    }
+
+    @Test
+    void mostSimilarChunkRanksFirst() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Guide",
+                "unrelated content about security", null, 0.0));
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Guide",
+                "deployment topology is active passive", null, 0.0));
+
+        List<Chunk> chunks = retriever.retrieve("deployment topology", 10);
+
+        assertThat(chunks).isNotEmpty();
+        assertThat(chunks.get(0).getChunkId()).isEqualTo("chunk-2");
+        assertThat(chunks.get(0).getRelevanceScore()).isBetween(0.3, 1.0);
+    }
+
+    @Test
+    void dissimilarChunksAreFilteredOut() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Security",
+                "firewall rules and certificates", null, 0.0));
+
+        assertThat(retriever.retrieve("deployment topology", 10)).isEmpty();
+    }
+
+    @Test
+    void resultsAreLimitedToMaxChunks() {
+        for (int i = 0; i < 10; i++) {
+            knowledgeBase.addChunk(new Chunk("chunk-" + i, "doc-" + i, "Deployment",
+                    "deployment topology variant " + i, null, 0.0));
+        }
+
+        assertThat(retriever.retrieve("deployment topology", 3)).hasSize(3);
+    }
+
+    @Test
+    void onlyNewChunksAreEmbeddedBetweenQueries() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Deployment",
+                "deployment topology", null, 0.0));
+        retriever.retrieve("deployment", 10);
+        int afterFirstQuery = embeddingModel.embeddedTexts();
+
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Deployment",
+                "deployment checklist", null, 0.0));
+        List<Chunk> chunks = retriever.retrieve("deployment", 10);
+
+        // One new chunk plus the query
+        assertThat(embeddingModel.embeddedTexts() - afterFirstQuery).isEqualTo(2);
+        assertThat(chunks).extracting(Chunk::getChunkId).contains("chunk-1", "chunk-2");
+    }
+
+    @Test
+    void largeBacklogIsEmbeddedInBatches() {
+        List<Chunk> batch = new ArrayList<>();
+        for (int i = 0; i < ChunkEmbedder.BATCH_SIZE * 2 + 5; i++) {
+            batch.add(new Chunk("chunk-" + i, "doc-" + i, "Title", "text " + i, null, 0.0));
+        }
+        knowledgeBase.addChunks(batch);
+
+        retriever.retrieve("text 42", 5);
+
+        assertThat(embeddingModel.embeddedTexts()).isEqualTo(batch.size() + 1);
+    }
+
+    @Test
+    void clearedKnowledgeBaseIsReindexed() {
+        knowledgeBase.addChunk(new Chunk("old", "doc-1", "Deployment", "deployment topology", null, 0.0));
+        retriever.retrieve("deployment topology", 10);
+
+        knowledgeBase.clear();
+        knowledgeBase.addChunk(new Chunk("new", "doc-2", "Deployment", "deployment topology", null, 0.0));
+
+        assertThat(retriever.retrieve("deployment topology", 10))
+                .extracting(Chunk::getChunkId)
+                .containsExactly("new");
+    }
+
+    @Test
+    void queryEmbeddingFailureIsReportedAsRetrievalException() {
+        knowledgeBase.addChunk(new Chunk("chunk-1", "doc-1", "Test", "content", null, 0.0));
+        EmbeddingModel failing = mock(EmbeddingModel.class);
+        when(failing.embed(anyList())).thenThrow(new IllegalStateException("connection refused"));
+        VectorRetriever failingRetriever = new VectorRetriever(knowledgeBase, failing, 0.3, "none", 200, 4096, 8, "",
+                Runnable::run);
+
+        // Indexing failed too, so nothing is searchable yet
+        assertThat(failingRetriever.retrieve("content", 10)).isEmpty();
+
+        knowledgeBase.addChunk(new Chunk("chunk-2", "doc-2", "Test", "content", null, 0.0));
+        VectorRetriever indexedRetriever = new VectorRetriever(knowledgeBase, failingAfter(1), 0.3, "none", 200, 4096,
+                8, "", Runnable::run);
+        assertThatThrownBy(() -> indexedRetriever.retrieve("content", 10))
+                .isInstanceOf(RetrievalException.class);
+    }
+
+    @Test
+    void indexingFailureKeepsCompletedBatches() {
+        List<Chunk> batch = new ArrayList<>();
+        for (int i = 0; i < ChunkEmbedder.BATCH_SIZE * 2; i++) {
+            batch.add(new Chunk("chunk-" + i, "doc-" + i, "Title", "text " + i, null, 0.0));
+        }
+        knowledgeBase.addChunks(batch);
+        HashingEmbeddingModel flaky = new HashingEmbeddingModel(256) {
+            private int calls;
+
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                if (++calls == 2) {
+                    throw new IllegalStateException("connection reset");
+                }
+                return super.call(request);
+            }
+        };
+        VectorRetriever flakyRetriever = new VectorRetriever(knowledgeBase, flaky, 0.0, "none", 200, 4096, 8, "",
+                Runnable::run);
+
+        // The first batch stays searchable, and the retry after the failure is held back
+        List<Chunk> chunks = flakyRetriever.retrieve("text 3", ChunkEmbedder.BATCH_SIZE * 2);
+        assertThat(chunks).hasSize(ChunkEmbedder.BATCH_SIZE);
+        assertThat(chunks.get(0).getChunkId()).isEqualTo("chunk-3");
+        assertThat(flaky.embeddedTexts()).isEqualTo(ChunkEmbedder.BATCH_SIZE + 1);
+    }
+
+    @Test
+    void queriesDoNotWaitForIndexing() {
+        InMemoryKnowledgeBase ingested = new InMemoryKnowledgeBase();
+        HashingEmbeddingModel model = new HashingEmbeddingModel(256);
+        List<Runnable> pending = new ArrayList<>();
+        VectorRetriever deferred = new VectorRetriever(ingested, model, 0.3, "none", 200, 4096, 8, "", pending::add);
+        pending.forEach(Runnable::run);
+        pending.clear();
+        ingested.addChunk(new Chunk("chunk-1", "doc-1", "Deployment", "deployment topology", null, 0.0));
+
+        RetrievalResult pendingResult = deferred.retrieveResult("deployment topology", 10, RetrievalFilter.none());
+        assertThat(pendingResult.chunks()).isEmpty();
+        assertThat(pendingResult.complete()).isFalse();
+        assertThat(model.embeddedTexts()).isZero();
+
+        assertThat(pending).hasSize(1);
+        pending.get(0).run();
+        RetrievalResult indexedResult = deferred.retrieveResult("deployment topology", 10, RetrievalFilter.none());
+        assertThat(indexedResult.chunks()).extracting(Chunk::getChunkId).containsExactly("chunk-1");
+        assertThat(indexedResult.complete()).isTrue();
+    }
+
+    /**
+     * Embedding model that answers the first {@code calls} requests and fails every later one.
+     */
+    private static EmbeddingModel failingAfter(int calls) {
+        return new HashingEmbeddingModel(256) {
+            private int made;
+
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                if (++made > calls) {
+                    throw new IllegalStateException("connection refused");
+                }
+                return super.call(request);
+            }
+        };
+    }
+
+    @Test
+    void constructorRejectsNullDependencies() {
+        assertThatThrownBy(() -> new VectorRetriever(null, embeddingModel, 0.5, "none", 200, 4096, 8, ""))
+                .isInstanceOf(RetrievalException.class);
+        assertThatThrownBy(() -> new VectorRetriever(knowledgeBase, null, 0.5, "none", 200, 4096, 8, ""))
+                .isInstanceOf(RetrievalException.class);
+    }
+
+    @Test
+    void quantizedStoreRanksLikeExactStore(@TempDir Path directory) {
+        VectorRetriever quantized = new VectorRetriever(knowledgeBase, embeddingModel, 0.3, "int8", 20, 16, 8,
+                directory.toString(), Runnable::run);
+        List<Chunk> batch = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            batch.add(new Chunk("chunk-" + i, "doc-" + i, "Guide", "topic " + i + " notes on subject " + (i % 7),
+                    null, 0.0));
+        }
+        knowledgeBase.addChunks(batch);
+
+        try {
+            assertThat(quantized.retrieve("topic 12 notes", 5))
+                    .extracting(Chunk::getChunkId)
+                    .containsExactlyElementsOf(retriever.retrieve("topic 12 notes", 5).stream()
+                            .map(Chunk::getChunkId)
+                            .toList());
+        } finally {
+            quantized.close();
+        }
+    }
+
+    @Test
+    void unknownQuantizationIsRejected() {
+        assertThatThrownBy(() -> new VectorRetriever(knowledgeBase, embeddingModel, 0.5, "fp4", 200, 4096, 8, ""))
+                .isInstanceOf(RetrievalException.class)
+                .hasMessageContaining("fp4");
+    }
+}
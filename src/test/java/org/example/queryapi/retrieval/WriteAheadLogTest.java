@@ -0,0 +1,188 @@
+package org.example.queryapi.retrieval;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<Chunk> batch(String id) {
+        return List.of(new Chunk(id, "doc-" + id, "Title " + id, "text " + id, null, 0.0));
+    }
+
+    private FaultyChannel open(Path file) throws IOException {
+        return new FaultyChannel(FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ));
+    }
+
+    private static List<String> replay(Path file) throws IOException {
+        List<String> ids = new ArrayList<>();
+        WriteAheadLog.replay(file, batch -> batch.forEach(chunk -> ids.add(chunk.getChunkId())));
+        return ids;
+    }
+
+    @Test
+    void tornWriteIsCutOffSoLaterRecordsSurviveReplay() throws IOException {
+        Path file = directory.resolve("wal-0.log");
+        FaultyChannel channel = open(file);
+        try (WriteAheadLog log = WriteAheadLog.open(file, channel)) {
+            log.sync(log.write(batch("a")));
+
+            channel.tearNextWrite = true;
+            assertThatThrownBy(() -> log.write(batch("b"))).isInstanceOf(IOException.class);
+
+            log.sync(log.write(batch("c")));
+            assertThat(log.failed()).isFalse();
+        }
+
+        assertThat(replay(file)).containsExactly("a", "c");
+    }
+
+    @Test
+    void failedFsyncDropsUnsyncedRecordsAndRefusesAppends() throws IOException {
+        Path file = directory.resolve("wal-0.log");
+        FaultyChannel channel = open(file);
+        try (WriteAheadLog log = WriteAheadLog.open(file, channel)) {
+            log.sync(log.write(batch("a")));
+            long end = log.write(batch("b"));
+
+            channel.failForce = true;
+            assertThatThrownBy(() -> log.sync(end)).isInstanceOf(IOException.class);
+
+            assertThat(log.failed()).isTrue();
+            assertThatThrownBy(() -> log.write(batch("c"))).isInstanceOf(IOException.class);
+        }
+
+        // Batch b was reported as not logged, so it must not come back on restart
+        assertThat(replay(file)).containsExactly("a");
+    }
+
+    /**
+     * File channel that can tear the next write halfway or fail fsyncs.
+     */
+    private static final class FaultyChannel extends FileChannel {
+
+        private final FileChannel delegate;
+        private boolean tearNextWrite;
+        private boolean failForce;
+
+        private FaultyChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (tearNextWrite) {
+                tearNextWrite = false;
+                ByteBuffer half = src.duplicate();
+                half.limit(src.position() + src.remaining() / 2);
+                src.position(src.position() + delegate.write(half));
+                throw new IOException("Disk full");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("fsync failed");
+            }
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.Chunk;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares a fixed synthesis concurrency limit with the {@link GradientLimit} against a
+ * {@link LoadSensitiveChatModel}, whose latency grows once more calls run than it has
+ * parallel slots. Not a unit test; run it on the test classpath:
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.example.queryapi.synthesis.AdaptiveLimitBenchmark
+ * </pre>
+ *
+ * 16 clients each make 25 calls back to back against a model with 10 ms unloaded
+ * latency. Request latency includes the wait for a slot. On one core:
+ *
+ * <pre>
+ * slots  limit             final  running   service  p50 request  p99 request  calls/s
+ *     2  fixed 16             16       16   80.4 ms      80.5 ms     425.7 ms      167
+ *     2  adaptive from 1       3        5   20.3 ms      81.3 ms     105.1 ms      193
+ *     2  adaptive from 16      3       16   20.2 ms      81.2 ms      85.2 ms      197
+ *     4  fixed 16             16       16   40.3 ms      40.3 ms      41.9 ms      395
+ *     4  adaptive from 1       7        9   17.0 ms      40.5 ms      93.7 ms      372
+ *     4  adaptive from 16      6       16   15.7 ms      40.2 ms      44.9 ms      396
+ * </pre>
+ *
+ * With the clients calling back to back, median request latency is set by the model's
+ * throughput whatever the limit. The adaptive limit keeps each synthesis near its
+ * unloaded latency and moves the rest of the wait into the queue, where the deadline and
+ * load shedding can act on it, at the same or better throughput from either start.
+ * "running" is the most calls the model saw at once, including before the limit settled.
+ */
+public final class AdaptiveLimitBenchmark {
+
+    private static final int CLIENTS = 16;
+    private static final int CALLS_PER_CLIENT = 25;
+    private static final Duration UNLOADED_LATENCY = Duration.ofMillis(10);
+
+    private AdaptiveLimitBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%5s  %-16s  %5s  %7s  %8s  %11s  %11s  %7s%n", "slots", "limit", "final", "running",
+                "service", "p50 request", "p99 request", "calls/s");
+        for (int slots : new int[]{2, 4}) {
+            run(slots, "fixed 16        ", new SynthesisScheduler(16, 1_000, Duration.ofSeconds(60), System::nanoTime));
+            run(slots, "adaptive from 1 ", new SynthesisScheduler(1, 1_000, Duration.ofSeconds(60), System::nanoTime,
+                    new GradientLimit(1, 1, 32, 1.5)));
+            run(slots, "adaptive from 16", new SynthesisScheduler(16, 1_000, Duration.ofSeconds(60), System::nanoTime,
+                    new GradientLimit(16, 1, 32, 1.5)));
+        }
+    }
+
+    private static void run(int slots, String label, SynthesisScheduler scheduler) throws Exception {
+        LoadSensitiveChatModel model = new LoadSensitiveChatModel(UNLOADED_LATENCY, slots);
+        OllamaSynthesizer synthesizer = new OllamaSynthesizer(model);
+        List<Chunk> chunks = List.of(new Chunk("chunk-1", "doc-1", "Guide", "Some context.", null, 0.9));
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        long start = System.nanoTime();
+        long[] nanos;
+        try {
+            List<Future<long[]>> clients = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                clients.add(executor.submit(() -> {
+                    long[] latencies = new long[CALLS_PER_CLIENT];
+                    for (int i = 0; i < CALLS_PER_CLIENT; i++) {
+                        long called = System.nanoTime();
+                        scheduler.call(() -> synthesizer.synthesize("question", chunks));
+                        latencies[i] = System.nanoTime() - called;
+                    }
+                    return latencies;
+                }));
+            }
+            nanos = new long[CLIENTS * CALLS_PER_CLIENT];
+            for (int c = 0; c < CLIENTS; c++) {
+                System.arraycopy(clients.get(c).get(), 0, nanos, c * CALLS_PER_CLIENT, CALLS_PER_CLIENT);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(nanos);
+        SchedulerStats stats = scheduler.stats();
+        System.out.printf("%5d  %s  %5d  %7d  %5.1f ms  %8.1f ms  %8.1f ms  %7.0f%n", slots, label,
+                stats.getConcurrencyLimit(), model.getMaxRunning(), stats.getMeanServiceTimeMs(),
+                nanos[nanos.length / 2] / 1e6, nanos[(int) Math.ceil(0.99 * nanos.length) - 1] / 1e6,
+                nanos.length / seconds);
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.Chunk;
+import org.example.queryapi.domain.SynthesisResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AnswerCacheTest {
+
+    private static final List<Chunk> CHUNKS = List.of(
+            new Chunk("chunk-1", "doc-1", "Title", "Text one", null, 0.9),
+            new Chunk("chunk-2", "doc-2", "Title", "Text two", null, 0.8));
+
+    private final AtomicInteger syntheses = new AtomicInteger();
+    private final Synthesizer synthesizer = (query, chunks, maxTokens) ->
+            new SynthesisResult("answer-" + syntheses.incrementAndGet() + " [1]", List.of(chunks.get(0).getChunkId()));
+
+    @Test
+    void repeatedQueryOverSameChunksIsServedFromCache() {
+        AnswerCache cache = new AnswerCache("llama3.2", "temperature=0.7", 100, Duration.ofMinutes(10), System::nanoTime);
+
+        AnswerCache.Answer first = cache.synthesize(synthesizer, "What is the topology?", CHUNKS, null);
+        AnswerCache.Answer second = cache.synthesize(synthesizer, "  what is the TOPOLOGY? ", CHUNKS, null);
+
+        assertThat(first.isCached()).isFalse();
+        assertThat(second.isCached()).isTrue();
+        assertThat(second.getResult()).isSameAs(first.getResult());
+        assertThat(syntheses).hasValue(1);
+    }
+
+    @Test
+    void retrievedChunksArePartOfTheKey() {
+        AnswerCache cache = new AnswerCache("llama3.2", "temperature=0.7", 100, Duration.ofMinutes(10), System::nanoTime);
+
+        cache.synthesize(synthesizer, "topology", CHUNKS, null);
+        // Citation markers are positional, so reordered chunks need their own answer
+        AnswerCache.Answer reordered = cache.synthesize(synthesizer, "topology", List.of(CHUNKS.get(1), CHUNKS.get(0)), null);
+        AnswerCache.Answer fewerChunks = cache.synthesize(synthesizer, "topology", CHUNKS.subList(0, 1), null);
+
+        assertThat(reordered.isCached()).isFalse();
+        assertThat(reordered.getResult().getCitedChunkIds()).containsExactly("chunk-2");
+        assertThat(fewerChunks.isCached()).isFalse();
+        assertThat(syntheses).hasValue(3);
+    }
+
+    @Test
+    void reingestedChunkTextIsPartOfTheKey() {
+        AnswerCache cache = new AnswerCache("llama3.2", "temperature=0.7", 100, Duration.ofMinutes(10), System::nanoTime);
+
+        cache.synthesize(synthesizer, "topology", CHUNKS, null);
+        // Same chunk ids after the document was edited and ingested again
+        List<Chunk> edited = List.of(CHUNKS.get(0),
+                new Chunk("chunk-2", "doc-2", "Title", "Text two, revised", null, 0.8));
+        AnswerCache.Answer afterEdit = cache.synthesize(synthesizer, "topology", edited, null);
+
+        assertThat(afterEdit.isCached()).isFalse();
+        assertThat(afterEdit.getResult().getAnswerText()).startsWith("answer-2");
+        assertThat(cache.synthesize(synthesizer, "topology", edited, null).isCached()).isTrue();
+    }
+
+    @Test
+    void answerTokenLimitIsPartOfTheKey() {
+        AnswerCache cache = new AnswerCache("llama3.2", "temperature=0.7", 100, Duration.ofMinutes(10), System::nanoTime);
+
+        cache.synthesize(synthesizer, "topology", CHUNKS, null);
+        AnswerCache.Answer limited = cache.synthesize(synthesizer, "topology", CHUNKS, 100);
+
+        assertThat(limited.isCached()).isFalse();
+        assertThat(cache.synthesize(synthesizer, "topology", CHUNKS, 100).isCached()).isTrue();
+        assertThat(syntheses).hasValue(2);
+    }
+
+    @Test
+    void entriesExpireAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        AnswerCache cache = new AnswerCache("llama3.2", "temperature=0.7", 100, Duration.ofSeconds(60), now::get);
+
+        cache.synthesize(synthesizer, "topology", CHUNKS, null);
+        now.addAndGet(Duration.ofSeconds(59).toNanos());
+        assertThat(cache.synthesize(synthesizer, "topology", CHUNKS, null).isCached()).isTrue();
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        AnswerCache.Answer expired = cache.synthesize(synthesizer, "topology", CHUNKS, null);
+
+        assertThat(expired.isCached()).isFalse();
+        assertThat(expired.getResult().getAnswerText()).startsWith("answer-2");
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRequestsShareOneSynthesis() throws Exception {
+        AnswerCache cache = new AnswerCache("llama3.2", "temperature=0.7", 100, Duration.ofMinutes(10), System::nanoTime);
+        CountDownLatch synthesizing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Synthesizer slow = (query, chunks, maxTokens) -> {
+            synthesizing.countDown();
+            await(release);
+            return synthesizer.synthesize(query, chunks, maxTokens);
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<AnswerCache.Answer>> answers = new ArrayList<>();
+            answers.add(executor.submit(() -> cache.synthesize(slow, "topology", CHUNKS, null)));
+            assertThat(synthesizing.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 4; i++) {
+                answers.add(executor.submit(() -> cache.synthesize(slow, "topology", CHUNKS, null)));
+            }
+            while (cache.stats().getCoalescedCount() < 4) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertThat(answers.get(0).get(5, TimeUnit.SECONDS).isCached()).isFalse();
+            for (Future<AnswerCache.Answer> answer : answers.subList(1, answers.size())) {
+                AnswerCache.Answer shared = answer.get(5, TimeUnit.SECONDS);
+                assertThat(shared.isCached()).isTrue();
+                assertThat(shared.getResult().getAnswerText()).isEqualTo("answer-1 [1]");
+            }
+            assertThat(syntheses).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedSynthesisIsNotCached() {
+        AnswerCache cache = new AnswerCache("llama3.2", "temperature=0.7", 100, Duration.ofMinutes(10), System::nanoTime);
+
+        assertThatThrownBy(() -> cache.synthesize((query, chunks, maxTokens) -> {
+            throw new SynthesisException("LLM timeout");
+        }, "topology", CHUNKS, null)).isInstanceOf(SynthesisException.class);
+
+        assertThat(cache.synthesize(synthesizer, "topology", CHUNKS, null).isCached()).isFalse();
+        assertThat(syntheses).hasValue(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
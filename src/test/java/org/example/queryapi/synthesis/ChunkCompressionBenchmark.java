@@ -0,0 +1,131 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.Chunk;
+import org.example.queryapi.retrieval.Bm25Retriever;
+import org.example.queryapi.retrieval.ChunkCompressor;
+import org.example.queryapi.retrieval.InMemoryKnowledgeBase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how many prompt tokens {@link ChunkCompressor} saves, and what it costs per
+ * request, for a few sentence settings. Not a unit test; run it on the test classpath:
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.example.queryapi.synthesis.ChunkCompressionBenchmark
+ * </pre>
+ *
+ * The corpus is the PRD and TDD in the main resources, cut on paragraph boundaries into
+ * ten chunks of about 200 words. Each question retrieves up to 5 chunks with BM25, and
+ * tokens are counted with the synthesizer's {@link TokenEstimator} over the chunk texts,
+ * summed over the questions. Time per request is after a full warm-up sweep, on one core:
+ *
+ * <pre>
+ * max-sentences 2  neighbors 1  tokens 3398 -> 883 (3.85x)  0.05 ms per request
+ * max-sentences 3  neighbors 1  tokens 3398 -> 1061 (3.20x)  0.04 ms per request
+ * max-sentences 2  neighbors 0  tokens 3398 -> 510 (6.66x)  0.04 ms per request
+ * max-sentences 1  neighbors 1  tokens 3398 -> 533 (6.38x)  0.06 ms per request
+ * </pre>
+ *
+ * Still open: the latency this saves has not been measured. Prefill time grows with
+ * prompt tokens, but no Ollama instance was available, and the test stub answers without
+ * reading the prompt. Time {@code /api/chat} against a real model with and without
+ * compression and record the table here.
+ */
+public final class ChunkCompressionBenchmark {
+
+    private static final int WORDS_PER_CHUNK = 200;
+    private static final int TOP_K = 5;
+    private static final int ROUNDS = 2_000;
+    private static final int[][] SETTINGS = {{2, 1}, {3, 1}, {2, 0}, {1, 1}};
+    private static final List<String> QUESTIONS = List.of(
+            "What happens when synthesis times out?",
+            "How are cited documents deduplicated?",
+            "What is the relevance threshold for synthesis?",
+            "How does the retriever score chunks?",
+            "What does the response metadata contain?",
+            "Which errors return 503?");
+
+    private ChunkCompressionBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Chunk> corpus = corpus(resource("/PRD-QUERY-API.md") + "\n\n" + resource("/TDD-QUERY-API.md"));
+        InMemoryKnowledgeBase knowledgeBase = new InMemoryKnowledgeBase();
+        knowledgeBase.addChunks(corpus);
+        Bm25Retriever retriever = new Bm25Retriever(knowledgeBase);
+        List<List<Chunk>> retrieved = QUESTIONS.stream().map(question -> retriever.retrieve(question, TOP_K)).toList();
+        System.out.printf("%d chunks, %d questions%n", corpus.size(), QUESTIONS.size());
+
+        // The sweep runs twice so that the first settings do not pay for JIT warm-up
+        for (int pass = 0; pass < 2; pass++) {
+            for (int[] setting : SETTINGS) {
+                measure(new ChunkCompressor(setting[0], setting[1]), retrieved, setting, pass == 1);
+            }
+        }
+    }
+
+    private static void measure(ChunkCompressor compressor, List<List<Chunk>> retrieved, int[] setting,
+                                boolean report) {
+        long before = 0;
+        long after = 0;
+        for (int q = 0; q < QUESTIONS.size(); q++) {
+            for (Chunk chunk : retrieved.get(q)) {
+                before += TokenEstimator.count(chunk.getText());
+            }
+            for (Chunk chunk : compressor.compress(QUESTIONS.get(q), retrieved.get(q))) {
+                after += TokenEstimator.count(chunk.getText());
+            }
+        }
+
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int q = 0; q < QUESTIONS.size(); q++) {
+                sink += compressor.compress(QUESTIONS.get(q), retrieved.get(q)).size();
+            }
+        }
+        double millisPerRequest = (System.nanoTime() - start) / 1e6 / (ROUNDS * QUESTIONS.size());
+        if (!report) {
+            return;
+        }
+        System.out.printf("max-sentences %d  neighbors %d  tokens %d -> %d (%.2fx)  %.2f ms per request%s%n",
+                setting[0], setting[1], before, after, (double) before / after, millisPerRequest,
+                sink == 42 ? "!" : "");
+    }
+
+    /**
+     * Cuts text into chunks of just over {@link #WORDS_PER_CHUNK} words on paragraph
+     * boundaries, as the ingestion splitter does.
+     */
+    private static List<Chunk> corpus(String text) {
+        List<Chunk> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int words = 0;
+        for (String paragraph : text.split("\n\\s*\n")) {
+            current.append(paragraph).append("\n\n");
+            words += paragraph.strip().split("\\s+").length;
+            if (words > WORDS_PER_CHUNK) {
+                int n = chunks.size();
+                chunks.add(new Chunk("chunk-" + n, "doc-" + n, "Query API", current.toString().strip(), null, 0.0));
+                current.setLength(0);
+                words = 0;
+            }
+        }
+        return chunks;
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = ChunkCompressionBenchmark.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CitationTrackerTest {
+
+    private static final List<Chunk> CHUNKS = List.of(
+            new Chunk("chunk-1", "doc-1", "Doc 1", "Content 1", null, 0.9),
+            new Chunk("chunk-2", "doc-2", "Doc 2", "Content 2", null, 0.9),
+            new Chunk("chunk-3", "doc-3", "Doc 3", "Content 3", null, 0.9)
+    );
+
+    @Test
+    void reportsEachChunkWhenItsFirstMarkerCompletes() {
+        CitationTracker tracker = new CitationTracker(CHUNKS);
+
+        assertThat(tracker.accept("First point [")).isEmpty();
+        assertThat(tracker.accept("2")).isEmpty();
+        assertThat(tracker.accept("]. Second point [1] and [2]")).containsExactly("chunk-2", "chunk-1");
+        assertThat(tracker.accept(". Third [3].")).containsExactly("chunk-3");
+
+        assertThat(tracker.getCitedChunkIds()).containsExactly("chunk-2", "chunk-1", "chunk-3");
+    }
+
+    @Test
+    void ignoresMarkersOutsideTheChunkRangeAndMalformedBrackets() {
+        CitationTracker tracker = new CitationTracker(CHUNKS);
+
+        tracker.accept("Not cited [0], [4], [], [a1], [1 ], [99999999999] but [[3] is");
+
+        assertThat(tracker.getCitedChunkIds()).containsExactly("chunk-3");
+    }
+
+    @Test
+    void splittingTheTextDoesNotChangeTheCitations() {
+        String answer = "Topology is active-passive [1]. Nodes match [3][2]. Again [1].";
+        CitationTracker whole = new CitationTracker(CHUNKS);
+        whole.accept(answer);
+
+        CitationTracker pieces = new CitationTracker(CHUNKS);
+        for (int i = 0; i < answer.length(); i++) {
+            pieces.accept(answer.substring(i, i + 1));
+        }
+
+        assertThat(pieces.getCitedChunkIds()).isEqualTo(whole.getCitedChunkIds())
+                .containsExactly("chunk-1", "chunk-3", "chunk-2");
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.queryapi.synthesis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GradientLimitTest {
+
+    private static final long UNLOADED_NANOS = 10_000_000;
+
+    /**
+     * Latency of a model with the given parallel slots at a concurrency, as a local LLM
+     * server behaves: flat up to the slots, then growing in proportion.
+     */
+    private static long latency(long unloadedNanos, int slots, int concurrency) {
+        return (long) (unloadedNanos * Math.max(1.0, (double) concurrency / slots));
+    }
+
+    private static void saturate(GradientLimit limit, long unloadedNanos, int slots, int samples) {
+        for (int i = 0; i < samples; i++) {
+            int concurrency = limit.limit();
+            limit.update(latency(unloadedNanos, slots, concurrency), concurrency, true);
+        }
+    }
+
+    @Test
+    void growsFromOneToJustPastTheModelsSlots() {
+        GradientLimit limit = new GradientLimit(1, 1, 64, 1.5);
+
+        saturate(limit, UNLOADED_NANOS, 4, 300);
+
+        // Latency stays within a few times the unloaded latency instead of growing with load
+        assertThat(limit.limit()).isBetween(5, 12);
+        assertThat(limit.latencyNanos()).isLessThan(3 * UNLOADED_NANOS);
+    }
+
+    @Test
+    void shrinksWhenTheHostIsShared() {
+        GradientLimit limit = new GradientLimit(1, 1, 64, 1.5);
+        saturate(limit, UNLOADED_NANOS, 8, 300);
+        int alone = limit.limit();
+
+        saturate(limit, UNLOADED_NANOS, 2, 300);
+
+        assertThat(limit.limit()).isLessThan(alone).isBetween(2, 6);
+    }
+
+    @Test
+    void relearnsTheBaselineFromSynthesesThatRanAlone() {
+        GradientLimit limit = new GradientLimit(4, 1, 64, 1.5);
+        saturate(limit, UNLOADED_NANOS, 4, 100);
+
+        // A slower model is swapped in and briefly serves one request at a time
+        for (int i = 0; i < 30; i++) {
+            limit.update(4 * UNLOADED_NANOS, 1, false);
+        }
+        saturate(limit, 4 * UNLOADED_NANOS, 4, 300);
+
+        assertThat(limit.baselineNanos()).isGreaterThan(3 * UNLOADED_NANOS);
+        assertThat(limit.limit()).isBetween(5, 12);
+    }
+
+    @Test
+    void probesForTheUnloadedLatencyUnderSustainedLoad() {
+        GradientLimit limit = new GradientLimit(4, 1, 64, 1.5);
+
+        // A slower model is swapped in while requests keep queueing
+        saturate(limit, 4 * UNLOADED_NANOS, 4, 500);
+        assertThat(limit.probing()).isTrue();
+
+        limit.update(4 * UNLOADED_NANOS, 1, true);
+
+        assertThat(limit.probing()).isFalse();
+        assertThat(limit.baselineNanos()).isGreaterThan(2 * UNLOADED_NANOS);
+    }
+
+    @Test
+    void idleServiceKeepsItsLimit() {
+        GradientLimit limit = new GradientLimit(4, 1, 64, 1.5);
+
+        for (int i = 0; i < 100; i++) {
+            limit.update(UNLOADED_NANOS, 1, false);
+        }
+
+        assertThat(limit.limit()).isEqualTo(4);
+    }
+
+    @Test
+    void staysWithinItsBounds() {
+        GradientLimit limit = new GradientLimit(4, 2, 6, 1.5);
+
+        saturate(limit, UNLOADED_NANOS, 64, 300);
+        assertThat(limit.limit()).isEqualTo(6);
+
+        for (int i = 0; i < 300; i++) {
+            limit.update(100 * UNLOADED_NANOS, limit.limit(), false);
+        }
+        assertThat(limit.limit()).isEqualTo(2);
+        assertThatThrownBy(() -> new GradientLimit(4, 0, 6, 1.5)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.SynthesisResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares synthesis tail latency over three endpoints, one of which stalls, for round
+ * robin, {@link PooledSynthesizer}'s least-outstanding routing, and that routing with
+ * hedging. Not a unit test; run it on the test classpath:
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.example.queryapi.synthesis.HedgingBenchmark
+ * </pre>
+ *
+ * Endpoints answer in 80 to 120 ms; the stalling one takes 1500 ms on the given share of
+ * its requests. 8 clients each make 50 calls back to back. On one core:
+ *
+ * <pre>
+ * one of three endpoints stalls on 2% of its requests
+ *   round robin                  p50   100 ms  p95   119 ms  p99   120 ms  max  1500 ms
+ *   least outstanding            p50   102 ms  p95   120 ms  p99   129 ms  max  1518 ms
+ *     hedged 0, hedges won 0, stalling endpoint ejected true
+ *   least outstanding + hedging  p50   100 ms  p95   119 ms  p99   126 ms  max   223 ms
+ *     hedged 29, hedges won 1, stalling endpoint ejected false
+ * one of three endpoints stalls on 100% of its requests
+ *   round robin                  p50   111 ms  p95  1500 ms  p99  1501 ms  max  1572 ms
+ *   least outstanding            p50   101 ms  p95   120 ms  p99   148 ms  max  1501 ms
+ *     hedged 0, hedges won 0, stalling endpoint ejected true
+ *   least outstanding + hedging  p50   101 ms  p95   119 ms  p99   127 ms  max   220 ms
+ *     hedged 30, hedges won 4, stalling endpoint ejected true
+ * </pre>
+ *
+ * Routing alone ejects the stalling endpoint, but only after requests already stuck on it
+ * have waited out the stall. Hedging bounds every request near the hedge delay plus a
+ * healthy endpoint's latency, for about 7% more requests. Ejection is as of the end of
+ * the run.
+ */
+public final class HedgingBenchmark {
+
+    private static final int CLIENTS = 8;
+    private static final int CALLS_PER_CLIENT = 50;
+    private static final long STALL_MILLIS = 1_500;
+
+    private HedgingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (double stallShare : new double[]{0.02, 1.0}) {
+            System.out.printf("one of three endpoints stalls on %d%% of its requests%n", (int) (stallShare * 100));
+            Random random = new Random(1);
+            Map<String, Synthesizer> endpoints = new LinkedHashMap<>();
+            endpoints.put("a", endpoint("a", stallShare, random));
+            endpoints.put("b", endpoint("b", 0.0, random));
+            endpoints.put("c", endpoint("c", 0.0, random));
+
+            List<Synthesizer> rotation = new ArrayList<>(endpoints.values());
+            AtomicInteger next = new AtomicInteger();
+            run("round robin", (query, chunks, maxTokens) ->
+                    rotation.get(Math.floorMod(next.getAndIncrement(), rotation.size()))
+                            .synthesize(query, chunks, maxTokens));
+
+            for (boolean hedge : new boolean[]{false, true}) {
+                PooledSynthesizer pool = new PooledSynthesizer(endpoints, 3, 3.0, Duration.ofSeconds(30), hedge,
+                        Duration.ofMillis(50), System::nanoTime);
+                try {
+                    run(hedge ? "least outstanding + hedging" : "least outstanding", pool);
+                    PoolStats stats = pool.stats();
+                    System.out.printf("    hedged %d, hedges won %d, stalling endpoint ejected %s%n",
+                            stats.getHedgedCount(), stats.getHedgeWinCount(), stats.getEndpoints().get(0).isEjected());
+                } finally {
+                    pool.close();
+                }
+            }
+        }
+    }
+
+    private static Synthesizer endpoint(String name, double stallShare, Random random) {
+        return (query, chunks, maxTokens) -> {
+            long millis;
+            synchronized (random) {
+                millis = random.nextDouble() < stallShare ? STALL_MILLIS : 80 + random.nextInt(41);
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SynthesisException("Interrupted");
+            }
+            return new SynthesisResult(name, List.of());
+        };
+    }
+
+    private static void run(String label, Synthesizer synthesizer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        long[] millis = new long[CLIENTS * CALLS_PER_CLIENT];
+        try {
+            List<Future<long[]>> clients = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                clients.add(executor.submit(() -> {
+                    long[] latencies = new long[CALLS_PER_CLIENT];
+                    for (int i = 0; i < CALLS_PER_CLIENT; i++) {
+                        long start = System.nanoTime();
+                        synthesizer.synthesize("question", List.of(), null);
+                        latencies[i] = (System.nanoTime() - start) / 1_000_000;
+                    }
+                    return latencies;
+                }));
+            }
+            for (int c = 0; c < CLIENTS; c++) {
+                System.arraycopy(clients.get(c).get(), 0, millis, c * CALLS_PER_CLIENT, CALLS_PER_CLIENT);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Arrays.sort(millis);
+        System.out.printf("  %-28s p50 %5d ms  p95 %5d ms  p99 %5d ms  max %5d ms%n", label,
+                millis[millis.length / 2], millis[(int) Math.ceil(0.95 * millis.length) - 1],
+                millis[(int) Math.ceil(0.99 * millis.length) - 1], millis[millis.length - 1]);
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.queryapi.synthesis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyWindowTest {
+
+    @Test
+    void percentileIsTheNearestRankedSample() {
+        LatencyWindow window = new LatencyWindow(100);
+        for (int i = 100; i >= 1; i--) {
+            window.record(i);
+        }
+
+        assertThat(window.percentile(0.95)).isEqualTo(95);
+        assertThat(window.percentile(0.5)).isEqualTo(50);
+        assertThat(window.percentile(1.0)).isEqualTo(100);
+        assertThat(window.percentile(0.0)).isEqualTo(1);
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentSamples() {
+        LatencyWindow window = new LatencyWindow(4);
+        window.record(1_000);
+        for (int i = 0; i < 4; i++) {
+            window.record(10);
+        }
+
+        assertThat(window.size()).isEqualTo(4);
+        assertThat(window.percentile(0.95)).isEqualTo(10);
+    }
+
+    @Test
+    void emptyWindowHasNoLatency() {
+        assertThat(new LatencyWindow(8).percentile(0.95)).isZero();
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.queryapi.synthesis;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chat model stand-in that behaves like a local Ollama server under load: a call takes
+ * the unloaded latency while no more calls run than the server has parallel slots, and
+ * beyond that the slots share the compute, so latency grows in proportion to concurrency
+ * and throughput stays flat.
+ */
+class LoadSensitiveChatModel implements ChatModel {
+
+    private final Duration unloadedLatency;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final int slots;
+
+    LoadSensitiveChatModel(Duration unloadedLatency, int slots) {
+        this.unloadedLatency = unloadedLatency;
+        this.slots = slots;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        int concurrency = running.incrementAndGet();
+        maxRunning.accumulateAndGet(concurrency, Math::max);
+        try {
+            double slowdown = Math.max(1.0, (double) concurrency / slots);
+            Thread.sleep((long) (unloadedLatency.toMillis() * slowdown));
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("Answer [1]."))));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    int getMaxRunning() {
+        return maxRunning.get();
+    }
+}
@@ -1,14 +1,20 @@
 package org.example.queryapi.synthesis;
 
+import org.example.queryapi.domain.AnswerDelta;
 import org.example.queryapi.domain.Chunk;
 import org.example.queryapi.domain.SynthesisResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 
@@ -16,6 +22,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class OllamaSynthesizerTest {
@@ -37,6 +44,19 @@ class OllamaSynthesizerTest {
         return new ChatResponse(List.of(generation));
     }
 
+    private ChatResponse createMockChatResponse(String content, int promptTokens, int outputTokens) {
+        Generation generation = new Generation(new AssistantMessage(content));
+        return new ChatResponse(List.of(generation), ChatResponseMetadata.builder()
+                .usage(new DefaultUsage(promptTokens, outputTokens))
+                .build());
+    }
+
+    private Prompt capturedPrompt() {
+        ArgumentCaptor<Prompt> prompt = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatModel).call(prompt.capture());
+        return prompt.getValue();
+    }
+
     @Test
     void synthesizeWithChunksReturnsAnswerWithCitations() {
         List<Chunk> chunks = List.of(
@@ -134,4 +154,95 @@ class OllamaSynthesizerTest {
                 .hasMessageContaining("Synthesis failed")
                 .hasMessageContaining("LLM error");
     }
+
+    @Test
+    void streamEmitsAnswerPiecesAsTheModelSendsThem() {
+        List<Chunk> chunks = List.of(
+                new Chunk("chunk-1", "doc-1", "Doc 1", "Content 1", null, 0.9)
+        );
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(
+                createMockChatResponse("First "), createMockChatResponse("point [1]."), createMockChatResponse("")));
+
+        List<AnswerDelta> pieces = synthesizer.stream("Question?", chunks, null).collectList().block();
+
+        assertThat(pieces).extracting(AnswerDelta::getText).containsExactly("First ", "point [1].");
+    }
+
+    @Test
+    void streamWrapsChatModelFailures() {
+        List<Chunk> chunks = List.of(
+                new Chunk("chunk-1", "doc-1", "Doc 1", "Content 1", null, 0.9)
+        );
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.error(new RuntimeException("LLM error")));
+
+        assertThatThrownBy(() -> synthesizer.stream("Question?", chunks, null).blockLast())
+                .isInstanceOf(SynthesisException.class)
+                .hasMessageContaining("LLM error");
+    }
+
+    @Test
+    void streamReportsTokenCountsWithTheLastPiece() {
+        List<Chunk> chunks = List.of(
+                new Chunk("chunk-1", "doc-1", "Doc 1", "Content 1", null, 0.9)
+        );
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(
+                createMockChatResponse("Answer [1]."), createMockChatResponse("", 120, 4)));
+
+        List<AnswerDelta> pieces = synthesizer.stream("Question?", chunks, null).collectList().block();
+
+        assertThat(pieces).hasSize(2);
+        assertThat(pieces.get(1).getText()).isEmpty();
+        assertThat(pieces.get(1).getPromptTokens()).isEqualTo(120);
+        assertThat(pieces.get(1).getOutputTokens()).isEqualTo(4);
+    }
+
+    @Test
+    void maxTokensIsSentAsNumPredict() {
+        List<Chunk> chunks = List.of(
+                new Chunk("chunk-1", "doc-1", "Doc 1", "Content 1", null, 0.9)
+        );
+        when(chatModel.call(any(Prompt.class))).thenReturn(createMockChatResponse("Answer [1].", 95, 3));
+
+        SynthesisResult result = synthesizer.synthesize("Question?", chunks, 100);
+
+        assertThat(((OllamaOptions) capturedPrompt().getOptions()).getNumPredict()).isEqualTo(100);
+        assertThat(result.getPromptTokens()).isEqualTo(95);
+        assertThat(result.getOutputTokens()).isEqualTo(3);
+    }
+
+    @Test
+    void maxTokensBeyondHalfTheContextIsCutToTheAnswerReserve() {
+        String words = "word ".repeat(2000);
+        List<Chunk> chunks = List.of(new Chunk("chunk-1", "doc-1", "Doc 1", words, null, 0.9));
+        when(chatModel.call(any(Prompt.class))).thenReturn(createMockChatResponse("Answer [1]."));
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(createMockChatResponse("Answer [1].")));
+
+        synthesizer.synthesize("Question?", chunks, 1500);
+        synthesizer.stream("Question?", chunks, 1500).blockLast();
+
+        // The prompt fills the other half of the 2048-token window, so 1500 would overflow it
+        assertThat(((OllamaOptions) capturedPrompt().getOptions()).getNumPredict()).isEqualTo(1024);
+        ArgumentCaptor<Prompt> streamed = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatModel).stream(streamed.capture());
+        assertThat(((OllamaOptions) streamed.getValue().getOptions()).getNumPredict()).isEqualTo(1024);
+    }
+
+    @Test
+    void chunksBeyondTheContextWindowAreLeftOut() {
+        String words = "word ".repeat(400);
+        List<Chunk> chunks = List.of(
+                new Chunk("chunk-1", "doc-1", "Doc 1", "First " + words, null, 0.9),
+                new Chunk("chunk-2", "doc-2", "Doc 2", "Second " + words, null, 0.8),
+                new Chunk("chunk-3", "doc-3", "Doc 3", "Third " + words, null, 0.7)
+        );
+        when(chatModel.call(any(Prompt.class))).thenReturn(createMockChatResponse("Answer [1]."));
+        synthesizer = new OllamaSynthesizer(chatModel, 1024, 256);
+
+        synthesizer.synthesize("Question?", chunks);
+
+        String prompt = capturedPrompt().getContents();
+        assertThat(prompt).contains("Chunk 1: First word", "Chunk 2: Second word");
+        assertThat(prompt).doesNotContain("Third");
+        assertThat(prompt).contains("word ...\n");
+    }
 }
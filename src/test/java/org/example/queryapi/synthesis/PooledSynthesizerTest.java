@@ -0,0 +1,166 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.Chunk;
+import org.example.queryapi.domain.SynthesisResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PooledSynthesizerTest {
+
+    private static final List<Chunk> CHUNKS = List.of(
+            new Chunk("chunk-1", "doc-1", "Deployment Guide", "Deploy with three nodes.", "https://docs/1", 0.9));
+
+    private final List<StubOllamaServer> servers = new ArrayList<>();
+    private PooledSynthesizer pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        servers.forEach(StubOllamaServer::close);
+    }
+
+    private StubOllamaServer server(String answer) throws IOException {
+        StubOllamaServer server = new StubOllamaServer(answer);
+        servers.add(server);
+        return server;
+    }
+
+    private PooledSynthesizer pool(boolean hedge, long minHedgeDelayMs, StubOllamaServer... stubs) {
+        List<String> baseUrls = Arrays.stream(stubs).map(StubOllamaServer::baseUrl).toList();
+        pool = new PooledSynthesizer(PooledSynthesizer.ollama(baseUrls, "stub", 0.0, 2048, 512), 2, 3.0,
+                Duration.ofMinutes(1), hedge, Duration.ofMillis(minHedgeDelayMs), System::nanoTime);
+        return pool;
+    }
+
+    private String answer() {
+        return pool.synthesize("How many nodes?", CHUNKS).getAnswerText();
+    }
+
+    @Test
+    void routesToTheEndpointWithFewestOutstandingRequests() throws Exception {
+        StubOllamaServer busy = server("Busy [1].");
+        StubOllamaServer idle = server("Idle [1].");
+        busy.setDelayMillis(1000);
+        pool(false, 100, busy, idle);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SynthesisResult> slow = executor.submit(() -> pool.synthesize("How many nodes?", CHUNKS));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (busy.getRequests() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            for (int i = 0; i < 3; i++) {
+                assertThat(answer()).isEqualTo("Idle [1].");
+            }
+            assertThat(slow.get(5, TimeUnit.SECONDS).getAnswerText()).isEqualTo("Busy [1].");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(busy.getRequests()).isEqualTo(1);
+        assertThat(idle.getRequests()).isEqualTo(3);
+    }
+
+    @Test
+    void ejectsAnEndpointThatKeepsFailing() throws Exception {
+        StubOllamaServer failing = server("Failing [1].");
+        StubOllamaServer healthy = server("Healthy [1].");
+        failing.setStatus(500);
+        pool(false, 100, failing, healthy);
+
+        int failures = 0;
+        for (int i = 0; i < 10; i++) {
+            try {
+                assertThat(answer()).isEqualTo("Healthy [1].");
+            } catch (SynthesisException e) {
+                failures++;
+            }
+        }
+
+        // Two failures in a row on the failing endpoint take it out of rotation
+        assertThat(failures).isEqualTo(2);
+        assertThat(failing.getRequests()).isEqualTo(2);
+        EndpointStats ejected = pool.stats().getEndpoints().get(0);
+        assertThat(ejected.isEjected()).isTrue();
+        assertThat(ejected.getEjectionCount()).isEqualTo(1);
+        assertThat(ejected.getFailureCount()).isEqualTo(2);
+    }
+
+    @Test
+    void hedgesAStalledEndpointAndEjectsIt() throws Exception {
+        StubOllamaServer stalled = server("Stalled [1].");
+        StubOllamaServer fast = server("Fast [1].");
+        pool(true, 200, stalled, fast);
+        for (int i = 0; i < 4; i++) {
+            answer();
+        }
+
+        stalled.setDelayMillis(5000);
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            assertThat(answer()).isEqualTo("Fast [1].");
+            // Without hedging, every other synthesis would wait out the stall
+            assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+        }
+
+        PoolStats stats = pool.stats();
+        assertThat(stats.getHedgedCount()).isPositive();
+        assertThat(stats.getHedgeWinCount()).isPositive();
+        EndpointStats slow = stats.getEndpoints().get(0);
+        assertThat(slow.isEjected()).isTrue();
+        // Cancelled requests no longer count as outstanding
+        assertThat(slow.getOutstanding()).isZero();
+    }
+
+    @Test
+    void hedgeRetriesAFailedRequestOnAnotherEndpointAtOnce() throws Exception {
+        StubOllamaServer failing = server("Failing [1].");
+        StubOllamaServer healthy = server("Healthy [1].");
+        failing.setStatus(500);
+        pool(true, 10_000, failing, healthy);
+
+        long start = System.nanoTime();
+        assertThat(answer()).isEqualTo("Healthy [1].");
+
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        assertThat(failing.getRequests()).isEqualTo(1);
+        assertThat(pool.stats().getHedgeWinCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failsWhenEveryEndpointFails() throws Exception {
+        StubOllamaServer first = server("First [1].");
+        StubOllamaServer second = server("Second [1].");
+        first.setStatus(500);
+        second.setStatus(503);
+        pool(true, 100, first, second);
+
+        assertThatThrownBy(this::answer).isInstanceOf(SynthesisException.class);
+        assertThat(first.getRequests()).isEqualTo(1);
+        assertThat(second.getRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAnEmptyPool() {
+        assertThatThrownBy(() -> new PooledSynthesizer(PooledSynthesizer.ollama(List.of(" "), "stub", 0.0, 2048, 512),
+                3, 3.0, Duration.ofMinutes(1), false, Duration.ofMillis(100), System::nanoTime))
+                .isInstanceOf(SynthesisException.class);
+    }
+}
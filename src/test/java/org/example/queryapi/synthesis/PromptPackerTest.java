@@ -0,0 +1,74 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptPackerTest {
+
+    private static final PromptPacker.ChunkLabel LABEL = (number, text) -> "Chunk " + number + ": " + text + "\n";
+    private static final String FIXED = "Answer from the chunks.\nQuestion: What is the topology?";
+
+    private static Chunk chunk(String id, String text) {
+        return new Chunk(id, "doc-" + id, "Title", text, null, 0.9);
+    }
+
+    @Test
+    void everyChunkIsKeptWhenTheyFit() {
+        PromptPacker packer = new PromptPacker(new TokenEstimator(), 2048, 512);
+        List<Chunk> chunks = List.of(chunk("1", "The topology is active-passive."), chunk("2", "Nodes share a version."));
+
+        PromptPacker.Packed packed = packer.pack(FIXED, chunks, LABEL, null);
+
+        assertThat(packed.texts()).containsExactly("The topology is active-passive.", "Nodes share a version.");
+        assertThat(packed.countedTokens()).isGreaterThan(PromptPacker.TEMPLATE_TOKENS + TokenEstimator.count(FIXED));
+    }
+
+    @Test
+    void firstChunkOverBudgetIsTrimmedAtAWordBoundaryAndTheRestDropped() {
+        PromptPacker packer = new PromptPacker(new TokenEstimator(), 512, 128);
+        String words = "word ".repeat(400).strip();
+        List<Chunk> chunks = List.of(chunk("1", "short first chunk"), chunk("2", "second " + words), chunk("3", "third"));
+
+        PromptPacker.Packed packed = packer.pack(FIXED, chunks, LABEL, null);
+
+        assertThat(packed.texts()).hasSize(2);
+        assertThat(packed.texts().get(0)).isEqualTo("short first chunk");
+        assertThat(packed.texts().get(1)).startsWith("second word").endsWith(" word ...");
+        int tokens = PromptPacker.TEMPLATE_TOKENS + TokenEstimator.count(FIXED)
+                + TokenEstimator.count(LABEL.format(1, packed.texts().get(0)))
+                + TokenEstimator.count(LABEL.format(2, packed.texts().get(1)));
+        assertThat(tokens).isEqualTo(packed.countedTokens()).isLessThanOrEqualTo(512 - 128);
+    }
+
+    @Test
+    void chunkIsDroppedWhenTooLittleOfItWouldFit() {
+        PromptPacker packer = new PromptPacker(new TokenEstimator(), 512, 128);
+        String words = "word ".repeat(320).strip();
+        List<Chunk> chunks = List.of(chunk("1", words), chunk("2", words));
+
+        PromptPacker.Packed packed = packer.pack(FIXED, chunks, LABEL, null);
+
+        // The first chunk fills the budget but for a few tokens
+        assertThat(packed.texts()).containsExactly(words);
+    }
+
+    @Test
+    void requestedAnswerLengthIsReservedUpToHalfTheContext() {
+        PromptPacker packer = new PromptPacker(new TokenEstimator(), 1024, 128);
+        List<Chunk> chunks = List.of(chunk("1", "word ".repeat(1200).strip()));
+
+        int defaultReserve = packer.pack(FIXED, chunks, LABEL, null).countedTokens();
+        int smallReserve = packer.pack(FIXED, chunks, LABEL, 32).countedTokens();
+        int hugeReserve = packer.pack(FIXED, chunks, LABEL, 100_000).countedTokens();
+
+        assertThat(smallReserve).isGreaterThan(defaultReserve).isLessThanOrEqualTo(1024 - 32);
+        assertThat(hugeReserve).isLessThanOrEqualTo(512).isGreaterThan(400);
+        assertThat(packer.pack(FIXED, chunks, LABEL, null).answerTokens()).isEqualTo(128);
+        assertThat(packer.pack(FIXED, chunks, LABEL, 32).answerTokens()).isEqualTo(32);
+        assertThat(packer.pack(FIXED, chunks, LABEL, 100_000).answerTokens()).isEqualTo(512);
+    }
+}
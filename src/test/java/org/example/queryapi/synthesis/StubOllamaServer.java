@@ -0,0 +1,77 @@
+package org.example.queryapi.synthesis;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP server answering Ollama's {@code /api/chat} with a fixed answer, after a
+ * configurable delay or with a configurable error status, counting the requests it gets.
+ */
+class StubOllamaServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final String answer;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile long delayMillis;
+    private volatile int status = 200;
+
+    StubOllamaServer(String answer) throws IOException {
+        this.answer = answer;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/chat", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            Thread.sleep(delayMillis);
+            byte[] body = status == 200
+                    ? ("{\"model\":\"stub\",\"created_at\":\"2024-01-01T00:00:00Z\","
+                    + "\"message\":{\"role\":\"assistant\",\"content\":\"" + answer + "\"},"
+                    + "\"done_reason\":\"stop\",\"done\":true,\"prompt_eval_count\":12,\"eval_count\":4}")
+                    .getBytes(StandardCharsets.UTF_8)
+                    : "{\"error\":\"model unavailable\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,225 @@
+package org.example.queryapi.synthesis;
+
+import org.example.queryapi.domain.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SynthesisSchedulerTest {
+
+    @Test
+    void noMoreThanTheLimitRunAtOnce() throws Exception {
+        SynthesisScheduler scheduler = new SynthesisScheduler(2, 10, Duration.ofSeconds(5), System::nanoTime);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<String>> answers = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                answers.add(executor.submit(() -> scheduler.call(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(20);
+                    running.decrementAndGet();
+                    return "answer";
+                })));
+            }
+            for (Future<String> answer : answers) {
+                assertThat(answer.get(5, TimeUnit.SECONDS)).isEqualTo("answer");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(maxRunning).hasValue(2);
+        SchedulerStats stats = scheduler.stats();
+        assertThat(stats.getAdmittedCount()).isEqualTo(6);
+        assertThat(stats.getInFlight()).isZero();
+        assertThat(stats.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void fullQueueTurnsRequestsAwayAtOnce() throws Exception {
+        SynthesisScheduler scheduler = new SynthesisScheduler(1, 1, Duration.ofSeconds(5), System::nanoTime);
+        SynthesisScheduler.Permit running = scheduler.acquire();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SynthesisScheduler.Permit> queued = executor.submit(scheduler::acquire);
+            awaitQueueDepth(scheduler, 1);
+
+            assertThatThrownBy(scheduler::acquire)
+                    .isInstanceOfSatisfying(SynthesisRejectedException.class, e -> {
+                        assertThat(e.isQueueFull()).isTrue();
+                        assertThat(e.getRetryAfterSeconds()).isPositive();
+                    });
+
+            running.close();
+            queued.get(5, TimeUnit.SECONDS).close();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(scheduler.stats().getQueueFullCount()).isEqualTo(1);
+        assertThat(scheduler.stats().getAdmittedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void requestExpectedToMissItsDeadlineIsShedOnArrival() {
+        AtomicLong now = new AtomicLong();
+        SynthesisScheduler scheduler = new SynthesisScheduler(1, 10, Duration.ofSeconds(1), now::get);
+        SynthesisScheduler.Permit first = scheduler.acquire();
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        first.close(true);
+        SynthesisScheduler.Permit second = scheduler.acquire();
+
+        // The running synthesis is expected to hold its slot for two seconds more
+        assertThatThrownBy(scheduler::acquire)
+                .isInstanceOfSatisfying(SynthesisRejectedException.class, e -> {
+                    assertThat(e.isQueueFull()).isFalse();
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(2);
+                });
+
+        second.close();
+        assertThat(scheduler.stats().getShedCount()).isEqualTo(1);
+        assertThat(scheduler.stats().getInFlight()).isZero();
+    }
+
+    @Test
+    void queuedRequestLeavesTheQueueAtItsDeadline() {
+        SynthesisScheduler scheduler = new SynthesisScheduler(1, 10, Duration.ofMillis(50), System::nanoTime);
+        SynthesisScheduler.Permit running = scheduler.acquire();
+
+        assertThatThrownBy(scheduler::acquire)
+                .isInstanceOf(SynthesisRejectedException.class)
+                .hasMessageContaining("deadline");
+
+        SchedulerStats stats = scheduler.stats();
+        assertThat(stats.getTimedOutCount()).isEqualTo(1);
+        assertThat(stats.getQueueDepth()).isZero();
+        running.close();
+        assertThat(scheduler.stats().getInFlight()).isZero();
+    }
+
+    @Test
+    void slotsGoToWaitersInArrivalOrder() throws Exception {
+        SynthesisScheduler scheduler = new SynthesisScheduler(1, 10, Duration.ofSeconds(5), System::nanoTime);
+        SynthesisScheduler.Permit running = scheduler.acquire();
+        List<String> order = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<?>> waiters = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                String name = "waiter-" + i;
+                waiters.add(executor.submit(() -> scheduler.call(() -> order.add(name))));
+                awaitQueueDepth(scheduler, i + 1);
+            }
+            running.close();
+            for (Future<?> waiter : waiters) {
+                waiter.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(order).containsExactly("waiter-0", "waiter-1", "waiter-2");
+    }
+
+    @Test
+    void statsRecordWaitTimesAndQueueDepthOnArrival() {
+        AtomicLong now = new AtomicLong();
+        SynthesisScheduler scheduler = new SynthesisScheduler(1, 10, Duration.ofSeconds(5), now::get);
+
+        assertThat(scheduler.call(() -> "answer")).isEqualTo("answer");
+        scheduler.acquire().close();
+
+        SchedulerStats stats = scheduler.stats();
+        assertThat(stats.getConcurrencyLimit()).isEqualTo(1);
+        assertThat(stats.getWaitTimeMs()).containsEntry("1", 2L).containsEntry("+Inf", 0L);
+        assertThat(stats.getQueueDepthOnArrival()).containsEntry("0", 2L);
+    }
+
+    @Test
+    void failedSynthesesAreNotLatencySamples() {
+        AtomicLong now = new AtomicLong();
+        SynthesisScheduler scheduler = new SynthesisScheduler(4, 10, Duration.ofSeconds(60), now::get,
+                new GradientLimit(4, 1, 32, 1.5));
+        scheduler.call(() -> now.addAndGet(Duration.ofSeconds(1).toNanos()));
+        SchedulerStats before = scheduler.stats();
+
+        // A synthesis that times out after 30 seconds, and a stream the client dropped
+        assertThatThrownBy(() -> scheduler.call(() -> {
+            now.addAndGet(Duration.ofSeconds(30).toNanos());
+            throw new SynthesisException("LLM timeout");
+        })).isInstanceOf(SynthesisException.class);
+        SynthesisScheduler.Permit cancelled = scheduler.acquire();
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        cancelled.close(false);
+
+        SchedulerStats after = scheduler.stats();
+        assertThat(after.getMeanServiceTimeMs()).isEqualTo(1_000.0);
+        assertThat(after.getBaselineServiceTimeMs()).isEqualTo(before.getBaselineServiceTimeMs());
+        assertThat(after.getConcurrencyLimit()).isEqualTo(before.getConcurrencyLimit());
+        assertThat(after.getInFlight()).isZero();
+        assertThat(after.getAdmittedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void adaptiveLimitSettlesNearTheModelsSlots() throws Exception {
+        // Latency doubles from 2 concurrent calls to 4, so running more than a few only adds latency
+        LoadSensitiveChatModel model = new LoadSensitiveChatModel(Duration.ofMillis(10), 2);
+        OllamaSynthesizer synthesizer = new OllamaSynthesizer(model);
+        SynthesisScheduler scheduler = new SynthesisScheduler(1, 100, Duration.ofSeconds(30), System::nanoTime,
+                new GradientLimit(1, 1, 32, 1.5));
+        List<Chunk> chunks = List.of(new Chunk("chunk-1", "doc-1", "Guide", "Some context.", "https://docs/1", 0.9));
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> clients = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                clients.add(executor.submit(() -> {
+                    for (int j = 0; j < 25; j++) {
+                        scheduler.call(() -> synthesizer.synthesize("question", chunks));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : clients) {
+                client.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // With all 16 clients let through, each synthesis would take about 80 ms
+        SchedulerStats stats = scheduler.stats();
+        assertThat(stats.getConcurrencyLimit()).isBetween(2, 10);
+        assertThat(model.getMaxRunning()).isLessThan(16);
+        assertThat(stats.getMeanServiceTimeMs()).isLessThan(60);
+        assertThat(stats.getBaselineServiceTimeMs()).isGreaterThan(0);
+    }
+
+    private static void awaitQueueDepth(SynthesisScheduler scheduler, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.stats().getQueueDepth() < depth && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(scheduler.stats().getQueueDepth()).isEqualTo(depth);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
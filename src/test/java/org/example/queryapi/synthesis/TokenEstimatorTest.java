@@ -0,0 +1,47 @@
+package org.example.queryapi.synthesis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenEstimatorTest {
+
+    @Test
+    void commonWordsAreOneTokenEachWithTheirLeadingSpace() {
+        assertThat(TokenEstimator.count("The deployment topology is active")).isEqualTo(7);
+        assertThat(TokenEstimator.count("the cat sat on the mat")).isEqualTo(6);
+    }
+
+    @Test
+    void numbersPunctuationAndLineBreaksAreCounted() {
+        // "2024" splits into "202" and "4"; ".", "[", "1", "]" and the line breaks are one each
+        assertThat(TokenEstimator.count("2024.")).isEqualTo(3);
+        assertThat(TokenEstimator.count("[1]\n\n")).isEqualTo(4);
+        assertThat(TokenEstimator.count("")).isZero();
+    }
+
+    @Test
+    void reportedCountsAboveTheEstimateRaiseTheCorrection() {
+        TokenEstimator estimator = new TokenEstimator();
+
+        for (int i = 0; i < 100; i++) {
+            estimator.calibrate(100, 150);
+        }
+
+        assertThat(estimator.correction()).isBetween(1.49, 1.5);
+        assertThat(estimator.estimate("the cat sat on the mat")).isEqualTo(9);
+    }
+
+    @Test
+    void reportedCountsBelowTheEstimateAreIgnored() {
+        TokenEstimator estimator = new TokenEstimator();
+        estimator.calibrate(100, 300);
+        double raised = estimator.correction();
+
+        // A cached prompt prefix makes the model report fewer tokens than it was sent
+        estimator.calibrate(100, 20);
+
+        assertThat(raised).isGreaterThan(1.0);
+        assertThat(estimator.correction()).isEqualTo(raised);
+    }
+}